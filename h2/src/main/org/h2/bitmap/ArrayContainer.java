@@ -0,0 +1,273 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.bitmap;
+
+import java.util.Arrays;
+
+/**
+ * A container for sparse chunks. The set bits are kept in a sorted array.
+ *
+ * @author Min Zhou (coderplay@gmail.com)
+ */
+class ArrayContainer extends Container {
+
+    private char[] content;
+    private int cardinality;
+
+    ArrayContainer() {
+        this(new char[4], 0);
+    }
+
+    private ArrayContainer(char[] content, int cardinality) {
+        this.content = content;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * Create an array container from the given array of words.
+     *
+     * @param words the words
+     * @param card the number of set bits
+     * @return the container
+     */
+    static ArrayContainer valueOf(long[] words, int card) {
+        char[] content = new char[Math.max(card, 1)];
+        int pos = 0;
+        for (int i = 0; i < WORD_COUNT; i++) {
+            long w = words[i];
+            while (w != 0) {
+                content[pos++] = (char) ((i << 6) + Long.numberOfTrailingZeros(w));
+                w &= w - 1;
+            }
+        }
+        return new ArrayContainer(content, pos);
+    }
+
+    /**
+     * Get the estimated memory used by an array container.
+     *
+     * @param card the number of set bits
+     * @return the number of bytes
+     */
+    static int getMemory(int card) {
+        return 24 + 2 * card;
+    }
+
+    int getMemory() {
+        return getMemory(content.length);
+    }
+
+    boolean contains(char x) {
+        return Arrays.binarySearch(content, 0, cardinality, x) >= 0;
+    }
+
+    Container add(char x) {
+        int idx = Arrays.binarySearch(content, 0, cardinality, x);
+        if (idx >= 0) {
+            return this;
+        }
+        if (cardinality >= MAX_ARRAY_SIZE) {
+            long[] words = toWords();
+            words[x >>> 6] |= 1L << x;
+            return new BitmapContainer(words, cardinality + 1);
+        }
+        idx = -idx - 1;
+        if (cardinality == content.length) {
+            int len = Math.min(MAX_ARRAY_SIZE, Math.max(4, cardinality * 2));
+            content = Arrays.copyOf(content, len);
+        }
+        System.arraycopy(content, idx, content, idx + 1, cardinality - idx);
+        content[idx] = x;
+        cardinality++;
+        return this;
+    }
+
+    Container remove(char x) {
+        int idx = Arrays.binarySearch(content, 0, cardinality, x);
+        if (idx >= 0) {
+            System.arraycopy(content, idx + 1, content, idx, cardinality - idx - 1);
+            cardinality--;
+        }
+        return this;
+    }
+
+    int getCardinality() {
+        return cardinality;
+    }
+
+    int nextSetBit(int from) {
+        int idx = Arrays.binarySearch(content, 0, cardinality, (char) from);
+        if (idx < 0) {
+            idx = -idx - 1;
+        }
+        return idx < cardinality ? content[idx] : -1;
+    }
+
+    int last() {
+        return cardinality == 0 ? -1 : content[cardinality - 1];
+    }
+
+    int nextClearBit(int from) {
+        int idx = Arrays.binarySearch(content, 0, cardinality, (char) from);
+        if (idx < 0) {
+            return from;
+        }
+        for (; idx < cardinality && content[idx] == from; idx++) {
+            from++;
+        }
+        return from;
+    }
+
+    void orInto(long[] words) {
+        for (int i = 0; i < cardinality; i++) {
+            char x = content[i];
+            words[x >>> 6] |= 1L << x;
+        }
+    }
+
+    int getRunCount() {
+        int runs = 0;
+        for (int i = 0; i < cardinality; i++) {
+            if (i == 0 || content[i] != content[i - 1] + 1) {
+                runs++;
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Get the set bit at the given position.
+     *
+     * @param i the position (0 to cardinality - 1)
+     * @return the lower 16 bits of the bit index
+     */
+    char get(int i) {
+        return content[i];
+    }
+
+    /**
+     * Calculate the intersection of two array containers.
+     *
+     * @param o the other container
+     * @return the new container
+     */
+    ArrayContainer and(ArrayContainer o) {
+        char[] result = new char[Math.max(1, Math.min(cardinality, o.cardinality))];
+        int i = 0, j = 0, pos = 0;
+        while (i < cardinality && j < o.cardinality) {
+            char a = content[i], b = o.content[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                result[pos++] = a;
+                i++;
+                j++;
+            }
+        }
+        return new ArrayContainer(result, pos);
+    }
+
+    /**
+     * Calculate the number of bits set in both array containers.
+     *
+     * @param o the other container
+     * @return the number of bits
+     */
+    int andCardinality(ArrayContainer o) {
+        int i = 0, j = 0, count = 0;
+        while (i < cardinality && j < o.cardinality) {
+            char a = content[i], b = o.content[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Calculate the union of two array containers. The total cardinality
+     * must not exceed MAX_ARRAY_SIZE.
+     *
+     * @param o the other container
+     * @return the new container
+     */
+    ArrayContainer or(ArrayContainer o) {
+        char[] result = new char[Math.max(1, cardinality + o.cardinality)];
+        int i = 0, j = 0, pos = 0;
+        while (i < cardinality && j < o.cardinality) {
+            char a = content[i], b = o.content[j];
+            if (a < b) {
+                result[pos++] = a;
+                i++;
+            } else if (a > b) {
+                result[pos++] = b;
+                j++;
+            } else {
+                result[pos++] = a;
+                i++;
+                j++;
+            }
+        }
+        while (i < cardinality) {
+            result[pos++] = content[i++];
+        }
+        while (j < o.cardinality) {
+            result[pos++] = o.content[j++];
+        }
+        return new ArrayContainer(result, pos);
+    }
+
+    /**
+     * Keep the bits that are (or are not) set in the other container.
+     *
+     * @param o the other container
+     * @param set true to keep the bits that are set in the other container,
+     *            false to keep the bits that are not set
+     * @return the new container
+     */
+    ArrayContainer filter(Container o, boolean set) {
+        char[] result = new char[Math.max(1, cardinality)];
+        int pos = 0;
+        for (int i = 0; i < cardinality; i++) {
+            char x = content[i];
+            if (o.contains(x) == set) {
+                result[pos++] = x;
+            }
+        }
+        return new ArrayContainer(result, pos);
+    }
+
+    /**
+     * Calculate the number of bits of this container set in the other
+     * container.
+     *
+     * @param o the other container
+     * @return the number of bits
+     */
+    int filterCardinality(Container o) {
+        int count = 0;
+        for (int i = 0; i < cardinality; i++) {
+            if (o.contains(content[i])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    ArrayContainer copy() {
+        return new ArrayContainer(Arrays.copyOf(content, Math.max(1, cardinality)), cardinality);
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.bitmap;
+
+/**
+ * A container for dense chunks. The bits are kept in an uncompressed array of
+ * 1024 words.
+ *
+ * @author Min Zhou (coderplay@gmail.com)
+ */
+class BitmapContainer extends Container {
+
+    /**
+     * The estimated memory used by a bitmap container.
+     */
+    static final int MEMORY = 24 + 8 * WORD_COUNT;
+
+    /**
+     * The words. The array must not be modified by other classes.
+     */
+    final long[] words;
+
+    private int cardinality;
+
+    BitmapContainer(long[] words, int cardinality) {
+        this.words = words;
+        this.cardinality = cardinality;
+    }
+
+    int getMemory() {
+        return MEMORY;
+    }
+
+    boolean contains(char x) {
+        return (words[x >>> 6] & (1L << x)) != 0;
+    }
+
+    Container add(char x) {
+        long w = words[x >>> 6];
+        long n = w | (1L << x);
+        if (n != w) {
+            words[x >>> 6] = n;
+            if (++cardinality == MAX_CAPACITY) {
+                return RunContainer.full();
+            }
+        }
+        return this;
+    }
+
+    Container remove(char x) {
+        long w = words[x >>> 6];
+        long n = w & ~(1L << x);
+        if (n != w) {
+            words[x >>> 6] = n;
+            if (--cardinality <= MAX_ARRAY_SIZE) {
+                return ArrayContainer.valueOf(words, cardinality);
+            }
+        }
+        return this;
+    }
+
+    int getCardinality() {
+        return cardinality;
+    }
+
+    int nextSetBit(int from) {
+        int i = from >>> 6;
+        long w = words[i] & (-1L << from);
+        while (true) {
+            if (w != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(w);
+            }
+            if (++i >= WORD_COUNT) {
+                return -1;
+            }
+            w = words[i];
+        }
+    }
+
+    int last() {
+        for (int i = WORD_COUNT - 1; i >= 0; i--) {
+            long w = words[i];
+            if (w != 0) {
+                return (i << 6) + 63 - Long.numberOfLeadingZeros(w);
+            }
+        }
+        return -1;
+    }
+
+    int nextClearBit(int from) {
+        int i = from >>> 6;
+        long w = ~words[i] & (-1L << from);
+        while (true) {
+            if (w != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(w);
+            }
+            if (++i >= WORD_COUNT) {
+                return MAX_CAPACITY;
+            }
+            w = ~words[i];
+        }
+    }
+
+    void orInto(long[] target) {
+        for (int i = 0; i < WORD_COUNT; i++) {
+            target[i] |= words[i];
+        }
+    }
+
+    long[] toWords() {
+        return words.clone();
+    }
+
+    int getRunCount() {
+        int runs = 0;
+        for (int i = 0; i < WORD_COUNT; i++) {
+            long w = words[i];
+            // a run starts at each set bit where the previous bit is not set
+            long previous = (w << 1) | (i == 0 ? 0 : words[i - 1] >>> 63);
+            runs += Long.bitCount(w & ~previous);
+        }
+        return runs;
+    }
+
+    BitmapContainer copy() {
+        return new BitmapContainer(words.clone(), cardinality);
+    }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.bitmap;
+
+/**
+ * A container of a compressed bit set. A container stores the lower 16 bits of
+ * the set bits of one chunk of 65536 bits. A modifying method may return a
+ * different container, which then replaces this container.
+ *
+ * @author Min Zhou (coderplay@gmail.com)
+ */
+abstract class Container {
+
+    /**
+     * The number of bits in a container.
+     */
+    static final int MAX_CAPACITY = 1 << 16;
+
+    /**
+     * The number of long words in a bitmap container.
+     */
+    static final int WORD_COUNT = MAX_CAPACITY / 64;
+
+    /**
+     * The maximum number of values in an array container. Above this number,
+     * a bitmap container uses less memory.
+     */
+    static final int MAX_ARRAY_SIZE = 4096;
+
+    /**
+     * Check if the given bit is set.
+     *
+     * @param x the lower 16 bits of the bit index
+     * @return true if it is set
+     */
+    abstract boolean contains(char x);
+
+    /**
+     * Set a bit.
+     *
+     * @param x the lower 16 bits of the bit index
+     * @return the container (this or a new container)
+     */
+    abstract Container add(char x);
+
+    /**
+     * Clear a bit.
+     *
+     * @param x the lower 16 bits of the bit index
+     * @return the container (this or a new container), possibly empty
+     */
+    abstract Container remove(char x);
+
+    /**
+     * Get the number of set bits.
+     *
+     * @return the number of set bits
+     */
+    abstract int getCardinality();
+
+    /**
+     * Get the index of the next set bit.
+     *
+     * @param from the index to start from (0 - 65535)
+     * @return the index of the next set bit, or -1
+     */
+    abstract int nextSetBit(int from);
+
+    /**
+     * Get the index of the last set bit.
+     *
+     * @return the index, or -1 if the container is empty
+     */
+    abstract int last();
+
+    /**
+     * Get the index of the next clear bit.
+     *
+     * @param from the index to start from (0 - 65535)
+     * @return the index of the next clear bit, or 65536 if there is none
+     */
+    abstract int nextClearBit(int from);
+
+    /**
+     * Set the bits of this container in the given array of words.
+     *
+     * @param words the array (of length WORD_COUNT)
+     */
+    abstract void orInto(long[] words);
+
+    /**
+     * Get the number of runs of consecutive set bits.
+     *
+     * @return the number of runs
+     */
+    abstract int getRunCount();
+
+    /**
+     * Get the estimated memory used by this container.
+     *
+     * @return the number of bytes
+     */
+    abstract int getMemory();
+
+    /**
+     * Create a copy of this container.
+     *
+     * @return the copy
+     */
+    abstract Container copy();
+
+    /**
+     * Get a new array of words with the bits of this container.
+     *
+     * @return the array
+     */
+    long[] toWords() {
+        long[] words = new long[WORD_COUNT];
+        orInto(words);
+        return words;
+    }
+
+    /**
+     * Convert this container to the container type that uses the least amount
+     * of memory.
+     *
+     * @return the container (this or a new container)
+     */
+    Container runOptimize() {
+        int runs = getRunCount();
+        int card = getCardinality();
+        int runSize = RunContainer.getMemory(runs);
+        if (runSize < Math.min(ArrayContainer.getMemory(card), BitmapContainer.MEMORY)) {
+            return this instanceof RunContainer ? this : RunContainer.valueOf(this, runs);
+        }
+        if (this instanceof RunContainer) {
+            return valueOf(toWords(), card);
+        }
+        return this;
+    }
+
+    /**
+     * Create an array or bitmap container from the given array of words.
+     *
+     * @param words the words (the array is not copied)
+     * @param card the number of set bits
+     * @return the container
+     */
+    static Container valueOf(long[] words, int card) {
+        if (card <= MAX_ARRAY_SIZE) {
+            return ArrayContainer.valueOf(words, card);
+        } else if (card == MAX_CAPACITY) {
+            return RunContainer.full();
+        }
+        return new BitmapContainer(words, card);
+    }
+
+    private static Container valueOf(long[] words) {
+        return valueOf(words, BitUtil.pop_array(words, 0, WORD_COUNT));
+    }
+
+    private static long[] getWords(Container c) {
+        if (c instanceof BitmapContainer) {
+            return ((BitmapContainer) c).words;
+        }
+        return c.toWords();
+    }
+
+    /**
+     * Calculate a AND b.
+     *
+     * @param a the first container
+     * @param b the second container
+     * @return the result (a new container), possibly empty
+     */
+    static Container and(Container a, Container b) {
+        if (a instanceof ArrayContainer) {
+            if (b instanceof ArrayContainer) {
+                return ((ArrayContainer) a).and((ArrayContainer) b);
+            }
+            return ((ArrayContainer) a).filter(b, true);
+        } else if (b instanceof ArrayContainer) {
+            return ((ArrayContainer) b).filter(a, true);
+        }
+        long[] words = a.toWords();
+        long[] other = getWords(b);
+        for (int i = 0; i < WORD_COUNT; i++) {
+            words[i] &= other[i];
+        }
+        return valueOf(words);
+    }
+
+    /**
+     * Calculate a OR b.
+     *
+     * @param a the first container
+     * @param b the second container
+     * @return the result (a new container)
+     */
+    static Container or(Container a, Container b) {
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) a, y = (ArrayContainer) b;
+            if (x.getCardinality() + y.getCardinality() <= MAX_ARRAY_SIZE) {
+                return x.or(y);
+            }
+        }
+        long[] words = a.toWords();
+        b.orInto(words);
+        return valueOf(words);
+    }
+
+    /**
+     * Calculate a AND NOT b.
+     *
+     * @param a the first container
+     * @param b the second container
+     * @return the result (a new container), possibly empty
+     */
+    static Container andNot(Container a, Container b) {
+        if (a instanceof ArrayContainer) {
+            return ((ArrayContainer) a).filter(b, false);
+        }
+        long[] words = a.toWords();
+        long[] other = getWords(b);
+        for (int i = 0; i < WORD_COUNT; i++) {
+            words[i] &= ~other[i];
+        }
+        return valueOf(words);
+    }
+
+    /**
+     * Calculate a XOR b.
+     *
+     * @param a the first container
+     * @param b the second container
+     * @return the result (a new container), possibly empty
+     */
+    static Container xor(Container a, Container b) {
+        long[] words = a.toWords();
+        long[] other = getWords(b);
+        for (int i = 0; i < WORD_COUNT; i++) {
+            words[i] ^= other[i];
+        }
+        return valueOf(words);
+    }
+
+    /**
+     * Calculate the number of bits set in both containers.
+     *
+     * @param a the first container
+     * @param b the second container
+     * @return the number of bits
+     */
+    static int andCardinality(Container a, Container b) {
+        if (a instanceof ArrayContainer) {
+            if (b instanceof ArrayContainer) {
+                return ((ArrayContainer) a).andCardinality((ArrayContainer) b);
+            }
+            return ((ArrayContainer) a).filterCardinality(b);
+        } else if (b instanceof ArrayContainer) {
+            return ((ArrayContainer) b).filterCardinality(a);
+        }
+        return BitUtil.pop_intersect(getWords(a), getWords(b), 0, WORD_COUNT);
+    }
+
+}
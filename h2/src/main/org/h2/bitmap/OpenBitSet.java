@@ -196,8 +196,11 @@ public class OpenBitSet implements BitSet, Cloneable {
      */
     @Override
     public boolean get(int index) {
-        assert index >= 0 && index < numBits;
+        assert index >= 0;
         int i = wordIndex(index); // div 64
+        if (i >= wlen) {
+            return false;
+        }
         // signed shift will keep a negative index and force an
         // array-index-out-of-bounds-exception, removing the need for an
         // explicit check.
@@ -207,13 +210,12 @@ public class OpenBitSet implements BitSet, Cloneable {
     }
 
     /**
-     * Sets the bit at the specified index. The index should be less than the
-     * OpenBitSet size.
+     * Sets the bit at the specified index, expanding the set size if necessary.
      */
     @Override
     public void set(int index) {
-        assert index >= 0 && index < numBits;
-        int wordNum = wordIndex(index); // div 64
+        assert index >= 0;
+        int wordNum = expandingWordNum(index); // div 64
         int bit = index & 0x3f; // mod 64
         long bitmask = 1L << bit;
         words[wordNum] |= bitmask;
@@ -255,7 +257,7 @@ public class OpenBitSet implements BitSet, Cloneable {
     protected int expandingWordNum(int index) {
         int wordNum = wordIndex(index);
         if (wordNum >= wlen) {
-            ensureCapacity(index + 1);
+            ensureCapacity(wordNum + 1);
             wlen = wordNum + 1;
         }
         assert (numBits = Math.max(numBits, index + 1)) >= 0;
@@ -281,12 +283,15 @@ public class OpenBitSet implements BitSet, Cloneable {
      * @throws IndexOutOfBoundsException
      *             if the specified index is negative
      * 
-     * The index should be less than the OpenBitSet size.
+     * Bits beyond the OpenBitSet size are already clear.
      */
     @Override
     public void clear(int index) {
-        assert index >= 0 && index < numBits;
+        assert index >= 0;
         int wordNum = wordIndex(index);
+        if (wordNum >= wlen) {
+            return;
+        }
         int bit = index & 0x03f;
         long bitmask = 1L << bit;
         words[wordNum] &= ~bitmask;
@@ -400,7 +405,7 @@ public class OpenBitSet implements BitSet, Cloneable {
 
     @Override
     public void and(BitSet o) {
-        OpenBitSet other = (OpenBitSet) o;
+        OpenBitSet other = toOpenBitSet(o);
         int newLen = Math.min(this.wlen, other.wlen);
         long[] thisArr = this.words;
         long[] otherArr = other.words;
@@ -418,6 +423,9 @@ public class OpenBitSet implements BitSet, Cloneable {
 
     @Override
     public int andCardinality(BitSet other) {
+        if (other instanceof RoaringBitSet) {
+            return other.andCardinality(this);
+        }
         OpenBitSet o = (OpenBitSet) other;
         return BitUtil.pop_intersect(this.words, o.words, 0,
                 Math.min(this.wlen, o.wlen));
@@ -425,7 +433,7 @@ public class OpenBitSet implements BitSet, Cloneable {
   
     @Override
     public void or(BitSet o) {
-        OpenBitSet other = (OpenBitSet) o;
+        OpenBitSet other = toOpenBitSet(o);
         int newLen = Math.max(wlen, other.wlen);
         ensureCapacity(newLen);
         assert (numBits = Math.max(other.numBits, numBits)) >= 0;
@@ -445,6 +453,9 @@ public class OpenBitSet implements BitSet, Cloneable {
 
     @Override
     public int orCardinality(BitSet other) {
+        if (other instanceof RoaringBitSet) {
+            return other.orCardinality(this);
+        }
         OpenBitSet o = (OpenBitSet) other;
         int tot = BitUtil.pop_union(this.words, o.words, 0,
                 Math.min(this.wlen, o.wlen));
@@ -458,7 +469,7 @@ public class OpenBitSet implements BitSet, Cloneable {
 
   @Override
   public void andNot(BitSet other) {
-    OpenBitSet o = (OpenBitSet) other;
+    OpenBitSet o = toOpenBitSet(other);
     int idx = Math.min(wlen,o.wlen);
     long[] thisArr = this.words;
     long[] otherArr = o.words;
@@ -469,6 +480,9 @@ public class OpenBitSet implements BitSet, Cloneable {
 
     @Override
     public int andNotCardinality(BitSet other) {
+        if (other instanceof RoaringBitSet) {
+            return cardinality() - other.andCardinality(this);
+        }
         OpenBitSet o = (OpenBitSet) other;
         int tot = BitUtil.pop_andnot(this.words, o.words, 0,
                 Math.min(this.wlen, o.wlen));
@@ -480,7 +494,7 @@ public class OpenBitSet implements BitSet, Cloneable {
 
     @Override
     public void xor(BitSet other) {
-        OpenBitSet o = (OpenBitSet) other;
+        OpenBitSet o = toOpenBitSet(other);
         int newLen = Math.max(wlen, o.wlen);
         ensureCapacity(newLen);
         assert (numBits = Math.max(o.numBits, numBits)) >= 0;
@@ -500,6 +514,9 @@ public class OpenBitSet implements BitSet, Cloneable {
 
     @Override
     public int xorCardinality(BitSet other) {
+        if (other instanceof RoaringBitSet) {
+            return other.xorCardinality(this);
+        }
         OpenBitSet o = (OpenBitSet) other;
         int tot = BitUtil.pop_xor(this.words, o.words, 0,
                 Math.min(this.wlen, o.wlen));
@@ -513,6 +530,9 @@ public class OpenBitSet implements BitSet, Cloneable {
 
     @Override
     public boolean intersects(BitSet o) {
+        if (o instanceof RoaringBitSet) {
+            return o.intersects(this);
+        }
         OpenBitSet other = (OpenBitSet) o;
         int pos = Math.min(this.wlen, other.wlen);
         long[] thisArr = this.words;
@@ -524,6 +544,20 @@ public class OpenBitSet implements BitSet, Cloneable {
         return false;
     }
 
+    /**
+     * Get the given bit set as an uncompressed bit set. A compressed bit set
+     * is converted.
+     *
+     * @param set the bit set
+     * @return the uncompressed bit set
+     */
+    private static OpenBitSet toOpenBitSet(BitSet set) {
+        if (set instanceof RoaringBitSet) {
+            return ((RoaringBitSet) set).toOpenBitSet();
+        }
+        return (OpenBitSet) set;
+    }
+
     /**
      * Ensures that the BitSet can hold enough words.
      * 
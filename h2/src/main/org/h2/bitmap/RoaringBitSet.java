@@ -0,0 +1,508 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.bitmap;
+
+import java.util.Arrays;
+
+/**
+ * A compressed bit set. The bits are split into chunks of 65536 bits, and
+ * only non-empty chunks are stored. Depending on the number and distribution
+ * of the set bits, a chunk is stored as a sorted array of the set bits, as an
+ * uncompressed bitmap, or as a list of runs of set bits. The operations with
+ * other bit sets only process the chunks that are stored. Operations with an
+ * <code>OpenBitSet</code> are supported as well.
+ * <p>
+ * The design is based on "Better bitmap performance with Roaring bitmaps"
+ * by S. Chambi, D. Lemire, O. Kaser, R. Godin.
+ *
+ * @author Min Zhou (coderplay@gmail.com)
+ */
+public class RoaringBitSet implements BitSet, Cloneable {
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    public RoaringBitSet() {
+        keys = new char[4];
+        containers = new Container[4];
+    }
+
+    /**
+     * Create a compressed bit set with the same bits as the given bit set.
+     *
+     * @param set the bit set
+     * @return the compressed bit set
+     */
+    public static RoaringBitSet valueOf(OpenBitSet set) {
+        RoaringBitSet result = new RoaringBitSet();
+        int chunks = (set.getNumWords() + Container.WORD_COUNT - 1) / Container.WORD_COUNT;
+        for (int i = 0; i < chunks; i++) {
+            Container c = getChunk(set, i);
+            if (c != null) {
+                result.append((char) i, c.runOptimize());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Convert this bit set to an uncompressed bit set.
+     *
+     * @return the uncompressed bit set
+     */
+    public OpenBitSet toOpenBitSet() {
+        int wordCount = size == 0 ? 1 : (keys[size - 1] + 1) * Container.WORD_COUNT;
+        long[] words = new long[wordCount];
+        long[] buff = new long[Container.WORD_COUNT];
+        for (int i = 0; i < size; i++) {
+            Container c = containers[i];
+            if (c instanceof BitmapContainer) {
+                System.arraycopy(((BitmapContainer) c).words, 0, words, keys[i] * Container.WORD_COUNT,
+                        Container.WORD_COUNT);
+            } else {
+                Arrays.fill(buff, 0);
+                c.orInto(buff);
+                System.arraycopy(buff, 0, words, keys[i] * Container.WORD_COUNT, Container.WORD_COUNT);
+            }
+        }
+        return new OpenBitSet(words);
+    }
+
+    /**
+     * Get the container of the given chunk of an uncompressed bit set.
+     *
+     * @param set the bit set
+     * @param key the chunk
+     * @return the container, or null if no bit is set in this chunk
+     */
+    private static Container getChunk(OpenBitSet set, int key) {
+        int start = key * Container.WORD_COUNT;
+        int len = Math.min(set.getNumWords() - start, Container.WORD_COUNT);
+        if (len <= 0) {
+            return null;
+        }
+        long[] bits = set.getBits();
+        int card = BitUtil.pop_array(bits, start, len);
+        if (card == 0) {
+            return null;
+        }
+        long[] words = new long[Container.WORD_COUNT];
+        System.arraycopy(bits, start, words, 0, len);
+        return Container.valueOf(words, card);
+    }
+
+    /**
+     * Get the container of the given chunk of a bit set.
+     *
+     * @param set the compressed or uncompressed bit set
+     * @param key the chunk
+     * @return the container, or null if no bit is set in this chunk
+     */
+    private static Container getContainer(BitSet set, char key) {
+        if (set instanceof RoaringBitSet) {
+            RoaringBitSet r = (RoaringBitSet) set;
+            int i = r.getIndex(key);
+            return i < 0 ? null : r.containers[i];
+        }
+        return getChunk((OpenBitSet) set, key);
+    }
+
+    private static RoaringBitSet toRoaringBitSet(BitSet set) {
+        if (set instanceof RoaringBitSet) {
+            return (RoaringBitSet) set;
+        }
+        return valueOf((OpenBitSet) set);
+    }
+
+    private int getIndex(char key) {
+        if (size > 0 && keys[size - 1] == key) {
+            // appending is the most common case
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int i, char key, Container c) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = c;
+        size++;
+    }
+
+    private void append(char key, Container c) {
+        insert(size, key, c);
+    }
+
+    private void remove(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        containers[--size] = null;
+    }
+
+    /**
+     * Replace the container at the given position, or remove it if it is
+     * empty.
+     *
+     * @param i the position
+     * @param c the new container
+     */
+    private void replace(int i, Container c) {
+        if (c.getCardinality() == 0) {
+            remove(i);
+        } else {
+            containers[i] = c;
+        }
+    }
+
+    /**
+     * Convert each chunk to the representation that uses the least amount of
+     * memory. Run containers are otherwise only created for full chunks and
+     * for ranges of bits.
+     */
+    public void runOptimize() {
+        for (int i = 0; i < size; i++) {
+            containers[i] = containers[i].runOptimize();
+        }
+    }
+
+    /**
+     * Get the estimated memory used by this bit set.
+     *
+     * @return the number of bytes
+     */
+    public long getMemory() {
+        long memory = 32 + 12L * keys.length;
+        for (int i = 0; i < size; i++) {
+            memory += containers[i].getMemory();
+        }
+        return memory;
+    }
+
+    /**
+     * Returns the index of the highest set bit plus one.
+     *
+     * @return the logical size of this bit set
+     */
+    @Override
+    public int size() {
+        if (size == 0) {
+            return 0;
+        }
+        long last = ((long) keys[size - 1] << 16) + containers[size - 1].last();
+        return (int) Math.min(Integer.MAX_VALUE, last + 1);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean get(int index) {
+        int i = getIndex((char) (index >>> 16));
+        return i >= 0 && containers[i].contains((char) index);
+    }
+
+    @Override
+    public void set(int index) {
+        char key = (char) (index >>> 16);
+        int i = getIndex(key);
+        if (i >= 0) {
+            containers[i] = containers[i].add((char) index);
+        } else {
+            insert(-i - 1, key, new ArrayContainer().add((char) index));
+        }
+    }
+
+    @Override
+    public void set(int fromIndex, int toIndex) {
+        changeRange(fromIndex, toIndex, 0);
+    }
+
+    @Override
+    public int cardinality() {
+        int card = 0;
+        for (int i = 0; i < size; i++) {
+            card += containers[i].getCardinality();
+        }
+        return card;
+    }
+
+    @Override
+    public void clear(int index) {
+        int i = getIndex((char) (index >>> 16));
+        if (i >= 0) {
+            replace(i, containers[i].remove((char) index));
+        }
+    }
+
+    @Override
+    public void clear(int fromIndex, int toIndex) {
+        changeRange(fromIndex, toIndex, 1);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(containers, 0, size, null);
+        size = 0;
+    }
+
+    @Override
+    public void flip(int index) {
+        if (get(index)) {
+            clear(index);
+        } else {
+            set(index);
+        }
+    }
+
+    @Override
+    public void flip(int fromIndex, int toIndex) {
+        changeRange(fromIndex, toIndex, 2);
+    }
+
+    /**
+     * Set, clear, or flip a range of bits.
+     *
+     * @param fromIndex the first bit
+     * @param toIndex the bit after the last bit
+     * @param op 0 to set, 1 to clear, 2 to flip the bits
+     */
+    private void changeRange(int fromIndex, int toIndex, int op) {
+        if (toIndex <= fromIndex) {
+            return;
+        }
+        for (int key = fromIndex >>> 16, last = (toIndex - 1) >>> 16; key <= last; key++) {
+            long base = (long) key << 16;
+            int from = (int) Math.max(0, fromIndex - base);
+            int to = (int) Math.min(Container.MAX_CAPACITY, toIndex - base);
+            int i = getIndex((char) key);
+            if (i < 0 && op == 1) {
+                continue;
+            }
+            long[] words;
+            if (i >= 0) {
+                words = containers[i].toWords();
+            } else {
+                words = new long[Container.WORD_COUNT];
+            }
+            long[] mask = new long[Container.WORD_COUNT];
+            RunContainer.setRange(mask, from, to);
+            for (int j = 0; j < Container.WORD_COUNT; j++) {
+                switch (op) {
+                case 0:
+                    words[j] |= mask[j];
+                    break;
+                case 1:
+                    words[j] &= ~mask[j];
+                    break;
+                default:
+                    words[j] ^= mask[j];
+                }
+            }
+            int card = BitUtil.pop_array(words, 0, Container.WORD_COUNT);
+            Container c = Container.valueOf(words, card).runOptimize();
+            if (i >= 0) {
+                replace(i, c);
+            } else if (card > 0) {
+                insert(-i - 1, (char) key, c);
+            }
+        }
+    }
+
+    @Override
+    public boolean intersects(BitSet set) {
+        for (int i = 0; i < size; i++) {
+            Container o = getContainer(set, keys[i]);
+            if (o != null && Container.andCardinality(containers[i], o) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void and(BitSet set) {
+        for (int i = 0; i < size; i++) {
+            Container o = getContainer(set, keys[i]);
+            if (o == null) {
+                remove(i--);
+            } else {
+                int old = size;
+                replace(i, Container.and(containers[i], o));
+                if (size < old) {
+                    i--;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int andCardinality(BitSet set) {
+        int card = 0;
+        for (int i = 0; i < size; i++) {
+            Container o = getContainer(set, keys[i]);
+            if (o != null) {
+                card += Container.andCardinality(containers[i], o);
+            }
+        }
+        return card;
+    }
+
+    @Override
+    public void or(BitSet set) {
+        RoaringBitSet other = toRoaringBitSet(set);
+        for (int j = 0; j < other.size; j++) {
+            char key = other.keys[j];
+            int i = getIndex(key);
+            if (i >= 0) {
+                containers[i] = Container.or(containers[i], other.containers[j]);
+            } else {
+                insert(-i - 1, key, other.containers[j].copy());
+            }
+        }
+    }
+
+    @Override
+    public int orCardinality(BitSet set) {
+        return cardinality() + set.cardinality() - andCardinality(set);
+    }
+
+    @Override
+    public void xor(BitSet set) {
+        RoaringBitSet other = toRoaringBitSet(set);
+        for (int j = 0; j < other.size; j++) {
+            char key = other.keys[j];
+            int i = getIndex(key);
+            if (i >= 0) {
+                replace(i, Container.xor(containers[i], other.containers[j]));
+            } else {
+                insert(-i - 1, key, other.containers[j].copy());
+            }
+        }
+    }
+
+    @Override
+    public int xorCardinality(BitSet set) {
+        return cardinality() + set.cardinality() - 2 * andCardinality(set);
+    }
+
+    @Override
+    public void andNot(BitSet set) {
+        for (int i = 0; i < size; i++) {
+            Container o = getContainer(set, keys[i]);
+            if (o != null) {
+                int old = size;
+                replace(i, Container.andNot(containers[i], o));
+                if (size < old) {
+                    i--;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int andNotCardinality(BitSet set) {
+        return cardinality() - andCardinality(set);
+    }
+
+    @Override
+    public int nextSetBit(int fromIndex) {
+        char key = (char) (fromIndex >>> 16);
+        int i = getIndex(key);
+        if (i >= 0) {
+            int x = containers[i].nextSetBit(fromIndex & 0xffff);
+            if (x >= 0) {
+                return (key << 16) | x;
+            }
+            i++;
+        } else {
+            i = -i - 1;
+        }
+        if (i < size) {
+            return (keys[i] << 16) | containers[i].nextSetBit(0);
+        }
+        return -1;
+    }
+
+    @Override
+    public int nextClearBit(int fromIndex) {
+        int index = fromIndex;
+        while (true) {
+            int i = getIndex((char) (index >>> 16));
+            if (i < 0) {
+                return index;
+            }
+            int x = containers[i].nextClearBit(index & 0xffff);
+            if (x < Container.MAX_CAPACITY) {
+                return (keys[i] << 16) | x;
+            }
+            if (keys[i] == Character.MAX_VALUE >>> 1) {
+                // the last chunk is full
+                return -1;
+            }
+            index = (keys[i] + 1) << 16;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RoaringBitSet)) {
+            return false;
+        }
+        RoaringBitSet other = (RoaringBitSet) o;
+        if (size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (keys[i] != other.keys[i]) {
+                return false;
+            }
+            Container a = containers[i], b = other.containers[i];
+            int card = a.getCardinality();
+            if (card != b.getCardinality() || Container.andCardinality(a, b) != card) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (int i = 0; i < size; i++) {
+            h = 31 * h + keys[i];
+            h = 31 * h + containers[i].getCardinality();
+        }
+        return h;
+    }
+
+    @Override
+    public RoaringBitSet clone() {
+        try {
+            RoaringBitSet r = (RoaringBitSet) super.clone();
+            r.keys = keys.clone();
+            r.containers = containers.clone();
+            for (int i = 0; i < size; i++) {
+                r.containers[i] = containers[i].copy();
+            }
+            return r;
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
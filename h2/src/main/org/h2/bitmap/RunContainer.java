@@ -0,0 +1,235 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.bitmap;
+
+import java.util.Arrays;
+
+/**
+ * A container for chunks with long runs of consecutive set bits. Each run is
+ * stored as the first and the last set bit. Runs never overlap or touch each
+ * other.
+ *
+ * @author Min Zhou (coderplay@gmail.com)
+ */
+class RunContainer extends Container {
+
+    /**
+     * The runs: first bit and last bit (inclusive) for each run.
+     */
+    private char[] runs;
+    private int runCount;
+    private int cardinality;
+
+    private RunContainer(char[] runs, int runCount, int cardinality) {
+        this.runs = runs;
+        this.runCount = runCount;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * Create a container with all bits set.
+     *
+     * @return the container
+     */
+    static RunContainer full() {
+        return new RunContainer(new char[] { 0, (char) (MAX_CAPACITY - 1) }, 1, MAX_CAPACITY);
+    }
+
+    /**
+     * Create a run container with the same bits as the given container.
+     *
+     * @param c the container
+     * @param runCount the number of runs of the container
+     * @return the run container
+     */
+    static RunContainer valueOf(Container c, int runCount) {
+        char[] runs = new char[Math.max(2, runCount * 2)];
+        int pos = 0;
+        for (int start = c.nextSetBit(0); start >= 0;) {
+            int end = c.nextClearBit(start);
+            runs[pos++] = (char) start;
+            runs[pos++] = (char) (end - 1);
+            if (end >= MAX_CAPACITY) {
+                break;
+            }
+            start = c.nextSetBit(end);
+        }
+        return new RunContainer(runs, pos / 2, c.getCardinality());
+    }
+
+    /**
+     * Get the estimated memory used by a run container.
+     *
+     * @param runCount the number of runs
+     * @return the number of bytes
+     */
+    static int getMemory(int runCount) {
+        return 24 + 4 * runCount;
+    }
+
+    int getMemory() {
+        return getMemory(runs.length / 2);
+    }
+
+    private int getStart(int i) {
+        return runs[i * 2];
+    }
+
+    private int getEnd(int i) {
+        return runs[i * 2 + 1];
+    }
+
+    /**
+     * Find the last run that starts at or before the given bit.
+     *
+     * @param x the bit
+     * @return the run index, or -1 if there is none
+     */
+    private int find(int x) {
+        int low = 0, high = runCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (getStart(mid) <= x) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    boolean contains(char x) {
+        int i = find(x);
+        return i >= 0 && x <= getEnd(i);
+    }
+
+    Container add(char x) {
+        int i = find(x);
+        if (i >= 0 && x <= getEnd(i)) {
+            return this;
+        }
+        cardinality++;
+        boolean extendPrevious = i >= 0 && getEnd(i) + 1 == x;
+        boolean extendNext = i + 1 < runCount && getStart(i + 1) == x + 1;
+        if (extendPrevious && extendNext) {
+            runs[i * 2 + 1] = runs[i * 2 + 3];
+            removeRun(i + 1);
+        } else if (extendPrevious) {
+            runs[i * 2 + 1] = x;
+        } else if (extendNext) {
+            runs[i * 2 + 2] = x;
+        } else {
+            insertRun(i + 1, x, x);
+            return convertIfLarge();
+        }
+        return this;
+    }
+
+    Container remove(char x) {
+        int i = find(x);
+        if (i < 0 || x > getEnd(i)) {
+            return this;
+        }
+        cardinality--;
+        int start = getStart(i), end = getEnd(i);
+        if (start == end) {
+            removeRun(i);
+        } else if (x == start) {
+            runs[i * 2] = (char) (x + 1);
+        } else if (x == end) {
+            runs[i * 2 + 1] = (char) (x - 1);
+        } else {
+            runs[i * 2 + 1] = (char) (x - 1);
+            insertRun(i + 1, x + 1, end);
+            return convertIfLarge();
+        }
+        return this;
+    }
+
+    private void insertRun(int i, int start, int end) {
+        if (runCount * 2 + 2 > runs.length) {
+            runs = Arrays.copyOf(runs, runs.length * 2);
+        }
+        System.arraycopy(runs, i * 2, runs, i * 2 + 2, (runCount - i) * 2);
+        runs[i * 2] = (char) start;
+        runs[i * 2 + 1] = (char) end;
+        runCount++;
+    }
+
+    private void removeRun(int i) {
+        System.arraycopy(runs, i * 2 + 2, runs, i * 2, (runCount - i - 1) * 2);
+        runCount--;
+    }
+
+    private Container convertIfLarge() {
+        if (getMemory(runCount) > Math.min(ArrayContainer.getMemory(cardinality), BitmapContainer.MEMORY)) {
+            return valueOf(toWords(), cardinality);
+        }
+        return this;
+    }
+
+    int getCardinality() {
+        return cardinality;
+    }
+
+    int nextSetBit(int from) {
+        int i = find(from);
+        if (i >= 0 && from <= getEnd(i)) {
+            return from;
+        }
+        return i + 1 < runCount ? getStart(i + 1) : -1;
+    }
+
+    int last() {
+        return runCount == 0 ? -1 : getEnd(runCount - 1);
+    }
+
+    int nextClearBit(int from) {
+        int i = find(from);
+        if (i >= 0 && from <= getEnd(i)) {
+            return getEnd(i) + 1;
+        }
+        return from;
+    }
+
+    void orInto(long[] words) {
+        for (int i = 0; i < runCount; i++) {
+            setRange(words, getStart(i), getEnd(i) + 1);
+        }
+    }
+
+    /**
+     * Set a range of bits in the given array of words.
+     *
+     * @param words the words
+     * @param from the first bit
+     * @param to the bit after the last bit
+     */
+    static void setRange(long[] words, int from, int to) {
+        int first = from >>> 6, last = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (first == last) {
+            words[first] |= firstMask & lastMask;
+            return;
+        }
+        words[first] |= firstMask;
+        for (int i = first + 1; i < last; i++) {
+            words[i] = -1L;
+        }
+        words[last] |= lastMask;
+    }
+
+    int getRunCount() {
+        return runCount;
+    }
+
+    RunContainer copy() {
+        return new RunContainer(Arrays.copyOf(runs, Math.max(2, runCount * 2)), runCount, cardinality);
+    }
+
+}
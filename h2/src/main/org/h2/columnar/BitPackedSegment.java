@@ -0,0 +1,44 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.columnar;
+
+import org.h2.value.Value;
+
+/**
+ * A segment for integer values that stores the difference to the smallest
+ * value (frame of reference), using as few bits as possible.
+ */
+class BitPackedSegment extends ColumnSegment {
+
+    private final int type;
+    private final long base;
+    private final long[] packed;
+    private final int bits;
+
+    BitPackedSegment(int type, long[] values, int count, long base, int bits) {
+        super(count);
+        this.type = type;
+        this.base = base;
+        this.bits = bits;
+        long[] offsets = new long[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = values[i] - base;
+        }
+        packed = pack(offsets, count, bits);
+    }
+
+    public void decode(Value[] target) {
+        for (int i = 0; i < count; i++) {
+            target[i] = getValue(type, base + unpack(packed, i, bits));
+        }
+    }
+
+    public int getMemory() {
+        return packed.length * 8;
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.columnar;
+
+import java.util.HashMap;
+import org.h2.value.CompareMode;
+import org.h2.value.DataType;
+import org.h2.value.Value;
+import org.h2.value.ValueByte;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+import org.h2.value.ValueShort;
+
+/**
+ * The values of one column of a sealed chunk. The values are compressed using
+ * the encoding that needs the least memory: dictionary, run length,
+ * bit-packing (frame of reference), delta, or plain (not compressed). Each
+ * segment keeps the smallest and the largest value (a zone map), so that a
+ * range scan can skip segments that can't contain matching rows. NULL is
+ * smaller than all other values.
+ */
+public abstract class ColumnSegment {
+
+    /**
+     * The number of values.
+     */
+    protected final int count;
+
+    private Value min, max;
+
+    ColumnSegment(int count) {
+        this.count = count;
+    }
+
+    /**
+     * Create a segment for the given values. The encoding is chosen according
+     * to the estimated memory usage.
+     *
+     * @param type the data type of the column
+     * @param values the values (all of the given type, or NULL)
+     * @param count the number of values
+     * @param compareMode the compare mode
+     * @return the segment
+     */
+    public static ColumnSegment create(int type, Value[] values, int count, CompareMode compareMode) {
+        Value min = null, max = null;
+        boolean hasNull = false;
+        int runs = 0;
+        for (int i = 0; i < count; i++) {
+            Value v = values[i];
+            if (i == 0 || !v.equals(values[i - 1])) {
+                runs++;
+            }
+            if (v == ValueNull.INSTANCE) {
+                hasNull = true;
+            } else {
+                if (min == null || v.compareTypeSave(min, compareMode) < 0) {
+                    min = v;
+                }
+                if (max == null || v.compareTypeSave(max, compareMode) > 0) {
+                    max = v;
+                }
+            }
+        }
+        ColumnSegment best = new PlainSegment(values, count);
+        long bestSize = (long) count * 8;
+        long size = (long) runs * 12;
+        if (size < bestSize) {
+            bestSize = size;
+            best = new RunLengthSegment(values, count, runs);
+        }
+        if (!hasNull && min != null && DataType.isIntegerType(type)) {
+            long[] longs = new long[count];
+            boolean ascending = true;
+            long maxDelta = 0;
+            for (int i = 0; i < count; i++) {
+                longs[i] = values[i].getLong();
+                if (i > 0) {
+                    long delta = longs[i] - longs[i - 1];
+                    if (longs[i] < longs[i - 1] || delta < 0) {
+                        ascending = false;
+                    } else {
+                        maxDelta = Math.max(maxDelta, delta);
+                    }
+                }
+            }
+            long range = max.getLong() - min.getLong();
+            if (range >= 0) {
+                int bits = getBits(range);
+                size = ((long) count * bits + 7) / 8;
+                if (size < bestSize) {
+                    bestSize = size;
+                    best = new BitPackedSegment(type, longs, count, min.getLong(), bits);
+                }
+            }
+            if (ascending) {
+                int bits = getBits(maxDelta);
+                size = ((long) count * bits + 7) / 8;
+                if (size < bestSize) {
+                    bestSize = size;
+                    best = new DeltaSegment(type, longs, count, bits);
+                }
+            }
+        } else {
+            HashMap<Value, Integer> map = new HashMap<Value, Integer>();
+            int[] ids = new int[count];
+            for (int i = 0; i < count && map.size() <= count / 2; i++) {
+                Value v = values[i];
+                Integer id = map.get(v);
+                if (id == null) {
+                    id = map.size();
+                    map.put(v, id);
+                }
+                ids[i] = id;
+            }
+            int distinct = map.size();
+            if (distinct <= count / 2) {
+                int bits = getBits(distinct - 1);
+                size = (long) distinct * 8 + ((long) count * bits + 7) / 8;
+                if (size < bestSize) {
+                    bestSize = size;
+                    Value[] dictionary = new Value[distinct];
+                    for (Value v : map.keySet()) {
+                        dictionary[map.get(v)] = v;
+                    }
+                    best = new DictionarySegment(dictionary, ids, count, bits);
+                }
+            }
+        }
+        best.min = hasNull ? ValueNull.INSTANCE : min;
+        best.max = max == null ? ValueNull.INSTANCE : max;
+        return best;
+    }
+
+    /**
+     * Decode all values of this segment.
+     *
+     * @param target the array to store the values
+     */
+    public abstract void decode(Value[] target);
+
+    /**
+     * Get the estimated memory used by the encoded values, in bytes.
+     *
+     * @return the number of bytes
+     */
+    public abstract int getMemory();
+
+    /**
+     * Get the number of values.
+     *
+     * @return the number of values
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the smallest value (NULL if the segment contains a NULL).
+     *
+     * @return the smallest value
+     */
+    public Value getMin() {
+        return min;
+    }
+
+    /**
+     * Get the largest value (NULL if all values are NULL).
+     *
+     * @return the largest value
+     */
+    public Value getMax() {
+        return max;
+    }
+
+    /**
+     * Convert an integer back to a value of the given type.
+     *
+     * @param type the data type
+     * @param x the integer
+     * @return the value
+     */
+    static Value getValue(int type, long x) {
+        switch (type) {
+        case Value.BYTE:
+            return ValueByte.get((byte) x);
+        case Value.SHORT:
+            return ValueShort.get((short) x);
+        case Value.INT:
+            return ValueInt.get((int) x);
+        default:
+            return ValueLong.get(x);
+        }
+    }
+
+    /**
+     * Get the number of bits required to store values between 0 and the given
+     * value.
+     *
+     * @param max the largest value (not negative)
+     * @return the number of bits
+     */
+    static int getBits(long max) {
+        return 64 - Long.numberOfLeadingZeros(max);
+    }
+
+    /**
+     * Store the values using the given number of bits each.
+     *
+     * @param values the values (not negative, each fits in the given number of
+     *            bits)
+     * @param count the number of values
+     * @param bits the number of bits per value
+     * @return the packed values
+     */
+    static long[] pack(long[] values, int count, int bits) {
+        long[] packed = new long[(int) (((long) count * bits + 63) / 64)];
+        if (bits == 0) {
+            return packed;
+        }
+        for (int i = 0; i < count; i++) {
+            long pos = (long) i * bits;
+            int word = (int) (pos >>> 6);
+            int shift = (int) (pos & 63);
+            packed[word] |= values[i] << shift;
+            if (shift + bits > 64) {
+                packed[word + 1] |= values[i] >>> (64 - shift);
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Read a value that was stored using {@link #pack}.
+     *
+     * @param packed the packed values
+     * @param i the index of the value
+     * @param bits the number of bits per value
+     * @return the value
+     */
+    static long unpack(long[] packed, int i, int bits) {
+        if (bits == 0) {
+            return 0;
+        }
+        long pos = (long) i * bits;
+        int word = (int) (pos >>> 6);
+        int shift = (int) (pos & 63);
+        long x = packed[word] >>> shift;
+        if (shift + bits > 64) {
+            x |= packed[word + 1] << (64 - shift);
+        }
+        return bits == 64 ? x : x & ((1L << bits) - 1);
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.columnar;
+
+import org.h2.table.Table;
+import org.h2.value.Value;
+
+/**
+ * A chunk of rows as seen by a cursor. The values of a sealed chunk are
+ * decoded one column at a time, and only when the column is read. The values
+ * of the open chunk are not compressed.
+ */
+class ColumnarChunk {
+
+    private final long firstKey;
+    private final int count;
+    private final ColumnSegment[] segments;
+    private final Value[][] columns;
+
+    /**
+     * Create a view of a sealed chunk.
+     *
+     * @param firstKey the key of the first row
+     * @param segments the segments (one for each column)
+     */
+    ColumnarChunk(long firstKey, ColumnSegment[] segments) {
+        this.firstKey = firstKey;
+        this.segments = segments;
+        this.count = segments[0].getCount();
+        this.columns = new Value[segments.length][];
+    }
+
+    /**
+     * Create a view of the open chunk.
+     *
+     * @param firstKey the key of the first row
+     * @param columns the values (one array for each column)
+     * @param count the number of rows
+     */
+    ColumnarChunk(long firstKey, Value[][] columns, int count) {
+        this.firstKey = firstKey;
+        this.segments = null;
+        this.count = count;
+        this.columns = columns;
+    }
+
+    long getFirstKey() {
+        return firstKey;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Get a value. If the column was not decoded yet, all values of this
+     * column are decoded.
+     *
+     * @param column the column index
+     * @param offset the row within the chunk
+     * @return the value
+     */
+    synchronized Value getValue(int column, int offset) {
+        Value[] values = columns[column];
+        if (values == null) {
+            values = new Value[count];
+            segments[column].decode(values);
+            columns[column] = values;
+        }
+        return values[offset];
+    }
+
+    /**
+     * Check whether the chunk may contain rows where the value of the given
+     * column is within the range, according to the zone map.
+     *
+     * @param table the table
+     * @param column the column index
+     * @param first the lower bound, or null
+     * @param last the upper bound, or null
+     * @return false if the chunk doesn't contain such rows
+     */
+    boolean mayContain(Table table, int column, Value first, Value last) {
+        if (segments == null) {
+            return true;
+        }
+        ColumnSegment s = segments[column];
+        if (first != null && table.compareTypeSave(s.getMax(), first) < 0) {
+            return false;
+        }
+        if (last != null && table.compareTypeSave(s.getMin(), last) > 0) {
+            return false;
+        }
+        return true;
+    }
+
+}
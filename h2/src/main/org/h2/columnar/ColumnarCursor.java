@@ -0,0 +1,121 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.columnar;
+
+import org.h2.index.Cursor;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.value.Value;
+
+/**
+ * A cursor over a columnar table. Chunks are skipped if the zone maps show
+ * they can't contain rows within the range. Only the values of columns that
+ * have a range condition, and the columns that are read, are decoded.
+ */
+class ColumnarCursor implements Cursor {
+
+    private final ColumnarTable table;
+    private final ColumnarChunk[] chunks;
+    private final int columnCount;
+    private final int[] rangeColumns;
+    private final Value[] rangeFirst, rangeLast;
+    private int chunkIndex = -1;
+    private ColumnarChunk chunk;
+    private int offset;
+    private Row current;
+
+    ColumnarCursor(ColumnarTable table, ColumnarChunk[] chunks, SearchRow first, SearchRow last) {
+        this.table = table;
+        this.chunks = chunks;
+        columnCount = table.getColumns().length;
+        int count = 0;
+        int[] cols = new int[columnCount];
+        Value[] f = new Value[columnCount], l = new Value[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            Value a = first == null ? null : first.getValue(i);
+            Value b = last == null ? null : last.getValue(i);
+            if (a != null || b != null) {
+                cols[count] = i;
+                f[count] = a;
+                l[count] = b;
+                count++;
+            }
+        }
+        rangeColumns = new int[count];
+        System.arraycopy(cols, 0, rangeColumns, 0, count);
+        rangeFirst = f;
+        rangeLast = l;
+    }
+
+    public Row get() {
+        return current;
+    }
+
+    public SearchRow getSearchRow() {
+        return current;
+    }
+
+    public boolean next() {
+        while (true) {
+            if (chunk == null || ++offset >= chunk.getCount()) {
+                if (!nextChunk()) {
+                    current = null;
+                    return false;
+                }
+                offset = 0;
+            }
+            long key = chunk.getFirstKey() + offset;
+            if (table.isDeleted(key) || !isInRange()) {
+                continue;
+            }
+            current = new ColumnarRow(chunk, offset, columnCount);
+            current.setKey(key);
+            return true;
+        }
+    }
+
+    private boolean nextChunk() {
+        chunk = null;
+        while (++chunkIndex < chunks.length) {
+            ColumnarChunk c = chunks[chunkIndex];
+            if (c.getCount() > 0 && mayContain(c)) {
+                chunk = c;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean mayContain(ColumnarChunk c) {
+        for (int i = 0; i < rangeColumns.length; i++) {
+            if (!c.mayContain(table, rangeColumns[i], rangeFirst[i], rangeLast[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isInRange() {
+        for (int i = 0; i < rangeColumns.length; i++) {
+            Value v = chunk.getValue(rangeColumns[i], offset);
+            Value a = rangeFirst[i], b = rangeLast[i];
+            if (a != null && table.compareTypeSave(v, a) < 0) {
+                return false;
+            }
+            if (b != null && table.compareTypeSave(v, b) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean previous() {
+        throw DbException.throwInternalError();
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.columnar;
+
+import org.h2.engine.Constants;
+import org.h2.engine.Session;
+import org.h2.index.BaseIndex;
+import org.h2.index.Cursor;
+import org.h2.index.IndexType;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.table.IndexColumn;
+
+/**
+ * The scan index of a columnar table. All columns are index columns, so that
+ * range conditions on any column are passed to the cursor, which uses them to
+ * skip chunks and to avoid reading other columns of rows that don't match.
+ */
+class ColumnarIndex extends BaseIndex {
+
+    private final ColumnarTable tableData;
+
+    ColumnarIndex(ColumnarTable table, int id, IndexColumn[] columns, IndexType indexType) {
+        initBaseIndex(table, id, table.getName() + "_DATA", columns, indexType);
+        tableData = table;
+    }
+
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        return new ColumnarCursor(tableData, tableData.getChunks(), first, last);
+    }
+
+    public Row getRow(Session session, long key) {
+        return tableData.getRow(key);
+    }
+
+    public double getCost(Session session, int[] masks) {
+        return tableData.getRowCountApproximation() + Constants.COST_ROW_OFFSET;
+    }
+
+    public long getRowCount(Session session) {
+        return tableData.getRowCount(session);
+    }
+
+    public long getRowCountApproximation() {
+        return tableData.getRowCountApproximation();
+    }
+
+    public void add(Session session, Row row) {
+        // the table stores the rows
+    }
+
+    public void remove(Session session, Row row) {
+        // the table stores the rows
+    }
+
+    public void remove(Session session) {
+        truncate(session);
+    }
+
+    public void truncate(Session session) {
+        // the table stores the rows
+    }
+
+    public void close(Session session) {
+        // nothing to do
+    }
+
+    public String getCreateSQL() {
+        return null;
+    }
+
+    public void checkRename() {
+        throw DbException.getUnsupportedException("COLUMNAR");
+    }
+
+    public boolean needRebuild() {
+        return false;
+    }
+
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    public Cursor findFirstOrLast(Session session, boolean first) {
+        throw DbException.getUnsupportedException("COLUMNAR");
+    }
+
+    public String getPlanSQL() {
+        return table.getSQL() + ".tableScan";
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.columnar;
+
+import org.h2.result.Row;
+import org.h2.store.Data;
+import org.h2.value.Value;
+
+/**
+ * A row of a columnar table. The values are read from the chunk when they are
+ * first accessed, so that only the columns that are used are decoded.
+ */
+class ColumnarRow extends Row {
+
+    private final ColumnarChunk chunk;
+    private final int offset;
+    private final int columnCount;
+
+    ColumnarRow(ColumnarChunk chunk, int offset, int columnCount) {
+        super(new Value[columnCount], MEMORY_CALCULATE);
+        this.chunk = chunk;
+        this.offset = offset;
+        this.columnCount = columnCount;
+    }
+
+    public Value getValue(int i) {
+        Value v = super.getValue(i);
+        if (v == null) {
+            v = chunk.getValue(i, offset);
+            super.setValue(i, v);
+        }
+        return v;
+    }
+
+    public Row getCopy() {
+        readAll();
+        return super.getCopy();
+    }
+
+    public int getByteCount(Data dummy) {
+        readAll();
+        return super.getByteCount(dummy);
+    }
+
+    public int getMemory() {
+        readAll();
+        return super.getMemory();
+    }
+
+    public String toString() {
+        readAll();
+        return super.toString();
+    }
+
+    private void readAll() {
+        for (int i = 0; i < columnCount; i++) {
+            getValue(i);
+        }
+    }
+
+}
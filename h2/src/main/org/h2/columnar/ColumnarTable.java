@@ -0,0 +1,411 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.columnar;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import org.h2.command.ddl.CreateTableData;
+import org.h2.constant.ErrorCode;
+import org.h2.engine.Constants;
+import org.h2.engine.Session;
+import org.h2.index.Index;
+import org.h2.index.IndexType;
+import org.h2.message.DbException;
+import org.h2.message.Trace;
+import org.h2.result.Row;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.RegularTable;
+import org.h2.table.Table;
+import org.h2.table.TableBase;
+import org.h2.util.BitField;
+import org.h2.util.New;
+import org.h2.value.Value;
+
+/**
+ * A table that stores the rows column by column. New rows are appended to the
+ * open chunk. When the open chunk is full, it is sealed: the values of each
+ * column are compressed into a segment. Deleted rows are marked in a bit
+ * field; updates are a delete and an insert. The data is kept in memory only,
+ * so in a persistent database only temporary and NOT PERSISTENT tables are
+ * supported. Additional indexes are not supported. Sessions lock the table
+ * like a regular table (shared for reading, exclusive for writing), also if
+ * multi-version concurrency is used.
+ */
+public class ColumnarTable extends TableBase {
+
+    /**
+     * The number of rows in a chunk.
+     */
+    static final int CHUNK_SIZE = 4096;
+
+    private final ColumnarIndex scanIndex;
+    private final ArrayList<ColumnSegment[]> chunks = New.arrayList();
+    private Value[][] open;
+    private int openCount;
+    private BitField deleted = new BitField();
+    private long rowCount;
+    private long lastModificationId;
+    private volatile Session lockExclusive;
+    private HashSet<Session> lockShared = New.hashSet();
+    private final Trace traceLock;
+
+    /**
+     * True if one thread ever was waiting to lock this table. This is to avoid
+     * calling notifyAll if no session was ever waiting to lock this table.
+     */
+    private boolean waitForLock;
+
+    public ColumnarTable(CreateTableData data) {
+        super(data);
+        if (data.persistData && !data.temporary && database.isPersistent()) {
+            // the data would be lost when the database is closed
+            throw DbException.getUnsupportedException("PERSISTENT COLUMNAR TABLE");
+        }
+        traceLock = database.getTrace(Trace.LOCK);
+        scanIndex = new ColumnarIndex(this, data.id, IndexColumn.wrap(getColumns()), IndexType.createScan(false));
+        open = new Value[getColumns().length][CHUNK_SIZE];
+    }
+
+    public synchronized void addRow(Session session, Row row) {
+        int len = open.length;
+        for (int i = 0; i < len; i++) {
+            open[i][openCount] = row.getValue(i);
+        }
+        row.setKey((long) chunks.size() * CHUNK_SIZE + openCount);
+        if (++openCount == CHUNK_SIZE) {
+            seal();
+        }
+        rowCount++;
+        lastModificationId = database.getNextModificationDataId();
+    }
+
+    private void seal() {
+        Column[] cols = getColumns();
+        ColumnSegment[] segments = new ColumnSegment[cols.length];
+        for (int i = 0; i < cols.length; i++) {
+            segments[i] = ColumnSegment.create(cols[i].getType(), open[i], openCount, compareMode);
+        }
+        chunks.add(segments);
+        // cursors may still read the old arrays
+        open = new Value[cols.length][CHUNK_SIZE];
+        openCount = 0;
+    }
+
+    public synchronized void removeRow(Session session, Row row) {
+        int key = (int) row.getKey();
+        if (!deleted.get(key)) {
+            deleted.set(key);
+            rowCount--;
+        }
+        lastModificationId = database.getNextModificationDataId();
+    }
+
+    public synchronized void truncate(Session session) {
+        chunks.clear();
+        open = new Value[getColumns().length][CHUNK_SIZE];
+        openCount = 0;
+        deleted = new BitField();
+        rowCount = 0;
+        lastModificationId = database.getNextModificationDataId();
+    }
+
+    /**
+     * Check if the row with the given key was deleted.
+     *
+     * @param key the key
+     * @return true if it was deleted
+     */
+    boolean isDeleted(long key) {
+        return deleted.get((int) key);
+    }
+
+    /**
+     * Get the chunks that currently exist. The last chunk is the open chunk.
+     *
+     * @return the chunks
+     */
+    synchronized ColumnarChunk[] getChunks() {
+        int size = chunks.size();
+        ColumnarChunk[] list = new ColumnarChunk[size + 1];
+        for (int i = 0; i < size; i++) {
+            list[i] = new ColumnarChunk((long) i * CHUNK_SIZE, chunks.get(i));
+        }
+        list[size] = new ColumnarChunk((long) size * CHUNK_SIZE, open, openCount);
+        return list;
+    }
+
+    /**
+     * Get the row with the given key.
+     *
+     * @param key the key
+     * @return the row
+     */
+    synchronized Row getRow(long key) {
+        int chunk = (int) (key / CHUNK_SIZE);
+        ColumnarChunk c;
+        if (chunk < chunks.size()) {
+            c = new ColumnarChunk((long) chunk * CHUNK_SIZE, chunks.get(chunk));
+        } else {
+            c = new ColumnarChunk((long) chunk * CHUNK_SIZE, open, openCount);
+        }
+        Row row = new ColumnarRow(c, (int) (key % CHUNK_SIZE), open.length);
+        row.setKey(key);
+        return row;
+    }
+
+    /**
+     * Get the estimated memory used by the sealed chunks, in bytes.
+     *
+     * @return the number of bytes
+     */
+    public synchronized long getSegmentMemory() {
+        long memory = 0;
+        for (ColumnSegment[] segments : chunks) {
+            for (ColumnSegment s : segments) {
+                memory += s.getMemory();
+            }
+        }
+        return memory;
+    }
+
+    public Index addIndex(Session session, String indexName, int indexId, IndexColumn[] cols,
+            IndexType indexType, boolean create, String indexComment) {
+        throw DbException.getUnsupportedException("COLUMNAR INDEX");
+    }
+
+    public void checkSupportAlter() {
+        throw DbException.getUnsupportedException("COLUMNAR");
+    }
+
+    public void checkRename() {
+        // ok
+    }
+
+    public boolean canDrop() {
+        return true;
+    }
+
+    public boolean canTruncate() {
+        return true;
+    }
+
+    public boolean canGetRowCount() {
+        return true;
+    }
+
+    public void close(Session session) {
+        // nothing to do
+    }
+
+    public ArrayList<Index> getIndexes() {
+        ArrayList<Index> list = New.arrayList();
+        list.add(scanIndex);
+        return list;
+    }
+
+    public long getMaxDataModificationId() {
+        return lastModificationId;
+    }
+
+    public synchronized long getRowCount(Session session) {
+        return rowCount;
+    }
+
+    public long getRowCountApproximation() {
+        return rowCount;
+    }
+
+    public Index getScanIndex(Session session) {
+        return scanIndex;
+    }
+
+    public String getTableType() {
+        return EXTERNAL_TABLE_ENGINE;
+    }
+
+    public Index getUniqueIndex() {
+        return null;
+    }
+
+    public boolean isDeterministic() {
+        return true;
+    }
+
+    public boolean isLockedExclusively() {
+        return lockExclusive != null;
+    }
+
+    public boolean isLockedExclusivelyBy(Session session) {
+        return lockExclusive == session;
+    }
+
+    public void lock(Session session, boolean exclusive, boolean force) {
+        int lockMode = database.getLockMode();
+        if (lockMode == Constants.LOCK_MODE_OFF) {
+            return;
+        }
+        // rows are not versioned, so multi-version concurrency
+        // uses the same locks
+        if (lockExclusive == session) {
+            return;
+        }
+        synchronized (database) {
+            try {
+                doLock(session, lockMode, exclusive);
+            } finally {
+                session.setWaitForLock(null);
+            }
+        }
+    }
+
+    private void doLock(Session session, int lockMode, boolean exclusive) {
+        traceLock(session, exclusive, "requesting for");
+        // don't get the current time unless necessary
+        long max = 0;
+        boolean checkDeadlock = false;
+        while (true) {
+            if (lockExclusive == session) {
+                return;
+            }
+            if (exclusive) {
+                if (lockExclusive == null) {
+                    if (lockShared.isEmpty()) {
+                        traceLock(session, exclusive, "added for");
+                        session.addLock(this);
+                        lockExclusive = session;
+                        return;
+                    } else if (lockShared.size() == 1 && lockShared.contains(session)) {
+                        traceLock(session, exclusive, "add (upgraded) for ");
+                        lockExclusive = session;
+                        return;
+                    }
+                }
+            } else {
+                if (lockExclusive == null) {
+                    if (lockMode == Constants.LOCK_MODE_READ_COMMITTED) {
+                        if (!database.isMultiThreaded() && !database.isMultiVersion()) {
+                            // READ_COMMITTED: a read lock is acquired,
+                            // but released immediately after the operation
+                            // is complete.
+                            // When allowing only one thread, no lock is
+                            // required.
+                            return;
+                        }
+                    }
+                    if (!lockShared.contains(session)) {
+                        traceLock(session, exclusive, "ok");
+                        session.addLock(this);
+                        lockShared.add(session);
+                    }
+                    return;
+                }
+            }
+            session.setWaitForLock(this);
+            if (checkDeadlock) {
+                ArrayList<Session> sessions = checkDeadlock(session, null, null);
+                if (sessions != null) {
+                    throw DbException.get(ErrorCode.DEADLOCK_1, getName());
+                }
+            } else {
+                // check for deadlocks from now on
+                checkDeadlock = true;
+            }
+            long now = System.currentTimeMillis();
+            if (max == 0) {
+                // try at least one more time
+                max = now + session.getLockTimeout();
+            } else if (now >= max) {
+                traceLock(session, exclusive, "timeout after " + session.getLockTimeout());
+                throw DbException.get(ErrorCode.LOCK_TIMEOUT_1, getName());
+            }
+            try {
+                traceLock(session, exclusive, "waiting for");
+                // don't wait too long so that deadlocks are detected early
+                long sleep = Math.min(Constants.DEADLOCK_CHECK, max - now);
+                if (sleep == 0) {
+                    sleep = 1;
+                }
+                waitForLock = true;
+                database.wait(sleep);
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        }
+    }
+
+    public ArrayList<Session> checkDeadlock(Session session, Session clash, Set<Session> visited) {
+        // only one deadlock check at any given time, also across table types
+        synchronized (RegularTable.class) {
+            if (clash == null) {
+                // verification is started
+                clash = session;
+                visited = New.hashSet();
+            } else if (clash == session) {
+                // we found a circle where this session is involved
+                return New.arrayList();
+            } else if (visited.contains(session)) {
+                // we have already checked this session.
+                // there is a circle, but the sessions in the circle need to
+                // find it out themselves
+                return null;
+            }
+            visited.add(session);
+            ArrayList<Session> error = null;
+            for (Session s : lockShared) {
+                if (s == session) {
+                    // it doesn't matter if we have locked the object already
+                    continue;
+                }
+                Table t = s.getWaitForLock();
+                if (t != null) {
+                    error = t.checkDeadlock(s, clash, visited);
+                    if (error != null) {
+                        error.add(session);
+                        break;
+                    }
+                }
+            }
+            if (error == null && lockExclusive != null) {
+                Table t = lockExclusive.getWaitForLock();
+                if (t != null) {
+                    error = t.checkDeadlock(lockExclusive, clash, visited);
+                    if (error != null) {
+                        error.add(session);
+                    }
+                }
+            }
+            return error;
+        }
+    }
+
+    private void traceLock(Session session, boolean exclusive, String s) {
+        if (traceLock.isDebugEnabled()) {
+            traceLock.debug("{0} {1} {2} {3}", session.getId(),
+                    exclusive ? "exclusive write lock" : "shared read lock", s, getName());
+        }
+    }
+
+    public void unlock(Session s) {
+        if (database != null) {
+            traceLock(s, lockExclusive == s, "unlock");
+            if (lockExclusive == s) {
+                lockExclusive = null;
+            }
+            if (lockShared.size() > 0) {
+                lockShared.remove(s);
+            }
+            synchronized (database) {
+                if (database.getSessionCount() > 1 && waitForLock) {
+                    database.notifyAll();
+                }
+            }
+        }
+    }
+
+}
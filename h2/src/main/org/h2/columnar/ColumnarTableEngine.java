@@ -0,0 +1,26 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.columnar;
+
+import org.h2.api.TableEngine;
+import org.h2.command.ddl.CreateTableData;
+import org.h2.table.TableBase;
+
+/**
+ * A table engine that stores the data column by column. Usage:
+ * <pre>
+ * CREATE TABLE TEST(ID INT, NAME VARCHAR)
+ * ENGINE "org.h2.columnar.ColumnarTableEngine"
+ * </pre>
+ */
+public class ColumnarTableEngine implements TableEngine {
+
+    public TableBase createTable(CreateTableData data) {
+        return new ColumnarTable(data);
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.columnar;
+
+import org.h2.value.Value;
+
+/**
+ * A segment for ascending integer values that stores the first value and the
+ * bit-packed difference of each value to the previous one.
+ */
+class DeltaSegment extends ColumnSegment {
+
+    private final int type;
+    private final long first;
+    private final long[] packed;
+    private final int bits;
+
+    DeltaSegment(int type, long[] values, int count, int bits) {
+        super(count);
+        this.type = type;
+        this.first = values[0];
+        this.bits = bits;
+        long[] deltas = new long[count];
+        for (int i = 1; i < count; i++) {
+            deltas[i] = values[i] - values[i - 1];
+        }
+        packed = pack(deltas, count, bits);
+    }
+
+    public void decode(Value[] target) {
+        long x = first;
+        for (int i = 0; i < count; i++) {
+            x += unpack(packed, i, bits);
+            target[i] = getValue(type, x);
+        }
+    }
+
+    public int getMemory() {
+        return packed.length * 8;
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.columnar;
+
+import org.h2.value.Value;
+
+/**
+ * A segment that stores the distinct values in a dictionary, and for each row
+ * the bit-packed index within the dictionary.
+ */
+class DictionarySegment extends ColumnSegment {
+
+    private final Value[] dictionary;
+    private final long[] packed;
+    private final int bits;
+
+    DictionarySegment(Value[] dictionary, int[] ids, int count, int bits) {
+        super(count);
+        this.dictionary = dictionary;
+        this.bits = bits;
+        long[] longs = new long[count];
+        for (int i = 0; i < count; i++) {
+            longs[i] = ids[i];
+        }
+        packed = pack(longs, count, bits);
+    }
+
+    public void decode(Value[] target) {
+        for (int i = 0; i < count; i++) {
+            target[i] = dictionary[(int) unpack(packed, i, bits)];
+        }
+    }
+
+    public int getMemory() {
+        return dictionary.length * 8 + packed.length * 8;
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.columnar;
+
+import org.h2.value.Value;
+
+/**
+ * A segment that stores the values without compression.
+ */
+class PlainSegment extends ColumnSegment {
+
+    private final Value[] values;
+
+    PlainSegment(Value[] values, int count) {
+        super(count);
+        this.values = new Value[count];
+        System.arraycopy(values, 0, this.values, 0, count);
+    }
+
+    public void decode(Value[] target) {
+        System.arraycopy(values, 0, target, 0, count);
+    }
+
+    public int getMemory() {
+        return count * 8;
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.columnar;
+
+import org.h2.value.Value;
+
+/**
+ * A segment that stores runs of equal values as the value and the index after
+ * the last row of the run.
+ */
+class RunLengthSegment extends ColumnSegment {
+
+    private final Value[] runValues;
+    private final int[] runEnds;
+
+    RunLengthSegment(Value[] values, int count, int runs) {
+        super(count);
+        runValues = new Value[runs];
+        runEnds = new int[runs];
+        int run = -1;
+        for (int i = 0; i < count; i++) {
+            Value v = values[i];
+            if (run < 0 || !v.equals(runValues[run])) {
+                runValues[++run] = v;
+            }
+            runEnds[run] = i + 1;
+        }
+    }
+
+    public void decode(Value[] target) {
+        for (int run = 0, i = 0; run < runValues.length; run++) {
+            Value v = runValues[run];
+            for (int end = runEnds[run]; i < end; i++) {
+                target[i] = v;
+            }
+        }
+    }
+
+    public int getMemory() {
+        return runValues.length * 12;
+    }
+
+}
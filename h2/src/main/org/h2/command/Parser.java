@@ -973,6 +973,9 @@ public class Parser {
         if (readIf("SORTED")) {
             command.setSortedInsertMode(true);
         }
+        if (readIf("BULK")) {
+            command.setBulkLoad(true);
+        }
         if (readIf("DEFAULT")) {
             read("VALUES");
             Expression[] expr = { };
@@ -3805,7 +3808,7 @@ public class Parser {
             }
             return parseCreateTable(false, false, cached);
         } else {
-            boolean hash = false, primaryKey = false, unique = false;
+            boolean hash = false, primaryKey = false, unique = false, bitmap = false;
             String indexName = null;
             Schema oldSchema = null;
             boolean ifNotExists = false;
@@ -3826,6 +3829,8 @@ public class Parser {
                 }
                 if (readIf("HASH")) {
                     hash = true;
+                } else if (!unique && readIf("BITMAP")) {
+                    bitmap = true;
                 }
                 if (readIf("INDEX")) {
                     if (!isToken("ON")) {
@@ -3843,6 +3848,7 @@ public class Parser {
             CreateIndex command = new CreateIndex(session, getSchema());
             command.setIfNotExists(ifNotExists);
             command.setHash(hash);
+            command.setBitmap(bitmap);
             command.setPrimaryKey(primaryKey);
             command.setTableName(tableName);
             command.setUnique(unique);
@@ -321,6 +321,10 @@ public class AlterTableAddConstraint extends SchemaCommand {
         if (indexCols.length < cols.length) {
             return false;
         }
+        if (existingIndex.getIndexType().isBitmap() && indexCols.length != cols.length) {
+            // a bitmap index can only be searched using all columns
+            return false;
+        }
         for (IndexColumn col : cols) {
             // all columns of the list must be part of the index,
             // but not all columns of the index need to be part of the list
@@ -27,7 +27,7 @@ public class CreateIndex extends SchemaCommand {
     private String tableName;
     private String indexName;
     private IndexColumn[] indexColumns;
-    private boolean primaryKey, unique, hash;
+    private boolean primaryKey, unique, hash, bitmap;
     private boolean ifNotExists;
     private String comment;
 
@@ -85,6 +85,8 @@ public class CreateIndex extends SchemaCommand {
             indexType = IndexType.createPrimaryKey(persistent, hash);
         } else if (unique) {
             indexType = IndexType.createUnique(persistent, hash);
+        } else if (bitmap) {
+            indexType = IndexType.createBitmap(persistent);
         } else {
             indexType = IndexType.createNonUnique(persistent, hash);
         }
@@ -105,6 +107,10 @@ public class CreateIndex extends SchemaCommand {
         this.hash = b;
     }
 
+    public void setBitmap(boolean b) {
+        this.bitmap = b;
+    }
+
     public void setComment(String comment) {
         this.comment = comment;
     }
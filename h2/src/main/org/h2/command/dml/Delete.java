@@ -124,6 +124,7 @@ public class Delete extends Prepared {
             condition.mapColumns(tableFilter, 0);
             condition = condition.optimize(session);
             condition.createIndexConditions(session, tableFilter);
+            tableFilter.setFullCondition(condition);
         }
         PlanItem item = tableFilter.getBestPlanItem(session, 1);
         tableFilter.setPlanItem(item);
@@ -12,6 +12,7 @@ import org.h2.command.Command;
 import org.h2.command.CommandInterface;
 import org.h2.command.Prepared;
 import org.h2.constant.ErrorCode;
+import org.h2.engine.Database;
 import org.h2.engine.Right;
 import org.h2.engine.Session;
 import org.h2.engine.UndoLogRecord;
@@ -22,6 +23,7 @@ import org.h2.message.DbException;
 import org.h2.result.ResultInterface;
 import org.h2.result.ResultTarget;
 import org.h2.result.Row;
+import org.h2.store.PageStore;
 import org.h2.table.Column;
 import org.h2.table.Table;
 import org.h2.util.New;
@@ -41,6 +43,7 @@ public class Insert extends Prepared implements ResultTarget {
     private boolean sortedInsertMode;
     private int rowNumber;
     private boolean insertFromSelect;
+    private boolean bulkLoad;
 
     public Insert(Session session) {
         super(session);
@@ -128,21 +131,68 @@ public class Insert extends Prepared implements ResultTarget {
             }
         } else {
             table.lock(session, true, false);
-            if (insertFromSelect) {
-                query.query(0, this);
+            if (bulkLoad && canBulkLoad()) {
+                insertBulk();
             } else {
-                ResultInterface rows = query.query(0);
-                while (rows.next()) {
-                    Value[] r = rows.currentRow();
-                    addRow(r);
-                }
-                rows.close();
+                insertQueryRows();
             }
         }
         table.fire(session, Trigger.INSERT, false);
         return rowNumber;
     }
 
+    private void insertQueryRows() {
+        if (insertFromSelect) {
+            query.query(0, this);
+        } else {
+            ResultInterface rows = query.query(0);
+            while (rows.next()) {
+                Value[] r = rows.currentRow();
+                addRow(r);
+            }
+            rows.close();
+        }
+    }
+
+    /**
+     * Check whether the rows can be loaded without writing them to the undo
+     * log and the transaction log. This is only possible for an empty,
+     * persistent table in the page store, if the statement is committed on
+     * its own, and if the session has exclusive access to the database.
+     *
+     * @return true if the rows can be loaded in bulk
+     */
+    private boolean canBulkLoad() {
+        Database db = session.getDatabase();
+        return db.getPageStore() != null && !db.isMultiVersion() &&
+                db.getExclusiveSession() == session && session.getAutoCommit() &&
+                Table.TABLE.equals(table.getTableType()) &&
+                table.isPersistData() && !table.isTemporary() &&
+                table.getRowCount(session) == 0;
+    }
+
+    private void insertBulk() {
+        PageStore store = session.getDatabase().getPageStore();
+        if (!store.beginBulkLoad(session, table.getId())) {
+            insertQueryRows();
+            return;
+        }
+        boolean undoLog = session.isUndoLogEnabled();
+        boolean success = false;
+        try {
+            session.setUndoLogEnabled(false);
+            insertQueryRows();
+            success = true;
+        } finally {
+            session.setUndoLogEnabled(undoLog);
+            store.endBulkLoad(session, table.getId(), success);
+            if (!success) {
+                // the table was empty
+                table.truncate(session);
+            }
+        }
+    }
+
     public void addRow(Value[] values) {
         Row newRow = table.getTemplateRow();
         setCurrentRowNumber(++rowNumber);
@@ -183,6 +233,9 @@ public class Insert extends Prepared implements ResultTarget {
         if (sortedInsertMode) {
             buff.append("SORTED ");
         }
+        if (bulkLoad) {
+            buff.append("BULK ");
+        }
         if (list.size() > 0) {
             buff.append("VALUES ");
             int row = 0;
@@ -265,6 +318,10 @@ public class Insert extends Prepared implements ResultTarget {
         this.insertFromSelect = value;
     }
 
+    public void setBulkLoad(boolean bulkLoad) {
+        this.bulkLoad = bulkLoad;
+    }
+
     public boolean isCacheable() {
         return true;
     }
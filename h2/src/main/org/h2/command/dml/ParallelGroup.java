@@ -0,0 +1,307 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.dml;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import org.h2.engine.Session;
+import org.h2.expression.Aggregate;
+import org.h2.expression.Expression;
+import org.h2.expression.LongKeyGroups;
+import org.h2.expression.VectorCondition;
+import org.h2.message.DbException;
+import org.h2.result.RowBatch;
+import org.h2.table.Column;
+import org.h2.table.TableFilter;
+import org.h2.util.IntArray;
+import org.h2.util.New;
+import org.h2.util.Task;
+import org.h2.util.ThreadPool;
+import org.h2.util.ValueHashMap;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+
+/**
+ * Evaluates the condition and the aggregates of a query on a single table
+ * using multiple threads. The page store can only be used by one thread at a
+ * time, so the rows are read in batches by the calling thread. Each worker
+ * filters the batches it receives and updates its own groups. At the end, the
+ * groups of all workers are merged. The workers run in the query thread pool
+ * of the database.
+ */
+class ParallelGroup {
+
+    private static final ValueArray DEFAULT_GROUP = ValueArray.get(new Value[0]);
+
+    private final Session session;
+    private final VectorCondition condition;
+    private final int[] groupColumns;
+    private final Column keyColumn;
+    private final Aggregate[] aggregates;
+
+    /**
+     * The batches that were read, but are not yet processed.
+     */
+    private final ArrayList<RowBatch> full = New.arrayList();
+
+    /**
+     * The batches that can be used to read rows.
+     */
+    private final ArrayList<RowBatch> free = New.arrayList();
+
+    private boolean done;
+    private boolean stopped;
+
+    /**
+     * Create a new object.
+     *
+     * @param session the session
+     * @param condition the condition, or null
+     * @param groupColumns the columns of the GROUP BY list
+     * @param aggregates the aggregates
+     */
+    ParallelGroup(Session session, VectorCondition condition, Column[] groupColumns, Aggregate[] aggregates) {
+        this.session = session;
+        this.condition = condition;
+        this.groupColumns = new int[groupColumns.length];
+        for (int i = 0; i < groupColumns.length; i++) {
+            this.groupColumns[i] = groupColumns[i].getColumnId();
+        }
+        if (groupColumns.length == 1 && LongKeyGroups.isKeyType(groupColumns[0].getType())) {
+            keyColumn = groupColumns[0];
+        } else {
+            keyColumn = null;
+        }
+        this.aggregates = aggregates;
+    }
+
+    /**
+     * Read all rows and calculate the aggregates.
+     *
+     * @param filter the table filter
+     * @param threadCount the number of worker threads
+     * @param vectorSize the number of rows per batch
+     * @return the groups
+     */
+    ValueHashMap<HashMap<Expression, Object>> query(TableFilter filter, int threadCount, int vectorSize) {
+        int columnCount = filter.getTable().getColumns().length;
+        for (int i = 0; i < 2 * threadCount; i++) {
+            free.add(new RowBatch(vectorSize, columnCount));
+        }
+        ThreadPool threadPool = session.getDatabase().getQueryThreadPool();
+        Worker[] workers = new Worker[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            workers[i] = new Worker(vectorSize);
+            workers[i].execute(threadPool);
+        }
+        try {
+            while (true) {
+                RowBatch batch = take(free);
+                if (batch == null || filter.nextBatch(batch) == 0) {
+                    break;
+                }
+                put(full, batch);
+            }
+        } finally {
+            synchronized (this) {
+                done = true;
+                notifyAll();
+            }
+        }
+        for (Worker w : workers) {
+            Exception e = w.getException();
+            if (e != null) {
+                throw DbException.convert(e);
+            }
+        }
+        if (stopped) {
+            throw DbException.throwInternalError("query worker stopped");
+        }
+        if (keyColumn != null) {
+            LongKeyGroups groups = workers[0].longKeyGroups;
+            for (int i = 1; i < threadCount; i++) {
+                groups.merge(workers[i].longKeyGroups);
+            }
+            return groups.getGroups(session);
+        }
+        ValueHashMap<HashMap<Expression, Object>> groups = workers[0].groups;
+        for (int i = 1; i < threadCount; i++) {
+            merge(groups, workers[i].groups);
+        }
+        return groups;
+    }
+
+    private void merge(ValueHashMap<HashMap<Expression, Object>> groups,
+            ValueHashMap<HashMap<Expression, Object>> other) {
+        ArrayList<Value> keys = other.keys();
+        for (Value key : keys) {
+            HashMap<Expression, Object> o = other.get(key);
+            HashMap<Expression, Object> values = groups.get(key);
+            if (values == null) {
+                groups.put(key, o);
+            } else {
+                for (Aggregate a : aggregates) {
+                    a.mergeAggregate(session, values, o);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get a batch from the given list, and wait if there is none.
+     *
+     * @param list the list
+     * @return the batch, or null if there are no more batches (reading) or
+     *         processing was stopped
+     */
+    private synchronized RowBatch take(ArrayList<RowBatch> list) {
+        while (list.size() == 0 && !stopped && (list == free || !done)) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                throw DbException.convert(e);
+            }
+        }
+        if (stopped || list.size() == 0) {
+            return null;
+        }
+        return list.remove(list.size() - 1);
+    }
+
+    private synchronized void put(ArrayList<RowBatch> list, RowBatch batch) {
+        list.add(batch);
+        notifyAll();
+    }
+
+    private synchronized void stop() {
+        stopped = true;
+        notifyAll();
+    }
+
+    /**
+     * Filter the batch and update the aggregates of the matching rows.
+     *
+     * @param worker the worker
+     * @param batch the batch
+     */
+    private void process(Worker worker, RowBatch batch) {
+        int size = batch.getSize();
+        int[] sel = worker.sel;
+        for (int i = 0; i < size; i++) {
+            sel[i] = i;
+        }
+        VectorCondition c = worker.condition;
+        int count = c == null ? size : c.filter(session, batch, sel, size);
+        if (count == 0) {
+            return;
+        }
+        if (worker.longKeyGroups != null) {
+            worker.longKeyGroups.add(batch, sel, count);
+            return;
+        }
+        ValueHashMap<HashMap<Expression, Object>> groups = worker.groups;
+        if (groupColumns.length == 0) {
+            update(getGroup(groups, DEFAULT_GROUP), batch, sel, count);
+            return;
+        }
+        ValueHashMap<IntArray> rows = ValueHashMap.newInstance();
+        for (int i = 0; i < count; i++) {
+            int r = sel[i];
+            Value[] keyValues = new Value[groupColumns.length];
+            for (int j = 0; j < groupColumns.length; j++) {
+                keyValues[j] = batch.getValue(r, groupColumns[j]);
+            }
+            ValueArray key = ValueArray.get(keyValues);
+            IntArray list = rows.get(key);
+            if (list == null) {
+                list = new IntArray();
+                rows.put(key, list);
+            }
+            list.add(r);
+        }
+        ArrayList<Value> keys = rows.keys();
+        for (Value key : keys) {
+            IntArray list = rows.get(key);
+            int n = list.size();
+            list.toArray(sel);
+            update(getGroup(groups, key), batch, sel, n);
+        }
+    }
+
+    private static HashMap<Expression, Object> getGroup(ValueHashMap<HashMap<Expression, Object>> groups,
+            Value key) {
+        HashMap<Expression, Object> values = groups.get(key);
+        if (values == null) {
+            values = new HashMap<Expression, Object>();
+            groups.put(key, values);
+        }
+        return values;
+    }
+
+    private void update(HashMap<Expression, Object> group, RowBatch batch, int[] sel, int count) {
+        for (Aggregate a : aggregates) {
+            a.updateAggregate(session, group, batch, sel, count);
+        }
+    }
+
+    /**
+     * A worker. It processes batches until there are no more.
+     */
+    private class Worker extends Task {
+
+        /**
+         * The groups calculated by this worker, if the GROUP BY list is not
+         * one integer column.
+         */
+        final ValueHashMap<HashMap<Expression, Object>> groups = ValueHashMap.newInstance();
+
+        /**
+         * The groups calculated by this worker, if the GROUP BY list is one
+         * integer column.
+         */
+        final LongKeyGroups longKeyGroups;
+
+        /**
+         * The array for the selected rows.
+         */
+        final int[] sel;
+
+        /**
+         * The copy of the condition used by this worker, or null.
+         */
+        final VectorCondition condition;
+
+        Worker(int vectorSize) {
+            sel = new int[vectorSize];
+            VectorCondition c = ParallelGroup.this.condition;
+            condition = c == null ? null : c.copy();
+            longKeyGroups = keyColumn == null ? null : new LongKeyGroups(keyColumn, aggregates);
+        }
+
+        public void call() {
+            boolean success = false;
+            try {
+                while (true) {
+                    RowBatch batch = take(full);
+                    if (batch == null) {
+                        break;
+                    }
+                    process(this, batch);
+                    put(free, batch);
+                }
+                success = true;
+            } finally {
+                if (!success) {
+                    // let the reading thread and the other workers stop
+                    stop();
+                }
+            }
+        }
+
+    }
+
+}
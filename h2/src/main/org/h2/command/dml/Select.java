@@ -12,18 +12,25 @@ import java.util.HashMap;
 import java.util.HashSet;
 import org.h2.api.Trigger;
 import org.h2.command.CommandInterface;
+import org.h2.constant.DbSettings;
 import org.h2.constant.ErrorCode;
 import org.h2.constant.SysProperties;
 import org.h2.engine.Constants;
 import org.h2.engine.Database;
 import org.h2.engine.Session;
+import org.h2.expression.Aggregate;
 import org.h2.expression.Comparison;
 import org.h2.expression.ConditionAndOr;
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionColumn;
 import org.h2.expression.ExpressionVisitor;
+import org.h2.expression.LongKeyGroups;
 import org.h2.expression.Parameter;
+import org.h2.expression.VectorCondition;
 import org.h2.expression.Wildcard;
+import org.h2.bitmap.BitSet;
+import org.h2.index.BitmapCondition;
+import org.h2.index.BitmapIndex;
 import org.h2.index.Cursor;
 import org.h2.index.Index;
 import org.h2.index.IndexType;
@@ -32,11 +39,13 @@ import org.h2.result.LocalResult;
 import org.h2.result.ResultInterface;
 import org.h2.result.ResultTarget;
 import org.h2.result.Row;
+import org.h2.result.RowBatch;
 import org.h2.result.SearchRow;
 import org.h2.result.SortOrder;
 import org.h2.table.Column;
 import org.h2.table.ColumnResolver;
 import org.h2.table.IndexColumn;
+import org.h2.table.RegularTable;
 import org.h2.table.Table;
 import org.h2.table.TableFilter;
 import org.h2.util.New;
@@ -45,6 +54,7 @@ import org.h2.util.StringUtils;
 import org.h2.util.ValueHashMap;
 import org.h2.value.Value;
 import org.h2.value.ValueArray;
+import org.h2.value.ValueLong;
 import org.h2.value.ValueNull;
 
 /**
@@ -76,13 +86,21 @@ public class Select extends Query {
     private HashMap<Expression, Object> currentGroup;
     private int havingIndex;
     private boolean isGroupQuery, isGroupSortedQuery;
+    private BitmapIndex groupBitmapIndex;
+    private BitmapCondition groupBitmapCondition;
+    private boolean isGroupBitmapCount;
     private boolean isForUpdate, isForUpdateMvcc;
     private double cost;
-    private boolean isQuickAggregateQuery, isDistinctQuery;
+    private boolean isQuickAggregateQuery, isDistinctQuery, isBitmapCountQuery;
     private boolean isPrepared, checkInit;
     private boolean sortUsingIndex;
     private SortOrder sort;
     private int currentGroupRowId;
+    private VectorCondition vectorCondition;
+    private boolean isVectorQuery, isVectorAggregate, isParallelQuery;
+    private RowBatch batch;
+    private int[] batchSelection;
+    private int batchPos, batchCount;
 
     public Select(Session session) {
         super(session);
@@ -241,7 +259,7 @@ public class Select extends Query {
         if (indexes != null) {
             for (int i = 0, size = indexes.size(); i < size; i++) {
                 Index index = indexes.get(i);
-                if (index.getIndexType().isScan()) {
+                if (index.getIndexType().isScan() || index.getIndexType().isBitmap()) {
                     continue;
                 }
                 if (isGroupSortedIndex(topTableFilter, index)) {
@@ -303,14 +321,125 @@ public class Select extends Query {
         return count;
     }
 
+    /**
+     * Get the bitmap index of the GROUP BY column, if there is only one GROUP
+     * BY column and it has a bitmap index.
+     *
+     * @return the index, or null
+     */
+    private BitmapIndex getGroupBitmapIndex() {
+        if (groupIndex == null || groupIndex.length != 1 || sampleSize > 0) {
+            return null;
+        }
+        Expression expr = expressions.get(groupIndex[0]).getNonAliasExpression();
+        if (!(expr instanceof ExpressionColumn)) {
+            return null;
+        }
+        ExpressionColumn exprCol = (ExpressionColumn) expr;
+        if (exprCol.getTableFilter() != topTableFilter) {
+            return null;
+        }
+        return BitmapCondition.getBitmapIndex(topTableFilter, exprCol.getColumn());
+    }
+
+    /**
+     * Group the rows using the bit sets of the bitmap index of the GROUP BY
+     * column. If only COUNT(*) is used and the condition is exact, the rows
+     * are not read. Otherwise, only the rows of each group that may match
+     * the condition are read.
+     *
+     * @param columnCount the number of columns
+     * @param result the result
+     * @return false if the bitmap index can not be used for the current values
+     */
+    private boolean queryGroupBitmap(int columnCount, LocalResult result) {
+        if (!groupBitmapIndex.canLookup()) {
+            return false;
+        }
+        BitSet filter = null;
+        boolean countOnly = isGroupBitmapCount;
+        if (condition != null) {
+            if (countOnly) {
+                filter = groupBitmapCondition.getRows(session, true);
+                countOnly = filter != null;
+            }
+            if (filter == null) {
+                filter = groupBitmapCondition.getRows(session, false);
+                if (filter == null) {
+                    return false;
+                }
+            }
+        } else if (!countOnly) {
+            return false;
+        }
+        int groupColumn = groupIndex[0];
+        int rowNumber = 0;
+        setCurrentRowNumber(0);
+        for (Value key : groupBitmapIndex.getKeys()) {
+            BitSet bits = groupBitmapIndex.getBitSet(key);
+            Value[] row = new Value[columnCount];
+            row[groupColumn] = key;
+            if (countOnly) {
+                int count = filter == null ? bits.cardinality() : bits.andCardinality(filter);
+                if (count == 0) {
+                    continue;
+                }
+                for (int j = 0; j < columnCount; j++) {
+                    if (j != groupColumn) {
+                        row[j] = ValueLong.get(count);
+                    }
+                }
+            } else {
+                if (filter != null) {
+                    bits = bits.clone();
+                    bits.and(filter);
+                }
+                currentGroup = null;
+                Cursor cursor = groupBitmapIndex.find(session, bits);
+                while (cursor.next()) {
+                    topTableFilter.set(cursor.get());
+                    setCurrentRowNumber(rowNumber + 1);
+                    if (condition == null || Boolean.TRUE.equals(condition.getBooleanValue(session))) {
+                        rowNumber++;
+                        if (currentGroup == null) {
+                            currentGroup = new HashMap<Expression, Object>();
+                        }
+                        currentGroupRowId++;
+                        for (int j = 0; j < columnCount; j++) {
+                            if (j != groupColumn) {
+                                expressions.get(j).updateAggregate(session);
+                            }
+                        }
+                    }
+                }
+                if (currentGroup == null) {
+                    continue;
+                }
+                for (int j = 0; j < columnCount; j++) {
+                    if (j != groupColumn) {
+                        row[j] = expressions.get(j).getValue(session);
+                    }
+                }
+                if (isHavingNullOrFalse(row)) {
+                    continue;
+                }
+            }
+            row = keepOnlyDistinct(row, columnCount);
+            result.addRow(row);
+        }
+        return true;
+    }
+
     private void queryGroup(int columnCount, LocalResult result) {
         ValueHashMap<HashMap<Expression, Object>> groups = ValueHashMap.newInstance();
         int rowNumber = 0;
         setCurrentRowNumber(0);
         ValueArray defaultGroup = ValueArray.get(new Value[0]);
-        while (topTableFilter.next()) {
-            setCurrentRowNumber(rowNumber + 1);
-            if (condition == null || Boolean.TRUE.equals(condition.getBooleanValue(session))) {
+        int maxMemoryRows = session.getDatabase().getMaxMemoryRows();
+        boolean canSpill = groupIndex != null;
+        SpilledGroups spilled = null;
+        try {
+            while (nextMatchingRow(isVectorQuery, rowNumber)) {
                 Value key;
                 rowNumber++;
                 if (groupIndex == null) {
@@ -339,14 +468,42 @@ public class Select extends Query {
                         expr.updateAggregate(session);
                     }
                 }
+                if (canSpill && groups.size() > maxMemoryRows) {
+                    // too many groups: write them to disk
+                    if (spilled == null && SpilledGroups.canSpill(values)) {
+                        spilled = new SpilledGroups(session);
+                    }
+                    if (spilled == null) {
+                        canSpill = false;
+                    } else {
+                        spilled.write(groups);
+                        groups = ValueHashMap.newInstance();
+                    }
+                }
                 if (sampleSize > 0 && rowNumber >= sampleSize) {
                     break;
                 }
             }
+            if (spilled != null) {
+                spilled.write(groups);
+                while ((groups = spilled.next()) != null) {
+                    addGroupRows(groups, columnCount, result);
+                }
+                return;
+            }
+        } finally {
+            if (spilled != null) {
+                spilled.close();
+            }
         }
         if (groupIndex == null && groups.size() == 0) {
             groups.put(defaultGroup, new HashMap<Expression, Object>());
         }
+        addGroupRows(groups, columnCount, result);
+    }
+
+    private void addGroupRows(ValueHashMap<HashMap<Expression, Object>> groups, int columnCount,
+            LocalResult result) {
         ArrayList<Value> keys = groups.keys();
         for (Value v : keys) {
             ValueArray key = (ValueArray) v;
@@ -371,6 +528,155 @@ public class Select extends Query {
         }
     }
 
+    /**
+     * Filter the rows and calculate the aggregates using multiple threads, if
+     * the table is large enough and the whole condition can be evaluated in
+     * batches.
+     *
+     * @param columnCount the number of columns
+     * @param result the target result
+     * @return false if the rows were not read
+     */
+    private boolean queryGroupParallel(int columnCount, LocalResult result) {
+        if (vectorCondition != null && !vectorCondition.isComplete(session)) {
+            return false;
+        }
+        DbSettings settings = session.getDatabase().getSettings();
+        int vectorSize = settings.vectorSize;
+        long rowCount = topTableFilter.getTable().getRowCountApproximation();
+        int threads = (int) Math.min(settings.queryThreads, rowCount / vectorSize / 2);
+        if (threads < 2) {
+            return false;
+        }
+        ParallelGroup parallel = new ParallelGroup(session, vectorCondition, getGroupColumns(),
+                getAggregates(columnCount));
+        ValueHashMap<HashMap<Expression, Object>> groups = parallel.query(topTableFilter, threads, vectorSize);
+        if (groupIndex == null && groups.size() == 0) {
+            groups.put(ValueArray.get(new Value[0]), new HashMap<Expression, Object>());
+        }
+        addGroupRows(groups, columnCount, result);
+        return true;
+    }
+
+    /**
+     * Get the columns of the GROUP BY list. This is only supported if all
+     * GROUP BY expressions are columns.
+     *
+     * @return the columns
+     */
+    private Column[] getGroupColumns() {
+        Column[] groupColumns = new Column[groupIndex == null ? 0 : groupIndex.length];
+        for (int i = 0; i < groupColumns.length; i++) {
+            Expression expr = expressions.get(groupIndex[i]).getNonAliasExpression();
+            groupColumns[i] = ((ExpressionColumn) expr).getColumn();
+        }
+        return groupColumns;
+    }
+
+    /**
+     * Get the aggregates of the select list. This is only supported if all
+     * other expressions are GROUP BY expressions.
+     *
+     * @param columnCount the number of columns
+     * @return the aggregates
+     */
+    private Aggregate[] getAggregates(int columnCount) {
+        ArrayList<Aggregate> aggregates = New.arrayList();
+        for (int i = 0; i < columnCount; i++) {
+            if (groupByExpression == null || !groupByExpression[i]) {
+                Aggregate agg = (Aggregate) expressions.get(i).getNonAliasExpression();
+                if (!aggregates.contains(agg)) {
+                    aggregates.add(agg);
+                }
+            }
+        }
+        return aggregates.toArray(new Aggregate[aggregates.size()]);
+    }
+
+    /**
+     * Calculate the aggregates one batch of rows at a time. The query either
+     * has no GROUP BY list, or is grouped by one integer column.
+     *
+     * @param columnCount the number of columns
+     * @param result the target result
+     */
+    private void queryGroupVector(int columnCount, LocalResult result) {
+        if (groupIndex != null) {
+            LongKeyGroups groups = new LongKeyGroups(getGroupColumns()[0], getAggregates(columnCount));
+            setCurrentRowNumber(0);
+            while (nextBatch()) {
+                groups.add(batch, batchSelection, batchCount);
+            }
+            addGroupRows(groups.getGroups(session), columnCount, result);
+            return;
+        }
+        currentGroup = new HashMap<Expression, Object>();
+        setCurrentRowNumber(0);
+        while (nextBatch()) {
+            currentGroupRowId++;
+            for (int i = 0; i < columnCount; i++) {
+                Aggregate agg = (Aggregate) expressions.get(i).getNonAliasExpression();
+                agg.updateAggregate(session, batch, batchSelection, batchCount);
+            }
+        }
+        Value[] row = new Value[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            row[i] = expressions.get(i).getValue(session);
+        }
+        if (isHavingNullOrFalse(row)) {
+            return;
+        }
+        row = keepOnlyDistinct(row, columnCount);
+        result.addRow(row);
+    }
+
+    /**
+     * Read the next batch of rows and remove the rows that don't match the
+     * condition.
+     *
+     * @return false if there are no more rows
+     */
+    private boolean nextBatch() {
+        int size = topTableFilter.nextBatch(batch);
+        if (size == 0) {
+            batchPos = batchCount = 0;
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            batchSelection[i] = i;
+        }
+        batchPos = 0;
+        batchCount = vectorCondition == null ? size : vectorCondition.filter(session, batch, batchSelection, size);
+        return true;
+    }
+
+    /**
+     * Move to the next row that matches the condition.
+     *
+     * @param vector whether to read and filter the rows in batches
+     * @param rowNumber the number of rows found so far
+     * @return false if there are no more rows
+     */
+    private boolean nextMatchingRow(boolean vector, int rowNumber) {
+        if (vector) {
+            while (batchPos >= batchCount) {
+                if (!nextBatch()) {
+                    return false;
+                }
+            }
+            topTableFilter.set(batch.getRow(batchSelection[batchPos++]));
+            setCurrentRowNumber(rowNumber + 1);
+            return true;
+        }
+        while (topTableFilter.next()) {
+            setCurrentRowNumber(rowNumber + 1);
+            if (condition == null || Boolean.TRUE.equals(condition.getBooleanValue(session))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Get the index that matches the ORDER BY list, if one exists. This is to
      * avoid running a separate ORDER BY if an index can be used. This is
@@ -416,7 +722,7 @@ public class Select extends Query {
                     // can't use the scan index
                     continue;
                 }
-                if (index.getIndexType().isHash()) {
+                if (index.getIndexType().isHash() || index.getIndexType().isBitmap()) {
                     continue;
                 }
                 IndexColumn[] indexCols = index.getIndexColumns();
@@ -510,25 +816,25 @@ public class Select extends Query {
         if (isForUpdateMvcc) {
             forUpdateRows = New.arrayList();
         }
-        while (topTableFilter.next()) {
-            setCurrentRowNumber(rowNumber + 1);
-            if (condition == null || Boolean.TRUE.equals(condition.getBooleanValue(session))) {
-                Value[] row = new Value[columnCount];
-                for (int i = 0; i < columnCount; i++) {
-                    Expression expr = expressions.get(i);
-                    row[i] = expr.getValue(session);
-                }
-                if (isForUpdateMvcc) {
-                    topTableFilter.lockRowAdd(forUpdateRows);
-                }
-                result.addRow(row);
-                rowNumber++;
-                if ((sort == null || sortUsingIndex) && limitRows > 0 && result.getRowCount() >= limitRows) {
-                    break;
-                }
-                if (sampleSize > 0 && rowNumber >= sampleSize) {
-                    break;
-                }
+        // don't read a whole batch if only a few rows are needed
+        boolean vector = isVectorQuery && (sort != null && !sortUsingIndex ||
+                limitRows < 0 || limitRows >= batch.getCapacity());
+        while (nextMatchingRow(vector, rowNumber)) {
+            Value[] row = new Value[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                Expression expr = expressions.get(i);
+                row[i] = expr.getValue(session);
+            }
+            if (isForUpdateMvcc) {
+                topTableFilter.lockRowAdd(forUpdateRows);
+            }
+            result.addRow(row);
+            rowNumber++;
+            if ((sort == null || sortUsingIndex) && limitRows > 0 && result.getRowCount() >= limitRows) {
+                break;
+            }
+            if (sampleSize > 0 && rowNumber >= sampleSize) {
+                break;
             }
         }
         if (isForUpdateMvcc) {
@@ -536,6 +842,26 @@ public class Select extends Query {
         }
     }
 
+    /**
+     * Calculate the row count using the bitmap indexes, if possible.
+     *
+     * @param columnCount the number of columns
+     * @param result the target result
+     * @return false if the row count could not be calculated
+     */
+    private boolean queryBitmapCount(int columnCount, ResultTarget result) {
+        long count = topTableFilter.getBitmapCondition().getRowCount(session);
+        if (count < 0) {
+            return false;
+        }
+        Value[] row = new Value[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            row[i] = ValueLong.get(count);
+        }
+        result.addRow(row);
+        return true;
+    }
+
     private void queryQuick(int columnCount, ResultTarget result) {
         Value[] row = new Value[columnCount];
         for (int i = 0; i < columnCount; i++) {
@@ -584,9 +910,18 @@ public class Select extends Query {
         }
         if (limitRows >= 0 || offsetExpr != null) {
             result = createLocalResult(result);
+            // the offset and limit are set before adding rows,
+            // so that only the first rows need to be kept when sorting
+            if (offsetExpr != null) {
+                result.setOffset(offsetExpr.getValue(session).getInt());
+            }
+            if (limitRows >= 0) {
+                result.setLimit(limitRows);
+            }
         }
         topTableFilter.startQuery(session);
         topTableFilter.reset();
+        batchPos = batchCount = 0;
         boolean exclusive = isForUpdate && !isForUpdateMvcc;
         if (isForUpdateMvcc) {
             if (isGroupQuery) {
@@ -606,10 +941,16 @@ public class Select extends Query {
         if (limitRows != 0) {
             if (isQuickAggregateQuery) {
                 queryQuick(columnCount, to);
+            } else if (isBitmapCountQuery && queryBitmapCount(columnCount, to)) {
+                // the row count was calculated using the bitmap indexes
             } else if (isGroupQuery) {
-                if (isGroupSortedQuery) {
+                if (isParallelQuery && queryGroupParallel(columnCount, result)) {
+                    // the rows were processed by multiple threads
+                } else if (isVectorAggregate) {
+                    queryGroupVector(columnCount, result);
+                } else if (isGroupSortedQuery) {
                     queryGroupSorted(columnCount, to);
-                } else {
+                } else if (groupBitmapIndex == null || !queryGroupBitmap(columnCount, result)) {
                     queryGroup(columnCount, result);
                 }
             } else if (isDistinctQuery) {
@@ -618,12 +959,6 @@ public class Select extends Query {
                 queryFlat(columnCount, to, limitRows);
             }
         }
-        if (offsetExpr != null) {
-            result.setOffset(offsetExpr.getValue(session).getInt());
-        }
-        if (limitRows >= 0) {
-            result.setLimit(limitRows);
-        }
         if (result != null) {
             result.done();
             if (target != null) {
@@ -821,6 +1156,10 @@ public class Select extends Query {
             }
         }
         cost = preparePlan();
+        if (isGroupQuery && groupIndex == null && havingIndex < 0 && filters.size() == 1 &&
+                condition != null && topTableFilter.getBitmapCondition() != null) {
+            isBitmapCountQuery = isCountAllQuery(-1);
+        }
         if (distinct && session.getDatabase().getSettings().optimizeDistinct &&
                 !isGroupQuery && filters.size() == 1 &&
                 expressions.size() == 1 && condition == null) {
@@ -885,11 +1224,86 @@ public class Select extends Query {
                 isGroupSortedQuery = true;
             }
         }
+        if (isGroupQuery && !isGroupSortedQuery && !isQuickAggregateQuery && !isBitmapCountQuery &&
+                filters.size() == 1) {
+            BitmapIndex index = getGroupBitmapIndex();
+            if (index != null) {
+                BitmapCondition bitmapCondition = topTableFilter.getBitmapCondition();
+                if (bitmapCondition == null && condition != null) {
+                    bitmapCondition = condition.createBitmapCondition(topTableFilter);
+                }
+                boolean countOnly = havingIndex < 0 && isCountAllQuery(groupIndex[0]) &&
+                        (condition == null || bitmapCondition != null && bitmapCondition.isExact());
+                if (condition == null ? countOnly : bitmapCondition != null) {
+                    // otherwise, reading all rows in the order of the table is faster
+                    groupBitmapIndex = index;
+                    groupBitmapCondition = bitmapCondition;
+                    isGroupBitmapCount = countOnly;
+                }
+            }
+        }
+        prepareVector();
         expressionArray = new Expression[expressions.size()];
         expressions.toArray(expressionArray);
         isPrepared = true;
     }
 
+    /**
+     * Check whether the rows can be read and filtered in batches. This is
+     * only done for queries on a single table, if at least part of the
+     * condition or all aggregates can be evaluated for many rows at once.
+     */
+    private void prepareVector() {
+        DbSettings settings = session.getDatabase().getSettings();
+        int vectorSize = settings.vectorSize;
+        if (vectorSize <= 0 || isQuickAggregateQuery || isForUpdate || filters.size() != 1 ||
+                !(topTableFilter.getTable() instanceof RegularTable)) {
+            return;
+        }
+        if (condition != null) {
+            if (!condition.isEverything(ExpressionVisitor.DETERMINISTIC_VISITOR)) {
+                return;
+            }
+            vectorCondition = condition.createVectorCondition(topTableFilter);
+        }
+        if (isGroupQuery && sampleSize <= 0 && !isGroupSortedQuery && groupBitmapIndex == null &&
+                isVectorizable()) {
+            isVectorAggregate = groupIndex == null ||
+                    groupIndex.length == 1 && LongKeyGroups.isKeyType(getGroupColumns()[0].getType());
+            isParallelQuery = settings.queryThreads > 1;
+        }
+        isVectorQuery = isVectorAggregate || vectorCondition != null && vectorCondition.isVectorized();
+        if (isVectorQuery) {
+            int columnCount = topTableFilter.getTable().getColumns().length;
+            batch = new RowBatch(vectorSize, columnCount);
+            batchSelection = new int[vectorSize];
+        }
+    }
+
+    /**
+     * Check whether all expressions are either columns of the GROUP BY list,
+     * or aggregates that can be updated for a batch of rows.
+     *
+     * @return true if they are
+     */
+    private boolean isVectorizable() {
+        for (int i = 0, size = expressions.size(); i < size; i++) {
+            Expression expr = expressions.get(i).getNonAliasExpression();
+            if (groupByExpression != null && groupByExpression[i]) {
+                if (!(expr instanceof ExpressionColumn)) {
+                    return false;
+                }
+                ExpressionColumn col = (ExpressionColumn) expr;
+                if (col.getTableFilter() != topTableFilter || col.getColumn().getColumnId() < 0) {
+                    return false;
+                }
+            } else if (!(expr instanceof Aggregate) || !((Aggregate) expr).isVectorizable(topTableFilter)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public double getCost() {
         return cost;
     }
@@ -926,6 +1340,26 @@ public class Select extends Query {
         return planCost;
     }
 
+    /**
+     * Check if all expressions are COUNT(*), except for the expression at the
+     * given position.
+     *
+     * @param except the position of the expression to skip, or -1
+     * @return true if they are
+     */
+    private boolean isCountAllQuery(int except) {
+        for (int i = 0, size = expressions.size(); i < size; i++) {
+            if (i == except) {
+                continue;
+            }
+            Expression e = expressions.get(i).getNonAliasExpression();
+            if (!(e instanceof Aggregate) || ((Aggregate) e).getAggregateType() != Aggregate.COUNT_ALL) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void setEvaluatableRecursive(TableFilter f) {
         for (; f != null; f = f.getJoin()) {
             f.setEvaluatable(f, true);
@@ -1067,6 +1501,9 @@ public class Select extends Query {
         if (isQuickAggregateQuery) {
             buff.append("\n/* direct lookup */");
         }
+        if (isBitmapCountQuery) {
+            buff.append("\n/* bitmap count */");
+        }
         if (isDistinctQuery) {
             buff.append("\n/* distinct */");
         }
@@ -1076,6 +1513,9 @@ public class Select extends Query {
         if (isGroupQuery) {
             if (isGroupSortedQuery) {
                 buff.append("\n/* group sorted */");
+            } else if (groupBitmapIndex != null) {
+                buff.append("\n/* group bitmap: ").append(groupBitmapIndex.getSQL());
+                buff.append(isGroupBitmapCount ? " count */" : " */");
             }
         }
         // buff.append("\n/* cost: " + cost + " */");
@@ -175,6 +175,17 @@ public class SelectUnion extends Query {
         default:
             DbException.throwInternalError("type=" + unionType);
         }
+        // the offset and limit are set before adding rows,
+        // so that only the first rows need to be kept when sorting
+        if (offsetExpr != null) {
+            result.setOffset(offsetExpr.getValue(session).getInt());
+        }
+        if (limitExpr != null) {
+            Value v = limitExpr.getValue(session);
+            if (v != ValueNull.INSTANCE) {
+                result.setLimit(v.getInt());
+            }
+        }
         ResultInterface l = left.query(0);
         ResultInterface r = right.query(0);
         l.reset();
@@ -217,15 +228,6 @@ public class SelectUnion extends Query {
         default:
             DbException.throwInternalError("type=" + unionType);
         }
-        if (offsetExpr != null) {
-            result.setOffset(offsetExpr.getValue(session).getInt());
-        }
-        if (limitExpr != null) {
-            Value v = limitExpr.getValue(session);
-            if (v != ValueNull.INSTANCE) {
-                result.setLimit(v.getInt());
-            }
-        }
         result.done();
         if (target != null) {
             while (result.next()) {
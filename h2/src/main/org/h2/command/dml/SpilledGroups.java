@@ -0,0 +1,245 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.dml;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import org.h2.constant.ErrorCode;
+import org.h2.engine.Session;
+import org.h2.expression.Aggregate;
+import org.h2.expression.Expression;
+import org.h2.expression.ExpressionColumn;
+import org.h2.message.DbException;
+import org.h2.result.ResultDiskBuffer;
+import org.h2.util.New;
+import org.h2.util.ValueHashMap;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+import org.h2.value.ValueNull;
+
+/**
+ * The groups of a GROUP BY query that don't fit in memory. When there are too
+ * many groups, the groups are written to temporary files, partitioned by the
+ * hash code of the group key, and the caller starts with an empty map. Only
+ * the intermediate results of the aggregates are written, so the same group
+ * may be written multiple times. At the end, the groups of each partition are
+ * read and merged. If a partition still contains too many groups, it is
+ * partitioned again using other bits of the hash code.
+ */
+class SpilledGroups {
+
+    private static final int PARTITION_BITS = 4;
+    private static final int PARTITIONS = 1 << PARTITION_BITS;
+    private static final int MAX_LEVEL = 32 / PARTITION_BITS - 1;
+
+    private final Session session;
+    private final int maxMemoryRows;
+
+    /**
+     * The expressions of the intermediate results. The list is shared by all
+     * levels, and only grows.
+     */
+    private final ArrayList<Expression> expressions;
+
+    private final int level;
+    private final ResultDiskBuffer[] buffers = new ResultDiskBuffer[PARTITIONS];
+    private final int[] rowCounts = new int[PARTITIONS];
+    private int nextPartition;
+    private SpilledGroups child;
+
+    /**
+     * Create a new object.
+     *
+     * @param session the session
+     */
+    SpilledGroups(Session session) {
+        this(session, New.<Expression>arrayList(), 0);
+    }
+
+    private SpilledGroups(Session session, ArrayList<Expression> expressions, int level) {
+        this.session = session;
+        this.maxMemoryRows = session.getDatabase().getMaxMemoryRows();
+        this.expressions = expressions;
+        this.level = level;
+    }
+
+    /**
+     * Check whether the intermediate results of all expressions of the group
+     * can be written and merged later.
+     *
+     * @param group the group
+     * @return true if yes
+     */
+    static boolean canSpill(HashMap<Expression, Object> group) {
+        for (Expression expr : group.keySet()) {
+            if (expr instanceof Aggregate) {
+                if (!((Aggregate) expr).isMergeable()) {
+                    return false;
+                }
+            } else if (!(expr instanceof ExpressionColumn)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write the groups to the partitions. The caller should continue with an
+     * empty map.
+     *
+     * @param groups the groups
+     */
+    void write(ValueHashMap<HashMap<Expression, Object>> groups) {
+        ArrayList<ArrayList<Value[]>> partitions = New.arrayList();
+        for (int i = 0; i < PARTITIONS; i++) {
+            partitions.add(New.<Value[]>arrayList());
+        }
+        for (Value key : groups.keys()) {
+            HashMap<Expression, Object> group = groups.get(key);
+            Value[] states = new Value[expressions.size() + group.size()];
+            int len = 0;
+            for (Map.Entry<Expression, Object> e : group.entrySet()) {
+                Expression expr = e.getKey();
+                int index = expressions.indexOf(expr);
+                if (index < 0) {
+                    index = expressions.size();
+                    expressions.add(expr);
+                }
+                Value state;
+                if (expr instanceof Aggregate) {
+                    state = ((Aggregate) expr).getAggregateState(group);
+                } else {
+                    state = ValueArray.get(new Value[] { (Value) e.getValue() });
+                }
+                states[index] = state;
+                len = Math.max(len, index + 1);
+            }
+            Value[] list = new Value[len];
+            for (int i = 0; i < len; i++) {
+                list[i] = states[i] == null ? ValueNull.INSTANCE : states[i];
+            }
+            partitions.get(getPartition(key)).add(new Value[] { key, ValueArray.get(list) });
+        }
+        for (int i = 0; i < PARTITIONS; i++) {
+            ArrayList<Value[]> rows = partitions.get(i);
+            if (rows.size() == 0) {
+                continue;
+            }
+            if (buffers[i] == null) {
+                buffers[i] = new ResultDiskBuffer(session, null, 2);
+            }
+            buffers[i].addRows(rows);
+            rowCounts[i] += rows.size();
+        }
+    }
+
+    private int getPartition(Value key) {
+        int h = key.hashCode();
+        // mix the bits, so that the partitions of each level are independent
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return (h >>> (level * PARTITION_BITS)) & (PARTITIONS - 1);
+    }
+
+    /**
+     * Read and merge the groups of the next partition. This method must not be
+     * called before all groups are written.
+     *
+     * @return the groups, or null if all partitions were read
+     */
+    ValueHashMap<HashMap<Expression, Object>> next() {
+        while (true) {
+            if (child != null) {
+                ValueHashMap<HashMap<Expression, Object>> groups = child.next();
+                if (groups != null) {
+                    return groups;
+                }
+                child.close();
+                child = null;
+            }
+            if (nextPartition >= PARTITIONS) {
+                return null;
+            }
+            int p = nextPartition++;
+            ResultDiskBuffer buffer = buffers[p];
+            if (buffer == null) {
+                continue;
+            }
+            ValueHashMap<HashMap<Expression, Object>> groups = read(buffer, rowCounts[p]);
+            buffer.close();
+            buffers[p] = null;
+            if (groups != null) {
+                return groups;
+            }
+        }
+    }
+
+    private ValueHashMap<HashMap<Expression, Object>> read(ResultDiskBuffer buffer, int rowCount) {
+        buffer.done();
+        ValueHashMap<HashMap<Expression, Object>> groups = ValueHashMap.newInstance();
+        for (int i = 0; i < rowCount; i++) {
+            Value[] row = buffer.next();
+            HashMap<Expression, Object> group = groups.get(row[0]);
+            if (group == null) {
+                group = new HashMap<Expression, Object>();
+                groups.put(row[0], group);
+            }
+            merge(group, ((ValueArray) row[1]).getList());
+            if (groups.size() > maxMemoryRows && level < MAX_LEVEL) {
+                if (child == null) {
+                    child = new SpilledGroups(session, expressions, level + 1);
+                }
+                child.write(groups);
+                groups = ValueHashMap.newInstance();
+            }
+        }
+        if (child != null) {
+            child.write(groups);
+            return null;
+        }
+        return groups;
+    }
+
+    private void merge(HashMap<Expression, Object> group, Value[] states) {
+        for (int i = 0; i < states.length; i++) {
+            Expression expr = expressions.get(i);
+            Value state = states[i];
+            if (expr instanceof Aggregate) {
+                ((Aggregate) expr).mergeAggregateState(session, group, state);
+            } else if (state != ValueNull.INSTANCE) {
+                Value v = ((ValueArray) state).getList()[0];
+                Value old = (Value) group.get(expr);
+                if (old == null) {
+                    group.put(expr, v);
+                } else if (!session.getDatabase().areEqual(old, v)) {
+                    throw DbException.get(ErrorCode.MUST_GROUP_BY_COLUMN_1, expr.getSQL());
+                }
+            }
+        }
+    }
+
+    /**
+     * Close all temporary files.
+     */
+    void close() {
+        if (child != null) {
+            child.close();
+            child = null;
+        }
+        for (int i = 0; i < PARTITIONS; i++) {
+            if (buffers[i] != null) {
+                buffers[i].close();
+                buffers[i] = null;
+            }
+        }
+    }
+
+}
@@ -176,6 +176,7 @@ public class Update extends Prepared {
             condition.mapColumns(tableFilter, 0);
             condition = condition.optimize(session);
             condition.createIndexConditions(session, tableFilter);
+            tableFilter.setFullCondition(condition);
         }
         for (int i = 0, size = columns.size(); i < size; i++) {
             Column c = columns.get(i);
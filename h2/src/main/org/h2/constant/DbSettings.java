@@ -55,6 +55,25 @@ public class DbSettings extends SettingsBase {
      */
     public final int analyzeSample = get("ANALYZE_SAMPLE", 10000);
 
+    /**
+     * Database setting <code>COMMIT_SYNC_BATCH</code> (default: 64).<br />
+     * The maximum number of commits that are synced at once (see also
+     * COMMIT_SYNC_DELAY). When this many commits are waiting, the transaction
+     * log is synced immediately.
+     */
+    public final int commitSyncBatch = get("COMMIT_SYNC_BATCH", 64);
+
+    /**
+     * Database setting <code>COMMIT_SYNC_DELAY</code> (default: -1).<br />
+     * If set to 0 or more, a commit only returns after the transaction log was
+     * written and synced to disk. When using multiple threads, the commits of
+     * concurrent sessions are collected and synced together by a log sync
+     * thread. This is the maximum time in microseconds the log sync thread
+     * waits for more commits before syncing. -1 means commits are not synced
+     * (the transaction log is synced on checkpoint).
+     */
+    public final int commitSyncDelay = get("COMMIT_SYNC_DELAY", -1);
+
     /**
      * Database setting <code>DATABASE_TO_UPPER</code> (default: true).<br />
      * Database short names are converted to uppercase for the DATABASE()
@@ -125,6 +144,14 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean functionsInSchema = get("FUNCTIONS_IN_SCHEMA", true);
 
+    /**
+     * Database setting <code>HASH_JOIN</code> (default: false).<br />
+     * Join a table on columns that are compared for equality but not indexed
+     * by reading the table once into a hash map, instead of scanning the
+     * table for each row of the outer tables.
+     */
+    public final boolean hashJoin = get("HASH_JOIN", false);
+
     /**
      * Database setting <code>LARGE_RESULT_BUFFER_SIZE</code> (default: 4096).<br />
      * Buffer size for large result sets. Set this value to 0 to disable the
@@ -168,12 +195,32 @@ public class DbSettings extends SettingsBase {
      */
     public int maxQueryTimeout = get("MAX_QUERY_TIMEOUT", 0);
 
+    /**
+     * Database setting <code>MERGE_JOIN</code> (default: false).<br />
+     * Join a table using an index that starts with the join column, if the
+     * outer table is read in the order of this column, by reading the index
+     * once from the start to the end instead of searching it for each row of
+     * the outer table.
+     */
+    public final boolean mergeJoin = get("MERGE_JOIN", false);
+
     /**
      * Database setting <code>NESTED_JOINS</code> (default: true).<br />
      * Whether nested joins should be supported.
      */
     public final boolean nestedJoins = get("NESTED_JOINS", true);
 
+    /**
+     * Database setting <code>OPTIMIZE_BITMAP</code> (default: true).<br />
+     * Combine the bitmap indexes of multiple conditions of a table
+     * using AND, OR, and NOT, so that only the matching rows are read. This
+     * also enables COUNT(*) and GROUP BY using the bit sets of bitmap indexes.
+     * These optimizations are not used with multi-version concurrency (MVCC),
+     * because the bit sets also contain the uncommitted rows of other
+     * sessions; bitmap indexes are then only used like other indexes.
+     */
+    public final boolean optimizeBitmap = get("OPTIMIZE_BITMAP", true);
+
     /**
      * Database setting <code>OPTIMIZE_DISTINCT</code> (default: true).<br />
      * Improve the performance of simple DISTINCT queries if an index is
@@ -250,6 +297,17 @@ public class DbSettings extends SettingsBase {
      */
     public final int pageStoreMaxGrowth = get("PAGE_STORE_MAX_GROWTH", 128 * 1024);
 
+    /**
+     * Database setting <code>PAGE_STORE_INDEX_FILL_FACTOR</code>
+     * (default: 0).<br />
+     * When creating an index on a table that already contains rows, sort the
+     * rows first and then build the index pages from the leaves upwards. Each
+     * page is filled up to the given percentage of the page size, so that
+     * later inserts don't need to split pages at once. 0 means the rows are
+     * added to the index one at a time.
+     */
+    public final int pageStoreIndexFillFactor = get("PAGE_STORE_INDEX_FILL_FACTOR", 0);
+
     /**
      * Database setting <code>PAGE_STORE_INTERNAL_COUNT</code>
      * (default: false).<br />
@@ -257,12 +315,40 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean pageStoreInternalCount = get("PAGE_STORE_INTERNAL_COUNT", false);
 
+    /**
+     * Database setting <code>PAGE_STORE_MAPPED</code> (default: false).<br />
+     * Read the pages of the database file using memory mapped buffers instead
+     * of reading them from the file. Pages are still written to the file. This
+     * is ignored for encrypted databases, and if the file system does not
+     * support memory mapping.
+     */
+    public final boolean pageStoreMapped = get("PAGE_STORE_MAPPED", false);
+
+    /**
+     * Database setting <code>PAGE_STORE_READ_AHEAD</code> (default: 0).<br />
+     * The number of leaf pages a table or index scan reads ahead. The pages
+     * are read by a background thread and kept in memory until the scan needs
+     * them, so that the scan doesn't have to wait for each read. 0 disables
+     * read-ahead.
+     */
+    public final int pageStoreReadAhead = get("PAGE_STORE_READ_AHEAD", 0);
+
     /**
      * Database setting <code>PAGE_STORE_TRIM</code> (default: true).<br />
      * Trim the database size when closing.
      */
     public final boolean pageStoreTrim = get("PAGE_STORE_TRIM", true);
 
+    /**
+     * Database setting <code>PAGE_STORE_ZONE_MAPS</code> (default: false).<br />
+     * Keep the smallest and largest value of columns for each data leaf page
+     * in memory, so that table scans with a range condition on a column can
+     * skip pages that can't contain matching rows. A column of a page is
+     * summarized when a scan with a range condition on it first reads the
+     * page.
+     */
+    public final boolean pageStoreZoneMaps = get("PAGE_STORE_ZONE_MAPS", false);
+
     /**
      * Database setting <code>QUERY_CACHE_SIZE</code> (default: 8).<br />
      * The size of the query cache. Each session has it's own cache with the
@@ -273,6 +359,19 @@ public class DbSettings extends SettingsBase {
      */
     public final int queryCacheSize = get("QUERY_CACHE_SIZE", 8);
 
+    /**
+     * Database setting <code>QUERY_THREADS</code> (default: 1).<br />
+     * The maximum number of threads used to filter and aggregate the rows of
+     * a large table in a single query, and to sort the rows of a result that
+     * doesn't fit in memory. The rows are still read by one thread. Filtering
+     * and aggregating in multiple threads is only used for aggregate queries
+     * on a single table where the condition and all aggregates can be
+     * evaluated in batches (see also VECTOR_SIZE). Sorting in multiple threads
+     * is only used if strings are compared without collation. The threads are
+     * shared by all sessions. 1 disables these optimizations.
+     */
+    public final int queryThreads = get("QUERY_THREADS", 1);
+
     /**
      * Database setting <code>RECOMPILE_ALWAYS</code> (default: false).<br />
      * Always recompile prepared statements.
@@ -311,6 +410,15 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean shareLinkedConnections = get("SHARE_LINKED_CONNECTIONS", true);
 
+    /**
+     * Database setting <code>VECTOR_SIZE</code> (default: 0).<br />
+     * The number of rows that are read and filtered at once when querying a
+     * single table, if the condition or the aggregates can be evaluated for
+     * many rows at once. The rows are still read one by one; 1024 is a good
+     * value to use. 0 disables this optimization.
+     */
+    public final int vectorSize = get("VECTOR_SIZE", 0);
+
     private DbSettings(HashMap<String, String> s) {
         super(s);
     }
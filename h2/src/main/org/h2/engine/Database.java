@@ -60,6 +60,7 @@ import org.h2.util.SmallLRUCache;
 import org.h2.util.SourceCompiler;
 import org.h2.util.StringUtils;
 import org.h2.util.TempFileDeleter;
+import org.h2.util.ThreadPool;
 import org.h2.util.Utils;
 import org.h2.value.CaseInsensitiveMap;
 import org.h2.value.CompareMode;
@@ -115,6 +116,7 @@ public class Database implements DataHandler {
     private Index metaIdIndex;
     private FileLock lock;
     private WriterThread writer;
+    private ThreadPool queryThreadPool;
     private boolean starting;
     private TraceSystem traceSystem;
     private Trace trace;
@@ -1079,6 +1081,9 @@ public class Database implements DataHandler {
             return;
         }
         closing = true;
+        // the sessions are closed, so the exclusive mode (if enabled) must not
+        // block the system session
+        exclusiveSession = null;
         stopServer();
         if (userSessions.size() > 0) {
             if (!fromShutdownHook) {
@@ -1759,15 +1764,33 @@ public class Database implements DataHandler {
      * Commit the current transaction of the given session.
      *
      * @param session the session
+     * @return the position of the transaction log the session needs to wait
+     *         for using waitForLogSync, or 0
      */
-    synchronized void commit(Session session) {
+    synchronized long commit(Session session) {
         if (readOnly) {
-            return;
+            return 0;
         }
+        long syncPos = 0;
         if (pageStore != null) {
-            pageStore.commit(session);
+            syncPos = pageStore.commit(session);
         }
         session.setAllCommitted();
+        return syncPos;
+    }
+
+    /**
+     * Wait until the transaction log is synced up to the given position. This
+     * method is called after the session released its locks, so that other
+     * sessions can commit in the meantime.
+     *
+     * @param syncPos the position returned by commit
+     */
+    void waitForLogSync(long syncPos) {
+        PageStore store = pageStore;
+        if (store != null) {
+            store.waitForLogSync(syncPos);
+        }
     }
 
     /**
@@ -1780,6 +1803,19 @@ public class Database implements DataHandler {
         pageStore.flushLog();
     }
 
+    /**
+     * Write some of the changed pages in the background, so that checkpoints
+     * have less to write. Like flush, this method locks the database, so that
+     * pages are not changed by other sessions while they are written.
+     */
+    public synchronized void writeBackChanged() {
+        PageStore store = pageStore;
+        if (readOnly || store == null) {
+            return;
+        }
+        store.writeBackChanged();
+    }
+
     public void setEventListener(DatabaseEventListener eventListener) {
         this.eventListener = eventListener;
     }
@@ -2371,6 +2407,19 @@ public class Database implements DataHandler {
         return dbSettings;
     }
 
+    /**
+     * Get the thread pool for the worker threads of queries. The pool is
+     * shared by all sessions and contains at most QUERY_THREADS threads.
+     *
+     * @return the thread pool
+     */
+    public synchronized ThreadPool getQueryThreadPool() {
+        if (queryThreadPool == null) {
+            queryThreadPool = new ThreadPool("H2 Query Worker " + getShortName(), dbSettings.queryThreads);
+        }
+        return queryThreadPool;
+    }
+
     /**
      * Create a new hash map. Depending on the configuration, the key is case
      * sensitive or case insensitive.
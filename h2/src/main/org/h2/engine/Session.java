@@ -444,10 +444,11 @@ public class Session extends SessionWithState {
         checkCommitRollback();
         currentTransactionName = null;
         transactionStart = 0;
+        long syncPos = 0;
         if (containsUncommitted()) {
             // need to commit even if rollback is not possible
             // (create/drop table and so on)
-            database.commit(this);
+            syncPos = database.commit(this);
         }
         if (undoLog.size() > 0) {
             // commit the rows when using MVCC
@@ -488,6 +489,11 @@ public class Session extends SessionWithState {
             unlinkLobMap = null;
         }
         unlockAll();
+        if (syncPos != 0) {
+            // wait after unlocking, so that concurrent
+            // commits can be synced together
+            database.waitForLogSync(syncPos);
+        }
     }
 
     private void checkCommitRollback() {
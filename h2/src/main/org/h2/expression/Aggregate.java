@@ -13,10 +13,12 @@ import java.util.HashMap;
 import org.h2.command.dml.Select;
 import org.h2.command.dml.SelectOrderBy;
 import org.h2.constant.ErrorCode;
+import org.h2.engine.Database;
 import org.h2.engine.Session;
 import org.h2.index.Cursor;
 import org.h2.index.Index;
 import org.h2.message.DbException;
+import org.h2.result.RowBatch;
 import org.h2.result.SearchRow;
 import org.h2.result.SortOrder;
 import org.h2.table.Column;
@@ -261,6 +263,246 @@ public class Aggregate extends Expression {
         data.add(session.getDatabase(), distinct, v);
     }
 
+    /**
+     * Check whether this aggregate can be updated for a batch of rows of the
+     * given table filter at once.
+     *
+     * @param filter the table filter
+     * @return true if it can
+     */
+    public boolean isVectorizable(TableFilter filter) {
+        if (distinct) {
+            return false;
+        } else if (type == COUNT_ALL) {
+            return true;
+        } else if (!(on instanceof ExpressionColumn) || ((ExpressionColumn) on).getTableFilter() != filter) {
+            return false;
+        }
+        Column column = ((ExpressionColumn) on).getColumn();
+        if (column.getColumnId() < 0) {
+            return false;
+        }
+        int t = column.getType();
+        switch (type) {
+        case COUNT:
+            return true;
+        case SUM:
+        case AVG:
+            // the sum of a batch can not overflow
+            return t == Value.BYTE || t == Value.SHORT || t == Value.INT;
+        case MIN:
+        case MAX:
+            return DataType.isIntegerType(t) || t == Value.DOUBLE;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Update the aggregate for the selected rows of a batch. This is only
+     * supported if isVectorizable returned true.
+     *
+     * @param session the session
+     * @param batch the batch
+     * @param sel the positions of the selected rows
+     * @param count the number of selected rows
+     */
+    public void updateAggregate(Session session, RowBatch batch, int[] sel, int count) {
+        HashMap<Expression, Object> group = select.getCurrentGroup();
+        int groupRowId = select.getCurrentGroupRowId();
+        if (lastGroupRowId == groupRowId) {
+            // already visited
+            return;
+        }
+        lastGroupRowId = groupRowId;
+        updateAggregate(session, group, batch, sel, count);
+    }
+
+    /**
+     * Update the aggregate of the given group for the selected rows of a
+     * batch. This is only supported if isVectorizable returned true. This
+     * method doesn't change the state of the select statement, so it can be
+     * called by multiple threads for different groups.
+     *
+     * @param session the session
+     * @param group the group
+     * @param batch the batch
+     * @param sel the positions of the selected rows
+     * @param count the number of selected rows
+     */
+    public void updateAggregate(Session session, HashMap<Expression, Object> group, RowBatch batch,
+            int[] sel, int count) {
+        AggregateData data = (AggregateData) group.get(this);
+        if (data == null) {
+            data = new AggregateData(type, dataType);
+            group.put(this, data);
+        }
+        Database db = session.getDatabase();
+        if (type == COUNT_ALL) {
+            data.add(db, count, null);
+            return;
+        }
+        Column column = ((ExpressionColumn) on).getColumn();
+        int columnId = column.getColumnId();
+        if (type == COUNT) {
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                if (batch.getValue(sel[i], columnId) != ValueNull.INSTANCE) {
+                    n++;
+                }
+            }
+            data.add(db, n, null);
+        } else if (column.getType() == Value.DOUBLE) {
+            double[] values = batch.getDoubles(columnId);
+            boolean[] nulls = batch.getNulls(columnId);
+            int n = 0, best = -1;
+            for (int i = 0; i < count; i++) {
+                int r = sel[i];
+                if (!nulls[r]) {
+                    n++;
+                    if (best < 0) {
+                        best = r;
+                    } else {
+                        int comp = Double.compare(values[r], values[best]);
+                        if (type == MIN ? comp < 0 : comp > 0) {
+                            best = r;
+                        }
+                    }
+                }
+            }
+            if (n > 0) {
+                data.add(db, n, batch.getValue(best, columnId));
+            }
+        } else {
+            long[] values = batch.getLongs(columnId);
+            boolean[] nulls = batch.getNulls(columnId);
+            int n = 0, best = -1;
+            long sum = 0;
+            for (int i = 0; i < count; i++) {
+                int r = sel[i];
+                if (!nulls[r]) {
+                    n++;
+                    long x = values[r];
+                    sum += x;
+                    if (best < 0 || (type == MIN ? x < values[best] : x > values[best])) {
+                        best = r;
+                    }
+                }
+            }
+            if (n > 0) {
+                Value v = type == SUM || type == AVG ? ValueLong.get(sum) : batch.getValue(best, columnId);
+                data.add(db, n, v);
+            }
+        }
+    }
+
+    /**
+     * Get the column of an aggregate that can be updated in batches.
+     *
+     * @return the column, or null for COUNT(*)
+     */
+    Column getBatchColumn() {
+        return type == COUNT_ALL ? null : ((ExpressionColumn) on).getColumn();
+    }
+
+    /**
+     * Add the result of a number of rows to the aggregate of the given group.
+     * This is only supported if isVectorizable returned true.
+     *
+     * @param database the database
+     * @param group the group
+     * @param rows the number of rows (COUNT(*)) or values that are not NULL
+     * @param v the sum (SUM and AVG), the smallest value (MIN), the largest
+     *            value (MAX), or null (COUNT)
+     */
+    void addAggregate(Database database, HashMap<Expression, Object> group, long rows, Value v) {
+        AggregateData data = (AggregateData) group.get(this);
+        if (data == null) {
+            data = new AggregateData(type, dataType);
+            group.put(this, data);
+        }
+        data.add(database, rows, v);
+    }
+
+    /**
+     * Add the aggregate of another group to the aggregate of this group. This
+     * is only supported if isVectorizable returned true.
+     *
+     * @param session the session
+     * @param group the target group
+     * @param other the group to add
+     */
+    public void mergeAggregate(Session session, HashMap<Expression, Object> group,
+            HashMap<Expression, Object> other) {
+        AggregateData o = (AggregateData) other.get(this);
+        if (o == null) {
+            return;
+        }
+        AggregateData data = (AggregateData) group.get(this);
+        if (data == null) {
+            group.put(this, o);
+        } else {
+            data.merge(session.getDatabase(), o);
+        }
+    }
+
+    /**
+     * Check whether the intermediate result of this aggregate can be stored
+     * as a value and merged later.
+     *
+     * @return true if it can
+     */
+    public boolean isMergeable() {
+        if (distinct) {
+            return false;
+        }
+        switch (type) {
+        case COUNT_ALL:
+        case COUNT:
+        case SUM:
+        case AVG:
+        case MIN:
+        case MAX:
+        case BOOL_AND:
+        case BOOL_OR:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Get the intermediate result of this aggregate for the given group. This
+     * is only supported if isMergeable returned true.
+     *
+     * @param group the group
+     * @return the intermediate result
+     */
+    public Value getAggregateState(HashMap<Expression, Object> group) {
+        AggregateData data = (AggregateData) group.get(this);
+        return data == null ? ValueNull.INSTANCE : data.getState();
+    }
+
+    /**
+     * Add an intermediate result (as returned by getAggregateState) to the
+     * aggregate of the given group.
+     *
+     * @param session the session
+     * @param group the target group
+     * @param state the intermediate result
+     */
+    public void mergeAggregateState(Session session, HashMap<Expression, Object> group, Value state) {
+        if (state == ValueNull.INSTANCE) {
+            return;
+        }
+        AggregateData data = (AggregateData) group.get(this);
+        if (data == null) {
+            data = new AggregateData(type, dataType);
+            group.put(this, data);
+        }
+        data.mergeState(session.getDatabase(), state);
+    }
+
     public Value getValue(Session session) {
         if (select.isQuickAggregateQuery()) {
             switch (type) {
@@ -339,6 +581,15 @@ public class Aggregate extends Expression {
         return dataType;
     }
 
+    /**
+     * Get the aggregate type, for example COUNT_ALL.
+     *
+     * @return the aggregate type
+     */
+    public int getAggregateType() {
+        return type;
+    }
+
     public void mapColumns(ColumnResolver resolver, int level) {
         if (on != null) {
             on.mapColumns(resolver, level);
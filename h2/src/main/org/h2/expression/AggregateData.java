@@ -171,6 +171,57 @@ class AggregateData {
         }
     }
 
+    /**
+     * Add a number of values at once.
+     *
+     * @param database the database
+     * @param rows the number of rows (for COUNT and COUNT(*)), or the number
+     *            of values that are not NULL
+     * @param v the sum of the values (for SUM and AVG), the smallest value
+     *            (MIN), the largest value (MAX), or null for COUNT
+     */
+    void add(Database database, long rows, Value v) {
+        if (v == null) {
+            count += rows;
+            return;
+        }
+        count += rows - 1;
+        add(database, false, v);
+    }
+
+    /**
+     * Add the values of another aggregate of the same type. This is only
+     * supported for COUNT, SUM, AVG, MIN, and MAX without DISTINCT.
+     *
+     * @param database the database
+     * @param other the other aggregate
+     */
+    void merge(Database database, AggregateData other) {
+        add(database, other.count, other.value);
+    }
+
+    /**
+     * Get the number of values and the intermediate value, so that they can be
+     * merged later. This is only supported if merge is supported.
+     *
+     * @return an array of the count and the value
+     */
+    Value getState() {
+        return ValueArray.get(new Value[] { ValueLong.get(count), value == null ? ValueNull.INSTANCE : value });
+    }
+
+    /**
+     * Add the values of an intermediate result as returned by getState.
+     *
+     * @param database the database
+     * @param state the intermediate result
+     */
+    void mergeState(Database database, Value state) {
+        Value[] list = ((ValueArray) state).getList();
+        Value v = list[1];
+        add(database, list[0].getLong(), v == ValueNull.INSTANCE ? null : v);
+    }
+
     ArrayList<Value> getList() {
         return list;
     }
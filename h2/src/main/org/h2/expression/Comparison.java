@@ -10,8 +10,10 @@ import java.util.Arrays;
 import org.h2.constant.SysProperties;
 import org.h2.engine.Database;
 import org.h2.engine.Session;
+import org.h2.index.BitmapCondition;
 import org.h2.index.IndexCondition;
 import org.h2.message.DbException;
+import org.h2.table.Column;
 import org.h2.table.ColumnResolver;
 import org.h2.table.TableFilter;
 import org.h2.util.New;
@@ -327,6 +329,59 @@ public class Comparison extends Condition {
         return new Comparison(session, type, left, right);
     }
 
+    public BitmapCondition createBitmapCondition(TableFilter filter) {
+        if (!(left instanceof ExpressionColumn)) {
+            return null;
+        }
+        ExpressionColumn l = (ExpressionColumn) left;
+        if (filter != l.getTableFilter()) {
+            return null;
+        }
+        Column column = l.getColumn();
+        switch (compareType) {
+        case EQUAL:
+            return BitmapCondition.get(filter, this, column, right, false, false);
+        case EQUAL_NULL_SAFE:
+            return BitmapCondition.get(filter, this, column, right, false, true);
+        case NOT_EQUAL:
+            return BitmapCondition.get(filter, this, column, right, true, false);
+        case NOT_EQUAL_NULL_SAFE:
+            return BitmapCondition.get(filter, this, column, right, true, true);
+        case IS_NULL:
+            return BitmapCondition.get(filter, this, column, ValueExpression.getNull(), false, true);
+        case IS_NOT_NULL:
+            return BitmapCondition.get(filter, this, column, ValueExpression.getNull(), true, true);
+        default:
+            return null;
+        }
+    }
+
+    public VectorCondition createVectorCondition(TableFilter filter) {
+        if (left instanceof ExpressionColumn && filter == ((ExpressionColumn) left).getTableFilter()) {
+            Column column = ((ExpressionColumn) left).getColumn();
+            switch (compareType) {
+            case IS_NULL:
+            case IS_NOT_NULL:
+                return VectorCondition.getCompare(filter, this, compareType, column, null);
+            case EQUAL:
+            case EQUAL_NULL_SAFE:
+            case NOT_EQUAL:
+            case NOT_EQUAL_NULL_SAFE:
+            case BIGGER_EQUAL:
+            case BIGGER:
+            case SMALLER_EQUAL:
+            case SMALLER:
+                if (right.isConstant() || right instanceof Parameter) {
+                    return VectorCondition.getCompare(filter, this, compareType, column, right);
+                }
+                break;
+            default:
+                break;
+            }
+        }
+        return super.createVectorCondition(filter);
+    }
+
     public void createIndexConditions(Session session, TableFilter filter) {
         ExpressionColumn l = null;
         if (left instanceof ExpressionColumn) {
@@ -8,6 +8,7 @@ package org.h2.expression;
 
 import org.h2.constant.SysProperties;
 import org.h2.engine.Session;
+import org.h2.index.BitmapCondition;
 import org.h2.message.DbException;
 import org.h2.table.ColumnResolver;
 import org.h2.table.TableFilter;
@@ -64,6 +65,24 @@ public class ConditionAndOr extends Condition {
         }
     }
 
+    public BitmapCondition createBitmapCondition(TableFilter filter) {
+        BitmapCondition l = left.createBitmapCondition(filter);
+        BitmapCondition r = right.createBitmapCondition(filter);
+        if (andOrType == AND) {
+            return BitmapCondition.and(l, r);
+        }
+        return BitmapCondition.or(l, r);
+    }
+
+    public VectorCondition createVectorCondition(TableFilter filter) {
+        VectorCondition l = left.createVectorCondition(filter);
+        VectorCondition r = right.createVectorCondition(filter);
+        if (andOrType == AND) {
+            return VectorCondition.and(l, r);
+        }
+        return VectorCondition.or(l, r);
+    }
+
     public Expression getNotIfPossible(Session session) {
         // (NOT (A OR B)): (NOT(A) AND NOT(B))
         // (NOT (A AND B)): (NOT(A) OR NOT(B))
@@ -9,6 +9,7 @@ package org.h2.expression;
 import java.util.ArrayList;
 import org.h2.engine.Database;
 import org.h2.engine.Session;
+import org.h2.index.BitmapCondition;
 import org.h2.index.IndexCondition;
 import org.h2.table.ColumnResolver;
 import org.h2.table.TableFilter;
@@ -121,6 +122,17 @@ public class ConditionIn extends Condition {
         }
     }
 
+    public BitmapCondition createBitmapCondition(TableFilter filter) {
+        if (!(left instanceof ExpressionColumn)) {
+            return null;
+        }
+        ExpressionColumn l = (ExpressionColumn) left;
+        if (filter != l.getTableFilter()) {
+            return null;
+        }
+        return BitmapCondition.getInList(filter, this, l.getColumn(), valueList);
+    }
+
     public void setEvaluatable(TableFilter tableFilter, boolean b) {
         left.setEvaluatable(tableFilter, b);
         for (Expression e : valueList) {
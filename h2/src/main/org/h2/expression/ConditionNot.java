@@ -7,6 +7,7 @@
 package org.h2.expression;
 
 import org.h2.engine.Session;
+import org.h2.index.BitmapCondition;
 import org.h2.table.ColumnResolver;
 import org.h2.table.TableFilter;
 import org.h2.value.Value;
@@ -27,6 +28,10 @@ public class ConditionNot extends Condition {
         return condition;
     }
 
+    public BitmapCondition createBitmapCondition(TableFilter filter) {
+        return BitmapCondition.not(condition.createBitmapCondition(filter));
+    }
+
     public Value getValue(Session session) {
         Value v = condition.getValue(session);
         if (v == ValueNull.INSTANCE) {
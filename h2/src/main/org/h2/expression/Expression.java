@@ -11,6 +11,7 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import org.h2.engine.Database;
 import org.h2.engine.Session;
+import org.h2.index.BitmapCondition;
 import org.h2.message.DbException;
 import org.h2.table.Column;
 import org.h2.table.ColumnResolver;
@@ -190,6 +191,29 @@ public abstract class Expression {
         // default is do nothing
     }
 
+    /**
+     * Create a bitmap condition for this expression, if the bitmap indexes of
+     * the given table filter can be used to find the rows that may match.
+     *
+     * @param filter the table filter
+     * @return the bitmap condition, or null if bitmap indexes can not be used
+     */
+    public BitmapCondition createBitmapCondition(TableFilter filter) {
+        return null;
+    }
+
+    /**
+     * Create a condition that can be evaluated for a batch of rows of the
+     * given table filter at once. By default, the condition is evaluated row
+     * by row.
+     *
+     * @param filter the table filter
+     * @return the vector condition
+     */
+    public VectorCondition createVectorCondition(TableFilter filter) {
+        return VectorCondition.get(filter, this);
+    }
+
     /**
      * Get the column name or alias name of this expression.
      *
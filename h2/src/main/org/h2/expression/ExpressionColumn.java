@@ -13,6 +13,7 @@ import org.h2.command.dml.SelectListColumnResolver;
 import org.h2.constant.ErrorCode;
 import org.h2.engine.Database;
 import org.h2.engine.Session;
+import org.h2.index.BitmapCondition;
 import org.h2.index.IndexCondition;
 import org.h2.message.DbException;
 import org.h2.schema.Constant;
@@ -295,6 +296,15 @@ public class ExpressionColumn extends Expression {
         }
     }
 
+    public BitmapCondition createBitmapCondition(TableFilter filter) {
+        TableFilter tf = getTableFilter();
+        if (filter == tf && column.getType() == Value.BOOLEAN) {
+            return BitmapCondition.get(filter, this, column, ValueExpression.get(ValueBoolean.get(true)), false,
+                    false);
+        }
+        return null;
+    }
+
     public Expression getNotIfPossible(Session session) {
         return new Comparison(session, Comparison.EQUAL, this, ValueExpression.get(ValueBoolean.get(false)));
     }
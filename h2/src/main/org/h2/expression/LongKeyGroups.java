@@ -0,0 +1,403 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import java.util.HashMap;
+import org.h2.constant.ErrorCode;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.result.RowBatch;
+import org.h2.table.Column;
+import org.h2.util.ValueHashMap;
+import org.h2.value.DataType;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+import org.h2.value.ValueDouble;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+
+/**
+ * The groups of an aggregate query that is grouped by one integer column.
+ * The groups are numbered in the order they are found, and the group number
+ * of a key is looked up in a hash table with open addressing and long keys.
+ * The state of the aggregates is kept in arrays of primitive values that are
+ * indexed by the group number, so that no objects are created per row or per
+ * group while the rows are processed. Only COUNT, SUM, AVG, MIN, and MAX
+ * aggregates that can be updated in batches are supported.
+ */
+public class LongKeyGroups {
+
+    private static final int MIN_LENGTH = 16;
+
+    private final int keyColumn;
+    private final int keyType;
+    private final Aggregate[] aggregates;
+    private final int[] types;
+    private final int[] columnIds;
+    private final boolean[] isDouble;
+
+    /**
+     * The hash table: the key, and the group number plus one (0 means the
+     * slot is empty).
+     */
+    private long[] keys;
+    private int[] slots;
+    private int mask;
+
+    /**
+     * The group number of the NULL key, or -1.
+     */
+    private int nullGroup = -1;
+
+    /**
+     * The number of groups.
+     */
+    private int groupCount;
+
+    /**
+     * The key of each group.
+     */
+    private long[] groupKeys;
+
+    /**
+     * The state of each aggregate, by group: the number of values (rows for
+     * COUNT(*)), the sum (SUM and AVG) or the integer result (MIN and MAX),
+     * and the floating point result (MIN and MAX).
+     */
+    private final long[][] counts, longs;
+    private final double[][] doubles;
+
+    /**
+     * The group number of each row of the current batch.
+     */
+    private int[] rowGroups;
+
+    /**
+     * Create a new object.
+     *
+     * @param keyColumn the GROUP BY column
+     * @param aggregates the aggregates
+     */
+    public LongKeyGroups(Column keyColumn, Aggregate[] aggregates) {
+        this.keyColumn = keyColumn.getColumnId();
+        this.keyType = keyColumn.getType();
+        this.aggregates = aggregates;
+        int len = aggregates.length;
+        types = new int[len];
+        columnIds = new int[len];
+        isDouble = new boolean[len];
+        counts = new long[len][];
+        longs = new long[len][];
+        doubles = new double[len][];
+        for (int i = 0; i < len; i++) {
+            Aggregate a = aggregates[i];
+            Column c = a.getBatchColumn();
+            types[i] = a.getAggregateType();
+            columnIds[i] = c == null ? -1 : c.getColumnId();
+            isDouble[i] = c != null && c.getType() == Value.DOUBLE;
+        }
+        keys = new long[MIN_LENGTH];
+        slots = new int[MIN_LENGTH];
+        mask = MIN_LENGTH - 1;
+        setGroupCapacity(MIN_LENGTH);
+    }
+
+    /**
+     * Check whether the values of a column of this type can be used as the
+     * key.
+     *
+     * @param type the data type
+     * @return true if they can
+     */
+    public static boolean isKeyType(int type) {
+        return DataType.isIntegerType(type);
+    }
+
+    /**
+     * Update the aggregates for the selected rows of a batch.
+     *
+     * @param batch the batch
+     * @param sel the positions of the selected rows
+     * @param count the number of selected rows
+     */
+    public void add(RowBatch batch, int[] sel, int count) {
+        if (rowGroups == null || rowGroups.length < batch.getCapacity()) {
+            rowGroups = new int[batch.getCapacity()];
+        }
+        long[] k = batch.getLongs(keyColumn);
+        boolean[] nulls = batch.getNulls(keyColumn);
+        for (int i = 0; i < count; i++) {
+            int r = sel[i];
+            rowGroups[r] = nulls[r] ? getNullGroup() : getGroup(k[r]);
+        }
+        for (int a = 0; a < aggregates.length; a++) {
+            long[] c = counts[a];
+            int type = types[a];
+            if (type == Aggregate.COUNT_ALL) {
+                for (int i = 0; i < count; i++) {
+                    c[rowGroups[sel[i]]]++;
+                }
+            } else if (type == Aggregate.COUNT) {
+                int columnId = columnIds[a];
+                for (int i = 0; i < count; i++) {
+                    int r = sel[i];
+                    if (batch.getValue(r, columnId) != ValueNull.INSTANCE) {
+                        c[rowGroups[r]]++;
+                    }
+                }
+            } else if (isDouble[a]) {
+                addDouble(a, batch, sel, count);
+            } else {
+                addLong(a, batch, sel, count);
+            }
+        }
+    }
+
+    private void addLong(int a, RowBatch batch, int[] sel, int count) {
+        int columnId = columnIds[a];
+        long[] values = batch.getLongs(columnId);
+        boolean[] nulls = batch.getNulls(columnId);
+        long[] c = counts[a];
+        long[] result = longs[a];
+        int type = types[a];
+        for (int i = 0; i < count; i++) {
+            int r = sel[i];
+            if (nulls[r]) {
+                continue;
+            }
+            int g = rowGroups[r];
+            long x = values[r];
+            if (type == Aggregate.SUM || type == Aggregate.AVG) {
+                result[g] = add(result[g], x);
+            } else if (c[g] == 0 || (type == Aggregate.MIN ? x < result[g] : x > result[g])) {
+                result[g] = x;
+            }
+            c[g]++;
+        }
+    }
+
+    /**
+     * Add two values, and check for overflow the same way as
+     * ValueLong.add.
+     *
+     * @param x the first value
+     * @param y the second value
+     * @return the sum
+     * @throws DbException if the result overflows
+     */
+    private static long add(long x, long y) {
+        long result = x + y;
+        int sx = Long.signum(x);
+        int sy = Long.signum(y);
+        if (sx != sy || Long.signum(result) == sy || sx == 0 || sy == 0) {
+            return result;
+        }
+        throw DbException.get(ErrorCode.NUMERIC_VALUE_OUT_OF_RANGE_1, Long.toString(x));
+    }
+
+    private void addDouble(int a, RowBatch batch, int[] sel, int count) {
+        int columnId = columnIds[a];
+        double[] values = batch.getDoubles(columnId);
+        boolean[] nulls = batch.getNulls(columnId);
+        long[] c = counts[a];
+        double[] result = doubles[a];
+        boolean min = types[a] == Aggregate.MIN;
+        for (int i = 0; i < count; i++) {
+            int r = sel[i];
+            if (nulls[r]) {
+                continue;
+            }
+            int g = rowGroups[r];
+            double x = values[r];
+            // use the same ordering as ValueDouble
+            if (c[g] == 0 || (min ? Double.compare(x, result[g]) < 0 : Double.compare(x, result[g]) > 0)) {
+                result[g] = x;
+            }
+            c[g]++;
+        }
+    }
+
+    /**
+     * Add the groups of another object with the same key column and
+     * aggregates.
+     *
+     * @param other the other object
+     */
+    public void merge(LongKeyGroups other) {
+        for (int og = 0; og < other.groupCount; og++) {
+            int g = og == other.nullGroup ? getNullGroup() : getGroup(other.groupKeys[og]);
+            for (int a = 0; a < aggregates.length; a++) {
+                long n = other.counts[a][og];
+                if (n == 0) {
+                    continue;
+                }
+                int type = types[a];
+                long[] c = counts[a];
+                if (type == Aggregate.SUM || type == Aggregate.AVG) {
+                    longs[a][g] = add(longs[a][g], other.longs[a][og]);
+                } else if (type == Aggregate.MIN || type == Aggregate.MAX) {
+                    boolean min = type == Aggregate.MIN;
+                    if (isDouble[a]) {
+                        double x = other.doubles[a][og];
+                        int comp = Double.compare(x, doubles[a][g]);
+                        if (c[g] == 0 || (min ? comp < 0 : comp > 0)) {
+                            doubles[a][g] = x;
+                        }
+                    } else {
+                        long x = other.longs[a][og];
+                        if (c[g] == 0 || (min ? x < longs[a][g] : x > longs[a][g])) {
+                            longs[a][g] = x;
+                        }
+                    }
+                }
+                c[g] += n;
+            }
+        }
+    }
+
+    /**
+     * Convert the groups to the format used by the select statement: one map
+     * per group (from aggregate to aggregate data), by key. The key is an
+     * array with one element.
+     *
+     * @param session the session
+     * @return the groups
+     */
+    public ValueHashMap<HashMap<Expression, Object>> getGroups(Session session) {
+        Database db = session.getDatabase();
+        ValueHashMap<HashMap<Expression, Object>> groups = ValueHashMap.newInstance();
+        for (int g = 0; g < groupCount; g++) {
+            Value k = g == nullGroup ? ValueNull.INSTANCE : ValueLong.get(groupKeys[g]).convertTo(keyType);
+            HashMap<Expression, Object> values = new HashMap<Expression, Object>();
+            for (int a = 0; a < aggregates.length; a++) {
+                long n = counts[a][g];
+                if (n == 0) {
+                    continue;
+                }
+                Value v;
+                switch (types[a]) {
+                case Aggregate.COUNT_ALL:
+                case Aggregate.COUNT:
+                    v = null;
+                    break;
+                case Aggregate.SUM:
+                case Aggregate.AVG:
+                    v = ValueLong.get(longs[a][g]);
+                    break;
+                default:
+                    if (isDouble[a]) {
+                        v = ValueDouble.get(doubles[a][g]);
+                    } else {
+                        v = ValueLong.get(longs[a][g]).convertTo(aggregates[a].getBatchColumn().getType());
+                    }
+                }
+                aggregates[a].addAggregate(db, values, n, v);
+            }
+            groups.put(ValueArray.get(new Value[] { k }), values);
+        }
+        return groups;
+    }
+
+    /**
+     * Get the number of groups.
+     *
+     * @return the number of groups
+     */
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    private int getNullGroup() {
+        if (nullGroup < 0) {
+            nullGroup = addGroup(0);
+        }
+        return nullGroup;
+    }
+
+    private int getGroup(long key) {
+        int index = hash(key) & mask;
+        while (true) {
+            int s = slots[index];
+            if (s == 0) {
+                break;
+            } else if (keys[index] == key) {
+                return s - 1;
+            }
+            index = (index + 1) & mask;
+        }
+        int g = addGroup(key);
+        keys[index] = key;
+        slots[index] = g + 1;
+        // at most 50% of the slots are used
+        if (2 * (groupCount - (nullGroup < 0 ? 0 : 1)) > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return g;
+    }
+
+    private int addGroup(long key) {
+        if (groupCount == groupKeys.length) {
+            setGroupCapacity(groupKeys.length * 2);
+        }
+        groupKeys[groupCount] = key;
+        return groupCount++;
+    }
+
+    private void rehash(int len) {
+        long[] oldKeys = keys;
+        int[] oldSlots = slots;
+        keys = new long[len];
+        slots = new int[len];
+        mask = len - 1;
+        for (int i = 0; i < oldSlots.length; i++) {
+            int s = oldSlots[i];
+            if (s != 0) {
+                long key = oldKeys[i];
+                int index = hash(key) & mask;
+                while (slots[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                slots[index] = s;
+            }
+        }
+    }
+
+    private void setGroupCapacity(int len) {
+        groupKeys = copyOf(groupKeys, len);
+        for (int a = 0; a < aggregates.length; a++) {
+            counts[a] = copyOf(counts[a], len);
+            int type = types[a];
+            if (type != Aggregate.COUNT_ALL && type != Aggregate.COUNT) {
+                if (isDouble[a]) {
+                    double[] d = new double[len];
+                    if (doubles[a] != null) {
+                        System.arraycopy(doubles[a], 0, d, 0, groupCount);
+                    }
+                    doubles[a] = d;
+                } else {
+                    longs[a] = copyOf(longs[a], len);
+                }
+            }
+        }
+    }
+
+    private long[] copyOf(long[] array, int len) {
+        long[] a = new long[len];
+        if (array != null) {
+            System.arraycopy(array, 0, a, 0, groupCount);
+        }
+        return a;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+}
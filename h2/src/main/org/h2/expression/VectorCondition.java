@@ -0,0 +1,427 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import org.h2.engine.Session;
+import org.h2.result.RowBatch;
+import org.h2.table.Column;
+import org.h2.table.TableFilter;
+import org.h2.value.DataType;
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
+
+/**
+ * A condition that is evaluated for a batch of rows at once. Comparisons of
+ * a numeric column with a constant are evaluated in a loop over the primitive
+ * values of the column. Other conditions are evaluated row by row, but only
+ * for the rows that are still selected. An object must only be used by one
+ * thread at a time (see copy).
+ */
+public class VectorCondition {
+
+    /**
+     * A condition evaluated row by row.
+     */
+    private static final int ROW = 0;
+
+    /**
+     * A comparison of a column with a constant or parameter.
+     */
+    private static final int COMPARE = 1;
+
+    /**
+     * Both conditions must be true.
+     */
+    private static final int AND = 2;
+
+    /**
+     * One of the conditions must be true.
+     */
+    private static final int OR = 3;
+
+    private final int type;
+    private final TableFilter filter;
+    private final Expression condition;
+    private final int compareType;
+    private final int columnId;
+    private final boolean isDouble;
+    private final Expression value;
+    private final VectorCondition left, right;
+
+    /**
+     * The rows selected by one of the conditions (OR only), indexed by the
+     * position in the batch. All entries are false between calls.
+     */
+    private boolean[] selected;
+
+    /**
+     * The rows to filter by one of the conditions (OR only).
+     */
+    private int[] rest;
+
+    private VectorCondition(int type, TableFilter filter, Expression condition, int compareType,
+            Column column, Expression value, VectorCondition left, VectorCondition right) {
+        this.type = type;
+        this.filter = filter;
+        this.condition = condition;
+        this.compareType = compareType;
+        this.columnId = column == null ? -1 : column.getColumnId();
+        this.isDouble = column != null && column.getType() == Value.DOUBLE;
+        this.value = value;
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Create a condition that is evaluated row by row.
+     *
+     * @param filter the table filter
+     * @param condition the condition
+     * @return the vector condition
+     */
+    public static VectorCondition get(TableFilter filter, Expression condition) {
+        return new VectorCondition(ROW, filter, condition, 0, null, null, null, null);
+    }
+
+    /**
+     * Create a condition for a comparison of a column with a constant or a
+     * parameter. Only numeric columns are evaluated in a loop, for other
+     * columns a condition that is evaluated row by row is returned.
+     *
+     * @param filter the table filter
+     * @param condition the comparison
+     * @param compareType the compare type
+     * @param column the column
+     * @param value the constant or parameter (null for IS NULL and IS NOT
+     *            NULL)
+     * @return the vector condition
+     */
+    public static VectorCondition getCompare(TableFilter filter, Expression condition, int compareType,
+            Column column, Expression value) {
+        if (column.getColumnId() < 0 || !(DataType.isIntegerType(column.getType()) || column.getType() == Value.DOUBLE)) {
+            return get(filter, condition);
+        }
+        return new VectorCondition(COMPARE, filter, condition, compareType, column, value, null, null);
+    }
+
+    /**
+     * Combine two conditions using AND.
+     *
+     * @param a the first condition
+     * @param b the second condition
+     * @return the combined condition
+     */
+    public static VectorCondition and(VectorCondition a, VectorCondition b) {
+        return new VectorCondition(AND, a.filter, null, 0, null, null, a, b);
+    }
+
+    /**
+     * Combine two conditions using OR.
+     *
+     * @param a the first condition
+     * @param b the second condition
+     * @return the combined condition
+     */
+    public static VectorCondition or(VectorCondition a, VectorCondition b) {
+        return new VectorCondition(OR, a.filter, null, 0, null, null, a, b);
+    }
+
+    /**
+     * Create a copy of this condition that can be used by another thread.
+     *
+     * @return the copy
+     */
+    public VectorCondition copy() {
+        Column column = columnId < 0 ? null : filter.getTable().getColumn(columnId);
+        return new VectorCondition(type, filter, condition, compareType, column, value,
+                left == null ? null : left.copy(), right == null ? null : right.copy());
+    }
+
+    /**
+     * Check whether at least some part of this condition is not evaluated row
+     * by row.
+     *
+     * @return true if it is
+     */
+    public boolean isVectorized() {
+        switch (type) {
+        case COMPARE:
+            return true;
+        case AND:
+        case OR:
+            return left.isVectorized() || right.isVectorized();
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Check whether the whole condition is evaluated on the column arrays for
+     * the current parameter values. Such conditions don't use the table
+     * filter, so that batches can be filtered concurrently.
+     *
+     * @param session the session
+     * @return true if no part of the condition is evaluated row by row
+     */
+    public boolean isComplete(Session session) {
+        switch (type) {
+        case COMPARE:
+            Value v = value == null ? ValueNull.INSTANCE : value.getValue(session);
+            int t = v.getType();
+            return t == Value.NULL || (isDouble ? isNumeric(t) : DataType.isIntegerType(t));
+        case AND:
+        case OR:
+            return left.isComplete(session) && right.isComplete(session);
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Remove the rows that don't match from the list of selected rows. The
+     * order of the remaining rows is kept.
+     *
+     * @param session the session
+     * @param batch the batch
+     * @param sel the positions of the selected rows (ascending)
+     * @param count the number of selected rows
+     * @return the number of remaining rows
+     */
+    public int filter(Session session, RowBatch batch, int[] sel, int count) {
+        switch (type) {
+        case AND:
+            count = left.filter(session, batch, sel, count);
+            return count == 0 ? 0 : right.filter(session, batch, sel, count);
+        case OR:
+            return filterOr(session, batch, sel, count);
+        case COMPARE:
+            Value v = value == null ? ValueNull.INSTANCE : value.getValue(session);
+            if (v == ValueNull.INSTANCE) {
+                return filterNull(batch, sel, count);
+            } else if (isDouble && isNumeric(v.getType())) {
+                return filterDouble(batch, sel, count, v.getDouble());
+            } else if (!isDouble && DataType.isIntegerType(v.getType())) {
+                return filterLong(batch, sel, count, v.getLong());
+            }
+            return filterRows(session, batch, sel, count);
+        default:
+            return filterRows(session, batch, sel, count);
+        }
+    }
+
+    private int filterRows(Session session, RowBatch batch, int[] sel, int count) {
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            int r = sel[i];
+            filter.set(batch.getRow(r));
+            if (Boolean.TRUE.equals(condition.getBooleanValue(session))) {
+                sel[n++] = r;
+            }
+        }
+        return n;
+    }
+
+    private int filterOr(Session session, RowBatch batch, int[] sel, int count) {
+        int capacity = batch.getCapacity();
+        if (selected == null || selected.length < capacity) {
+            selected = new boolean[capacity];
+            rest = new int[capacity];
+        }
+        boolean[] selected = this.selected;
+        int[] rest = this.rest;
+        System.arraycopy(sel, 0, rest, 0, count);
+        int found = left.filter(session, batch, rest, count);
+        for (int i = 0; i < found; i++) {
+            selected[rest[i]] = true;
+        }
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (!selected[sel[i]]) {
+                rest[n++] = sel[i];
+            }
+        }
+        found = right.filter(session, batch, rest, n);
+        for (int i = 0; i < found; i++) {
+            selected[rest[i]] = true;
+        }
+        n = 0;
+        for (int i = 0; i < count; i++) {
+            int r = sel[i];
+            if (selected[r]) {
+                selected[r] = false;
+                sel[n++] = r;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Compare with NULL: only the null-safe comparisons can match.
+     */
+    private int filterNull(RowBatch batch, int[] sel, int count) {
+        boolean wantNull;
+        switch (compareType) {
+        case Comparison.IS_NULL:
+        case Comparison.EQUAL_NULL_SAFE:
+            wantNull = true;
+            break;
+        case Comparison.IS_NOT_NULL:
+        case Comparison.NOT_EQUAL_NULL_SAFE:
+            wantNull = false;
+            break;
+        default:
+            return 0;
+        }
+        boolean[] nulls = getNulls(batch);
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            int r = sel[i];
+            if (nulls[r] == wantNull) {
+                sel[n++] = r;
+            }
+        }
+        return n;
+    }
+
+    private boolean[] getNulls(RowBatch batch) {
+        if (isDouble) {
+            batch.getDoubles(columnId);
+        } else {
+            batch.getLongs(columnId);
+        }
+        return batch.getNulls(columnId);
+    }
+
+    private int filterLong(RowBatch batch, int[] sel, int count, long x) {
+        long[] values = batch.getLongs(columnId);
+        boolean[] nulls = batch.getNulls(columnId);
+        int n = 0;
+        switch (compareType) {
+        case Comparison.EQUAL:
+        case Comparison.EQUAL_NULL_SAFE:
+            for (int i = 0; i < count; i++) {
+                int r = sel[i];
+                if (!nulls[r] && values[r] == x) {
+                    sel[n++] = r;
+                }
+            }
+            break;
+        case Comparison.NOT_EQUAL:
+            for (int i = 0; i < count; i++) {
+                int r = sel[i];
+                if (!nulls[r] && values[r] != x) {
+                    sel[n++] = r;
+                }
+            }
+            break;
+        case Comparison.NOT_EQUAL_NULL_SAFE:
+            for (int i = 0; i < count; i++) {
+                int r = sel[i];
+                if (nulls[r] || values[r] != x) {
+                    sel[n++] = r;
+                }
+            }
+            break;
+        case Comparison.BIGGER_EQUAL:
+            for (int i = 0; i < count; i++) {
+                int r = sel[i];
+                if (!nulls[r] && values[r] >= x) {
+                    sel[n++] = r;
+                }
+            }
+            break;
+        case Comparison.BIGGER:
+            for (int i = 0; i < count; i++) {
+                int r = sel[i];
+                if (!nulls[r] && values[r] > x) {
+                    sel[n++] = r;
+                }
+            }
+            break;
+        case Comparison.SMALLER_EQUAL:
+            for (int i = 0; i < count; i++) {
+                int r = sel[i];
+                if (!nulls[r] && values[r] <= x) {
+                    sel[n++] = r;
+                }
+            }
+            break;
+        case Comparison.SMALLER:
+            for (int i = 0; i < count; i++) {
+                int r = sel[i];
+                if (!nulls[r] && values[r] < x) {
+                    sel[n++] = r;
+                }
+            }
+            break;
+        default:
+            // IS NULL and IS NOT NULL never have a value
+            return filterNull(batch, sel, count);
+        }
+        return n;
+    }
+
+    private int filterDouble(RowBatch batch, int[] sel, int count, double x) {
+        double[] values = batch.getDoubles(columnId);
+        boolean[] nulls = batch.getNulls(columnId);
+        int n = 0;
+        // use the same ordering as ValueDouble (NaN is the largest value)
+        for (int i = 0; i < count; i++) {
+            int r = sel[i];
+            boolean ok;
+            if (nulls[r]) {
+                ok = compareType == Comparison.NOT_EQUAL_NULL_SAFE;
+            } else {
+                int comp = Double.compare(values[r], x);
+                switch (compareType) {
+                case Comparison.EQUAL:
+                case Comparison.EQUAL_NULL_SAFE:
+                    ok = comp == 0;
+                    break;
+                case Comparison.NOT_EQUAL:
+                case Comparison.NOT_EQUAL_NULL_SAFE:
+                    ok = comp != 0;
+                    break;
+                case Comparison.BIGGER_EQUAL:
+                    ok = comp >= 0;
+                    break;
+                case Comparison.BIGGER:
+                    ok = comp > 0;
+                    break;
+                case Comparison.SMALLER_EQUAL:
+                    ok = comp <= 0;
+                    break;
+                case Comparison.SMALLER:
+                    ok = comp < 0;
+                    break;
+                default:
+                    return filterNull(batch, sel, count);
+                }
+            }
+            if (ok) {
+                sel[n++] = r;
+            }
+        }
+        return n;
+    }
+
+    private static boolean isNumeric(int type) {
+        switch (type) {
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+        case Value.DECIMAL:
+        case Value.FLOAT:
+        case Value.DOUBLE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+}
@@ -236,7 +236,15 @@ public abstract class BaseIndex extends SchemaObjectBase implements Index {
         return k1 > k2 ? 1 : -1;
     }
 
-    private int compareValues(Value a, Value b, int sortType) {
+    /**
+     * Compare two values using the sort type of an index column.
+     *
+     * @param a the first value
+     * @param b the second value
+     * @param sortType the sort type
+     * @return the result of the comparison
+     */
+    int compareValues(Value a, Value b, int sortType) {
         if (a == b) {
             return 0;
         }
@@ -0,0 +1,350 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import org.h2.constant.ErrorCode;
+import org.h2.message.DbException;
+import org.h2.store.Data;
+import org.h2.value.Value;
+
+/**
+ * The bits of one key for a range of row keys (a chunk) of a bitmap index
+ * that is stored in the page store. Sparse chunks are kept as a sorted array
+ * of bit positions, dense chunks as an array of words. When stored, a chunk
+ * is written as an array, as a list of runs, or as a bitmap, whichever is
+ * the smallest. Format:
+ * <ul>
+ * <li>chunk number: varInt</li>
+ * <li>key: value</li>
+ * <li>encoding: byte (1: array, 2: runs, 3: bitmap)</li>
+ * <li>entry count: short</li>
+ * <li>array: list of bits (short); runs: list of first and last bit (short,
+ * short); bitmap: list of words (long)</li>
+ * </ul>
+ */
+class BitmapChunk {
+
+    private static final int ENCODING_ARRAY = 1;
+    private static final int ENCODING_RUNS = 2;
+    private static final int ENCODING_BITMAP = 3;
+
+    private final Value key;
+    private final int chunk;
+    private final int size;
+    private final int keyLength;
+    private int cardinality;
+
+    /**
+     * The set bits if the chunk is sparse, otherwise null.
+     */
+    private char[] array;
+
+    /**
+     * The words if the chunk is dense, otherwise null.
+     */
+    private long[] words;
+
+    /**
+     * Create a new empty chunk.
+     *
+     * @param key the key
+     * @param chunk the chunk number
+     * @param size the number of bits per chunk
+     * @param keyLength the length of the stored key
+     */
+    BitmapChunk(Value key, int chunk, int size, int keyLength) {
+        this.key = key;
+        this.chunk = chunk;
+        this.size = size;
+        this.keyLength = keyLength;
+        array = new char[4];
+    }
+
+    /**
+     * Read a chunk.
+     *
+     * @param data the data
+     * @param size the number of bits per chunk
+     * @return the chunk
+     */
+    static BitmapChunk read(Data data, int size) {
+        int chunk = data.readVarInt();
+        int start = data.length();
+        Value key = data.readValue();
+        BitmapChunk c = new BitmapChunk(key, chunk, size, data.length() - start);
+        int encoding = data.readByte();
+        int count = data.readShortInt() & 0xffff;
+        switch (encoding) {
+        case ENCODING_ARRAY:
+            c.array = new char[Math.max(4, count)];
+            for (int i = 0; i < count; i++) {
+                c.array[i] = (char) data.readShortInt();
+            }
+            c.cardinality = count;
+            break;
+        case ENCODING_RUNS:
+            for (int i = 0; i < count; i++) {
+                int first = data.readShortInt() & 0xffff;
+                int last = data.readShortInt() & 0xffff;
+                for (int x = first; x <= last; x++) {
+                    c.set(x, true);
+                }
+            }
+            break;
+        case ENCODING_BITMAP:
+            c.array = null;
+            c.words = new long[count];
+            for (int i = 0; i < count; i++) {
+                long w = data.readLong();
+                c.words[i] = w;
+                c.cardinality += Long.bitCount(w);
+            }
+            break;
+        default:
+            throw DbException.get(ErrorCode.FILE_CORRUPTED_1, "bitmap chunk encoding:" + encoding);
+        }
+        return c;
+    }
+
+    Value getKey() {
+        return key;
+    }
+
+    int getChunk() {
+        return chunk;
+    }
+
+    int getCardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Set or clear a bit.
+     *
+     * @param x the bit within the chunk
+     * @param value the new value
+     * @return true if the bit was changed
+     */
+    boolean set(int x, boolean value) {
+        if (words != null) {
+            long w = words[x >>> 6];
+            long n = value ? w | (1L << x) : w & ~(1L << x);
+            if (n == w) {
+                return false;
+            }
+            words[x >>> 6] = n;
+            cardinality += value ? 1 : -1;
+            if (cardinality < size >>> 5) {
+                toArray();
+            }
+            return true;
+        }
+        int i = binarySearch((char) x);
+        if ((i >= 0) == value) {
+            return false;
+        }
+        if (value) {
+            i = -i - 1;
+            if (cardinality == array.length) {
+                char[] a = new char[cardinality * 2];
+                System.arraycopy(array, 0, a, 0, cardinality);
+                array = a;
+            }
+            System.arraycopy(array, i, array, i + 1, cardinality - i);
+            array[i] = (char) x;
+            cardinality++;
+            if (cardinality > size >>> 4) {
+                toWords();
+            }
+        } else {
+            System.arraycopy(array, i + 1, array, i, cardinality - i - 1);
+            cardinality--;
+        }
+        return true;
+    }
+
+    private int binarySearch(char x) {
+        int low = 0, high = cardinality - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char m = array[mid];
+            if (m < x) {
+                low = mid + 1;
+            } else if (m > x) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void toWords() {
+        words = new long[size >>> 6];
+        for (int i = 0; i < cardinality; i++) {
+            int x = array[i];
+            words[x >>> 6] |= 1L << x;
+        }
+        array = null;
+    }
+
+    private void toArray() {
+        array = new char[Math.max(4, cardinality)];
+        int i = 0;
+        for (int x = nextSetBit(0); x >= 0; x = nextSetBit(x + 1)) {
+            array[i++] = (char) x;
+        }
+        words = null;
+    }
+
+    private int nextSetBit(int from) {
+        if (from >= size) {
+            return -1;
+        } else if (array != null) {
+            int i = binarySearch((char) from);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return i < cardinality ? array[i] : -1;
+        }
+        int i = from >>> 6;
+        if (i >= words.length) {
+            return -1;
+        }
+        long w = words[i] & (-1L << from);
+        while (true) {
+            if (w != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(w);
+            }
+            if (++i >= words.length) {
+                return -1;
+            }
+            w = words[i];
+        }
+    }
+
+    private int getRunCount() {
+        int runs = 0;
+        if (array != null) {
+            for (int i = 0; i < cardinality; i++) {
+                if (i == 0 || array[i - 1] + 1 != array[i]) {
+                    runs++;
+                }
+            }
+            return runs;
+        }
+        for (int i = 0; i < words.length; i++) {
+            long w = words[i];
+            long previous = (w << 1) | (i == 0 ? 0 : words[i - 1] >>> 63);
+            runs += Long.bitCount(w & ~previous);
+        }
+        return runs;
+    }
+
+    private int getEncoding(int runs) {
+        int arrayLength = 2 * cardinality;
+        int runLength = 4 * runs;
+        int bitmapLength = size >>> 3;
+        if (runLength < arrayLength && runLength < bitmapLength) {
+            return ENCODING_RUNS;
+        } else if (arrayLength < bitmapLength) {
+            return ENCODING_ARRAY;
+        }
+        return ENCODING_BITMAP;
+    }
+
+    /**
+     * Get the number of bytes required to store this chunk.
+     *
+     * @return the number of bytes
+     */
+    int getLength() {
+        int runs = getRunCount();
+        int len;
+        switch (getEncoding(runs)) {
+        case ENCODING_RUNS:
+            len = 4 * runs;
+            break;
+        case ENCODING_ARRAY:
+            len = 2 * cardinality;
+            break;
+        default:
+            len = size >>> 3;
+        }
+        return Data.getVarIntLen(chunk) + keyLength + 3 + len;
+    }
+
+    /**
+     * Get the maximum number of bytes required to store a chunk.
+     *
+     * @param size the number of bits per chunk
+     * @param keyLength the length of the stored key
+     * @return the number of bytes
+     */
+    static int getMaxLength(int size, int keyLength) {
+        return Data.getVarIntLen(Integer.MAX_VALUE) + keyLength + 3 + (size >>> 3);
+    }
+
+    /**
+     * Write this chunk.
+     *
+     * @param data the target
+     */
+    void write(Data data) {
+        int runs = getRunCount();
+        int encoding = getEncoding(runs);
+        data.writeVarInt(chunk);
+        data.writeValue(key);
+        data.writeByte((byte) encoding);
+        switch (encoding) {
+        case ENCODING_ARRAY:
+            data.writeShortInt(cardinality);
+            for (int x = nextSetBit(0); x >= 0; x = nextSetBit(x + 1)) {
+                data.writeShortInt(x);
+            }
+            break;
+        case ENCODING_RUNS:
+            data.writeShortInt(runs);
+            for (int x = nextSetBit(0); x >= 0;) {
+                int end = x + 1;
+                while (end < size && nextSetBit(end) == end) {
+                    end++;
+                }
+                data.writeShortInt(x);
+                data.writeShortInt(end - 1);
+                x = nextSetBit(end);
+            }
+            break;
+        default:
+            long[] w = words;
+            if (w == null) {
+                w = new long[size >>> 6];
+                for (int i = 0; i < cardinality; i++) {
+                    int x = array[i];
+                    w[x >>> 6] |= 1L << x;
+                }
+            }
+            data.writeShortInt(w.length);
+            for (long x : w) {
+                data.writeLong(x);
+            }
+        }
+    }
+
+    /**
+     * Add the rows of this chunk to the in-memory bit sets.
+     *
+     * @param bitmap the in-memory index
+     */
+    void addRowsTo(BitmapIndex bitmap) {
+        int offset = chunk * size;
+        for (int x = nextSetBit(0); x >= 0; x = nextSetBit(x + 1)) {
+            bitmap.add(key, offset + x);
+        }
+    }
+
+}
@@ -0,0 +1,540 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import org.h2.bitmap.BitSet;
+import org.h2.bitmap.RoaringBitSet;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.expression.Expression;
+import org.h2.expression.ExpressionVisitor;
+import org.h2.message.DbException;
+import org.h2.table.Column;
+import org.h2.table.Table;
+import org.h2.table.TableFilter;
+import org.h2.util.New;
+import org.h2.util.StatementBuilder;
+import org.h2.util.StringUtils;
+import org.h2.value.CompareMode;
+import org.h2.value.DataType;
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
+
+/**
+ * A condition that can be evaluated using the bitmap indexes of a table. The
+ * conditions on single columns are combined using AND, OR and AND NOT of the
+ * bit sets, so that the matching row keys are known before reading any row.
+ * The resulting set of rows may contain rows that don't match the condition,
+ * so the condition still needs to be checked for each row.
+ *
+ * @author Min Zhou (coderplay@gmail.com)
+ */
+public class BitmapCondition {
+
+    /**
+     * The condition type meaning column = value.
+     */
+    public static final int EQUAL = 0;
+
+    /**
+     * The condition type meaning column &lt;&gt; value.
+     */
+    public static final int NOT_EQUAL = 1;
+
+    /**
+     * The condition type meaning column IN(values).
+     */
+    public static final int IN_LIST = 2;
+
+    /**
+     * The condition type meaning left AND right. The right condition may be
+     * missing, in which case the result is only an approximation.
+     */
+    public static final int AND = 3;
+
+    /**
+     * The condition type meaning left OR right.
+     */
+    public static final int OR = 4;
+
+    /**
+     * The condition type meaning NOT left.
+     */
+    public static final int NOT = 5;
+
+    private final int type;
+    private final Expression condition;
+    private final BitmapIndex index;
+    private final Expression[] values;
+    private final boolean nullSafe;
+    private final BitmapCondition left, right;
+
+    private BitmapCondition(int type, Expression condition, BitmapIndex index, Expression[] values,
+            boolean nullSafe, BitmapCondition left, BitmapCondition right) {
+        this.type = type;
+        this.condition = condition;
+        this.index = index;
+        this.values = values;
+        this.nullSafe = nullSafe;
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Create a condition of the form column = value or column &lt;&gt; value.
+     *
+     * @param filter the table filter
+     * @param condition the condition expression
+     * @param column the column
+     * @param value the value expression (ValueExpression.getNull() for IS NULL)
+     * @param not whether the condition is negated (not equal)
+     * @param nullSafe whether NULL is compared as a regular value (IS, IS NOT)
+     * @return the bitmap condition, or null if no bitmap index can be used
+     */
+    public static BitmapCondition get(TableFilter filter, Expression condition, Column column,
+            Expression value, boolean not, boolean nullSafe) {
+        BitmapIndex index = getBitmapIndex(filter, column);
+        if (index == null || !isIndependent(value)) {
+            return null;
+        }
+        return new BitmapCondition(not ? NOT_EQUAL : EQUAL, condition, index, new Expression[] { value },
+                nullSafe, null, null);
+    }
+
+    /**
+     * Create a condition of the form column IN(values).
+     *
+     * @param filter the table filter
+     * @param condition the condition expression
+     * @param column the column
+     * @param valueList the value list
+     * @return the bitmap condition, or null if no bitmap index can be used
+     */
+    public static BitmapCondition getInList(TableFilter filter, Expression condition, Column column,
+            ArrayList<Expression> valueList) {
+        BitmapIndex index = getBitmapIndex(filter, column);
+        if (index == null) {
+            return null;
+        }
+        for (Expression e : valueList) {
+            if (!isIndependent(e)) {
+                return null;
+            }
+        }
+        Expression[] list = new Expression[valueList.size()];
+        valueList.toArray(list);
+        return new BitmapCondition(IN_LIST, condition, index, list, false, null, null);
+    }
+
+    /**
+     * Combine two conditions using AND. If only one of the conditions is
+     * known, the result is an approximation.
+     *
+     * @param l the left condition, or null
+     * @param r the right condition, or null
+     * @return the combined condition, or null if both are null
+     */
+    public static BitmapCondition and(BitmapCondition l, BitmapCondition r) {
+        if (l == null) {
+            if (r == null) {
+                return null;
+            }
+            return new BitmapCondition(AND, null, null, null, false, r, null);
+        }
+        return new BitmapCondition(AND, null, null, null, false, l, r);
+    }
+
+    /**
+     * Combine two conditions using OR.
+     *
+     * @param l the left condition, or null
+     * @param r the right condition, or null
+     * @return the combined condition, or null if one of them is null
+     */
+    public static BitmapCondition or(BitmapCondition l, BitmapCondition r) {
+        if (l == null || r == null) {
+            return null;
+        }
+        return new BitmapCondition(OR, null, null, null, false, l, r);
+    }
+
+    /**
+     * Negate a condition. This is only possible if the condition is exact.
+     *
+     * @param c the condition, or null
+     * @return the negated condition, or null
+     */
+    public static BitmapCondition not(BitmapCondition c) {
+        if (c == null || !c.isExact()) {
+            return null;
+        }
+        return new BitmapCondition(NOT, null, null, null, false, c, null);
+    }
+
+    /**
+     * Get the single column bitmap index for the given column. Indexes that
+     * can not be used to look up rows by value are ignored. With
+     * multi-version concurrency, no index is returned, because the bit sets
+     * also contain the uncommitted rows of other sessions.
+     *
+     * @param filter the table filter
+     * @param column the column
+     * @return the index, or null if there is none
+     */
+    public static BitmapIndex getBitmapIndex(TableFilter filter, Column column) {
+        Table table = filter.getTable();
+        Database db = table.getDatabase();
+        if (!db.getSettings().optimizeBitmap || db.isMultiVersion()) {
+            return null;
+        }
+        ArrayList<Index> indexes = table.getIndexes();
+        if (indexes == null) {
+            return null;
+        }
+        for (Index idx : indexes) {
+            if (idx instanceof PageBitmapIndex) {
+                idx = ((PageBitmapIndex) idx).getBitmapIndex();
+            }
+            if (idx instanceof BitmapIndex) {
+                Column[] cols = idx.getColumns();
+                if (cols.length == 1 && cols[0] == column && ((BitmapIndex) idx).canLookup()) {
+                    return (BitmapIndex) idx;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check if the value of the expression can be calculated once for all
+     * rows of the table, that means it doesn't use any columns.
+     *
+     * @param e the expression
+     * @return true if it can
+     */
+    private static boolean isIndependent(Expression e) {
+        if (!e.isEverything(ExpressionVisitor.DETERMINISTIC_VISITOR)) {
+            return false;
+        }
+        HashSet<Column> columns = New.hashSet();
+        e.isEverything(ExpressionVisitor.getColumnsVisitor(columns));
+        return columns.size() == 0;
+    }
+
+    /**
+     * Check whether the result of this condition is exact, that means
+     * contains exactly the rows where the condition is true.
+     *
+     * @return true if the result is exact
+     */
+    public boolean isExact() {
+        switch (type) {
+        case AND:
+        case OR:
+            return right != null && left.isExact() && right.isExact();
+        case NOT:
+            // NULL values are included
+            return false;
+        default:
+            return true;
+        }
+    }
+
+    /**
+     * Get the number of single column conditions.
+     *
+     * @return the number of conditions
+     */
+    public int getConditionCount() {
+        switch (type) {
+        case AND:
+        case OR:
+            return left.getConditionCount() + (right == null ? 0 : right.getConditionCount());
+        case NOT:
+            return left.getConditionCount();
+        default:
+            return 1;
+        }
+    }
+
+    /**
+     * Create a cursor that iterates over the rows that may match.
+     *
+     * @param session the session
+     * @return the cursor, or null if the condition can not be evaluated using
+     *         the bitmap indexes for the current values
+     */
+    public Cursor find(Session session) {
+        BitSet rows = getRows(session, false);
+        if (rows == null) {
+            return null;
+        }
+        return getIndex().find(session, rows);
+    }
+
+    /**
+     * Count the rows where the condition is true. The bit sets of simple
+     * conditions are combined without creating a new bit set if possible.
+     *
+     * @param session the session
+     * @return the number of rows, or -1 if the number can not be calculated
+     *         exactly using the bitmap indexes for the current values
+     */
+    public long getRowCount(Session session) {
+        if (!isExact()) {
+            return -1;
+        }
+        BitSet l, r;
+        switch (type) {
+        case EQUAL:
+            l = getEqualRows(session);
+            return l == null ? -1 : l.cardinality();
+        case AND:
+        case OR:
+            l = left.getEqualRows(session);
+            r = l == null ? null : right.getEqualRows(session);
+            if (r != null) {
+                return type == AND ? l.andCardinality(r) : l.orCardinality(r);
+            }
+            break;
+        default:
+        }
+        BitSet rows = getRows(session, true);
+        return rows == null ? -1 : rows.cardinality();
+    }
+
+    /**
+     * Get the rows of a column = value condition. The returned bit set must
+     * not be modified.
+     *
+     * @param session the session
+     * @return the bit set, or null if this is not a column = value condition
+     *         or the value can not be used
+     */
+    private BitSet getEqualRows(Session session) {
+        if (type != EQUAL) {
+            return null;
+        }
+        Value v = getKey(session, values[0]);
+        if (v == null) {
+            return null;
+        } else if (v == ValueNull.INSTANCE && !nullSafe) {
+            return new RoaringBitSet();
+        }
+        BitSet bits = index.getBitSet(v);
+        return bits == null ? new RoaringBitSet() : bits;
+    }
+
+    /**
+     * Calculate the set of rows that may match. The returned bit set is a new
+     * object that may be modified.
+     *
+     * @param session the session
+     * @param exact whether only the rows that match exactly may be included
+     * @return the bit set, or null if it can not be calculated
+     */
+    public BitSet getRows(Session session, boolean exact) {
+        switch (type) {
+        case EQUAL: {
+            BitSet bits = getEqualRows(session);
+            return bits == null ? null : bits.clone();
+        }
+        case NOT_EQUAL: {
+            Value v = getKey(session, values[0]);
+            if (v == null) {
+                return null;
+            } else if (v == ValueNull.INSTANCE && !nullSafe) {
+                return new RoaringBitSet();
+            }
+            BitSet result = copy(index.getAllRows());
+            andNot(result, index.getBitSet(v));
+            if (!nullSafe) {
+                andNot(result, index.getBitSet(ValueNull.INSTANCE));
+            }
+            return result;
+        }
+        case IN_LIST: {
+            BitSet result = new RoaringBitSet();
+            for (Expression e : values) {
+                Value v = getKey(session, e);
+                if (v == null) {
+                    return null;
+                } else if (v != ValueNull.INSTANCE) {
+                    BitSet bits = index.getBitSet(v);
+                    if (bits != null) {
+                        result.or(bits);
+                    }
+                }
+            }
+            return result;
+        }
+        case AND: {
+            if (right == null) {
+                return exact ? null : left.getRows(session, false);
+            }
+            BitSet l = left.getRows(session, exact);
+            BitSet r = right.getRows(session, exact);
+            if (l == null || r == null) {
+                if (exact) {
+                    return null;
+                }
+                return l == null ? r : l;
+            }
+            l.and(r);
+            return l;
+        }
+        case OR: {
+            BitSet l = left.getRows(session, exact);
+            if (l == null) {
+                return null;
+            }
+            BitSet r = right.getRows(session, exact);
+            if (r == null) {
+                return null;
+            }
+            l.or(r);
+            return l;
+        }
+        case NOT: {
+            if (exact) {
+                return null;
+            }
+            BitSet l = left.getRows(session, true);
+            if (l == null) {
+                return null;
+            }
+            BitSet result = copy(left.getIndex().getAllRows());
+            result.andNot(l);
+            return result;
+        }
+        default:
+            throw DbException.throwInternalError("type=" + type);
+        }
+    }
+
+    /**
+     * Get the value to look up in the bitmap index. The value is only
+     * returned if the comparison is done using the data type of the column,
+     * or if the column is an integer column and the value can be converted
+     * without loss. Otherwise the rows with the key could differ from the
+     * rows where the comparison is true.
+     *
+     * @param session the session
+     * @param e the value expression
+     * @return the value converted to the column type, or null
+     */
+    private Value getKey(Session session, Expression e) {
+        if (!index.canLookup()) {
+            // rows were added that are not included in the bit sets
+            return null;
+        }
+        Value v = e.getValue(session);
+        if (v == ValueNull.INSTANCE) {
+            return v;
+        }
+        Column column = index.getColumns()[0];
+        int type = column.getType();
+        if (DataType.isStringType(type)) {
+            CompareMode mode = session.getDatabase().getCompareMode();
+            if (!CompareMode.OFF.equals(mode.getName())) {
+                // a collator may consider different strings as equal
+                return null;
+            }
+        }
+        if (Value.getHigherOrder(type, v.getType()) == type) {
+            return column.convert(v);
+        }
+        if (!DataType.isIntegerType(type) || !(DataType.isIntegerType(v.getType()) || v.getType() == Value.DECIMAL)) {
+            return null;
+        }
+        Value k;
+        try {
+            k = column.convert(v);
+        } catch (DbException ex) {
+            // out of range
+            return null;
+        }
+        if (!k.convertTo(v.getType()).equals(v)) {
+            return null;
+        }
+        return k;
+    }
+
+    private static BitSet copy(BitSet bits) {
+        return bits == null ? new RoaringBitSet() : bits.clone();
+    }
+
+    private static void andNot(BitSet bits, BitSet remove) {
+        if (remove != null) {
+            bits.andNot(remove);
+        }
+    }
+
+    private BitmapIndex getIndex() {
+        return index != null ? index : left.getIndex();
+    }
+
+    /**
+     * Get the list of indexes used by this condition.
+     *
+     * @param list the list to add the indexes to
+     */
+    public void addIndexes(ArrayList<Index> list) {
+        if (index != null) {
+            if (!list.contains(index)) {
+                list.add(index);
+            }
+            return;
+        }
+        left.addIndexes(list);
+        if (right != null) {
+            right.addIndexes(list);
+        }
+    }
+
+    /**
+     * Get the SQL snippet of this condition.
+     *
+     * @return the SQL snippet
+     */
+    public String getSQL() {
+        switch (type) {
+        case AND:
+            if (right == null) {
+                return left.getSQL();
+            }
+            return "(" + left.getSQL() + " AND " + right.getSQL() + ")";
+        case OR:
+            return "(" + left.getSQL() + " OR " + right.getSQL() + ")";
+        case NOT:
+            return "(NOT " + left.getSQL() + ")";
+        default:
+            return condition.getSQL();
+        }
+    }
+
+    /**
+     * Get the plan SQL snippet of the indexes and this condition.
+     *
+     * @return the SQL snippet
+     */
+    public String getPlanSQL() {
+        ArrayList<Index> list = New.arrayList();
+        addIndexes(list);
+        StatementBuilder buff = new StatementBuilder("BITMAP(");
+        for (Index idx : list) {
+            buff.appendExceptFirst(", ");
+            buff.append(idx.getSQL());
+        }
+        buff.append("): ");
+        buff.append(StringUtils.unEnclose(getSQL()));
+        return buff.toString();
+    }
+
+}
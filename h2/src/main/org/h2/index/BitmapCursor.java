@@ -0,0 +1,66 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import org.h2.bitmap.BitSet;
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.table.RegularTable;
+
+/**
+ * The cursor implementation for the bitmap index. The rows are returned in
+ * the order of the row keys.
+ *
+ * @author Min Zhou (coderplay@gmail.com)
+ */
+public class BitmapCursor implements Cursor {
+
+    private final Session session;
+    private final RegularTable tableData;
+    private final BitSet bits;
+    private int current = -1;
+    private boolean end;
+    private Row row;
+
+    public BitmapCursor(Session session, RegularTable tableData, BitSet bits) {
+        this.session = session;
+        this.tableData = tableData;
+        this.bits = bits;
+        end = bits == null;
+    }
+
+    public Row get() {
+        if (row == null && current >= 0) {
+            row = tableData.getRow(session, current);
+        }
+        return row;
+    }
+
+    public SearchRow getSearchRow() {
+        return get();
+    }
+
+    public boolean next() {
+        if (end) {
+            return false;
+        }
+        row = null;
+        current = bits.nextSetBit(current + 1);
+        if (current < 0) {
+            end = true;
+            return false;
+        }
+        return true;
+    }
+
+    public boolean previous() {
+        throw DbException.throwInternalError();
+    }
+
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.util.ArrayList;
+import org.h2.bitmap.BitSet;
+import org.h2.bitmap.RoaringBitSet;
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.RegularTable;
+import org.h2.util.ValueHashMap;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+
+/**
+ * A non-unique index that keeps one bit set per distinct key. The bit with
+ * the index of the row key is set if the row contains this key. The bit sets
+ * are compressed and kept in memory. For persistent tables, the bit sets are
+ * also stored in the page store (see PageBitmapIndex), otherwise they are
+ * rebuilt from the table when the database is opened.
+ * Bitmap indexes can only test for equality. Rows with a negative row key, or
+ * a row key larger than the largest bit index, are not included in the bit
+ * sets. As long as the table contains such rows, the index is not used to
+ * look up rows.
+ *
+ * @author Min Zhou (coderplay@gmail.com)
+ */
+public class BitmapIndex extends BaseIndex {
+
+    private final RegularTable tableData;
+    private ValueHashMap<BitSet> bitmaps;
+    private BitSet allRows;
+    private long rowCount;
+
+    /**
+     * The number of rows that are not included in the bit sets.
+     */
+    private long unindexedRows;
+
+    public BitmapIndex(RegularTable table, int id, String indexName, IndexColumn[] columns, IndexType indexType) {
+        initBaseIndex(table, id, indexName, columns, indexType);
+        this.tableData = table;
+        reset();
+    }
+
+    private void reset() {
+        bitmaps = ValueHashMap.newInstance();
+        allRows = new RoaringBitSet();
+        rowCount = 0;
+        unindexedRows = 0;
+    }
+
+    public void truncate(Session session) {
+        reset();
+    }
+
+    public void add(Session session, Row row) {
+        add(getKey(row, false), getBitIndex(row.getKey()));
+    }
+
+    /**
+     * Set the bit of a row in the bit set of the given key.
+     *
+     * @param key the key
+     * @param bit the bit index of the row, or -1 if the row can not be
+     *            included in the bit sets
+     */
+    void add(Value key, int bit) {
+        if (bit < 0) {
+            unindexedRows++;
+            rowCount++;
+            return;
+        }
+        BitSet bits = bitmaps.get(key);
+        if (bits == null) {
+            bits = new RoaringBitSet();
+            bitmaps.put(key, bits);
+        }
+        bits.set(bit);
+        allRows.set(bit);
+        rowCount++;
+    }
+
+    public void remove(Session session, Row row) {
+        if (rowCount == 1) {
+            // last row in table
+            reset();
+        } else {
+            remove(getKey(row, false), getBitIndex(row.getKey()));
+        }
+    }
+
+    /**
+     * Clear the bit of a row in the bit set of the given key.
+     *
+     * @param key the key
+     * @param bit the bit index of the row, or -1 if the row is not included in
+     *            the bit sets
+     */
+    void remove(Value key, int bit) {
+        if (bit < 0) {
+            unindexedRows--;
+            rowCount--;
+            return;
+        }
+        BitSet bits = bitmaps.get(key);
+        bits.clear(bit);
+        allRows.clear(bit);
+        if (bits.isEmpty()) {
+            // last row with such key
+            bitmaps.remove(key);
+        }
+        rowCount--;
+    }
+
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        if (first == null || last == null) {
+            throw DbException.throwInternalError();
+        }
+        if (first != last) {
+            if (compareRows(first, last) != 0) {
+                throw DbException.throwInternalError();
+            }
+        }
+        if (unindexedRows > 0) {
+            // the table condition is checked for each row
+            return tableData.getScanIndex(session).find(session, null, null);
+        }
+        return new BitmapCursor(session, tableData, getBitSet(first));
+    }
+
+    /**
+     * Create a cursor that iterates over the rows of the given bit set.
+     *
+     * @param session the session
+     * @param bits the bit set of row keys
+     * @return the cursor
+     */
+    public Cursor find(Session session, BitSet bits) {
+        return new BitmapCursor(session, tableData, bits);
+    }
+
+    /**
+     * Get the bit set of the rows that match the given search row. All
+     * indexed columns of the search row must be set. The returned bit set
+     * must not be modified.
+     *
+     * @param first the search row
+     * @return the bit set, or null if no row matches
+     */
+    public BitSet getBitSet(SearchRow first) {
+        return bitmaps.get(getKey(first, true));
+    }
+
+    /**
+     * Get the bit set of the rows with the given value. This is only supported
+     * for single column indexes. The value must already be converted to the
+     * column type. The returned bit set must not be modified.
+     *
+     * @param v the value
+     * @return the bit set, or null if no row matches
+     */
+    public BitSet getBitSet(Value v) {
+        return bitmaps.get(v);
+    }
+
+    /**
+     * Get the bit set of all rows of the table. The returned bit set must not
+     * be modified.
+     *
+     * @return the bit set
+     */
+    public BitSet getAllRows() {
+        return allRows;
+    }
+
+    /**
+     * Get the list of distinct keys. For single column indexes, the key is the
+     * value of the column.
+     *
+     * @return the list of keys
+     */
+    public ArrayList<Value> getKeys() {
+        return bitmaps.keys();
+    }
+
+    /**
+     * Get the number of distinct keys in this index.
+     *
+     * @return the number of distinct keys
+     */
+    public int getDistinctKeyCount() {
+        return bitmaps.size();
+    }
+
+    /**
+     * Get the key of a row. For single column indexes, the key is the value of
+     * the column, otherwise it is an array of the values.
+     *
+     * @param row the row
+     * @param convert whether the values need to be converted to the column
+     *            type
+     * @return the key
+     */
+    Value getKey(SearchRow row, boolean convert) {
+        int len = columnIds.length;
+        if (len == 1) {
+            return getValue(row, 0, convert);
+        }
+        Value[] list = new Value[len];
+        for (int i = 0; i < len; i++) {
+            list[i] = getValue(row, i, convert);
+        }
+        return ValueArray.get(list);
+    }
+
+    private Value getValue(SearchRow row, int i, boolean convert) {
+        Value v = row.getValue(columnIds[i]);
+        if (v == null) {
+            throw DbException.throwInternalError(getSQL());
+        }
+        return convert ? columns[i].convert(v) : v;
+    }
+
+    /**
+     * Convert a row key to a bit index.
+     *
+     * @param key the row key
+     * @return the bit index, or -1 if the row key is negative or too large
+     */
+    static int getBitIndex(long key) {
+        if (key < 0 || key > Integer.MAX_VALUE) {
+            return -1;
+        }
+        return (int) key;
+    }
+
+    /**
+     * Some rows of the table are not included in the bit sets. This is called
+     * after reading the stored bit sets.
+     *
+     * @param count the number of rows
+     */
+    void addUnindexedRows(long count) {
+        unindexedRows += count;
+        rowCount += count;
+    }
+
+    public long getRowCount(Session session) {
+        return rowCount;
+    }
+
+    public long getRowCountApproximation() {
+        return rowCount;
+    }
+
+    public void close(Session session) {
+        // nothing to do
+    }
+
+    public void remove(Session session) {
+        reset();
+    }
+
+    /**
+     * Check whether the rows with a given value can be looked up using the
+     * key. This is not the case if values that are equal can have different
+     * keys, for example 1.0 and 1.00 (DECIMAL), or 0.0 and -0.0 (DOUBLE), or
+     * if some rows are not included in the bit sets.
+     *
+     * @return true if yes
+     */
+    public boolean canLookup() {
+        if (unindexedRows > 0) {
+            return false;
+        }
+        for (Column column : columns) {
+            switch (column.getType()) {
+            case Value.DECIMAL:
+            case Value.DOUBLE:
+            case Value.FLOAT:
+                return false;
+            default:
+            }
+        }
+        return true;
+    }
+
+    public double getCost(Session session, int[] masks) {
+        if (!canLookup()) {
+            return Long.MAX_VALUE;
+        }
+        for (Column column : columns) {
+            int index = column.getColumnId();
+            int mask = masks[index];
+            if ((mask & IndexCondition.EQUALITY) != IndexCondition.EQUALITY) {
+                return Long.MAX_VALUE;
+            }
+        }
+        int distinct = Math.max(1, bitmaps.size());
+        return 2 + rowCount / distinct;
+    }
+
+    public void checkRename() {
+        // ok
+    }
+
+    public boolean needRebuild() {
+        return true;
+    }
+
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    public Cursor findFirstOrLast(Session session, boolean first) {
+        throw DbException.getUnsupportedException("BITMAP");
+    }
+
+    public boolean canScan() {
+        return false;
+    }
+
+}
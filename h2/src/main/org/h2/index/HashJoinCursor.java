@@ -0,0 +1,45 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.util.ArrayList;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+
+/**
+ * A cursor over a list of rows that have the same key, as found by a hash
+ * join index or a merge join.
+ */
+class HashJoinCursor implements Cursor {
+
+    private final ArrayList<Row> rows;
+    private int index = -1;
+
+    HashJoinCursor(ArrayList<Row> rows) {
+        this.rows = rows;
+    }
+
+    public Row get() {
+        if (index < 0 || index >= rows.size()) {
+            return null;
+        }
+        return rows.get(index);
+    }
+
+    public SearchRow getSearchRow() {
+        return get();
+    }
+
+    public boolean next() {
+        return rows != null && ++index < rows.size();
+    }
+
+    public boolean previous() {
+        return rows != null && --index >= 0;
+    }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.util.ArrayList;
+import org.h2.engine.Constants;
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.Table;
+import org.h2.table.TableBase;
+import org.h2.util.New;
+import org.h2.util.ValueHashMap;
+import org.h2.value.CompareMode;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+
+/**
+ * A temporary index that is used to join a table on columns that are not
+ * indexed. It is not registered in the table; the query plan creates it for
+ * the inner table of a join if the join condition compares columns for
+ * equality. When the first row is looked up, all rows of the table are read
+ * once and kept in a hash map keyed by the compared columns; each lookup is
+ * then a hash map lookup. If the table contains more rows than the maximum
+ * number of rows kept in memory, the map is not built, and each lookup scans
+ * the table as the plan without this index would do. The rows found may not
+ * match the condition (for example if the value had to be converted), the
+ * condition is checked by the table filter.
+ */
+public class HashJoinIndex extends BaseIndex {
+
+    private final Index scan;
+    private ValueHashMap<ArrayList<Row>> rows;
+    private boolean tooLarge;
+
+    private HashJoinIndex(Table table, Session session, IndexColumn[] columns) {
+        initBaseIndex(table, 0, table.getName() + "_HASH_JOIN", columns, IndexType.createNonUnique(false, true));
+        scan = table.getScanIndex(session);
+    }
+
+    /**
+     * Create a hash join index for the columns that are compared for equality,
+     * if possible.
+     *
+     * @param session the session
+     * @param table the table
+     * @param masks the search masks
+     * @return the index, or null if no columns can be used
+     */
+    public static HashJoinIndex create(Session session, Table table, int[] masks) {
+        if (!(table instanceof TableBase) ||
+                !table.getDatabase().getCompareMode().getName().equals(CompareMode.OFF)) {
+            return null;
+        }
+        if (table.getRowCountApproximation() > table.getDatabase().getMaxMemoryRows()) {
+            return null;
+        }
+        ArrayList<Column> list = New.arrayList();
+        for (Column column : table.getColumns()) {
+            int mask = masks[column.getColumnId()];
+            if ((mask & IndexCondition.EQUALITY) == IndexCondition.EQUALITY && isHashable(column.getType())) {
+                list.add(column);
+            }
+        }
+        if (list.size() == 0) {
+            return null;
+        }
+        Column[] columns = new Column[list.size()];
+        list.toArray(columns);
+        return new HashJoinIndex(table, session, IndexColumn.wrap(columns));
+    }
+
+    /**
+     * Check whether two values of this type that are equal always have the
+     * same hash code.
+     *
+     * @param type the data type
+     * @return true if yes
+     */
+    private static boolean isHashable(int type) {
+        switch (type) {
+        case Value.DECIMAL:
+        case Value.DOUBLE:
+        case Value.FLOAT:
+            // 1.0 and 1.00, or 0.0 and -0.0
+            return false;
+        default:
+            return true;
+        }
+    }
+
+    /**
+     * Forget the rows read so far. This is required when the query is run
+     * again, as the table may have been changed.
+     */
+    public void reset() {
+        rows = null;
+        tooLarge = false;
+    }
+
+    private void build(Session session) {
+        rows = ValueHashMap.newInstance();
+        int maxMemoryRows = database.getMaxMemoryRows();
+        int count = 0;
+        Cursor cursor = scan.find(session, null, null);
+        while (cursor.next()) {
+            if (++count > maxMemoryRows) {
+                rows = null;
+                tooLarge = true;
+                return;
+            }
+            Row row = cursor.get();
+            Value key = getKey(row);
+            ArrayList<Row> list = rows.get(key);
+            if (list == null) {
+                list = New.arrayList();
+                rows.put(key, list);
+            }
+            list.add(row);
+        }
+    }
+
+    private Value getKey(SearchRow row) {
+        if (columnIds.length == 1) {
+            return row.getValue(columnIds[0]);
+        }
+        Value[] values = new Value[columnIds.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = row.getValue(columnIds[i]);
+        }
+        return ValueArray.get(values);
+    }
+
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        if (rows == null && !tooLarge) {
+            build(session);
+        }
+        if (tooLarge || first == null || last == null) {
+            return scan.find(session, null, null);
+        }
+        SearchRow search = table.getTemplateRow();
+        for (int i = 0; i < columns.length; i++) {
+            int id = columnIds[i];
+            Value v = first.getValue(id), w = last.getValue(id);
+            if (v == null || w == null || table.compareTypeSave(v, w) != 0) {
+                return scan.find(session, null, null);
+            }
+            try {
+                v = columns[i].convert(v);
+            } catch (DbException e) {
+                return scan.find(session, null, null);
+            }
+            search.setValue(id, v);
+        }
+        return new HashJoinCursor(rows.get(getKey(search)));
+    }
+
+    public double getCost(Session session, int[] masks) {
+        // building the hash map costs about as much as one table scan, which
+        // is not much compared to scanning the table for each row of the
+        // outer table; the cost per row is the same as for the scan, so that
+        // a regular index on the same columns is preferred
+        long rowCount = table.getRowCountApproximation();
+        double costPerRow = scan.getCost(session, null) / (rowCount + Constants.COST_ROW_OFFSET);
+        return costPerRow * getCostRangeIndex(masks, rowCount) + 1;
+    }
+
+    public void add(Session session, Row row) {
+        throw DbException.throwInternalError();
+    }
+
+    public void remove(Session session, Row row) {
+        throw DbException.throwInternalError();
+    }
+
+    public void close(Session session) {
+        reset();
+    }
+
+    public void remove(Session session) {
+        reset();
+    }
+
+    public void truncate(Session session) {
+        reset();
+    }
+
+    public void checkRename() {
+        // ok
+    }
+
+    public boolean needRebuild() {
+        return false;
+    }
+
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    public Cursor findFirstOrLast(Session session, boolean first) {
+        throw DbException.getUnsupportedException("HASH");
+    }
+
+    public long getRowCount(Session session) {
+        return scan.getRowCount(session);
+    }
+
+    public long getRowCountApproximation() {
+        return scan.getRowCountApproximation();
+    }
+
+    public String getPlanSQL() {
+        return table.getSQL() + ".hashJoin";
+    }
+
+    public boolean canScan() {
+        return false;
+    }
+
+}
@@ -19,6 +19,7 @@ import org.h2.table.Column;
 import org.h2.table.IndexColumn;
 import org.h2.table.Table;
 import org.h2.table.TableFilter;
+import org.h2.util.New;
 import org.h2.value.Value;
 import org.h2.value.ValueNull;
 
@@ -42,6 +43,14 @@ public class IndexCursor implements Cursor {
     private Value[] inList;
     private ResultInterface inResult;
     private HashSet<Value> inResultTested;
+    private BitmapCondition bitmapCondition;
+
+    private boolean mergeJoin;
+    private Cursor mergeCursor;
+    private boolean mergeEnd;
+    private Row mergeNext;
+    private Value mergeValue;
+    private ArrayList<Row> mergeRows;
 
     public IndexCursor(TableFilter filter) {
         this.tableFilter = filter;
@@ -49,6 +58,8 @@ public class IndexCursor implements Cursor {
 
     public void setIndex(Index index) {
         this.index = index;
+        mergeJoin = false;
+        resetMergeJoin();
         this.table = index.getTable();
         Column[] columns = table.getColumns();
         indexColumns = new IndexColumn[columns.length];
@@ -63,6 +74,45 @@ public class IndexCursor implements Cursor {
         }
     }
 
+    /**
+     * Set the bitmap condition. If set, the bitmap indexes are used to find
+     * the rows instead of the index conditions, if possible.
+     *
+     * @param bitmapCondition the bitmap condition, or null
+     */
+    public void setBitmapCondition(BitmapCondition bitmapCondition) {
+        this.bitmapCondition = bitmapCondition;
+    }
+
+    /**
+     * Enable or disable the merge join. If enabled, the index is read
+     * from the position of the last search if the value of the first index
+     * column is not smaller than the last value, instead of searching the
+     * index again.
+     *
+     * @param mergeJoin true if enabled
+     */
+    public void setMergeJoin(boolean mergeJoin) {
+        this.mergeJoin = mergeJoin;
+        resetMergeJoin();
+    }
+
+    public boolean isMergeJoin() {
+        return mergeJoin;
+    }
+
+    /**
+     * Forget the position of the merge join. This is required when the query
+     * is run again.
+     */
+    public void resetMergeJoin() {
+        mergeCursor = null;
+        mergeEnd = false;
+        mergeNext = null;
+        mergeValue = null;
+        mergeRows = null;
+    }
+
     /**
      * Re-evaluate the start and end values of the index search for rows.
      *
@@ -77,6 +127,12 @@ public class IndexCursor implements Cursor {
         inColumn = null;
         inResult = null;
         inResultTested = null;
+        if (bitmapCondition != null) {
+            cursor = bitmapCondition.find(s);
+            if (cursor != null) {
+                return;
+            }
+        }
         // don't use enhanced for loop to avoid creating objects
         for (int i = 0, size = indexConditions.size(); i < size; i++) {
             IndexCondition condition = indexConditions.get(i);
@@ -142,10 +198,65 @@ public class IndexCursor implements Cursor {
             return;
         }
         if (!alwaysFalse) {
+            if (mergeJoin) {
+                cursor = findMerge();
+                if (cursor != null) {
+                    return;
+                }
+            }
             cursor = index.find(tableFilter, start, end);
         }
     }
 
+    private Cursor findMerge() {
+        if (start == null || end == null) {
+            return null;
+        }
+        int id = index.getColumns()[0].getColumnId();
+        Value v = start.getValue(id), w = end.getValue(id);
+        if (v == null || w == null || v == ValueNull.INSTANCE || table.compareTypeSave(v, w) != 0) {
+            return null;
+        }
+        if (mergeValue != null) {
+            int comp = table.compareTypeSave(v, mergeValue);
+            if (comp == 0) {
+                return new HashJoinCursor(mergeRows);
+            } else if (comp < 0) {
+                return null;
+            }
+        }
+        if (mergeCursor == null && !mergeEnd) {
+            SearchRow first = table.getTemplateRow();
+            first.setValue(id, v);
+            mergeCursor = index.find(tableFilter, first, null);
+        }
+        // the rows with the same value are kept, in case the next row of the
+        // outer table has the same value
+        ArrayList<Row> rows = New.arrayList();
+        while (true) {
+            Row r = mergeNext;
+            mergeNext = null;
+            if (r == null) {
+                if (mergeEnd || !mergeCursor.next()) {
+                    mergeEnd = true;
+                    mergeCursor = null;
+                    break;
+                }
+                r = mergeCursor.get();
+            }
+            int comp = table.compareTypeSave(r.getValue(id), v);
+            if (comp > 0) {
+                mergeNext = r;
+                break;
+            } else if (comp == 0) {
+                rows.add(r);
+            }
+        }
+        mergeValue = v;
+        mergeRows = rows;
+        return new HashJoinCursor(rows);
+    }
+
     private boolean canUseIndexForIn(Column column) {
         if (inColumn != null) {
             // only one IN(..) condition can be used at the same time
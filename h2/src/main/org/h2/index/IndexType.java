@@ -11,7 +11,7 @@ package org.h2.index;
  */
 public class IndexType {
 
-    private boolean primaryKey, persistent, unique, hash, scan;
+    private boolean primaryKey, persistent, unique, hash, scan, bitmap;
     private boolean belongsToConstraint;
 
     /**
@@ -69,6 +69,19 @@ public class IndexType {
         return type;
     }
 
+    /**
+     * Create a bitmap index. Bitmap indexes are never unique.
+     *
+     * @param persistent if the index is persistent
+     * @return the index type
+     */
+    public static IndexType createBitmap(boolean persistent) {
+        IndexType type = new IndexType();
+        type.persistent = persistent;
+        type.bitmap = true;
+        return type;
+    }
+
     /**
      * Create a scan pseudo-index.
      *
@@ -110,6 +123,15 @@ public class IndexType {
         return hash;
     }
 
+    /**
+     * Is this a bitmap index?
+     *
+     * @return true if it is a bitmap index
+     */
+    public boolean isBitmap() {
+        return bitmap;
+    }
+
     /**
      * Is this index persistent?
      *
@@ -156,6 +178,9 @@ public class IndexType {
             if (hash) {
                 buff.append("HASH ");
             }
+            if (bitmap) {
+                buff.append("BITMAP ");
+            }
             buff.append("INDEX");
         }
         return buff.toString();
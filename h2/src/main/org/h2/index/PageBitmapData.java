@@ -0,0 +1,261 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.util.ArrayList;
+import org.h2.constant.ErrorCode;
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.store.Data;
+import org.h2.store.Page;
+import org.h2.store.PageStore;
+import org.h2.util.New;
+import org.h2.value.Value;
+
+/**
+ * A bitmap index page. It contains the chunks of one or multiple keys (see
+ * BitmapChunk), so that the pages of sparse chunks are shared. All pages of
+ * an index form a linked list that starts at the root page. Format:
+ * <ul>
+ * <li>page type: byte</li>
+ * <li>checksum: short</li>
+ * <li>previous page id (0 for root): int</li>
+ * <li>index id: varInt</li>
+ * <li>next page id (0 for the last page): int</li>
+ * <li>chunk count: short</li>
+ * <li>list of chunks</li>
+ * </ul>
+ *
+ * @author Min Zhou (coderplay@gmail.com)
+ */
+public class PageBitmapData extends Page {
+
+    /**
+     * Indicator that this is the root page.
+     */
+    static final int ROOT = 0;
+
+    /**
+     * The data page.
+     */
+    final Data data;
+
+    private final PageBitmapIndex index;
+    private int previousPageId;
+    private int nextPageId;
+    private ArrayList<BitmapChunk> chunks = New.arrayList();
+    private boolean written;
+
+    private PageBitmapData(PageBitmapIndex index, int pageId, Data data) {
+        this.index = index;
+        this.data = data;
+        setPos(pageId);
+    }
+
+    /**
+     * Read a bitmap index page.
+     *
+     * @param index the index
+     * @param data the data
+     * @param pageId the page id
+     * @return the page
+     */
+    public static Page read(PageBitmapIndex index, Data data, int pageId) {
+        PageBitmapData p = new PageBitmapData(index, pageId, data);
+        p.read();
+        return p;
+    }
+
+    /**
+     * Create a new page without chunks.
+     *
+     * @param index the index
+     * @param pageId the page id
+     * @param previousPageId the previous page in the list
+     * @return the page
+     */
+    static PageBitmapData create(PageBitmapIndex index, int pageId, int previousPageId) {
+        PageBitmapData p = new PageBitmapData(index, pageId, index.getPageStore().createData());
+        index.getPageStore().logUndo(p, null);
+        p.previousPageId = previousPageId;
+        p.writeData();
+        return p;
+    }
+
+    private void read() {
+        data.reset();
+        data.readByte();
+        data.readShortInt();
+        previousPageId = data.readInt();
+        int indexId = data.readVarInt();
+        if (indexId != index.getId()) {
+            throw DbException.get(ErrorCode.FILE_CORRUPTED_1,
+                    "page:" + getPos() + " expected index:" + index.getId() +
+                    " got:" + indexId);
+        }
+        nextPageId = data.readInt();
+        int count = data.readShortInt();
+        for (int i = 0; i < count; i++) {
+            chunks.add(BitmapChunk.read(data, index.getChunkSize()));
+        }
+        written = true;
+    }
+
+    /**
+     * Get the number of bytes that are not used.
+     *
+     * @return the number of bytes
+     */
+    int getFreeSpace() {
+        int len = 1 + 2 + 4 + Data.getVarIntLen(index.getId()) + 4 + 2;
+        for (BitmapChunk c : chunks) {
+            len += c.getLength();
+        }
+        return index.getPageStore().getPageSize() - len;
+    }
+
+    /**
+     * Get the chunk with the given key and number.
+     *
+     * @param key the key
+     * @param chunk the chunk number
+     * @return the chunk, or null if this page doesn't contain it
+     */
+    BitmapChunk getChunk(Value key, int chunk) {
+        for (BitmapChunk c : chunks) {
+            if (c.getChunk() == chunk && c.getKey().equals(key)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    ArrayList<BitmapChunk> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Add a chunk to this page.
+     *
+     * @param c the chunk
+     */
+    void addChunk(BitmapChunk c) {
+        chunks.add(c);
+        changed();
+    }
+
+    /**
+     * Remove a chunk from this page.
+     *
+     * @param c the chunk
+     */
+    void removeChunk(BitmapChunk c) {
+        chunks.remove(c);
+        changed();
+    }
+
+    /**
+     * Set or clear a bit of a chunk of this page.
+     *
+     * @param c the chunk
+     * @param x the bit within the chunk
+     * @param value the new value
+     */
+    void setBit(BitmapChunk c, int x, boolean value) {
+        if (c.set(x, value)) {
+            changed();
+        }
+    }
+
+    int getNextPageId() {
+        return nextPageId;
+    }
+
+    void setNextPageId(int nextPageId) {
+        this.nextPageId = nextPageId;
+        changed();
+    }
+
+    void setPreviousPageId(int previousPageId) {
+        this.previousPageId = previousPageId;
+        changed();
+    }
+
+    private void changed() {
+        written = false;
+        changeCount = index.getPageStore().getChangeCount();
+    }
+
+    public void write() {
+        writeData();
+        index.getPageStore().writePage(getPos(), data);
+    }
+
+    private void writeData() {
+        if (written) {
+            return;
+        }
+        data.reset();
+        data.writeByte((byte) Page.TYPE_BITMAP);
+        data.writeShortInt(0);
+        data.writeInt(previousPageId);
+        data.writeVarInt(index.getId());
+        data.writeInt(nextPageId);
+        data.writeShortInt(chunks.size());
+        for (BitmapChunk c : chunks) {
+            c.write(data);
+        }
+        written = true;
+    }
+
+    /**
+     * Get the estimated memory size.
+     *
+     * @return number of double words (4 bytes)
+     */
+    public int getMemory() {
+        return index.getMemoryPerPage();
+    }
+
+    public boolean canRemove() {
+        if (changeCount >= index.getPageStore().getChangeCount()) {
+            return false;
+        }
+        return true;
+    }
+
+    public String toString() {
+        return "page[" + getPos() + "] bitmap index:" + index.getId() + " chunks:" + chunks.size();
+    }
+
+    public void moveTo(Session session, int newPos) {
+        PageStore store = index.getPageStore();
+        PageBitmapData p2 = PageBitmapData.create(index, newPos, previousPageId);
+        store.logUndo(this, data);
+        p2.nextPageId = nextPageId;
+        p2.chunks = chunks;
+        p2.changed();
+        store.update(p2);
+        if (previousPageId == ROOT) {
+            index.setRootPageId(session, newPos);
+        } else {
+            PageBitmapData p = index.getPage(previousPageId);
+            store.logUndo(p, p.data);
+            p.setNextPageId(newPos);
+            store.update(p);
+        }
+        if (nextPageId != 0) {
+            PageBitmapData p = index.getPage(nextPageId);
+            store.logUndo(p, p.data);
+            p.setPreviousPageId(newPos);
+            store.update(p);
+        }
+        index.pageMoved(this, newPos);
+        store.free(getPos());
+    }
+
+}
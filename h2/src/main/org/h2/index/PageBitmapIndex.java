@@ -0,0 +1,465 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import org.h2.constant.ErrorCode;
+import org.h2.engine.Constants;
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.store.Page;
+import org.h2.store.PageStore;
+import org.h2.table.IndexColumn;
+import org.h2.table.RegularTable;
+import org.h2.util.IntArray;
+import org.h2.util.IntIntHashMap;
+import org.h2.util.ValueHashMap;
+import org.h2.value.Value;
+
+/**
+ * A bitmap index that is stored in the page store. The bit set of each key is
+ * split into chunks (see BitmapChunk). A page contains as many chunks as fit,
+ * of the same or of different keys (see PageBitmapData). Adding or removing a
+ * row only changes the page of the affected chunk; if the chunk no longer
+ * fits, it is moved to a page with enough free space. The bit sets are read
+ * when the index is first used, so that the index does not need to be
+ * rebuilt when the database is opened. Queries use the in-memory bit sets.
+ *
+ * @author Min Zhou (coderplay@gmail.com)
+ */
+public class PageBitmapIndex extends PageIndex {
+
+    private final PageStore store;
+    private final BitmapIndex bitmap;
+    private final int chunkShift;
+    private final int maxKeyLength;
+    private final int memoryPerPage;
+    private boolean needRebuild;
+    private boolean loaded;
+
+    /**
+     * The page of each chunk, by key.
+     */
+    private ValueHashMap<IntIntHashMap> chunkPages;
+
+    /**
+     * The ids of all pages of this index.
+     */
+    private IntArray pageIds;
+
+    /**
+     * The number of unused bytes, by page id.
+     */
+    private IntIntHashMap freeSpace;
+
+    /**
+     * The position in the list of pages where the search for free space
+     * starts.
+     */
+    private int nextFit;
+
+    public PageBitmapIndex(RegularTable table, int id, String indexName, IndexColumn[] columns,
+            IndexType indexType, boolean create, Session session) {
+        initBaseIndex(table, id, indexName, columns, indexType);
+        if (!database.isPersistent() || id < 0) {
+            throw DbException.throwInternalError("" + indexName);
+        }
+        bitmap = new BitmapIndex(table, id, indexName, columns, indexType);
+        store = database.getPageStore();
+        store.addIndex(this);
+        // the uncompressed bits of a chunk use at most half of a page,
+        // the rest is used for the key and the page header
+        int pageSize = store.getPageSize();
+        chunkShift = Math.min(16, Integer.numberOfTrailingZeros(pageSize) + 2);
+        maxKeyLength = pageSize / 2 - 32;
+        memoryPerPage = (Constants.MEMORY_PAGE_BTREE + pageSize) >> 2;
+        chunkPages = ValueHashMap.newInstance();
+        pageIds = new IntArray();
+        freeSpace = new IntIntHashMap();
+        if (create) {
+            // new index
+            rootPageId = store.allocatePage();
+            needRebuild = true;
+            store.addMeta(this, session);
+            PageBitmapData root = PageBitmapData.create(this, rootPageId, PageBitmapData.ROOT);
+            store.update(root);
+            addPage(root);
+            loaded = true;
+        } else {
+            rootPageId = store.getRootPageId(id);
+            PageBitmapData root = getPage(rootPageId);
+            if (root.getChunks().size() == 0 && root.getNextPageId() == 0 && store.isRecoveryRunning()) {
+                needRebuild = true;
+                loaded = true;
+                addPage(root);
+            }
+        }
+        if (trace.isDebugEnabled()) {
+            trace.debug("opened {0}", getName());
+        }
+    }
+
+    /**
+     * Read all pages of this index and add the bits to the in-memory bit
+     * sets, if this was not done yet.
+     *
+     * @param pendingRows the number of rows that were already added to the
+     *            table, but not yet to this index
+     */
+    private void load(int pendingRows) {
+        if (loaded) {
+            return;
+        }
+        for (int pageId = rootPageId; pageId != 0;) {
+            PageBitmapData p = getPage(pageId);
+            for (BitmapChunk c : p.getChunks()) {
+                getChunkPages(c.getKey(), true).put(c.getChunk(), pageId);
+                c.addRowsTo(bitmap);
+            }
+            addPage(p);
+            pageId = p.getNextPageId();
+        }
+        // the rows with a row key that can't be stored as a bit
+        long rowCount = table.getRowCountApproximation() - pendingRows;
+        bitmap.addUnindexedRows(rowCount - bitmap.getRowCount(null));
+        loaded = true;
+        if (trace.isDebugEnabled()) {
+            trace.debug("loaded {0} rows: {1}", getName(), bitmap.getRowCount(null));
+        }
+    }
+
+    /**
+     * Get the in-memory bitmap index. The returned index must not be modified.
+     *
+     * @return the index
+     */
+    public BitmapIndex getBitmapIndex() {
+        load(0);
+        return bitmap;
+    }
+
+    /**
+     * Read the given page.
+     *
+     * @param id the page id
+     * @return the page
+     */
+    PageBitmapData getPage(int id) {
+        Page p = store.getPage(id);
+        if (p == null) {
+            PageBitmapData empty = PageBitmapData.create(this, id, PageBitmapData.ROOT);
+            // could have been created before, but never committed
+            store.update(empty);
+            return empty;
+        } else if (!(p instanceof PageBitmapData)) {
+            throw DbException.get(ErrorCode.FILE_CORRUPTED_1, "" + p);
+        }
+        return (PageBitmapData) p;
+    }
+
+    private IntIntHashMap getChunkPages(Value key, boolean create) {
+        IntIntHashMap pages = chunkPages.get(key);
+        if (pages == null && create) {
+            pages = new IntIntHashMap();
+            chunkPages.put(key, pages);
+        }
+        return pages;
+    }
+
+    public void add(Session session, Row row) {
+        if (trace.isDebugEnabled()) {
+            trace.debug("{0} add {1}", getName(), row);
+        }
+        // the row was already added to the table
+        load(1);
+        Value key = bitmap.getKey(row, false);
+        int bit = BitmapIndex.getBitIndex(row.getKey());
+        if (chunkPages.get(key) == null) {
+            checkKeyLength(key);
+        }
+        bitmap.add(key, bit);
+        if (bit < 0) {
+            return;
+        }
+        try {
+            setBit(key, bit, true);
+        } finally {
+            store.incrementChangeCount();
+        }
+    }
+
+    private void checkKeyLength(Value key) {
+        int len = store.createData().getValueLen(key);
+        if (len > maxKeyLength) {
+            throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1,
+                    "BITMAP index key of " + len + " bytes, maximum is " + maxKeyLength);
+        }
+    }
+
+    public void remove(Session session, Row row) {
+        if (trace.isDebugEnabled()) {
+            trace.debug("{0} remove {1}", getName(), row);
+        }
+        load(0);
+        if (bitmap.getRowCount(session) == 1) {
+            removeAllRows();
+        } else {
+            Value key = bitmap.getKey(row, false);
+            int bit = BitmapIndex.getBitIndex(row.getKey());
+            bitmap.remove(key, bit);
+            if (bit < 0) {
+                return;
+            }
+            try {
+                setBit(key, bit, false);
+            } finally {
+                store.incrementChangeCount();
+            }
+        }
+    }
+
+    /**
+     * Set or clear the bit of a row in the chunk. If the chunk doesn't exist
+     * yet, it is added to a page with enough free space. If the chunk is empty
+     * afterwards, it is removed.
+     *
+     * @param key the key
+     * @param bit the bit index of the row
+     * @param value whether to set or clear the bit
+     */
+    private void setBit(Value key, int bit, boolean value) {
+        int chunk = bit >>> chunkShift;
+        int x = bit & (getChunkSize() - 1);
+        IntIntHashMap pages = getChunkPages(key, value);
+        int pageId = pages == null ? IntIntHashMap.NOT_FOUND : pages.get(chunk);
+        if (pageId == IntIntHashMap.NOT_FOUND) {
+            if (!value) {
+                throw DbException.get(ErrorCode.FILE_CORRUPTED_1, "bitmap chunk not found " + getName() + " " + chunk);
+            }
+            BitmapChunk c = new BitmapChunk(key, chunk, getChunkSize(), store.createData().getValueLen(key));
+            c.set(x, true);
+            addChunk(pages, c, 0);
+            return;
+        }
+        PageBitmapData p = getPage(pageId);
+        BitmapChunk c = p.getChunk(key, chunk);
+        if (c == null) {
+            throw DbException.get(ErrorCode.FILE_CORRUPTED_1, "bitmap chunk not found " + getName() + " " + chunk);
+        }
+        store.logUndo(p, p.data);
+        p.setBit(c, x, value);
+        if (c.getCardinality() == 0) {
+            p.removeChunk(c);
+            pages.remove(chunk);
+            if (pages.size() == 0) {
+                chunkPages.remove(key);
+            }
+        } else if (p.getFreeSpace() < 0) {
+            // the chunk grew and doesn't fit any longer
+            p.removeChunk(c);
+            addChunk(pages, c, pageId);
+        }
+        freeSpace.put(pageId, p.getFreeSpace());
+        store.update(p);
+    }
+
+    /**
+     * Add a chunk to a page with enough free space. If there is no such page,
+     * a new page is allocated.
+     *
+     * @param pages the pages of the chunks of the key
+     * @param c the chunk
+     * @param excludePageId the page that must not be used, or 0
+     */
+    private void addChunk(IntIntHashMap pages, BitmapChunk c, int excludePageId) {
+        int length = c.getLength();
+        PageBitmapData p = null;
+        for (int i = 0, size = pageIds.size(); i < size; i++) {
+            int pos = (nextFit + i) % size;
+            int id = pageIds.get(pos);
+            if (id != excludePageId && freeSpace.get(id) >= length) {
+                p = getPage(id);
+                nextFit = pos;
+                break;
+            }
+        }
+        if (p == null) {
+            p = allocatePage();
+            nextFit = pageIds.size() - 1;
+        }
+        store.logUndo(p, p.data);
+        p.addChunk(c);
+        pages.put(c.getChunk(), p.getPos());
+        freeSpace.put(p.getPos(), p.getFreeSpace());
+        store.update(p);
+    }
+
+    private PageBitmapData allocatePage() {
+        // insert the new page after the root page
+        PageBitmapData root = getPage(rootPageId);
+        int next = root.getNextPageId();
+        PageBitmapData p = PageBitmapData.create(this, store.allocatePage(), rootPageId);
+        p.setNextPageId(next);
+        if (next != 0) {
+            PageBitmapData n = getPage(next);
+            store.logUndo(n, n.data);
+            n.setPreviousPageId(p.getPos());
+            store.update(n);
+        }
+        store.logUndo(root, root.data);
+        root.setNextPageId(p.getPos());
+        store.update(root);
+        addPage(p);
+        return p;
+    }
+
+    private void addPage(PageBitmapData p) {
+        pageIds.add(p.getPos());
+        freeSpace.put(p.getPos(), p.getFreeSpace());
+    }
+
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        return getBitmapIndex().find(session, first, last);
+    }
+
+    public double getCost(Session session, int[] masks) {
+        return getBitmapIndex().getCost(session, masks);
+    }
+
+    public boolean needRebuild() {
+        return needRebuild;
+    }
+
+    public void remove(Session session) {
+        if (trace.isDebugEnabled()) {
+            trace.debug("remove");
+        }
+        removeAllRows();
+        store.free(rootPageId);
+        store.removeMeta(this, session);
+    }
+
+    public void truncate(Session session) {
+        if (trace.isDebugEnabled()) {
+            trace.debug("truncate");
+        }
+        removeAllRows();
+    }
+
+    private void removeAllRows() {
+        try {
+            PageBitmapData root = getPage(rootPageId);
+            for (int pageId = root.getNextPageId(); pageId != 0;) {
+                PageBitmapData p = getPage(pageId);
+                pageId = p.getNextPageId();
+                store.logUndo(p, p.data);
+                store.free(p.getPos());
+            }
+            root = PageBitmapData.create(this, rootPageId, PageBitmapData.ROOT);
+            store.removeRecord(rootPageId);
+            store.update(root);
+            bitmap.truncate(null);
+            chunkPages = ValueHashMap.newInstance();
+            pageIds = new IntArray();
+            freeSpace = new IntIntHashMap();
+            nextFit = 0;
+            addPage(root);
+            loaded = true;
+        } finally {
+            store.incrementChangeCount();
+        }
+    }
+
+    /**
+     * A page of this index was moved.
+     *
+     * @param p the page at the old position
+     * @param newPos the new position
+     */
+    void pageMoved(PageBitmapData p, int newPos) {
+        if (!loaded) {
+            return;
+        }
+        for (BitmapChunk c : p.getChunks()) {
+            getChunkPages(c.getKey(), true).put(c.getChunk(), newPos);
+        }
+        for (int i = 0, size = pageIds.size(); i < size; i++) {
+            if (pageIds.get(i) == p.getPos()) {
+                pageIds.remove(i);
+                break;
+            }
+        }
+        freeSpace.remove(p.getPos());
+        pageIds.add(newPos);
+        freeSpace.put(newPos, p.getFreeSpace());
+    }
+
+    /**
+     * The root page has changed.
+     *
+     * @param session the session
+     * @param newPos the new position
+     */
+    void setRootPageId(Session session, int newPos) {
+        store.removeMeta(this, session);
+        this.rootPageId = newPos;
+        store.addMeta(this, session);
+        store.addIndex(this);
+    }
+
+    public void writeRowCount() {
+        // the row count is not stored
+    }
+
+    public void checkRename() {
+        // ok
+    }
+
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    public Cursor findFirstOrLast(Session session, boolean first) {
+        throw DbException.getUnsupportedException("BITMAP");
+    }
+
+    public boolean canScan() {
+        return false;
+    }
+
+    public long getRowCount(Session session) {
+        return getBitmapIndex().getRowCount(session);
+    }
+
+    public long getRowCountApproximation() {
+        return getBitmapIndex().getRowCountApproximation();
+    }
+
+    public void close(Session session) {
+        // can not close the index because it might get used afterwards,
+        // for example after running recovery
+    }
+
+    PageStore getPageStore() {
+        return store;
+    }
+
+    /**
+     * Get the number of bits per chunk.
+     *
+     * @return the number of bits
+     */
+    int getChunkSize() {
+        return 1 << chunkShift;
+    }
+
+    int getMemoryPerPage() {
+        return memoryPerPage;
+    }
+
+}
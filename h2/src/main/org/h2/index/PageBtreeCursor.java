@@ -23,10 +23,20 @@ public class PageBtreeCursor implements Cursor {
     private SearchRow currentSearchRow;
     private Row currentRow;
 
+    /**
+     * The number of leaf pages to read ahead, and the number of pages that
+     * were requested but not reached yet. Read-ahead starts when the scan
+     * reaches the second leaf page, so that short range scans don't read more
+     * pages than they need.
+     */
+    private final int readAhead;
+    private int readAheadLeft;
+
     PageBtreeCursor(Session session, PageBtreeIndex index, SearchRow last) {
         this.session = session;
         this.index = index;
         this.last = last;
+        readAhead = index.getPageStore().getReadAheadPages();
     }
 
     /**
@@ -60,6 +70,9 @@ public class PageBtreeCursor implements Cursor {
             if (current == null) {
                 return false;
             }
+            if (readAhead > 0 && --readAheadLeft <= readAhead / 2) {
+                readAheadLeft = current.readAhead(readAhead);
+            }
         }
         currentSearchRow = current.getRow(i);
         currentRow = null;
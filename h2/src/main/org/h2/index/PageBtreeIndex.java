@@ -6,11 +6,16 @@
  */
 package org.h2.index;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import org.h2.api.DatabaseEventListener;
 import org.h2.constant.ErrorCode;
 import org.h2.constant.SysProperties;
 import org.h2.engine.Constants;
 import org.h2.engine.Session;
 import org.h2.message.DbException;
+import org.h2.result.ResultDiskBuffer;
 import org.h2.result.Row;
 import org.h2.result.SearchRow;
 import org.h2.store.Data;
@@ -20,7 +25,9 @@ import org.h2.table.Column;
 import org.h2.table.IndexColumn;
 import org.h2.table.RegularTable;
 import org.h2.util.MathUtils;
+import org.h2.util.New;
 import org.h2.value.Value;
+import org.h2.value.ValueLong;
 import org.h2.value.ValueNull;
 
 /**
@@ -130,6 +137,140 @@ public class PageBtreeIndex extends PageIndex {
         rowCount++;
     }
 
+    /**
+     * Build the index from all rows of the table. The rows are sorted first,
+     * using temporary files if there are more rows than fit in memory. Then
+     * the pages are filled in index order, from the leaves upwards, each up to
+     * the fill factor. The index must be empty.
+     *
+     * @param session the session
+     * @param cursor the cursor over all rows of the table
+     * @param total the number of rows (to report the progress)
+     * @param fillFactor the percentage of each page to use
+     */
+    public void build(Session session, Cursor cursor, long total, int fillFactor) {
+        final int len = columns.length;
+        Comparator<Value[]> sort = new Comparator<Value[]>() {
+            public int compare(Value[] a, Value[] b) {
+                for (int i = 0; i < len; i++) {
+                    int comp = compareValues(a[i], b[i], indexColumns[i].sortType);
+                    if (comp != 0) {
+                        return comp;
+                    }
+                }
+                return MathUtils.compareLong(a[len].getLong(), b[len].getLong());
+            }
+        };
+        int maxRows = database.getMaxMemoryRows();
+        ArrayList<Value[]> buffer = New.arrayList();
+        ResultDiskBuffer external = null;
+        String n = table.getName() + ":" + getName();
+        int t = MathUtils.convertLongToInt(total);
+        int count = 0;
+        try {
+            while (cursor.next()) {
+                database.setProgress(DatabaseEventListener.STATE_CREATE_INDEX, n, count++, t);
+                Row row = cursor.get();
+                Value[] values = new Value[len + 1];
+                for (int i = 0; i < len; i++) {
+                    values[i] = row.getValue(columns[i].getColumnId());
+                }
+                values[len] = ValueLong.get(row.getKey());
+                buffer.add(values);
+                if (buffer.size() >= maxRows) {
+                    if (external == null) {
+                        external = new ResultDiskBuffer(session, sort, len + 1);
+                    }
+                    external.addRows(buffer);
+                    buffer.clear();
+                }
+            }
+            if (external != null) {
+                if (buffer.size() > 0) {
+                    external.addRows(buffer);
+                    buffer.clear();
+                }
+                external.done();
+                external.reset();
+            } else {
+                Collections.sort(buffer, sort);
+            }
+            int limit = store.getPageSize() * fillFactor / 100;
+            // the page ids of the last page of each level, the leaf level first
+            int[] levels = new int[32];
+            levels[0] = rootPageId;
+            int depth = 1;
+            SearchRow last = null;
+            for (int i = 0; i < count; i++) {
+                Value[] values = external == null ? buffer.get(i) : external.next();
+                SearchRow row = table.getTemplateSimpleRow(len == 1);
+                row.setKey(values[len].getLong());
+                for (int j = 0; j < len; j++) {
+                    row.setValue(columns[j].getColumnId(), values[j]);
+                }
+                if (last != null && indexType.isUnique() && compareRows(last, row) == 0) {
+                    if (!containsNullAndAllowMultipleNull(row)) {
+                        throw getDuplicateKeyException();
+                    }
+                }
+                PageBtreeLeaf leaf = (PageBtreeLeaf) getPage(levels[0]);
+                if (!leaf.appendRow(row, limit)) {
+                    leaf = PageBtreeLeaf.create(this, store.allocatePage(), PageBtree.ROOT);
+                    leaf.appendRow(row, limit);
+                    levels[0] = leaf.getPos();
+                    depth = addChild(levels, depth, 1, leaf.getPos(), last, limit);
+                }
+                last = row;
+            }
+            rowCount = count;
+        } finally {
+            if (external != null) {
+                external.close();
+            }
+            store.incrementChangeCount();
+        }
+    }
+
+    /**
+     * Add a page as the last child of the last node of the given level. If
+     * this node is full, a new node is added to the next level. If there is no
+     * such level yet, the root page is moved and a new root is created, like
+     * when splitting the root.
+     *
+     * @param levels the page ids of the last page of each level
+     * @param depth the number of levels
+     * @param level the level of the node
+     * @param childPageId the page id of the child
+     * @param pivot the largest row of the current last child of the node
+     * @param limit the maximum number of bytes to use in a page
+     * @return the new number of levels
+     */
+    private int addChild(int[] levels, int depth, int level, int childPageId, SearchRow pivot, int limit) {
+        if (level == depth) {
+            PageBtree root = getPage(rootPageId);
+            int id = store.allocatePage();
+            root.setPageId(id);
+            root.setParentPageId(rootPageId);
+            store.update(root);
+            levels[level - 1] = id;
+            PageBtreeNode newRoot = PageBtreeNode.create(this, rootPageId, PageBtree.ROOT);
+            newRoot.appendChild(id, null, limit);
+            levels[level] = rootPageId;
+            depth++;
+        }
+        PageBtreeNode node = (PageBtreeNode) getPage(levels[level]);
+        if (!node.appendChild(childPageId, pivot, limit)) {
+            node = PageBtreeNode.create(this, store.allocatePage(), PageBtree.ROOT);
+            node.appendChild(childPageId, null, limit);
+            levels[level] = node.getPos();
+            depth = addChild(levels, depth, level + 1, node.getPos(), pivot, limit);
+        }
+        PageBtree child = getPage(childPageId);
+        child.setParentPageId(node.getPos());
+        store.update(child);
+        return depth;
+    }
+
     /**
      * Create a search row for this row.
      *
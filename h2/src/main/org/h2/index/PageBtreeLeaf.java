@@ -102,6 +102,29 @@ public class PageBtreeLeaf extends PageBtree {
         return x;
     }
 
+    /**
+     * Add a row after the last row of the page, if the page then uses at most
+     * the given number of bytes. This is used to build the index from sorted
+     * rows. It is always possible to add one row.
+     *
+     * @param row the row, larger than all rows of the page
+     * @param limit the maximum number of bytes to use
+     * @return true if the row was added
+     */
+    boolean appendRow(SearchRow row, int limit) {
+        if (entryCount > 0) {
+            int rowLength = index.getRowSize(data, row, onlyPosition);
+            int pageSize = index.getPageStore().getPageSize();
+            int used = start + OFFSET_LENGTH + pageSize - offsets[entryCount - 1] + rowLength;
+            if (used > limit) {
+                return false;
+            }
+        }
+        addRow(row, false);
+        memoryChange();
+        return true;
+    }
+
     private int addRow(SearchRow row, boolean tryOnly) {
         int rowLength = index.getRowSize(data, row, onlyPosition);
         int pageSize = index.getPageStore().getPageSize();
@@ -309,6 +332,20 @@ public class PageBtreeLeaf extends PageBtree {
         // nothing to do
     }
 
+    /**
+     * Read the leaf pages that follow this page in the background.
+     *
+     * @param count the maximum number of pages to read
+     * @return the number of pages that will be read
+     */
+    int readAhead(int count) {
+        if (parentPageId == PageBtree.ROOT) {
+            return 0;
+        }
+        PageBtreeNode parent = (PageBtreeNode) index.getPage(parentPageId);
+        return parent.readAhead(getPos(), count);
+    }
+
     /**
      * Set the cursor to the first row of the next page.
      *
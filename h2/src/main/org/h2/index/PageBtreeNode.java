@@ -193,6 +193,40 @@ public class PageBtreeNode extends PageBtree {
         changeCount = index.getPageStore().getChangeCount();
     }
 
+    /**
+     * Add a child after the last child, if the page then uses at most the
+     * given number of bytes. This is used to build the index from sorted rows.
+     * It is always possible to add three children.
+     *
+     * @param childPageId the child page id
+     * @param row the largest row of the current last child, or null if this
+     *            is the first child
+     * @param limit the maximum number of bytes to use
+     * @return true if the child was added
+     */
+    boolean appendChild(int childPageId, SearchRow row, int limit) {
+        index.getPageStore().logUndo(this, data);
+        if (row == null) {
+            childPageIds = new int[] { childPageId };
+            rows = SearchRow.EMPTY_ARRAY;
+            offsets = Utils.EMPTY_INT_ARRAY;
+            written = false;
+            changeCount = index.getPageStore().getChangeCount();
+        } else {
+            if (entryCount >= 2) {
+                int rowLength = index.getRowSize(data, row, onlyPosition);
+                int pageSize = index.getPageStore().getPageSize();
+                int used = start + CHILD_OFFSET_PAIR_LENGTH + pageSize - offsets[entryCount - 1] + rowLength;
+                if (used > limit) {
+                    return false;
+                }
+            }
+            addChild(entryCount, childPageId, row);
+        }
+        index.getPageStore().update(this);
+        return true;
+    }
+
     int addRowTry(SearchRow row) {
         while (true) {
             int x = find(row, false, true, true);
@@ -468,6 +502,24 @@ public class PageBtreeNode extends PageBtree {
         start -= CHILD_OFFSET_PAIR_LENGTH;
     }
 
+    /**
+     * Read the children that follow the given child page in the background.
+     *
+     * @param pageId the id of the child page
+     * @param count the maximum number of pages to read
+     * @return the number of pages that will be read
+     */
+    int readAhead(int pageId, int count) {
+        for (int i = 0; i < entryCount; i++) {
+            if (childPageIds[i] == pageId) {
+                int end = Math.min(entryCount + 1, i + 1 + count);
+                index.getPageStore().readAhead(childPageIds, i + 1, end);
+                return end - i - 1;
+            }
+        }
+        return 0;
+    }
+
     /**
      * Set the cursor to the first row of the next page.
      *
@@ -158,6 +158,7 @@ abstract class PageData extends Page {
         index.getPageStore().removeRecord(getPos());
         setPos(id);
         index.getPageStore().logUndo(this, null);
+        index.moveZoneMap(old, id);
         remapChildren(old);
     }
 
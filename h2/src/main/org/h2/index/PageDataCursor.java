@@ -25,17 +25,49 @@ class PageDataCursor implements Cursor {
     private final Session session;
     private Iterator<Row> delta;
 
+    /**
+     * The number of leaf pages to read ahead, and the number of pages that
+     * were requested but not reached yet. Read-ahead starts when the scan
+     * reaches the second leaf page, so that short range scans don't read more
+     * pages than they need.
+     */
+    private final int readAhead;
+    private int readAheadLeft;
+
+    /**
+     * The range of the column values (null if zone maps are not used).
+     */
+    private SearchRow rangeFirst, rangeLast;
+    private boolean range;
+
     PageDataCursor(Session session, PageDataLeaf current, int idx, long maxKey, boolean multiVersion) {
         this.current = current;
         this.idx = idx;
         this.maxKey = maxKey;
         this.multiVersion = multiVersion;
         this.session = session;
+        readAhead = current.index.getPageStore().getReadAheadPages();
         if (multiVersion) {
             delta = current.index.getDelta();
         }
     }
 
+    /**
+     * Skip leaf pages that can't contain rows within the range, according to
+     * the zone maps.
+     *
+     * @param first the lower bounds (null values are no bound), or null
+     * @param last the upper bounds (null values are no bound), or null
+     */
+    void setRange(SearchRow first, SearchRow last) {
+        rangeFirst = first;
+        rangeLast = last;
+        range = first != null || last != null;
+        if (range && current.index.canSkip(current, first, last)) {
+            idx = current.getEntryCount();
+        }
+    }
+
     public Row get() {
         return row;
     }
@@ -86,13 +118,19 @@ class PageDataCursor implements Cursor {
     }
 
     private void nextRow() {
-        if (idx >= current.getEntryCount()) {
-            current = current.getNextPage();
+        while (idx >= current.getEntryCount()) {
+            current = range ? current.getNextPage(rangeFirst, rangeLast) : current.getNextPage();
             idx = 0;
             if (current == null) {
                 row = null;
                 return;
             }
+            if (readAhead > 0 && --readAheadLeft <= readAhead / 2) {
+                readAheadLeft = current.readAhead(readAhead);
+            }
+            if (range && current.index.canSkip(current, rangeFirst, rangeLast)) {
+                idx = current.getEntryCount();
+            }
         }
         row = current.getRowAt(idx);
         idx++;
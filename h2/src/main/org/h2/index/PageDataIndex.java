@@ -6,6 +6,7 @@
  */
 package org.h2.index;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -24,6 +25,7 @@ import org.h2.store.PageStore;
 import org.h2.table.Column;
 import org.h2.table.IndexColumn;
 import org.h2.table.RegularTable;
+import org.h2.table.TableFilter;
 import org.h2.util.MathUtils;
 import org.h2.util.New;
 import org.h2.value.Value;
@@ -55,6 +57,12 @@ public class PageDataIndex extends PageIndex {
 
     private boolean multiVersion;
 
+    /**
+     * The zone maps of the leaf pages (key: page id), or null if zone maps are
+     * not used.
+     */
+    private final HashMap<Integer, ZoneMap> zoneMaps;
+
     public PageDataIndex(RegularTable table, int id, IndexColumn[] columns,
             IndexType indexType, boolean create, Session session) {
         initBaseIndex(table, id, table.getName() + "_DATA", columns, indexType);
@@ -68,6 +76,7 @@ public class PageDataIndex extends PageIndex {
         }
         tableData = table;
         this.store = database.getPageStore();
+        zoneMaps = database.getSettings().pageStoreZoneMaps ? new HashMap<Integer, ZoneMap>() : null;
         store.addIndex(this);
         if (!database.isPersistent()) {
             throw DbException.throwInternalError(table.getName());
@@ -275,6 +284,118 @@ public class PageDataIndex extends PageIndex {
 
     }
 
+    public Cursor find(TableFilter filter, SearchRow first, SearchRow last) {
+        Cursor cursor = find(filter.getSession(), first, last);
+        if (zoneMaps != null) {
+            ArrayList<IndexCondition> conditions = filter.getRangeConditions();
+            if (conditions.size() > 0) {
+                setRange((PageDataCursor) cursor, filter.getSession(), conditions);
+            }
+        }
+        return cursor;
+    }
+
+    private void setRange(PageDataCursor cursor, Session session, ArrayList<IndexCondition> conditions) {
+        SearchRow rangeFirst = null, rangeLast = null;
+        for (IndexCondition condition : conditions) {
+            int id = condition.getColumn().getColumnId();
+            Value v = condition.getCurrentValue(session);
+            if (condition.isStart()) {
+                if (rangeFirst == null) {
+                    rangeFirst = table.getTemplateRow();
+                }
+                Value old = rangeFirst.getValue(id);
+                if (old == null || table.compareTypeSave(v, old) > 0) {
+                    rangeFirst.setValue(id, v);
+                }
+            }
+            if (condition.isEnd()) {
+                if (rangeLast == null) {
+                    rangeLast = table.getTemplateRow();
+                }
+                Value old = rangeLast.getValue(id);
+                if (old == null || table.compareTypeSave(v, old) < 0) {
+                    rangeLast.setValue(id, v);
+                }
+            }
+        }
+        cursor.setRange(rangeFirst, rangeLast);
+    }
+
+    /**
+     * Check whether a leaf page can't contain rows within the range. The
+     * columns of the range that are not summarized yet are summarized first.
+     *
+     * @param leaf the leaf page
+     * @param first the lower bounds (null values are no bound)
+     * @param last the upper bounds (null values are no bound)
+     * @return true if the page can be skipped
+     */
+    boolean canSkip(PageDataLeaf leaf, SearchRow first, SearchRow last) {
+        synchronized (zoneMaps) {
+            ZoneMap zoneMap = zoneMaps.get(leaf.getPos());
+            if (zoneMap == null) {
+                zoneMap = new ZoneMap(table.getColumns().length);
+                zoneMaps.put(leaf.getPos(), zoneMap);
+            }
+            zoneMap.compute(leaf, first, last);
+            return zoneMap.canSkip(table, first, last);
+        }
+    }
+
+    /**
+     * Check whether the page with the given id is a leaf page that can't
+     * contain rows within the range, without reading the page.
+     *
+     * @param pageId the page id
+     * @param first the lower bounds (null values are no bound)
+     * @param last the upper bounds (null values are no bound)
+     * @return true if the page can be skipped
+     */
+    boolean canSkip(int pageId, SearchRow first, SearchRow last) {
+        synchronized (zoneMaps) {
+            ZoneMap zoneMap = zoneMaps.get(pageId);
+            return zoneMap != null && zoneMap.canSkip(table, first, last);
+        }
+    }
+
+    /**
+     * A row was added to a leaf page.
+     *
+     * @param pageId the page id of the leaf
+     * @param row the row
+     */
+    void addToZoneMap(int pageId, Row row) {
+        if (zoneMaps != null) {
+            synchronized (zoneMaps) {
+                ZoneMap zoneMap = zoneMaps.get(pageId);
+                if (zoneMap != null) {
+                    zoneMap.add(table, row);
+                }
+            }
+        }
+    }
+
+    /**
+     * A page was created, or moved. The zone map of the old page is moved to
+     * the new page, or removed if there is no old page.
+     *
+     * @param oldPos the old page id, or 0 for a new page
+     * @param newPos the new page id
+     */
+    void moveZoneMap(int oldPos, int newPos) {
+        if (zoneMaps != null) {
+            synchronized (zoneMaps) {
+                ZoneMap zoneMap = zoneMaps.remove(oldPos);
+                if (zoneMap == null) {
+                    zoneMaps.remove(newPos);
+                } else {
+                    zoneMaps.put(newPos, zoneMap);
+                }
+            }
+        }
+    }
+
     /**
      * Search for a specific row or a set of rows.
      *
@@ -382,6 +503,11 @@ public class PageDataIndex extends PageIndex {
             store.update(root);
             rowCount = 0;
             lastKey = 0;
+            if (zoneMaps != null) {
+                synchronized (zoneMaps) {
+                    zoneMaps.clear();
+                }
+            }
         } finally {
             store.incrementChangeCount();
         }
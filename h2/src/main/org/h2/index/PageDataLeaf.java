@@ -14,6 +14,7 @@ import org.h2.engine.Constants;
 import org.h2.engine.Session;
 import org.h2.message.DbException;
 import org.h2.result.Row;
+import org.h2.result.SearchRow;
 import org.h2.store.Data;
 import org.h2.store.Page;
 import org.h2.store.PageStore;
@@ -90,6 +91,7 @@ public class PageDataLeaf extends PageData {
     static PageDataLeaf create(PageDataIndex index, int pageId, int parentPageId) {
         PageDataLeaf p = new PageDataLeaf(index, pageId, index.getPageStore().createData());
         index.getPageStore().logUndo(p, null);
+        index.moveZoneMap(0, pageId);
         p.rows = Row.EMPTY_ARRAY;
         p.parentPageId = parentPageId;
         p.columnCount = index.getTable().getColumns().length;
@@ -203,6 +205,7 @@ public class PageDataLeaf extends PageData {
         keys = insert(keys, entryCount, x, row.getKey());
         rows = insert(rows, entryCount, x, row);
         entryCount++;
+        index.addToZoneMap(getPos(), row);
         index.getPageStore().update(this);
         if (optimizeUpdate) {
             if (writtenData && offset >= start) {
@@ -384,6 +387,20 @@ public class PageDataLeaf extends PageData {
         return getRowAt(entryCount - 1).getKey();
     }
 
+    /**
+     * Read the leaf pages that follow this page in the background.
+     *
+     * @param count the maximum number of pages to read
+     * @return the number of pages that will be read
+     */
+    int readAhead(int count) {
+        if (parentPageId == PageData.ROOT) {
+            return 0;
+        }
+        PageDataNode parent = (PageDataNode) index.getPage(parentPageId, -1);
+        return parent.readAhead(getPos(), count);
+    }
+
     PageDataLeaf getNextPage() {
         if (parentPageId == PageData.ROOT) {
             return null;
@@ -392,6 +409,22 @@ public class PageDataLeaf extends PageData {
         return next.getNextPage(keys[entryCount - 1]);
     }
 
+    /**
+     * Get the next leaf page that may contain rows within the range, according
+     * to the zone maps.
+     *
+     * @param first the lower bounds (null values are no bound)
+     * @param last the upper bounds (null values are no bound)
+     * @return the next leaf page, or null
+     */
+    PageDataLeaf getNextPage(SearchRow first, SearchRow last) {
+        if (parentPageId == PageData.ROOT) {
+            return null;
+        }
+        PageDataNode next = (PageDataNode) index.getPage(parentPageId, -1);
+        return next.getNextPage(keys[entryCount - 1], first, last);
+    }
+
     PageDataLeaf getFirstLeaf() {
         return this;
     }
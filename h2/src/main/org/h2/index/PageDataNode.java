@@ -13,6 +13,7 @@ import org.h2.constant.SysProperties;
 import org.h2.engine.Session;
 import org.h2.message.DbException;
 import org.h2.result.Row;
+import org.h2.result.SearchRow;
 import org.h2.store.Data;
 import org.h2.store.Page;
 import org.h2.store.PageStore;
@@ -64,6 +65,7 @@ public class PageDataNode extends PageData {
     static PageDataNode create(PageDataIndex index, int pageId, int parentPageId) {
         PageDataNode p = new PageDataNode(index, pageId, index.getPageStore().createData());
         index.getPageStore().logUndo(p, null);
+        index.moveZoneMap(0, pageId);
         p.parentPageId = parentPageId;
         p.writeHead();
         // 4 bytes for the rightmost child page id
@@ -227,6 +229,67 @@ public class PageDataNode extends PageData {
         return page.getFirstLeaf();
     }
 
+    /**
+     * Get the next leaf page that may contain rows within the range. Leaf
+     * pages that can't contain such rows according to the zone maps are
+     * skipped without reading them.
+     *
+     * @param key the last key of the current page
+     * @param first the lower bounds (null values are no bound)
+     * @param last the upper bounds (null values are no bound)
+     * @return the next leaf page, or null
+     */
+    PageDataLeaf getNextPage(long key, SearchRow first, SearchRow last) {
+        for (int i = find(key) + 1; i <= entryCount; i++) {
+            PageDataLeaf leaf = getFirstLeaf(i, first, last);
+            if (leaf != null) {
+                return leaf;
+            }
+        }
+        if (parentPageId == PageData.ROOT) {
+            return null;
+        }
+        PageDataNode next = (PageDataNode) index.getPage(parentPageId, -1);
+        return next.getNextPage(key, first, last);
+    }
+
+    private PageDataLeaf getFirstLeaf(int i, SearchRow first, SearchRow last) {
+        int child = childPageIds[i];
+        if (index.canSkip(child, first, last)) {
+            return null;
+        }
+        PageData page = index.getPage(child, getPos());
+        if (page instanceof PageDataLeaf) {
+            return (PageDataLeaf) page;
+        }
+        PageDataNode node = (PageDataNode) page;
+        for (int j = 0; j <= node.entryCount; j++) {
+            PageDataLeaf leaf = node.getFirstLeaf(j, first, last);
+            if (leaf != null) {
+                return leaf;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read the children that follow the given child page in the background.
+     *
+     * @param pageId the id of the child page
+     * @param count the maximum number of pages to read
+     * @return the number of pages that will be read
+     */
+    int readAhead(int pageId, int count) {
+        for (int i = 0; i < entryCount; i++) {
+            if (childPageIds[i] == pageId) {
+                int end = Math.min(entryCount + 1, i + 1 + count);
+                index.getPageStore().readAhead(childPageIds, i + 1, end);
+                return end - i - 1;
+            }
+        }
+        return 0;
+    }
+
     PageDataLeaf getFirstLeaf() {
         int child = childPageIds[0];
         return index.getPage(child, getPos()).getFirstLeaf();
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import org.h2.result.SearchRow;
+import org.h2.table.Table;
+import org.h2.value.Value;
+
+/**
+ * The smallest and the largest value of some columns of the rows in a data
+ * leaf page. A column is only summarized after a scan with a range condition
+ * on this column has read the page. NULL is smaller than all other values.
+ * When a row is added to the page, the ranges are widened; they are not
+ * narrowed when a row is removed.
+ */
+class ZoneMap {
+
+    private final Value[] min, max;
+
+    ZoneMap(int columnCount) {
+        min = new Value[columnCount];
+        max = new Value[columnCount];
+    }
+
+    /**
+     * Summarize the columns that have a range condition and are not summarized
+     * yet.
+     *
+     * @param leaf the leaf page
+     * @param first the lower bounds (null values are no bound)
+     * @param last the upper bounds (null values are no bound)
+     */
+    void compute(PageDataLeaf leaf, SearchRow first, SearchRow last) {
+        Table table = leaf.index.getTable();
+        int entryCount = leaf.getEntryCount();
+        for (int i = 0; i < min.length; i++) {
+            if (min[i] != null || !isBounded(i, first, last)) {
+                continue;
+            }
+            Value a = null, b = null;
+            for (int j = 0; j < entryCount; j++) {
+                Value v = leaf.getRowAt(j).getValue(i);
+                if (a == null || table.compareTypeSave(v, a) < 0) {
+                    a = v;
+                }
+                if (b == null || table.compareTypeSave(v, b) > 0) {
+                    b = v;
+                }
+            }
+            if (a != null) {
+                min[i] = a;
+                max[i] = b;
+            }
+        }
+    }
+
+    /**
+     * Widen the ranges to include the given row.
+     *
+     * @param table the table
+     * @param row the row
+     */
+    void add(Table table, SearchRow row) {
+        for (int i = 0; i < min.length; i++) {
+            if (min[i] == null) {
+                continue;
+            }
+            Value v = row.getValue(i);
+            if (table.compareTypeSave(v, min[i]) < 0) {
+                min[i] = v;
+            }
+            if (table.compareTypeSave(v, max[i]) > 0) {
+                max[i] = v;
+            }
+        }
+    }
+
+    /**
+     * Check whether the page can't contain rows within the range.
+     *
+     * @param table the table
+     * @param first the lower bounds (null values are no bound)
+     * @param last the upper bounds (null values are no bound)
+     * @return true if the page can be skipped
+     */
+    boolean canSkip(Table table, SearchRow first, SearchRow last) {
+        for (int i = 0; i < min.length; i++) {
+            if (min[i] == null) {
+                continue;
+            }
+            Value a = first == null ? null : first.getValue(i);
+            if (a != null && table.compareTypeSave(max[i], a) < 0) {
+                return true;
+            }
+            Value b = last == null ? null : last.getValue(i);
+            if (b != null && table.compareTypeSave(min[i], b) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isBounded(int column, SearchRow first, SearchRow last) {
+        return (first != null && first.getValue(column) != null) ||
+                (last != null && last.getValue(column) != null);
+    }
+
+}
@@ -44,6 +44,13 @@ public class LocalResult implements ResultInterface, ResultTarget {
     private boolean randomAccess;
     private boolean closed;
 
+    /**
+     * The ids of the rows if only the first rows of the sorted result are
+     * kept (the rows are then a heap with the last row at the top), or null.
+     */
+    private long[] topIds;
+    private long nextTopId;
+
     /**
      * Construct a local result object.
      */
@@ -263,6 +270,10 @@ public class LocalResult implements ResultInterface, ResultTarget {
             }
             return;
         }
+        if (topIds != null || rows.size() == 0 && external == null && initTop()) {
+            addRowTop(values);
+            return;
+        }
         rows.add(values);
         rowCount++;
         if (rows.size() > maxMemoryRows && session.getDatabase().isPersistent()) {
@@ -280,6 +291,93 @@ public class LocalResult implements ResultInterface, ResultTarget {
         }
     }
 
+    /**
+     * Keep only the first rows of the sorted result, if the offset and the
+     * limit are known and the rows fit in memory.
+     *
+     * @return true if only the first rows are kept
+     */
+    private boolean initTop() {
+        if (sort == null || limit < 0 || randomAccess) {
+            return false;
+        }
+        long count = (long) Math.max(offset, 0) + limit;
+        if (count == 0 || count > maxMemoryRows) {
+            return false;
+        }
+        topIds = new long[(int) Math.min(count, 1024)];
+        nextTopId = 0;
+        return true;
+    }
+
+    private void addRowTop(Value[] values) {
+        long count = (long) Math.max(offset, 0) + limit;
+        int size = rows.size();
+        if (size < count) {
+            if (size == topIds.length) {
+                long[] ids = new long[(int) Math.min(count, (long) size * 2)];
+                System.arraycopy(topIds, 0, ids, 0, size);
+                topIds = ids;
+            }
+            rows.add(values);
+            topIds[size] = nextTopId++;
+            siftUp(size);
+            rowCount = size + 1;
+        } else if (sort.compare(values, rows.get(0)) < 0) {
+            // replace the last row; rows that are equal to the last row are
+            // added later, and therefore come after it
+            rows.set(0, values);
+            topIds[0] = nextTopId++;
+            siftDown(0, size);
+        }
+    }
+
+    private int compareTop(int a, int b) {
+        int comp = sort.compare(rows.get(a), rows.get(b));
+        if (comp == 0) {
+            // keep the order in which the rows were added
+            comp = topIds[a] < topIds[b] ? -1 : topIds[a] > topIds[b] ? 1 : 0;
+        }
+        return comp;
+    }
+
+    private void swapTop(int a, int b) {
+        Value[] row = rows.get(a);
+        rows.set(a, rows.get(b));
+        rows.set(b, row);
+        long id = topIds[a];
+        topIds[a] = topIds[b];
+        topIds[b] = id;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (compareTop(i, parent) <= 0) {
+                break;
+            }
+            swapTop(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int size) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && compareTop(child + 1, child) > 0) {
+                child++;
+            }
+            if (compareTop(i, child) >= 0) {
+                break;
+            }
+            swapTop(i, child);
+            i = child;
+        }
+    }
+
     private void addRowsToDisk() {
         rowCount = external.addRows(rows);
         rows.clear();
@@ -333,6 +431,13 @@ public class LocalResult implements ResultInterface, ResultTarget {
         if (external != null) {
             addRowsToDisk();
             external.done();
+        } else if (topIds != null) {
+            // heap sort: move the last row to the end, one by one
+            for (int i = rows.size() - 1; i > 0; i--) {
+                swapTop(0, i);
+                siftDown(0, i);
+            }
+            topIds = null;
         } else {
             if (sort != null) {
                 sort.sort(rows);
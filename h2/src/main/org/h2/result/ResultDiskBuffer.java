@@ -8,6 +8,8 @@ package org.h2.result;
 
 import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import org.h2.engine.Constants;
 import org.h2.engine.Database;
 import org.h2.engine.Session;
@@ -15,25 +17,55 @@ import org.h2.message.DbException;
 import org.h2.store.Data;
 import org.h2.store.FileStore;
 import org.h2.util.New;
+import org.h2.util.Task;
+import org.h2.util.ThreadPool;
+import org.h2.value.CompareMode;
 import org.h2.value.Value;
 
 /**
- * This class implements the disk buffer for the LocalResult class.
+ * This class implements the disk buffer for the LocalResult class. It is also
+ * used to sort the rows when building an index.
+ * When sorting, each list of added rows is sorted and written as a separate
+ * run (tape), and the tapes are merged when reading. If multiple query threads
+ * are allowed, the lists are sorted and serialized by worker threads of the
+ * database while the caller adds the next rows; the runs are still written in
+ * order.
  */
-class ResultDiskBuffer implements ResultExternal {
+public class ResultDiskBuffer implements ResultExternal {
 
     private static final int READ_AHEAD = 128;
 
     private final Data rowBuff;
     private final ArrayList<ResultDiskTape> tapes;
     private final ResultDiskTape mainTape;
-    private final SortOrder sort;
+    private final Comparator<Value[]> sort;
     private final int columnCount;
     private final int maxBufferSize;
 
     private FileStore file;
     private int rowCount;
 
+    /**
+     * The maximum number of lists that are sorted at the same time by worker
+     * threads, or 0 if the rows are sorted by the calling thread.
+     */
+    private int threads;
+
+    /**
+     * The tasks that sort and serialize the rows (the result is the data of
+     * the run), in the order the rows were added.
+     */
+    private final ArrayList<Task> tasks;
+
+    private final ThreadPool threadPool;
+
+    /**
+     * The tapes that still contain rows while merging, as a heap with the tape
+     * of the next row at the top.
+     */
+    private ResultDiskTape[] heap;
+    private int heapSize;
+
     private final ResultDiskBuffer parent;
     private boolean closed;
     private int childCount;
@@ -65,7 +97,14 @@ class ResultDiskBuffer implements ResultExternal {
         ArrayList<Value[]> buffer = New.arrayList();
     }
 
-    ResultDiskBuffer(Session session, SortOrder sort, int columnCount) {
+    /**
+     * Create a new disk buffer.
+     *
+     * @param session the session
+     * @param sort the sort order, or null if the rows are not sorted
+     * @param columnCount the number of columns
+     */
+    public ResultDiskBuffer(Session session, Comparator<Value[]> sort, int columnCount) {
         this.parent = null;
         this.sort = sort;
         this.columnCount = columnCount;
@@ -84,6 +123,17 @@ class ResultDiskBuffer implements ResultExternal {
             mainTape.pos = FileStore.HEADER_LENGTH;
         }
         this.maxBufferSize = db.getSettings().largeResultBufferSize;
+        // comparing strings with a collation uses a shared collator
+        if (sort != null && CompareMode.OFF.equals(db.getCompareMode().getName())) {
+            threads = db.getSettings().queryThreads - 1;
+        }
+        if (threads > 0) {
+            tasks = New.arrayList();
+            threadPool = db.getQueryThreadPool();
+        } else {
+            tasks = null;
+            threadPool = null;
+        }
     }
 
     private ResultDiskBuffer(ResultDiskBuffer parent) {
@@ -112,6 +162,9 @@ class ResultDiskBuffer implements ResultExternal {
         sort = parent.sort;
         columnCount = parent.columnCount;
         maxBufferSize = parent.maxBufferSize;
+        threads = 0;
+        tasks = null;
+        threadPool = null;
     }
 
     public synchronized ResultDiskBuffer createShallowCopy() {
@@ -123,24 +176,35 @@ class ResultDiskBuffer implements ResultExternal {
     }
 
     public int addRows(ArrayList<Value[]> rows) {
+        rowCount += rows.size();
+        if (threads > 0 && containsLob(rows)) {
+            // comparing LOB values may read from the database
+            threads = 0;
+            writeRuns();
+        }
+        if (threads > 0) {
+            if (tasks.size() >= threads) {
+                writeRun(tasks.remove(0));
+            }
+            final ArrayList<Value[]> list = New.arrayList(rows);
+            Task task = new Task() {
+                public void call() {
+                    result = createRun(list);
+                }
+            };
+            tasks.add(task.execute(threadPool));
+            return rowCount;
+        }
         if (sort != null) {
-            sort.sort(rows);
+            Collections.sort(rows, sort);
         }
         Data buff = rowBuff;
         long start = file.getFilePointer();
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
         int bufferLen = 0;
         for (Value[] row : rows) {
-            buff.reset();
-            buff.writeInt(0);
-            for (int j = 0; j < columnCount; j++) {
-                Value v = row[j];
-                buff.checkCapacity(buff.getValueLen(v));
-                buff.writeValue(v);
-            }
-            buff.fillAligned();
+            writeRow(buff, row);
             int len = buff.length();
-            buff.setInt(0, len);
             if (maxBufferSize > 0) {
                 buffer.write(buff.getBytes(), 0, len);
                 bufferLen += len;
@@ -166,16 +230,80 @@ class ResultDiskBuffer implements ResultExternal {
         } else {
             mainTape.end = file.getFilePointer();
         }
-        rowCount += rows.size();
         return rowCount;
     }
 
+    private void writeRow(Data buff, Value[] row) {
+        buff.reset();
+        buff.writeInt(0);
+        for (int j = 0; j < columnCount; j++) {
+            Value v = row[j];
+            buff.checkCapacity(buff.getValueLen(v));
+            buff.writeValue(v);
+        }
+        buff.fillAligned();
+        buff.setInt(0, buff.length());
+    }
+
+    private static boolean containsLob(ArrayList<Value[]> rows) {
+        for (Value[] row : rows) {
+            for (Value v : row) {
+                int type = v.getType();
+                if (type == Value.BLOB || type == Value.CLOB) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sort the rows and serialize them. This method is called by a worker
+     * thread.
+     *
+     * @param rows the rows
+     * @return the data of the run
+     */
+    byte[] createRun(ArrayList<Value[]> rows) {
+        Collections.sort(rows, sort);
+        Data buff = Data.create(rowBuff.getHandler(), Constants.DEFAULT_PAGE_SIZE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Value[] row : rows) {
+            writeRow(buff, row);
+            out.write(buff.getBytes(), 0, buff.length());
+        }
+        return out.toByteArray();
+    }
+
+    private void writeRun(Task task) {
+        Exception e = task.getException();
+        if (e != null) {
+            throw DbException.convert(e);
+        }
+        byte[] data = (byte[]) task.get();
+        ResultDiskTape tape = new ResultDiskTape();
+        tape.start = file.getFilePointer();
+        file.write(data, 0, data.length);
+        tape.end = file.getFilePointer();
+        tapes.add(tape);
+    }
+
+    private void writeRuns() {
+        if (tasks != null) {
+            while (tasks.size() > 0) {
+                writeRun(tasks.remove(0));
+            }
+        }
+    }
+
     public void done() {
+        writeRuns();
         file.seek(FileStore.HEADER_LENGTH);
         file.autoDelete();
     }
 
     public void reset() {
+        heap = null;
         if (sort != null) {
             for (ResultDiskTape tape : tapes) {
                 tape.pos = tape.start;
@@ -222,33 +350,79 @@ class ResultDiskBuffer implements ResultExternal {
     }
 
     private Value[] nextSorted() {
-        int next = -1;
-        for (int i = 0, size = tapes.size(); i < size; i++) {
-            ResultDiskTape tape = tapes.get(i);
-            if (tape.buffer.size() == 0 && tape.pos < tape.end) {
-                file.seek(tape.pos);
-                for (int j = 0; tape.pos < tape.end && j < READ_AHEAD; j++) {
-                    readRow(tape);
-                }
-            }
-            if (tape.buffer.size() > 0) {
-                if (next == -1) {
-                    next = i;
-                } else if (compareTapes(tape, tapes.get(next)) < 0) {
-                    next = i;
+        if (heap == null) {
+            heap = new ResultDiskTape[tapes.size()];
+            heapSize = 0;
+            for (ResultDiskTape tape : tapes) {
+                if (fill(tape)) {
+                    heap[heapSize] = tape;
+                    siftUp(heapSize++);
                 }
             }
         }
-        ResultDiskTape t = tapes.get(next);
-        Value[] row = t.buffer.get(0);
-        t.buffer.remove(0);
+        ResultDiskTape t = heap[0];
+        Value[] row = t.buffer.remove(0);
+        if (!fill(t)) {
+            heap[0] = heap[--heapSize];
+            heap[heapSize] = null;
+        }
+        siftDown(0);
         return row;
     }
 
+    private boolean fill(ResultDiskTape tape) {
+        if (tape.buffer.size() == 0 && tape.pos < tape.end) {
+            file.seek(tape.pos);
+            for (int j = 0; tape.pos < tape.end && j < READ_AHEAD; j++) {
+                readRow(tape);
+            }
+        }
+        return tape.buffer.size() > 0;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (compareTapes(heap[i], heap[parent]) >= 0) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && compareTapes(heap[child + 1], heap[child]) < 0) {
+                child++;
+            }
+            if (compareTapes(heap[i], heap[child]) <= 0) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        ResultDiskTape t = heap[a];
+        heap[a] = heap[b];
+        heap[b] = t;
+    }
+
     private int compareTapes(ResultDiskTape a, ResultDiskTape b) {
         Value[] va = a.buffer.get(0);
         Value[] vb = b.buffer.get(0);
-        return sort.compare(va, vb);
+        int comp = sort.compare(va, vb);
+        if (comp == 0) {
+            // rows of earlier tapes first, as they were added first
+            comp = a.start < b.start ? -1 : a.start > b.start ? 1 : 0;
+        }
+        return comp;
     }
 
     private synchronized void closeChild() {
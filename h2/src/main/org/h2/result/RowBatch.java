@@ -0,0 +1,172 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.result;
+
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
+
+/**
+ * A batch of rows of one table that are processed together. The values of a
+ * column can be read into an array of primitive values, so that conditions
+ * and aggregates can be evaluated in a tight loop instead of once per row.
+ * The arrays are created when they are first used, and are valid until the
+ * next batch is read. The batch is filled with rows that were already read
+ * from the table with all values, so rows that don't match the condition are
+ * read as well; only the conversion to column arrays is done per batch.
+ */
+public class RowBatch {
+
+    private final Row[] rows;
+    private int size;
+    private int version;
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final boolean[][] nulls;
+    private final int[] longVersion;
+    private final int[] doubleVersion;
+
+    /**
+     * Create a new batch.
+     *
+     * @param capacity the maximum number of rows
+     * @param columnCount the number of columns of the table
+     */
+    public RowBatch(int capacity, int columnCount) {
+        rows = new Row[capacity];
+        longs = new long[columnCount][];
+        doubles = new double[columnCount][];
+        nulls = new boolean[columnCount][];
+        longVersion = new int[columnCount];
+        doubleVersion = new int[columnCount];
+    }
+
+    /**
+     * Get the row array. The caller may replace the rows and must then call
+     * setSize.
+     *
+     * @return the row array
+     */
+    public Row[] getRows() {
+        return rows;
+    }
+
+    /**
+     * Set the number of rows in this batch. This invalidates the column
+     * arrays.
+     *
+     * @param size the number of rows
+     */
+    public void setSize(int size) {
+        this.size = size;
+        version++;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return rows.length;
+    }
+
+    /**
+     * Get the row at the given position.
+     *
+     * @param i the position
+     * @return the row
+     */
+    public Row getRow(int i) {
+        return rows[i];
+    }
+
+    /**
+     * Get a value.
+     *
+     * @param i the position of the row
+     * @param columnId the column id
+     * @return the value
+     */
+    public Value getValue(int i, int columnId) {
+        return rows[i].getValue(columnId);
+    }
+
+    /**
+     * Get the values of an integer column as long values. The value of a NULL
+     * is undefined, see getNulls.
+     *
+     * @param columnId the column id
+     * @return the values
+     */
+    public long[] getLongs(int columnId) {
+        long[] values = longs[columnId];
+        if (longVersion[columnId] != version) {
+            if (values == null) {
+                values = longs[columnId] = new long[rows.length];
+            }
+            boolean[] isNull = getNullArray(columnId);
+            for (int i = 0; i < size; i++) {
+                Value v = rows[i].getValue(columnId);
+                if (v == ValueNull.INSTANCE) {
+                    isNull[i] = true;
+                } else {
+                    isNull[i] = false;
+                    values[i] = v.getLong();
+                }
+            }
+            longVersion[columnId] = version;
+        }
+        return values;
+    }
+
+    /**
+     * Get the values of a numeric column as double values. The value of a
+     * NULL is undefined, see getNulls.
+     *
+     * @param columnId the column id
+     * @return the values
+     */
+    public double[] getDoubles(int columnId) {
+        double[] values = doubles[columnId];
+        if (doubleVersion[columnId] != version) {
+            if (values == null) {
+                values = doubles[columnId] = new double[rows.length];
+            }
+            boolean[] isNull = getNullArray(columnId);
+            for (int i = 0; i < size; i++) {
+                Value v = rows[i].getValue(columnId);
+                if (v == ValueNull.INSTANCE) {
+                    isNull[i] = true;
+                } else {
+                    isNull[i] = false;
+                    values[i] = v.getDouble();
+                }
+            }
+            doubleVersion[columnId] = version;
+        }
+        return values;
+    }
+
+    /**
+     * Get the NULL flags of a column. Only valid after calling getLongs or
+     * getDoubles for this column.
+     *
+     * @param columnId the column id
+     * @return the array, true for NULL
+     */
+    public boolean[] getNulls(int columnId) {
+        return nulls[columnId];
+    }
+
+    private boolean[] getNullArray(int columnId) {
+        boolean[] isNull = nulls[columnId];
+        if (isNull == null) {
+            isNull = nulls[columnId] = new boolean[rows.length];
+        }
+        return isNull;
+    }
+
+}
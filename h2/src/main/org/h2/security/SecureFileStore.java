@@ -82,6 +82,15 @@ public class SecureFileStore extends FileStore {
         pos += len;
     }
 
+    /**
+     * Encrypted files can't be read using memory mapped buffers.
+     *
+     * @return false
+     */
+    public boolean setMapped() {
+        return false;
+    }
+
     public void seek(long x) {
         this.pos = x;
         super.seek(x);
@@ -1131,7 +1131,7 @@ public class Data {
      * @param x the value
      * @return the len
      */
-    private static int getVarIntLen(int x) {
+    public static int getVarIntLen(int x) {
         if ((x & (-1 << 7)) == 0) {
             return 1;
         } else if ((x & (-1 << 14)) == 0) {
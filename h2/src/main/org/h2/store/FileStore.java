@@ -6,9 +6,12 @@
  */
 package org.h2.store;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.lang.ref.Reference;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import org.h2.constant.ErrorCode;
 import org.h2.constant.SysProperties;
@@ -31,6 +34,11 @@ public class FileStore {
      */
     public static final int HEADER_LENGTH = 3 * Constants.FILE_BLOCK_SIZE;
 
+    /**
+     * The size of a memory mapped chunk is 1 << MAP_CHUNK_SHIFT (64 MB).
+     */
+    private static final int MAP_CHUNK_SHIFT = 26;
+
     /**
      * The magic file header.
      */
@@ -57,6 +65,12 @@ public class FileStore {
     private boolean textMode;
     private java.nio.channels.FileLock lock;
 
+    /**
+     * The memory mapped chunks of the file, or null if the file is not read
+     * using memory mapped buffers.
+     */
+    private MappedByteBuffer[] chunks;
+
     /**
      * Create a new file using the given settings.
      *
@@ -214,6 +228,7 @@ public class FileStore {
      * Close the file.
      */
     public void close() {
+        unMap();
         if (file != null) {
             try {
                 trace("close", name, file);
@@ -280,6 +295,99 @@ public class FileStore {
         filePos += len;
     }
 
+    /**
+     * Read the file using memory mapped buffers from now on. Data is still
+     * written using the file channel. The file is mapped in chunks of 64 MB;
+     * the last chunk is mapped again when the file grows. This is only
+     * supported for files on disk that are not encrypted.
+     *
+     * @return true if the file is read using memory mapped buffers
+     */
+    public boolean setMapped() {
+        if (chunks == null) {
+            try {
+                // throws an exception if not supported
+                file.map(FileChannel.MapMode.READ_ONLY, 0, 0);
+            } catch (UnsupportedOperationException e) {
+                return false;
+            } catch (IOException e) {
+                return false;
+            }
+            chunks = new MappedByteBuffer[0];
+        }
+        return true;
+    }
+
+    /**
+     * Read a number of bytes at the given position using the memory mapped
+     * buffers. The bytes must not span two chunks. The file pointer is not
+     * changed.
+     *
+     * @param pos the position in the file
+     * @param b the target buffer
+     * @param off the offset
+     * @param len the number of bytes to read
+     */
+    public void readFullyMapped(long pos, byte[] b, int off, int len) {
+        checkPowerOff();
+        int index = (int) (pos >>> MAP_CHUNK_SHIFT);
+        int start = (int) (pos & ((1 << MAP_CHUNK_SHIFT) - 1));
+        MappedByteBuffer chunk = index < chunks.length ? chunks[index] : null;
+        if (chunk == null || chunk.limit() < start + len) {
+            chunk = mapChunk(index, start + len);
+        }
+        chunk.position(start);
+        chunk.get(b, off, len);
+    }
+
+    private MappedByteBuffer mapChunk(int index, int minLength) {
+        long start = (long) index << MAP_CHUNK_SHIFT;
+        long len = Math.min(1 << MAP_CHUNK_SHIFT, fileLength - start);
+        try {
+            if (len < minLength) {
+                throw new EOFException();
+            }
+            if (index >= chunks.length) {
+                MappedByteBuffer[] c = new MappedByteBuffer[index + 1];
+                System.arraycopy(chunks, 0, c, 0, chunks.length);
+                chunks = c;
+            }
+            // the previous (smaller) mapping of this chunk is still valid,
+            // it is released by the garbage collector
+            MappedByteBuffer chunk = file.map(FileChannel.MapMode.READ_ONLY, start, len);
+            chunks[index] = chunk;
+            return chunk;
+        } catch (IOException e) {
+            throw DbException.convertIOException(e, name);
+        }
+    }
+
+    /**
+     * Release the memory mapped buffers. Reading continues to use memory
+     * mapped buffers, which are mapped again when needed.
+     */
+    private void unMap() {
+        if (chunks == null) {
+            return;
+        }
+        for (MappedByteBuffer chunk : chunks) {
+            if (chunk != null && SysProperties.NIO_CLEANER_HACK) {
+                try {
+                    Method cleanerMethod = chunk.getClass().getMethod("cleaner");
+                    cleanerMethod.setAccessible(true);
+                    Object cleaner = cleanerMethod.invoke(chunk);
+                    if (cleaner != null) {
+                        Method clearMethod = cleaner.getClass().getMethod("clean");
+                        clearMethod.invoke(cleaner);
+                    }
+                } catch (Throwable e) {
+                    // the buffer is released by the garbage collector
+                }
+            }
+        }
+        chunks = new MappedByteBuffer[0];
+    }
+
     /**
      * Go to the specified file location.
      *
@@ -344,6 +452,10 @@ public class FileStore {
         }
         checkPowerOff();
         checkWritingAllowed();
+        if (newLength < fileLength) {
+            // mapped buffers must not point beyond the end of the file
+            unMap();
+        }
         try {
             if (newLength > fileLength) {
                 long pos = filePos;
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.store;
+
+import java.security.AccessControlException;
+import org.h2.Driver;
+import org.h2.message.DbException;
+
+/**
+ * The log sync thread syncs the transaction log for committing sessions. A
+ * session registers its commit after the commit record was added to the log,
+ * and then waits until the log was synced. The thread waits a short time for
+ * more commits, so that the commits of concurrent sessions are synced
+ * together (group commit).
+ */
+public class LogSyncThread implements Runnable {
+
+    private final PageStore store;
+    private final long maxDelayNanos;
+    private final int maxBatch;
+
+    /**
+     * The number of registered commits.
+     */
+    private long registered;
+
+    /**
+     * The number of registered commits that are synced.
+     */
+    private long synced;
+
+    private boolean stop;
+    private RuntimeException exception;
+
+    private LogSyncThread(PageStore store, int maxDelayMicros, int maxBatch) {
+        this.store = store;
+        this.maxDelayNanos = maxDelayMicros * 1000L;
+        this.maxBatch = Math.max(1, maxBatch);
+    }
+
+    /**
+     * Create and start a new log sync thread for the given page store. If the
+     * thread can't be created, this method returns null.
+     *
+     * @param store the page store
+     * @param name the database name
+     * @param maxDelayMicros the maximum time in microseconds to wait for more
+     *            commits
+     * @param maxBatch the maximum number of commits to sync at once
+     * @return the log sync thread object or null
+     */
+    static LogSyncThread create(PageStore store, String name, int maxDelayMicros, int maxBatch) {
+        try {
+            LogSyncThread sync = new LogSyncThread(store, maxDelayMicros, maxBatch);
+            Thread thread = new Thread(sync, "H2 Log Sync " + name);
+            Driver.setThreadContextClassLoader(thread);
+            thread.setDaemon(true);
+            thread.start();
+            return sync;
+        } catch (AccessControlException e) {
+            // Google App Engine does not allow threads
+            return null;
+        }
+    }
+
+    /**
+     * Register a commit. The commit record must already be added to the
+     * transaction log.
+     *
+     * @return the position to wait for, or 0 if the thread is stopped
+     */
+    synchronized long register() {
+        if (stop) {
+            return 0;
+        }
+        registered++;
+        long waiting = registered - synced;
+        if (waiting == 1 || waiting >= maxBatch) {
+            notifyAll();
+        }
+        return registered;
+    }
+
+    /**
+     * Wait until the transaction log is synced up to the given position. If
+     * the thread was stopped because the database is closed, this method
+     * returns as well.
+     *
+     * @param pos the position
+     */
+    synchronized void waitForSync(long pos) {
+        while (synced < pos && !stop) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        }
+        if (synced < pos && exception != null) {
+            throw DbException.convert(exception);
+        }
+    }
+
+    /**
+     * Stop the thread. This method is called when closing the database.
+     */
+    synchronized void stopThread() {
+        stop = true;
+        notifyAll();
+    }
+
+    public void run() {
+        while (true) {
+            long pos;
+            synchronized (this) {
+                while (!stop && registered == synced) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // ignore
+                    }
+                }
+                long end = System.nanoTime() + maxDelayNanos;
+                while (!stop && registered - synced < maxBatch) {
+                    long w = end - System.nanoTime();
+                    if (w <= 0) {
+                        break;
+                    }
+                    try {
+                        wait(w / 1000000, (int) (w % 1000000));
+                    } catch (InterruptedException e) {
+                        // ignore
+                    }
+                }
+                if (stop) {
+                    break;
+                }
+                pos = registered;
+            }
+            try {
+                store.sync();
+            } catch (RuntimeException e) {
+                store.getTrace().error(e, "log sync");
+                synchronized (this) {
+                    exception = e;
+                    stop = true;
+                    notifyAll();
+                }
+                break;
+            }
+            synchronized (this) {
+                synced = pos;
+                notifyAll();
+            }
+        }
+    }
+
+}
@@ -69,6 +69,11 @@ public abstract class Page extends CacheObject {
      */
     public static final int TYPE_STREAM_DATA = 8;
 
+    /**
+     * A bitmap index page containing chunks of the bit sets of one or more keys.
+     */
+    public static final int TYPE_BITMAP = 9;
+
     private static final int COPY_THRESHOLD = 4;
 
     /**
@@ -96,6 +96,14 @@ public class PageLog {
      */
     public static final int FREE_LOG = 9;
 
+    /**
+     * Rows are loaded into an empty table without logging them. If this entry
+     * is still in the log and the session did not commit, the table is
+     * truncated when recovering.
+     * Format: session id: varInt, table id: varInt.
+     */
+    public static final int BULK_LOAD = 10;
+
     /**
      * The recovery stage to undo changes (re-apply the backup).
      */
@@ -354,6 +362,17 @@ public class PageLog {
                             }
                         }
                     }
+                } else if (x == BULK_LOAD) {
+                    int sessionId = in.readVarInt();
+                    int tableId = in.readVarInt();
+                    if (stage == RECOVERY_STAGE_REDO) {
+                        if (!isSessionCommitted(sessionId, logId, pos)) {
+                            if (trace.isDebugEnabled()) {
+                                trace.debug("log undo bulk load s: " + sessionId + " table: " + tableId);
+                            }
+                            store.redoTruncate(tableId);
+                        }
+                    }
                 } else if (x == PREPARE_COMMIT) {
                     int sessionId = in.readVarInt();
                     String transaction = in.readString();
@@ -655,6 +674,26 @@ public class PageLog {
         write(buffer);
     }
 
+    /**
+     * Rows are loaded into an empty table without logging them.
+     *
+     * @param session the session
+     * @param tableId the table id
+     */
+    void logBulkLoad(Session session, int tableId) {
+        if (trace.isDebugEnabled()) {
+            trace.debug("log bulk load s: " + session.getId() + " table: " + tableId);
+        }
+        // the session doesn't need to keep this log section: if the section
+        // is removed, the load is complete
+        logPos++;
+        Data buffer = getBuffer();
+        buffer.writeByte((byte) BULK_LOAD);
+        buffer.writeVarInt(session.getId());
+        buffer.writeVarInt(tableId);
+        write(buffer);
+    }
+
     /**
      * Flush the transaction log.
      */
@@ -11,6 +11,7 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.zip.CRC32;
 import org.h2.command.CommandInterface;
 import org.h2.command.ddl.CreateTableData;
@@ -23,6 +24,8 @@ import org.h2.index.Cursor;
 import org.h2.index.Index;
 import org.h2.index.IndexType;
 import org.h2.index.MultiVersionIndex;
+import org.h2.index.PageBitmapData;
+import org.h2.index.PageBitmapIndex;
 import org.h2.index.PageBtreeIndex;
 import org.h2.index.PageBtreeLeaf;
 import org.h2.index.PageBtreeNode;
@@ -43,12 +46,14 @@ import org.h2.table.RegularTable;
 import org.h2.table.Table;
 import org.h2.util.BitField;
 import org.h2.util.Cache;
+import org.h2.util.CacheClock;
 import org.h2.util.CacheLRU;
 import org.h2.util.CacheObject;
 import org.h2.util.CacheWriter;
 import org.h2.util.IntArray;
 import org.h2.util.IntIntHashMap;
 import org.h2.util.New;
+import org.h2.util.SmallLRUCache;
 import org.h2.util.StatementBuilder;
 import org.h2.util.StringUtils;
 import org.h2.value.CompareMode;
@@ -67,6 +72,8 @@ import org.h2.value.ValueString;
  * <li>52: write version (read-only if larger than 1)</li>
  * <li>53: read version (opening fails if larger than 1)</li>
  * </ul>
+ * The read and write version is 3, or 4 if the file contains a bitmap index,
+ * so that older versions don't open such files.
  * The format of page 1 and 2 is:
  * <ul>
  * <li>CRC32 of the remaining data: int (0-3)</li>
@@ -123,12 +130,26 @@ public class PageStore implements CacheWriter {
     private static final int MIN_PAGE_COUNT = 6;
     private static final int INCREMENT_KB = 1024;
     private static final int INCREMENT_PERCENT_MIN = 35;
-    private static final int READ_VERSION = 3;
-    private static final int WRITE_VERSION = 3;
+
+    /**
+     * The version of files that don't contain a bitmap index.
+     */
+    private static final int BASE_VERSION = 3;
+
+    /**
+     * The version of files that contain a bitmap index (page type
+     * TYPE_BITMAP, and the index type "b" in the meta data).
+     */
+    private static final int BITMAP_VERSION = 4;
+
+    private static final int READ_VERSION = BITMAP_VERSION;
+    private static final int WRITE_VERSION = BITMAP_VERSION;
+
     private static final int META_TYPE_DATA_INDEX = 0;
     private static final int META_TYPE_BTREE_INDEX = 1;
     private static final int META_TABLE_ID = -1;
     private static final int COMPACT_BLOCK_SIZE = 1536;
+    private static final int MAX_BACKGROUND_WRITE = 1024;
     private Database database;
     private final Trace trace;
     private String fileName;
@@ -139,6 +160,49 @@ public class PageStore implements CacheWriter {
     private long writeCountBase, writeCount, readCount;
     private int logKey, logFirstTrunkPage, logFirstDataPage;
     private Cache cache;
+
+    /**
+     * Whether the cache can be used without synchronizing on the store.
+     */
+    private boolean concurrentCache;
+
+    /**
+     * The thread that syncs the transaction log for committing sessions, or
+     * null if commits are not synced by a separate thread.
+     */
+    private volatile LogSyncThread logSync;
+
+    /**
+     * Whether pages are read using memory mapped buffers.
+     */
+    private boolean mapped;
+
+    /**
+     * The thread that loads pages for scans before they are needed, or null
+     * if it was not started yet.
+     */
+    private volatile ReadAheadThread readAhead;
+
+    /**
+     * The read and write version stored in the file header.
+     */
+    private int fileVersion = BASE_VERSION;
+
+    /**
+     * The pages read by the read-ahead thread that were not loaded yet. The
+     * read-ahead thread only reads the file; the pages are created and added
+     * to the cache when a session needs them. A page is removed when it is
+     * written or freed.
+     */
+    private SmallLRUCache<Integer, byte[]> readAheadPages;
+
+    /**
+     * The size of the transaction log when changed pages were written in the
+     * background the last time, and the id of the last page written.
+     */
+    private long backgroundLogSize;
+    private int backgroundPageId;
+
     private int freeListPagesPerList;
     private boolean recoveryRunning;
     private boolean ignoreBigLog;
@@ -202,6 +266,8 @@ public class PageStore implements CacheWriter {
     private boolean lockFile;
     private boolean readMode;
     private int backupLevel;
+    private final HashSet<Integer> bulkLoadTables = New.hashSet();
+    private int bulkLoadSection;
 
     /**
      * Create a new page store object.
@@ -220,6 +286,7 @@ public class PageStore implements CacheWriter {
         // trace.setLevel(TraceSystem.DEBUG);
         String cacheType = database.getCacheType();
         this.cache = CacheLRU.getCache(this, cacheType, cacheSizeDefault);
+        concurrentCache = cache instanceof CacheClock;
         systemSession = new Session(database, null, 0);
     }
 
@@ -297,6 +364,7 @@ public class PageStore implements CacheWriter {
         setPageSize(pageSize);
         freeListPagesPerList = PageFreeList.getPagesAddressed(pageSize);
         file = database.openFile(fileName, accessMode, false);
+        mapFile();
         lockFile();
         recoveryRunning = true;
         writeStaticHeader();
@@ -311,6 +379,10 @@ public class PageStore implements CacheWriter {
         increaseFileSize();
     }
 
+    private void mapFile() {
+        mapped = database.getSettings().pageStoreMapped && file.setMapped();
+    }
+
     private void lockFile() {
         if (lockFile) {
             if (!file.tryLock()) {
@@ -322,6 +394,7 @@ public class PageStore implements CacheWriter {
     private void openExisting() {
         try {
             file = database.openFile(fileName, accessMode, true);
+            mapFile();
         } catch (DbException e) {
             if (e.getErrorCode() == ErrorCode.IO_EXCEPTION_2) {
                 if (e.getMessage().indexOf("locked") >= 0) {
@@ -413,12 +486,63 @@ public class PageStore implements CacheWriter {
         }
     }
 
+    /**
+     * Write some of the changed pages, so that the next checkpoint has less to
+     * write. The pages are written in the order of the page id, continuing
+     * after the page that was written last. The number of pages depends on
+     * how fast the transaction log grows: if the log is full after n more
+     * calls at the current rate, 1 / (n + 1) of the changed pages are
+     * written. If the log did not grow, all changed pages are written. At
+     * most MAX_BACKGROUND_WRITE pages are written per call.
+     *
+     * @return the number of pages written
+     */
+    public synchronized int writeBackChanged() {
+        if (log == null || file == null || readMode || recoveryRunning ||
+                database.isReadOnly() || backupLevel > 0) {
+            return 0;
+        }
+        ArrayList<CacheObject> list = cache.getAllChanged();
+        int changed = list.size();
+        long logSize = log.getSize();
+        long growth = logSize - backgroundLogSize;
+        backgroundLogSize = logSize;
+        if (changed == 0) {
+            return 0;
+        }
+        int count = changed;
+        if (growth > 0) {
+            long calls = Math.max(0, maxLogSize - logSize) / growth;
+            count = (int) Math.max(1, changed / (calls + 1));
+        }
+        count = Math.min(count, MAX_BACKGROUND_WRITE);
+        Collections.sort(list);
+        int start = 0;
+        while (start < changed && list.get(start).getPos() <= backgroundPageId) {
+            start++;
+        }
+        // the log must be written before the data
+        log.flush();
+        int written = 0;
+        for (int i = 0; i < changed && written < count; i++) {
+            CacheObject page = list.get((start + i) % changed);
+            // pages that are currently changed are skipped
+            if (page.canRemove()) {
+                writeBack(page);
+                backgroundPageId = page.getPos();
+                written++;
+            }
+        }
+        return written;
+    }
+
     /**
      * Flush all pending changes to disk, and switch the new transaction log.
      */
     public synchronized void checkpoint() {
         trace.debug("checkpoint");
-        if (log == null || readMode || database.isReadOnly() || backupLevel > 0) {
+        if (log == null || readMode || database.isReadOnly() || backupLevel > 0 ||
+                bulkLoadTables.size() > 0) {
             // the file was never fully opened, or is read-only,
             // or checkpoint is currently disabled
             return;
@@ -454,6 +578,7 @@ public class PageStore implements CacheWriter {
                 file.seek((long) i << pageSizeShift);
                 file.readFully(test, 0, 16);
                 if (test[0] != 0) {
+                    removeReadAhead(i);
                     file.seek((long) i << pageSizeShift);
                     file.write(empty, 0, pageSize);
                     writeCount++;
@@ -632,6 +757,7 @@ public class PageStore implements CacheWriter {
         pageCount = newPageCount;
         // the easiest way to remove superfluous entries
         freeLists.clear();
+        readAheadPages = null;
         trace.debug("pageCount: " + pageCount);
         long newLength = (long) pageCount << pageSizeShift;
         if (file.length() != newLength) {
@@ -725,7 +851,19 @@ public class PageStore implements CacheWriter {
      * @param pageId the page id
      * @return the page
      */
-    public synchronized Page getPage(int pageId) {
+    public Page getPage(int pageId) {
+        if (concurrentCache) {
+            // the cache is thread safe: a cache hit doesn't need to
+            // synchronize on the store
+            Page p = (Page) cache.get(pageId);
+            if (p != null) {
+                return p;
+            }
+        }
+        return loadPage(pageId);
+    }
+
+    private synchronized Page loadPage(int pageId) {
         Page p = (Page) cache.get(pageId);
         if (p != null) {
             return p;
@@ -817,6 +955,22 @@ public class PageStore implements CacheWriter {
             p = PageBtreeNode.read(index, data, pageId);
             break;
         }
+        case Page.TYPE_BITMAP: {
+            int indexId = data.readVarInt();
+            PageIndex idx = metaObjects.get(indexId);
+            if (idx == null) {
+                throw DbException.get(ErrorCode.FILE_CORRUPTED_1, "index not found " + indexId);
+            }
+            if (!(idx instanceof PageBitmapIndex)) {
+                throw DbException.get(ErrorCode.FILE_CORRUPTED_1, "not a bitmap index " + indexId + " " + idx);
+            }
+            PageBitmapIndex index = (PageBitmapIndex) idx;
+            if (statistics != null) {
+                statisticsIncrement(index.getTable().getName() + "." + index.getName() + " read");
+            }
+            p = PageBitmapData.read(index, data, pageId);
+            break;
+        }
         case Page.TYPE_STREAM_TRUNK:
             p = PageStreamTrunk.read(this, data, pageId);
             break;
@@ -830,6 +984,80 @@ public class PageStore implements CacheWriter {
         return p;
     }
 
+    /**
+     * Get the number of leaf pages a scan should read ahead.
+     *
+     * @return the number of pages, or 0 if read-ahead is disabled
+     */
+    public int getReadAheadPages() {
+        return database.getSettings().pageStoreReadAhead;
+    }
+
+    /**
+     * Read the given pages in the background, so that they are in the cache
+     * when they are needed. Pages that can't be read are ignored.
+     *
+     * @param pageIds the array of page ids
+     * @param from the index of the first page id
+     * @param to the index after the last page id
+     */
+    public void readAhead(int[] pageIds, int from, int to) {
+        ReadAheadThread r = readAhead;
+        if (r == null) {
+            synchronized (this) {
+                if (file == null) {
+                    return;
+                }
+                if (readAhead == null) {
+                    readAhead = ReadAheadThread.create(this, database.getShortName());
+                }
+                r = readAhead;
+                if (r == null) {
+                    return;
+                }
+            }
+        }
+        r.add(pageIds, from, to);
+    }
+
+    /**
+     * Read a page from the file if it is not cached yet, and keep the data
+     * until the page is loaded. This method is called by the read-ahead
+     * thread. It doesn't change the cache, because adding a page to the cache
+     * may write other pages, which is only allowed while the database is
+     * locked.
+     *
+     * @param pageId the page id
+     */
+    synchronized void readAhead(int pageId) {
+        if (file == null || recoveryRunning || pageId < MIN_PAGE_COUNT || pageId >= pageCount) {
+            return;
+        }
+        if (cache.find(pageId) != null) {
+            return;
+        }
+        if (readAheadPages == null) {
+            readAheadPages = SmallLRUCache.newInstance(ReadAheadThread.QUEUE_SIZE);
+        } else if (readAheadPages.containsKey(pageId)) {
+            return;
+        }
+        byte[] bytes = new byte[pageSize];
+        if (mapped) {
+            file.readFullyMapped((long) pageId << pageSizeShift, bytes, 0, pageSize);
+        } else {
+            file.seek((long) pageId << pageSizeShift);
+            file.readFully(bytes, 0, pageSize);
+        }
+        readCount++;
+        readAheadPages.put(pageId, bytes);
+    }
+
+    private void removeReadAhead(int pageId) {
+        if (readAheadPages != null) {
+            readAheadPages.remove(pageId);
+        }
+    }
+
     private int getFirstUncommittedSection() {
         trace.debug("getFirstUncommittedSection");
         Session[] sessions = database.getSessions(true);
@@ -856,11 +1084,13 @@ public class PageStore implements CacheWriter {
         if (readVersion > READ_VERSION) {
             throw DbException.get(ErrorCode.FILE_VERSION_ERROR_1, fileName);
         }
+        fileVersion = readVersion;
         if (writeVersion > WRITE_VERSION) {
             close();
             database.setReadOnly(true);
             accessMode = "r";
             file = database.openFile(fileName, accessMode, true);
+            mapFile();
         }
     }
 
@@ -917,8 +1147,8 @@ public class PageStore implements CacheWriter {
     private void writeStaticHeader() {
         Data page = Data.create(database, new byte[pageSize - FileStore.HEADER_LENGTH]);
         page.writeInt(pageSize);
-        page.writeByte((byte) WRITE_VERSION);
-        page.writeByte((byte) READ_VERSION);
+        page.writeByte((byte) fileVersion);
+        page.writeByte((byte) fileVersion);
         file.seek(FileStore.HEADER_LENGTH);
         file.write(page.getBytes(), 0, pageSize - FileStore.HEADER_LENGTH);
         writeCount++;
@@ -967,6 +1197,15 @@ public class PageStore implements CacheWriter {
      */
     public synchronized void close() {
         trace.debug("close");
+        if (logSync != null) {
+            logSync.stopThread();
+            logSync = null;
+        }
+        if (readAhead != null) {
+            readAhead.stopThread();
+            readAhead = null;
+        }
+        readAheadPages = null;
         if (log != null) {
             log.close();
             log = null;
@@ -1210,6 +1449,7 @@ public class PageStore implements CacheWriter {
             // trace.debug("free " + pageId + " " + undo);
         }
         cache.remove(pageId);
+        removeReadAhead(pageId);
         if (SysProperties.CHECK && !recoveryRunning && undo) {
             // ensure the undo entry is already written
             if (logMode != LOG_MODE_OFF) {
@@ -1240,6 +1480,7 @@ public class PageStore implements CacheWriter {
             trace.debug("freeUnused " + pageId);
         }
         cache.remove(pageId);
+        removeReadAhead(pageId);
         freePage(pageId);
         freed.set(pageId);
     }
@@ -1281,8 +1522,19 @@ public class PageStore implements CacheWriter {
         if (pos < 0 || pos >= pageCount) {
             throw DbException.get(ErrorCode.FILE_CORRUPTED_1, pos + " of " + pageCount);
         }
-        file.seek((long) pos << pageSizeShift);
-        file.readFully(page.getBytes(), 0, pageSize);
+        if (readAheadPages != null) {
+            byte[] bytes = readAheadPages.remove(pos);
+            if (bytes != null) {
+                System.arraycopy(bytes, 0, page.getBytes(), 0, pageSize);
+                return;
+            }
+        }
+        if (mapped) {
+            file.readFullyMapped((long) pos << pageSizeShift, page.getBytes(), 0, pageSize);
+        } else {
+            file.seek((long) pos << pageSizeShift);
+            file.readFully(page.getBytes(), 0, pageSize);
+        }
         readCount++;
     }
 
@@ -1323,6 +1575,7 @@ public class PageStore implements CacheWriter {
             }
         }
         checksumSet(bytes, pageId);
+        removeReadAhead(pageId);
         file.seek((long) pageId << pageSizeShift);
         file.write(bytes, 0, pageSize);
         writeCount++;
@@ -1417,43 +1670,147 @@ public class PageStore implements CacheWriter {
      */
     public synchronized void logAddOrRemoveRow(Session session, int tableId, Row row, boolean add) {
         if (logMode != LOG_MODE_OFF) {
-            if (!recoveryRunning) {
+            if (!recoveryRunning && !bulkLoadTables.contains(tableId)) {
                 log.logAddOrRemoveRow(session, tableId, row, add);
             }
         }
     }
 
     /**
-     * Mark a committed transaction.
+     * Start loading rows into an empty table. Until the load ends, added rows
+     * are not written to the transaction log, and no checkpoint is made; only
+     * a marker is written, so that the table is truncated when recovering. The
+     * caller must lock the table exclusively, and no other session may change
+     * the database until the load ends.
      *
      * @param session the session
+     * @param tableId the table id
+     * @return false if this is not possible because the log is disabled or
+     *         another session has uncommitted changes
      */
-    public synchronized void commit(Session session) {
+    public synchronized boolean beginBulkLoad(Session session, int tableId) {
+        if (logMode == LOG_MODE_OFF || recoveryRunning) {
+            return false;
+        }
+        for (Session s : database.getSessions(true)) {
+            if (s.getFirstUncommittedLog() != Session.LOG_WRITTEN) {
+                return false;
+            }
+        }
+        openForWriting();
+        bulkLoadSection = log.getLogSectionId();
+        log.logBulkLoad(session, tableId);
+        // the log must be written before the data
+        log.flush();
+        bulkLoadTables.add(tableId);
+        return true;
+    }
+
+    /**
+     * Stop loading rows into a table. If the load was successful, a checkpoint
+     * is made and the file is synced. The rows are then durable, as the
+     * marker is removed from the log. If the log could not be truncated, the
+     * rows are written to the log as usual, so that they are re-applied when
+     * recovering.
+     *
+     * @param session the session
+     * @param tableId the table id
+     * @param success whether all rows were added
+     */
+    public synchronized void endBulkLoad(Session session, int tableId, boolean success) {
+        bulkLoadTables.remove(tableId);
+        if (!success) {
+            return;
+        }
+        checkpoint();
+        if (log.getLogFirstSectionId() <= bulkLoadSection) {
+            Index index = metaObjects.get(tableId);
+            Cursor cursor = index.find(session, null, null);
+            while (cursor.next()) {
+                log.logAddOrRemoveRow(session, tableId, cursor.get(), true);
+            }
+            log.flush();
+        }
+        file.sync();
+    }
+
+    /**
+     * Mark a committed transaction. If commits are synced by the log sync
+     * thread, the caller needs to wait for the returned position using
+     * waitForLogSync, after releasing the locks.
+     *
+     * @param session the session
+     * @return the position to wait for, or 0
+     */
+    public synchronized long commit(Session session) {
         checkOpen();
         openForWriting();
         log.commit(session.getId());
+        long syncPos = syncCommit();
         long size = log.getSize();
         if (size - logSizeBase > maxLogSize) {
             int firstSection = log.getLogFirstSectionId();
             checkpoint();
             if (ignoreBigLog) {
-                return;
+                return syncPos;
             }
             int newSection = log.getLogSectionId();
             if (newSection - firstSection <= 2) {
                 // one section is always kept, and checkpoint
                 // advances two sections each time it is called
-                return;
+                return syncPos;
             }
             long newSize = log.getSize();
             if (newSize < size || size < maxLogSize) {
                 ignoreBigLog = false;
-                return;
+                return syncPos;
             }
             ignoreBigLog = true;
             trace.error(null, "Transaction log could not be truncated; size: " + (newSize / 1024 / 1024) + " MB");
             logSizeBase = log.getSize();
         }
+        return syncPos;
+    }
+
+    /**
+     * Sync the commit record if required. If multiple threads are used, the
+     * commit is registered with the log sync thread, so that the commits of
+     * concurrent sessions are synced together. Otherwise, the log is synced
+     * immediately, because other sessions could not commit in the meantime.
+     *
+     * @return the position to wait for, or 0
+     */
+    private long syncCommit() {
+        int delay = database.getSettings().commitSyncDelay;
+        if (delay < 0 || logMode != LOG_MODE_SYNC) {
+            return 0;
+        }
+        if (logSync == null && database.isMultiThreaded()) {
+            logSync = LogSyncThread.create(this, database.getShortName(), delay,
+                    database.getSettings().commitSyncBatch);
+        }
+        if (logSync != null) {
+            long pos = logSync.register();
+            if (pos > 0) {
+                return pos;
+            }
+        }
+        log.flush();
+        file.sync();
+        return 0;
+    }
+
+    /**
+     * Wait until the transaction log is synced up to the given position. This
+     * method must be called without holding the database or store lock.
+     *
+     * @param pos the position returned by commit
+     */
+    public void waitForLogSync(long pos) {
+        LogSyncThread sync = logSync;
+        if (sync != null) {
+            sync.waitForSync(pos);
+        }
     }
 
     /**
@@ -1596,7 +1953,7 @@ public class PageStore implements CacheWriter {
         int id = row.getValue(0).getInt();
         PageIndex index = metaObjects.get(id);
         index.getTable().removeIndex(index);
-        if (index instanceof PageBtreeIndex || index instanceof PageDelegateIndex) {
+        if (index instanceof PageBtreeIndex || index instanceof PageBitmapIndex || index instanceof PageDelegateIndex) {
             if (index.isTemporary()) {
                 systemSession.removeLocalTempTableIndex(index);
             } else {
@@ -1679,6 +2036,8 @@ public class PageStore implements CacheWriter {
                 for (IndexColumn indexColumn : cols) {
                     tableColumns[indexColumn.column.getColumnId()].setNullable(false);
                 }
+            } else if (ops[3].equals("b")) {
+                indexType = IndexType.createBitmap(true);
             } else {
                 indexType = IndexType.createNonUnique(true);
             }
@@ -1737,6 +2096,13 @@ public class PageStore implements CacheWriter {
         options += ",";
         if (index instanceof PageDelegateIndex) {
             options += "d";
+        } else if (index instanceof PageBitmapIndex) {
+            options += "b";
+            if (fileVersion < BITMAP_VERSION) {
+                // older versions can't read bitmap indexes
+                fileVersion = BITMAP_VERSION;
+                writeStaticHeader();
+            }
         }
         Row row = metaTable.getTemplateRow();
         row.setValue(0, ValueInt.get(index.getId()));
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.store;
+
+import java.security.AccessControlException;
+import org.h2.Driver;
+
+/**
+ * The read-ahead thread loads pages into the cache before they are needed. A
+ * cursor that scans an index adds the ids of the leaf pages it will read next,
+ * so that the reads overlap with processing the rows of the current page.
+ * The thread only reads the file; the pages are added to the cache by the
+ * session that needs them. Requests are dropped if the queue is full.
+ */
+public class ReadAheadThread implements Runnable {
+
+    /**
+     * The maximum number of pages in the queue.
+     */
+    static final int QUEUE_SIZE = 1024;
+
+    private final PageStore store;
+
+    /**
+     * The queue of page ids to read (a ring buffer).
+     */
+    private final int[] queue = new int[QUEUE_SIZE];
+    private int first;
+    private int size;
+
+    private boolean stop;
+
+    private ReadAheadThread(PageStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Create and start a new read-ahead thread for the given page store. If
+     * the thread can't be created, this method returns null.
+     *
+     * @param store the page store
+     * @param name the database name
+     * @return the read-ahead thread object or null
+     */
+    static ReadAheadThread create(PageStore store, String name) {
+        try {
+            ReadAheadThread readAhead = new ReadAheadThread(store);
+            Thread thread = new Thread(readAhead, "H2 Read Ahead " + name);
+            Driver.setThreadContextClassLoader(thread);
+            thread.setDaemon(true);
+            thread.start();
+            return readAhead;
+        } catch (AccessControlException e) {
+            // Google App Engine does not allow threads
+            return null;
+        }
+    }
+
+    /**
+     * Add pages to the queue.
+     *
+     * @param pageIds the array of page ids
+     * @param from the index of the first page id to add
+     * @param to the index after the last page id to add
+     */
+    synchronized void add(int[] pageIds, int from, int to) {
+        if (stop) {
+            return;
+        }
+        boolean wasEmpty = size == 0;
+        for (int i = from; i < to && size < QUEUE_SIZE; i++) {
+            queue[(first + size) % QUEUE_SIZE] = pageIds[i];
+            size++;
+        }
+        if (wasEmpty && size > 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Stop the thread. This method is called when closing the database.
+     */
+    synchronized void stopThread() {
+        stop = true;
+        size = 0;
+        notifyAll();
+    }
+
+    public void run() {
+        while (true) {
+            int pageId;
+            synchronized (this) {
+                while (!stop && size == 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // ignore
+                    }
+                }
+                if (stop) {
+                    break;
+                }
+                pageId = queue[first];
+                first = (first + 1) % QUEUE_SIZE;
+                size--;
+            }
+            store.readAhead(pageId);
+        }
+    }
+
+}
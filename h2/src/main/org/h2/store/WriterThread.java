@@ -16,7 +16,7 @@ import org.h2.message.TraceSystem;
 
 /**
  * The writer thread is responsible to flush the transaction transaction log
- * from time to time.
+ * from time to time, and to write changed pages in the background.
  */
 public class WriterThread implements Runnable {
 
@@ -84,6 +84,9 @@ public class WriterThread implements Runnable {
                     database.checkpointIfRequired();
                 } else {
                     database.flush();
+                    // write changed pages early, depending on
+                    // how fast the transaction log grows
+                    database.writeBackChanged();
                 }
             } catch (Exception e) {
                 TraceSystem traceSystem = database.getTraceSystem();
@@ -91,8 +94,6 @@ public class WriterThread implements Runnable {
                     traceSystem.getTrace(Trace.DATABASE).error(e, "flush");
                 }
             }
-            // TODO log writer: could also flush the dirty cache
-            // when there is low activity
 
             // wait 0 mean wait forever, which is not what we want
             wait = Math.max(wait, Constants.MIN_WRITE_DELAY);
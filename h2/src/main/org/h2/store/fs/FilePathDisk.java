@@ -16,6 +16,7 @@ import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.util.ArrayList;
@@ -408,6 +409,10 @@ class FileDisk extends FileBase {
         return file.getChannel().tryLock();
     }
 
+    public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+        return file.getChannel().map(mode, position, size);
+    }
+
     public void implCloseChannel() throws IOException {
         file.close();
     }
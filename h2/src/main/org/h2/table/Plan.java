@@ -8,9 +8,14 @@ package org.h2.table;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import org.h2.engine.Constants;
 import org.h2.engine.Session;
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionVisitor;
+import org.h2.index.Index;
+import org.h2.index.IndexType;
+import org.h2.index.PageDataIndex;
+import org.h2.result.SortOrder;
 import org.h2.table.TableFilter.TableFilterVisitor;
 import org.h2.util.New;
 
@@ -108,6 +113,9 @@ public class Plan {
         int level = 1;
         for (TableFilter tableFilter : allFilters) {
             PlanItem item = tableFilter.getBestPlanItem(session, level++);
+            if (level > 2 && session.getDatabase().getSettings().mergeJoin) {
+                testMergeJoin(session, tableFilter, item);
+            }
             planItems.put(tableFilter, item);
             cost += cost * item.cost;
             setEvaluatable(tableFilter, true);
@@ -128,6 +136,75 @@ public class Plan {
         return cost;
     }
 
+    /**
+     * Use a merge join if this is cheaper than looking up the rows for each
+     * row of the outer table. This is possible if the first table is read in
+     * the order of a column, and the index of the given table starts with a
+     * column that is compared with this column. The lookups are then done in
+     * ascending order, and the index is read from the last position instead
+     * of searching it again, so that each row of the index is read at most
+     * once. If the lookups are not done in ascending order, the rows are still
+     * found, but the index is searched.
+     *
+     * @param session the session
+     * @param filter the table filter
+     * @param item the plan item
+     */
+    private void testMergeJoin(Session session, TableFilter filter, PlanItem item) {
+        Index index = item.getIndex();
+        TableFilter outer = filters[0];
+        if (item.getJoinPlan() != null || item.getNestedJoinPlan() != null ||
+                index.getIndexType().isScan() || !(filter.getTable() instanceof TableBase)) {
+            return;
+        }
+        boolean topLevel = false;
+        for (TableFilter f : filters) {
+            topLevel |= f == filter;
+        }
+        Column column = getOrderColumn(index);
+        Column outerColumn = getOrderColumn(planItems.get(outer).getIndex());
+        if (!topLevel || column == null || outerColumn == null ||
+                !filter.canMergeJoin(column, outer, outerColumn)) {
+            return;
+        }
+        long rows = filter.getTable().getRowCountApproximation();
+        long outerRows = outer.getTable().getRowCountApproximation();
+        double costPerRow = index.getCost(session, null) / (rows + Constants.COST_ROW_OFFSET);
+        // the cost of reading the index once is spread over the outer rows
+        double cost = costPerRow * (1 + (double) rows / (outerRows + 1));
+        if (cost < item.cost) {
+            item.cost = cost;
+            item.setMergeJoin(true);
+        }
+    }
+
+    /**
+     * Get the column the rows are ordered by when using the given index.
+     *
+     * @param index the index
+     * @return the column, or null if the rows are not ordered
+     */
+    private static Column getOrderColumn(Index index) {
+        IndexType type = index.getIndexType();
+        if (type.isHash() || type.isBitmap()) {
+            return null;
+        }
+        if (type.isScan()) {
+            if (index instanceof PageDataIndex) {
+                int id = ((PageDataIndex) index).getMainIndexColumn();
+                if (id >= 0) {
+                    return index.getTable().getColumn(id);
+                }
+            }
+            return null;
+        }
+        IndexColumn[] columns = index.getIndexColumns();
+        if (columns == null || (columns[0].sortType & SortOrder.DESCENDING) != 0) {
+            return null;
+        }
+        return columns[0].column;
+    }
+
     private void setEvaluatable(TableFilter filter, boolean b) {
         filter.setEvaluatable(filter, b);
         for (Expression e : allConditions) {
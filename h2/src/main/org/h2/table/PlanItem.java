@@ -22,6 +22,7 @@ public class PlanItem {
     private Index index;
     private PlanItem joinPlan;
     private PlanItem nestedJoinPlan;
+    private boolean mergeJoin;
 
     void setIndex(Index index) {
         this.index = index;
@@ -47,4 +48,12 @@ public class PlanItem {
         this.nestedJoinPlan = nestedJoinPlan;
     }
 
+    void setMergeJoin(boolean mergeJoin) {
+        this.mergeJoin = mergeJoin;
+    }
+
+    boolean isMergeJoin() {
+        return mergeJoin;
+    }
+
 }
@@ -21,12 +21,14 @@ import org.h2.constraint.ConstraintReferential;
 import org.h2.engine.Constants;
 import org.h2.engine.DbObject;
 import org.h2.engine.Session;
+import org.h2.index.BitmapIndex;
 import org.h2.index.Cursor;
 import org.h2.index.HashIndex;
 import org.h2.index.Index;
 import org.h2.index.IndexType;
 import org.h2.index.MultiVersionIndex;
 import org.h2.index.NonUniqueHashIndex;
+import org.h2.index.PageBitmapIndex;
 import org.h2.index.PageBtreeIndex;
 import org.h2.index.PageDataIndex;
 import org.h2.index.PageDelegateIndex;
@@ -207,7 +209,13 @@ public class RegularTable extends TableBase {
             database.lockMeta(session);
         }
         Index index;
-        if (isPersistIndexes() && indexType.isPersistent()) {
+        if (indexType.isBitmap()) {
+            if (isPersistIndexes() && indexType.isPersistent()) {
+                index = new PageBitmapIndex(this, indexId, indexName, cols, indexType, create, session);
+            } else {
+                index = new BitmapIndex(this, indexId, indexName, cols, indexType);
+            }
+        } else if (isPersistIndexes() && indexType.isPersistent()) {
             int mainIndexColumn;
             if (database.isStarting() && database.getPageStore().getRootPageId(indexId) != 0) {
                 mainIndexColumn = -1;
@@ -242,24 +250,31 @@ public class RegularTable extends TableBase {
                 long remaining = scan.getRowCount(session);
                 long total = remaining;
                 Cursor cursor = scan.find(session, null, null);
-                long i = 0;
-                int bufferSize = (int) Math.min(rowCount, Constants.DEFAULT_MAX_MEMORY_ROWS);
-                ArrayList<Row> buffer = New.arrayList(bufferSize);
-                String n = getName() + ":" + index.getName();
-                int t = MathUtils.convertLongToInt(total);
-                while (cursor.next()) {
-                    database.setProgress(DatabaseEventListener.STATE_CREATE_INDEX, n,
-                            MathUtils.convertLongToInt(i++), t);
-                    Row row = cursor.get();
-                    buffer.add(row);
-                    if (buffer.size() >= bufferSize) {
-                        addRowsToIndex(session, buffer, index);
+                int fillFactor = database.getSettings().pageStoreIndexFillFactor;
+                if (index instanceof PageBtreeIndex && fillFactor > 0 &&
+                        !database.getSettings().pageStoreInternalCount) {
+                    ((PageBtreeIndex) index).build(session, cursor, total,
+                            Math.min(fillFactor, 100));
+                } else {
+                    long i = 0;
+                    int bufferSize = (int) Math.min(rowCount, Constants.DEFAULT_MAX_MEMORY_ROWS);
+                    ArrayList<Row> buffer = New.arrayList(bufferSize);
+                    String n = getName() + ":" + index.getName();
+                    int t = MathUtils.convertLongToInt(total);
+                    while (cursor.next()) {
+                        database.setProgress(DatabaseEventListener.STATE_CREATE_INDEX, n,
+                                MathUtils.convertLongToInt(i++), t);
+                        Row row = cursor.get();
+                        buffer.add(row);
+                        if (buffer.size() >= bufferSize) {
+                            addRowsToIndex(session, buffer, index);
+                        }
+                        remaining--;
+                    }
+                    addRowsToIndex(session, buffer, index);
+                    if (SysProperties.CHECK && remaining != 0) {
+                        DbException.throwInternalError("rowcount remaining=" + remaining + " " + getName());
                     }
-                    remaining--;
-                }
-                addRowsToIndex(session, buffer, index);
-                if (SysProperties.CHECK && remaining != 0) {
-                    DbException.throwInternalError("rowcount remaining=" + remaining + " " + getName());
                 }
             } catch (DbException e) {
                 getSchema().freeUniqueName(indexName);
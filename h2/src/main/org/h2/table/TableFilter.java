@@ -17,11 +17,15 @@ import org.h2.expression.Comparison;
 import org.h2.expression.ConditionAndOr;
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionColumn;
+import org.h2.index.BitmapCondition;
+import org.h2.index.HashJoinIndex;
 import org.h2.index.Index;
 import org.h2.index.IndexCondition;
 import org.h2.index.IndexCursor;
+import org.h2.index.IndexType;
 import org.h2.message.DbException;
 import org.h2.result.Row;
+import org.h2.result.RowBatch;
 import org.h2.result.SearchRow;
 import org.h2.util.New;
 import org.h2.util.StatementBuilder;
@@ -68,12 +72,23 @@ public class TableFilter implements ColumnResolver {
      */
     private final ArrayList<IndexCondition> indexConditions = New.arrayList();
 
+    /**
+     * The range conditions that can't be used by the index, but that may be
+     * used to skip pages (using zone maps).
+     */
+    private final ArrayList<IndexCondition> rangeConditions = New.arrayList();
+
     /**
      * Additional conditions that can't be used for index lookup, but for row
      * filter for this table (ID=ID, NAME LIKE '%X%')
      */
     private Expression filterCondition;
 
+    /**
+     * The condition that is evaluated using the bitmap indexes, or null.
+     */
+    private BitmapCondition bitmapCondition;
+
     /**
      * The complete join condition.
      */
@@ -176,6 +191,19 @@ public class TableFilter implements ColumnResolver {
                 }
             }
             item = table.getBestPlanItem(s, masks);
+            if (level > 1 && masks != null && item.getIndex().getIndexType().isScan() &&
+                    s.getDatabase().getSettings().hashJoin) {
+                // no index can be used, and the table would be read once for
+                // each row of the outer tables
+                HashJoinIndex hash = HashJoinIndex.create(s, table, masks);
+                if (hash != null) {
+                    double cost = hash.getCost(s, masks);
+                    if (cost < item.cost) {
+                        item.cost = cost;
+                        item.setIndex(hash);
+                    }
+                }
+            }
             // The more index conditions, the earlier the table.
             // This is to ensure joins without indexes run quickly:
             // x (x.a=10); y (x.b=y.b) - see issue 113
@@ -198,6 +226,33 @@ public class TableFilter implements ColumnResolver {
         return item;
     }
 
+    /**
+     * Check whether the given index column of this table is compared for
+     * equality with the given column of the outer table, so that the rows can
+     * be read using a merge join.
+     *
+     * @param column the first column of the index
+     * @param outer the outer table filter
+     * @param outerColumn the column the outer table is ordered by
+     * @return true if a merge join is possible
+     */
+    boolean canMergeJoin(Column column, TableFilter outer, Column outerColumn) {
+        for (IndexCondition condition : indexConditions) {
+            if (condition.getCompareType() != Comparison.EQUAL || condition.getColumn() != column ||
+                    !condition.isEvaluatable()) {
+                continue;
+            }
+            Expression expr = condition.getExpression();
+            if (expr instanceof ExpressionColumn) {
+                ExpressionColumn c = (ExpressionColumn) expr;
+                if (c.getTableFilter() == outer && c.getColumn() == outerColumn) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     private void setEvaluatable(TableFilter join) {
         if (session.getDatabase().getSettings().nestedJoins) {
             setEvaluatable(true);
@@ -229,6 +284,7 @@ public class TableFilter implements ColumnResolver {
             return;
         }
         setIndex(item.getIndex());
+        cursor.setMergeJoin(item.isMergeJoin());
         if (nestedJoin != null) {
             if (item.getNestedJoinPlan() != null) {
                 nestedJoin.setPlanItem(item.getNestedJoinPlan());
@@ -248,12 +304,16 @@ public class TableFilter implements ColumnResolver {
     public void prepare() {
         // forget all unused index conditions
         // the indexConditions list may be modified here
+        rangeConditions.clear();
         for (int i = 0; i < indexConditions.size(); i++) {
             IndexCondition condition = indexConditions.get(i);
             if (!condition.isAlwaysFalse()) {
                 Column col = condition.getColumn();
                 if (col.getColumnId() >= 0) {
                     if (index.getColumnIndex(col) < 0) {
+                        if (condition.isStart() || condition.isEnd()) {
+                            rangeConditions.add(condition);
+                        }
                         indexConditions.remove(i);
                         i--;
                     }
@@ -278,6 +338,34 @@ public class TableFilter implements ColumnResolver {
         if (joinCondition != null) {
             joinCondition = joinCondition.optimize(session);
         }
+        prepareBitmapCondition();
+    }
+
+    /**
+     * Combine the bitmap indexes of the condition if this is faster than using
+     * the current index: if the current index is the scan index, or a bitmap
+     * index that can only be used for one of the conditions. Rows of outer
+     * joined tables can not be skipped, as a row with NULL values would be
+     * returned instead.
+     */
+    private void prepareBitmapCondition() {
+        BitmapCondition bitmap = null;
+        Expression condition = fullCondition != null ? fullCondition : filterCondition;
+        if (condition != null && index != null && !joinOuter && !joinOuterIndirect) {
+            IndexType type = index.getIndexType();
+            if (type.isScan() || type.isBitmap()) {
+                bitmap = condition.createBitmapCondition(this);
+                if (bitmap != null && !type.isScan() && bitmap.getConditionCount() < 2) {
+                    bitmap = null;
+                }
+            }
+        }
+        setBitmapCondition(bitmap);
+    }
+
+    private void setBitmapCondition(BitmapCondition bitmap) {
+        bitmapCondition = bitmap;
+        cursor.setBitmapCondition(bitmap);
     }
 
     /**
@@ -288,6 +376,10 @@ public class TableFilter implements ColumnResolver {
     public void startQuery(Session s) {
         this.session = s;
         scanCount = 0;
+        if (index instanceof HashJoinIndex) {
+            ((HashJoinIndex) index).reset();
+        }
+        cursor.resetMergeJoin();
         if (nestedJoin != null) {
             nestedJoin.startQuery(s);
         }
@@ -443,6 +535,24 @@ public class TableFilter implements ColumnResolver {
         return current;
     }
 
+    /**
+     * Read the next rows into the batch. This is only supported if this
+     * filter is not joined with other filters. All rows are read completely,
+     * whether or not they match the condition.
+     *
+     * @param batch the batch
+     * @return the number of rows read (0 if there are no more rows)
+     */
+    public int nextBatch(RowBatch batch) {
+        Row[] rows = batch.getRows();
+        int size = 0;
+        while (size < rows.length && next()) {
+            rows[size++] = get();
+        }
+        batch.setSize(size);
+        return size;
+    }
+
     /**
      * Set the current row.
      *
@@ -662,8 +772,15 @@ public class TableFilter implements ColumnResolver {
         if (index != null) {
             buff.append('\n');
             StatementBuilder planBuff = new StatementBuilder();
-            planBuff.append(index.getPlanSQL());
-            if (indexConditions.size() > 0) {
+            if (bitmapCondition != null) {
+                planBuff.append(bitmapCondition.getPlanSQL());
+            } else {
+                planBuff.append(index.getPlanSQL());
+                if (cursor.isMergeJoin()) {
+                    planBuff.append(" (merge join)");
+                }
+            }
+            if (bitmapCondition == null && indexConditions.size() > 0) {
                 planBuff.append(": ");
                 for (IndexCondition condition : indexConditions) {
                     planBuff.appendExceptFirst("\n    AND ");
@@ -715,9 +832,25 @@ public class TableFilter implements ColumnResolver {
         return index;
     }
 
+    /**
+     * Get the range conditions that are not used by the index.
+     *
+     * @return the list of conditions
+     */
+    public ArrayList<IndexCondition> getRangeConditions() {
+        return rangeConditions;
+    }
+
     public void setIndex(Index index) {
         this.index = index;
         cursor.setIndex(index);
+        if (bitmapCondition != null) {
+            IndexType type = index.getIndexType();
+            if (!type.isScan() && !type.isBitmap()) {
+                // the index is used for sorting
+                setBitmapCondition(null);
+            }
+        }
     }
 
     public void setUsed(boolean used) {
@@ -755,6 +888,10 @@ public class TableFilter implements ColumnResolver {
         this.joinCondition = null;
     }
 
+    public BitmapCondition getBitmapCondition() {
+        return bitmapCondition;
+    }
+
     public Expression getFilterCondition() {
         return filterCondition;
     }
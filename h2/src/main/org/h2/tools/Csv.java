@@ -10,12 +10,14 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.CharArrayReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.sql.Connection;
 import java.sql.ResultSet;
@@ -34,11 +36,18 @@ import org.h2.util.IOUtils;
 import org.h2.util.JdbcUtils;
 import org.h2.util.New;
 import org.h2.util.StringUtils;
+import org.h2.util.Task;
 
 /**
  * A facility to read from and write to CSV (comma separated values) files. When
  * reading, the BOM (the byte-order-mark) character 0xfeff at the beginning of
  * the file is ignored.
+ * <p>
+ * If more than one thread is used, the input is read in blocks of complete
+ * records, and the blocks are parsed in separate threads. When writing, the
+ * rows of the result set are formatted in blocks in separate threads. The
+ * file is still read and written sequentially, and the rows are returned and
+ * written in the original order.
  *
  * @author Thomas Mueller, Sylvain Cuaz
  */
@@ -57,6 +66,7 @@ public class Csv implements SimpleRowSource {
     private char lineComment;
     private String lineSeparator = SysProperties.LINE_SEPARATOR;
     private String nullString = "";
+    private int threads = 1;
 
     private String rowSeparatorWrite;
     private String fileName;
@@ -68,6 +78,23 @@ public class Csv implements SimpleRowSource {
     private Writer output;
     private boolean endOfLine, endOfFile;
 
+    /**
+     * The number of characters of a block of records that is parsed in a
+     * separate thread.
+     */
+    private static final int READ_BLOCK_SIZE = 256 * Constants.IO_BUFFER_SIZE;
+
+    /**
+     * The number of rows that are formatted in a separate thread.
+     */
+    private static final int WRITE_BLOCK_ROWS = 4 * 1024;
+
+    private ArrayList<Task> tasks;
+    private char[] readRemaining;
+    private int readRemainingLength;
+    private ArrayList<Object[]> readRows;
+    private int readRowIndex;
+
     /**
      * Get a new object of this class.
      *
@@ -93,7 +120,15 @@ public class Csv implements SimpleRowSource {
             if (writeColumnHeader) {
                 writeRow(row);
             }
+            ArrayList<String[]> block = null;
+            if (threads > 1) {
+                tasks = New.arrayList();
+                block = New.arrayList();
+            }
             while (rs.next()) {
+                if (block != null) {
+                    row = new String[columnCount];
+                }
                 for (int i = 0; i < columnCount; i++) {
                     Object o;
                     switch (sqlTypes[i]) {
@@ -111,9 +146,23 @@ public class Csv implements SimpleRowSource {
                     }
                     row[i] = o == null ? null : o.toString();
                 }
-                writeRow(row);
+                if (block == null) {
+                    writeRow(row);
+                } else {
+                    block.add(row);
+                    if (block.size() >= WRITE_BLOCK_ROWS) {
+                        writeBlock(block);
+                        block = New.arrayList();
+                    }
+                }
                 rows++;
             }
+            if (block != null) {
+                writeBlock(block);
+                while (tasks.size() > 0) {
+                    output.write((String) getResult(tasks.remove(0)));
+                }
+            }
             output.close();
             return rows;
         } catch (IOException e) {
@@ -309,6 +358,60 @@ public class Csv implements SimpleRowSource {
         output.write(lineSeparator);
     }
 
+    /**
+     * Format the rows in a separate thread. If the maximum number of threads
+     * is in use, the oldest block is written first.
+     *
+     * @param block the rows
+     */
+    private void writeBlock(final ArrayList<String[]> block) throws IOException {
+        if (tasks.size() >= threads) {
+            output.write((String) getResult(tasks.remove(0)));
+        }
+        final Csv csv = copySettings();
+        Task task = new Task() {
+            public void call() throws IOException {
+                StringWriter writer = new StringWriter();
+                csv.output = writer;
+                for (String[] row : block) {
+                    csv.writeRow(row);
+                }
+                result = writer.toString();
+            }
+        };
+        tasks.add(task.execute("H2 CSV write"));
+    }
+
+    private static Object getResult(Task task) throws IOException {
+        Exception e = task.getException();
+        if (e != null) {
+            throw DbException.convertToIOException(e);
+        }
+        return task.get();
+    }
+
+    /**
+     * Create a new object that reads and writes values in the same way as this
+     * object, using only one thread.
+     *
+     * @return the new object
+     */
+    private Csv copySettings() {
+        Csv csv = new Csv();
+        csv.escapeCharacter = escapeCharacter;
+        csv.fieldDelimiter = fieldDelimiter;
+        csv.fieldSeparatorRead = fieldSeparatorRead;
+        csv.fieldSeparatorWrite = fieldSeparatorWrite;
+        csv.preserveWhitespace = preserveWhitespace;
+        csv.lineComment = lineComment;
+        csv.lineSeparator = lineSeparator;
+        csv.nullString = nullString;
+        csv.rowSeparatorWrite = rowSeparatorWrite;
+        csv.fileName = fileName;
+        csv.columnNames = columnNames;
+        return csv;
+    }
+
     private String escape(String data) {
         if (data.indexOf(fieldDelimiter) < 0) {
             if (escapeCharacter == fieldDelimiter || data.indexOf(escapeCharacter) < 0) {
@@ -352,6 +455,13 @@ public class Csv implements SimpleRowSource {
         if (columnNames == null) {
             readHeader();
         }
+        if (threads > 1) {
+            tasks = New.arrayList();
+            // the characters that were already read after the header
+            readRemainingLength = Math.max(0, inputBufferEnd - inputBufferPos);
+            readRemaining = new char[readRemainingLength];
+            System.arraycopy(inputBuffer, inputBufferPos, readRemaining, 0, readRemainingLength);
+        }
     }
 
     private void readHeader() throws IOException {
@@ -578,6 +688,13 @@ public class Csv implements SimpleRowSource {
         if (input == null) {
             return null;
         }
+        if (tasks != null) {
+            try {
+                return readRowParallel();
+            } catch (IOException e) {
+                throw convertException("IOException reading from " + fileName, e);
+            }
+        }
         String[] row = new String[columnNames.length];
         try {
             int i = 0;
@@ -608,6 +725,124 @@ public class Csv implements SimpleRowSource {
         return row;
     }
 
+    @SuppressWarnings("unchecked")
+    private Object[] readRowParallel() throws IOException {
+        while (readRows == null || readRowIndex >= readRows.size()) {
+            while (tasks.size() < threads && !endOfFile) {
+                readBlock();
+            }
+            if (tasks.size() == 0) {
+                return null;
+            }
+            readRows = (ArrayList<Object[]>) getResult(tasks.remove(0));
+            readRowIndex = 0;
+        }
+        return readRows.get(readRowIndex++);
+    }
+
+    /**
+     * Read the next block of complete records, and parse it in a separate
+     * thread.
+     */
+    private void readBlock() throws IOException {
+        char[] buff = new char[Math.max(READ_BLOCK_SIZE, readRemainingLength * 2)];
+        int len = readRemainingLength;
+        System.arraycopy(readRemaining, 0, buff, 0, len);
+        int end;
+        while (true) {
+            int l = input.read(buff, len, buff.length - len);
+            if (l < 0) {
+                endOfFile = true;
+                end = len;
+                break;
+            }
+            len += l;
+            if (len == buff.length) {
+                end = getRecordsEnd(buff, len);
+                if (end > 0) {
+                    break;
+                }
+                // a very long record
+                char[] b = new char[buff.length * 2];
+                System.arraycopy(buff, 0, b, 0, len);
+                buff = b;
+            }
+        }
+        readRemainingLength = len - end;
+        readRemaining = new char[readRemainingLength];
+        System.arraycopy(buff, end, readRemaining, 0, readRemainingLength);
+        if (end == 0) {
+            return;
+        }
+        final Csv csv = copySettings();
+        csv.input = new CharArrayReader(buff, 0, end);
+        csv.inputBuffer = new char[Constants.IO_BUFFER_SIZE * 2];
+        Task task = new Task() {
+            public void call() throws SQLException {
+                ArrayList<Object[]> rows = New.arrayList();
+                while (true) {
+                    Object[] row = csv.readRow();
+                    if (row == null) {
+                        break;
+                    }
+                    rows.add(row);
+                }
+                result = rows;
+            }
+        };
+        tasks.add(task.execute("H2 CSV read"));
+    }
+
+    /**
+     * Get the position after the last line break that ends a record. Line
+     * breaks within delimited values and comments don't end a record. This
+     * must be consistent with readValue.
+     *
+     * @param buff the characters, starting with a new record
+     * @param len the number of characters
+     * @return the position, or 0 if there is no complete record
+     */
+    private int getRecordsEnd(char[] buff, int len) {
+        int end = 0;
+        boolean valueStart = true, delimited = false, comment = false;
+        for (int i = 0; i < len; i++) {
+            char ch = buff[i];
+            if (delimited) {
+                if (ch == fieldDelimiter) {
+                    if (i + 1 >= len) {
+                        break;
+                    }
+                    if (buff[i + 1] == fieldDelimiter) {
+                        i++;
+                    } else {
+                        delimited = false;
+                        valueStart = true;
+                    }
+                } else if (ch == escapeCharacter) {
+                    i++;
+                }
+            } else if (ch == '\n' || ch == '\r') {
+                end = i + 1;
+                valueStart = true;
+                comment = false;
+            } else if (comment) {
+                // ignore
+            } else if (ch == fieldSeparatorRead) {
+                valueStart = true;
+            } else if (valueStart) {
+                if (ch == fieldDelimiter) {
+                    delimited = true;
+                    valueStart = false;
+                } else if (lineComment != 0 && ch == lineComment) {
+                    comment = true;
+                } else if (ch > ' ') {
+                    valueStart = false;
+                }
+            }
+        }
+        return end;
+    }
+
     private static SQLException convertException(String message, Exception e) {
         return DbException.get(ErrorCode.IO_EXCEPTION_1, e, message).getSQLException();
     }
@@ -616,6 +851,8 @@ public class Csv implements SimpleRowSource {
      * INTERNAL
      */
     public void close() {
+        tasks = null;
+        readRows = null;
         IOUtils.closeSilently(input);
         input = null;
         IOUtils.closeSilently(output);
@@ -854,6 +1091,26 @@ public class Csv implements SimpleRowSource {
         return writeColumnHeader;
     }
 
+    /**
+     * Set the number of threads used to parse and format values. The default
+     * is 1, which means the values are parsed and formatted in the calling
+     * thread.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Get the number of threads used to parse and format values.
+     *
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
     /**
      * INTERNAL.
      * Parse and set the CSV options.
@@ -895,6 +1152,8 @@ public class Csv implements SimpleRowSource {
                 setWriteColumnHeader(Boolean.parseBoolean(value));
             } else if (isParam(key, "caseSensitiveColumnNames")) {
                 setCaseSensitiveColumnNames(Boolean.parseBoolean(value));
+            } else if (isParam(key, "threads")) {
+                setThreads(Integer.parseInt(value));
             } else {
                 throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1, key);
             }
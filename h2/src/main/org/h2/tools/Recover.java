@@ -108,7 +108,7 @@ public class Recover extends Tool implements DataHandler {
         /**
          * The count per page type.
          */
-        int[] pageTypeCount = new int[Page.TYPE_STREAM_DATA + 2];
+        int[] pageTypeCount = new int[Page.TYPE_BITMAP + 1];
 
         /**
          * The number of free pages.
@@ -478,6 +478,8 @@ public class Recover extends Tool implements DataHandler {
             return "stream trunk";
         case Page.TYPE_STREAM_DATA:
             return "stream data";
+        case Page.TYPE_BITMAP:
+            return "bitmap";
         }
         return "[" + type + "]";
     }
@@ -574,6 +576,16 @@ public class Recover extends Tool implements DataHandler {
                 stat.pageTypeCount[type]++;
                 writer.println("-- page " + page + ": log data");
                 break;
+            // type 9
+            case Page.TYPE_BITMAP: {
+                stat.pageTypeCount[type]++;
+                int previousPageId = s.readInt();
+                setStorage(s.readVarInt());
+                int nextPageId = s.readInt();
+                writer.println("-- page " + page + ": bitmap previous: " + previousPageId +
+                        " index: " + storageId + " next: " + nextPageId);
+                break;
+            }
             default:
                 writer.println("-- ERROR page " + page + " unknown type " + type);
                 break;
@@ -647,6 +659,9 @@ public class Recover extends Tool implements DataHandler {
                 case Page.TYPE_STREAM_DATA:
                     typeName = "log data";
                     break;
+                case Page.TYPE_BITMAP:
+                    typeName = "bitmap";
+                    break;
                 default:
                     typeName = "ERROR: unknown type " + type;
                     break;
@@ -717,6 +732,12 @@ public class Recover extends Tool implements DataHandler {
                 if (transactionLog) {
                     writer.println("TRUNCATE TABLE " + storageId);
                 }
+            } else if (x == PageLog.BULK_LOAD) {
+                int sessionId = in.readVarInt();
+                setStorage(in.readVarInt());
+                writer.println("-- session " + sessionId +
+                        " table " + storageId +
+                        " bulk load");
             } else if (x == PageLog.COMMIT) {
                 int sessionId = in.readVarInt();
                 writer.println("-- commit " + sessionId);
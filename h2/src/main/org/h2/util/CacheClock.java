@@ -0,0 +1,381 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.util;
+
+import java.util.ArrayList;
+import org.h2.constant.SysProperties;
+import org.h2.engine.Constants;
+import org.h2.message.DbException;
+
+/**
+ * A cache implementation that can be used by multiple threads concurrently.
+ * The objects are distributed over a number of segments by their position.
+ * Each segment is synchronized on its own, so that threads that access
+ * different objects don't block each other, and no other lock is required to
+ * get an object from the cache.
+ * <p>
+ * Objects are removed using the CLOCK algorithm: the objects of a segment
+ * form a ring, and a hand moves over the ring. An object that was used since
+ * the hand passed it the last time gets a second chance. Unlike in the LRU
+ * cache, using an object only sets a flag, and does not change the order.
+ * <p>
+ * The cache writer is never called while a segment is locked.
+ */
+public class CacheClock implements Cache {
+
+    static final String TYPE_NAME = "CLOCK";
+
+    /**
+     * The number of segments. The lowest 4 bits of the position select the
+     * segment.
+     */
+    private static final int SEGMENT_COUNT = 16;
+
+    private final CacheWriter writer;
+    private final Segment[] segments;
+
+    /**
+     * The maximum memory, in words (4 bytes each).
+     */
+    private volatile int maxMemory;
+
+    /**
+     * The segment where the next object is removed.
+     */
+    private int nextSegment;
+
+    CacheClock(CacheWriter writer, int maxMemoryKb) {
+        this.writer = writer;
+        maxMemory = getMemoryWords(maxMemoryKb);
+        int len = MathUtils.nextPowerOf2(Math.max(16, maxMemory / 64 / SEGMENT_COUNT));
+        segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(len);
+        }
+    }
+
+    private static int getMemoryWords(int maxKb) {
+        int size = MathUtils.convertLongToInt(maxKb * 1024L / 4);
+        return size < 0 ? 0 : size;
+    }
+
+    private Segment getSegment(int pos) {
+        return segments[pos & (SEGMENT_COUNT - 1)];
+    }
+
+    public void clear() {
+        for (Segment s : segments) {
+            s.clear();
+        }
+    }
+
+    public void put(CacheObject rec) {
+        getSegment(rec.getPos()).put(rec);
+        removeOldIfRequired();
+    }
+
+    public CacheObject update(int pos, CacheObject rec) {
+        CacheObject old = getSegment(pos).update(pos, rec);
+        if (old == null) {
+            removeOldIfRequired();
+        }
+        return old;
+    }
+
+    private void removeOldIfRequired() {
+        // a small method, to allow inlining
+        if (getMemoryWords() >= maxMemory) {
+            removeOld();
+        }
+    }
+
+    private void removeOld() {
+        int mem = getMemoryWords();
+        int rc = getRecordCount();
+        int checked = 0;
+        boolean flushed = false;
+        boolean written = false;
+        while (true) {
+            if (rc <= Constants.CACHE_MIN_RECORDS) {
+                break;
+            }
+            if (written ? mem * 4L <= maxMemory * 3L : mem <= maxMemory) {
+                break;
+            }
+            // the hand of each segment passes each object at most twice
+            if (checked++ >= 2 * (rc + SEGMENT_COUNT)) {
+                if (!flushed) {
+                    writer.flushLog();
+                    flushed = true;
+                    checked = 0;
+                    continue;
+                }
+                // can't remove any record, because the records can not be removed
+                // hopefully this does not happen frequently, but it can happen
+                writer.getTrace().info("cannot remove records, cache size too small? records:" + rc + " memory:" + mem);
+                break;
+            }
+            Segment s = segments[nextSegment++ & (SEGMENT_COUNT - 1)];
+            CacheObject check = s.advance();
+            // we are not allowed to remove it if the log is not yet written
+            // (because we need to log before writing the data)
+            // also, can't write it if the record is pinned
+            if (check == null || !check.canRemove()) {
+                continue;
+            }
+            if (check.isChanged()) {
+                if (!flushed) {
+                    writer.flushLog();
+                    flushed = true;
+                }
+                int max = maxMemory;
+                try {
+                    // temporary disable size checking,
+                    // to avoid stack overflow
+                    maxMemory = Integer.MAX_VALUE;
+                    writer.writeBack(check);
+                } finally {
+                    maxMemory = max;
+                }
+                written = true;
+            }
+            if (s.remove(check.getPos())) {
+                rc--;
+                mem -= check.getMemory();
+            }
+        }
+    }
+
+    public boolean remove(int pos) {
+        return getSegment(pos).remove(pos);
+    }
+
+    public CacheObject find(int pos) {
+        return getSegment(pos).find(pos);
+    }
+
+    public CacheObject get(int pos) {
+        return getSegment(pos).get(pos);
+    }
+
+    public ArrayList<CacheObject> getAllChanged() {
+        ArrayList<CacheObject> list = New.arrayList();
+        for (Segment s : segments) {
+            s.addChanged(list);
+        }
+        return list;
+    }
+
+    public void setMaxMemory(int maxKb) {
+        maxMemory = getMemoryWords(maxKb);
+        removeOldIfRequired();
+    }
+
+    public int getMaxMemory() {
+        return (int) (maxMemory * 4L / 1024);
+    }
+
+    public int getMemory() {
+        return (int) (getMemoryWords() * 4L / 1024);
+    }
+
+    private int getMemoryWords() {
+        int mem = 0;
+        for (Segment s : segments) {
+            mem += s.getMemory();
+        }
+        return mem;
+    }
+
+    private int getRecordCount() {
+        int rc = 0;
+        for (Segment s : segments) {
+            rc += s.getRecordCount();
+        }
+        return rc;
+    }
+
+    /**
+     * A segment of the cache. It contains a hash table, and the ring of
+     * objects for the CLOCK algorithm.
+     */
+    private static class Segment {
+
+        private final int len;
+        private final int mask;
+        private CacheObject[] values;
+        private int recordCount;
+
+        /**
+         * The current memory used in this segment, in words (4 bytes each).
+         */
+        private int memory;
+
+        /**
+         * The object the hand points to, or null if the segment is empty. New
+         * objects are added before the hand, so that they are passed last.
+         */
+        private CacheObject hand;
+
+        Segment(int len) {
+            this.len = len;
+            this.mask = len - 1;
+            clear();
+        }
+
+        private int getIndex(int pos) {
+            // the lowest bits select the segment
+            return (pos >>> 4) & mask;
+        }
+
+        synchronized void clear() {
+            // first set to null - avoiding out of memory
+            values = null;
+            values = new CacheObject[len];
+            hand = null;
+            recordCount = 0;
+            memory = len * Constants.MEMORY_POINTER;
+        }
+
+        synchronized int getMemory() {
+            return memory;
+        }
+
+        synchronized int getRecordCount() {
+            return recordCount;
+        }
+
+        synchronized void put(CacheObject rec) {
+            int pos = rec.getPos();
+            if (SysProperties.CHECK) {
+                if (findInternal(pos) != null) {
+                    DbException.throwInternalError("try to add a record twice at pos " + pos);
+                }
+            }
+            int index = getIndex(pos);
+            rec.cacheChained = values[index];
+            values[index] = rec;
+            recordCount++;
+            memory += rec.getMemory();
+            rec.cacheReferenced = false;
+            if (hand == null) {
+                rec.cacheNext = rec.cachePrevious = rec;
+                hand = rec;
+            } else {
+                rec.cacheNext = hand;
+                rec.cachePrevious = hand.cachePrevious;
+                rec.cachePrevious.cacheNext = rec;
+                hand.cachePrevious = rec;
+            }
+        }
+
+        synchronized CacheObject update(int pos, CacheObject rec) {
+            CacheObject old = findInternal(pos);
+            if (old == null) {
+                put(rec);
+            } else {
+                if (SysProperties.CHECK) {
+                    if (old != rec) {
+                        DbException.throwInternalError("old!=record pos:" + pos + " old:" + old + " new:" + rec);
+                    }
+                }
+                old.cacheReferenced = true;
+            }
+            return old;
+        }
+
+        synchronized boolean remove(int pos) {
+            int index = getIndex(pos);
+            CacheObject rec = values[index];
+            if (rec == null) {
+                return false;
+            }
+            if (rec.getPos() == pos) {
+                values[index] = rec.cacheChained;
+            } else {
+                CacheObject last;
+                do {
+                    last = rec;
+                    rec = rec.cacheChained;
+                    if (rec == null) {
+                        return false;
+                    }
+                } while (rec.getPos() != pos);
+                last.cacheChained = rec.cacheChained;
+            }
+            recordCount--;
+            memory -= rec.getMemory();
+            if (rec.cacheNext == rec) {
+                hand = null;
+            } else {
+                if (hand == rec) {
+                    hand = rec.cacheNext;
+                }
+                rec.cachePrevious.cacheNext = rec.cacheNext;
+                rec.cacheNext.cachePrevious = rec.cachePrevious;
+            }
+            rec.cacheNext = null;
+            rec.cachePrevious = null;
+            rec.cacheChained = null;
+            return true;
+        }
+
+        synchronized CacheObject find(int pos) {
+            return findInternal(pos);
+        }
+
+        synchronized CacheObject get(int pos) {
+            CacheObject rec = findInternal(pos);
+            if (rec != null) {
+                rec.cacheReferenced = true;
+            }
+            return rec;
+        }
+
+        private CacheObject findInternal(int pos) {
+            CacheObject rec = values[getIndex(pos)];
+            while (rec != null && rec.getPos() != pos) {
+                rec = rec.cacheChained;
+            }
+            return rec;
+        }
+
+        /**
+         * Move the hand to the next object.
+         *
+         * @return the object the hand passed if it was not used since the
+         *         last time, otherwise null
+         */
+        synchronized CacheObject advance() {
+            CacheObject rec = hand;
+            if (rec == null) {
+                return null;
+            }
+            hand = rec.cacheNext;
+            if (rec.cacheReferenced) {
+                rec.cacheReferenced = false;
+                return null;
+            }
+            return rec;
+        }
+
+        synchronized void addChanged(ArrayList<CacheObject> list) {
+            CacheObject rec = hand;
+            if (rec == null) {
+                return;
+            }
+            do {
+                if (rec.isChanged()) {
+                    list.add(rec);
+                }
+                rec = rec.cacheNext;
+            } while (rec != hand);
+        }
+
+    }
+
+}
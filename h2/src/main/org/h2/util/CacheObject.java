@@ -31,6 +31,12 @@ public abstract class CacheObject implements Comparable<CacheObject> {
      */
     public CacheObject cacheChained;
 
+    /**
+     * Whether the object was used since the clock hand passed it the last
+     * time (only used by the CLOCK cache).
+     */
+    public boolean cacheReferenced;
+
     private int pos;
     private boolean changed;
 
@@ -24,6 +24,10 @@ public abstract class Task implements Runnable {
 
     private Thread thread;
 
+    private ThreadPool pool;
+
+    private boolean finished;
+
     private Exception ex;
 
     /**
@@ -38,6 +42,11 @@ public abstract class Task implements Runnable {
             call();
         } catch (Exception e) {
             this.ex = e;
+        } finally {
+            synchronized (this) {
+                finished = true;
+                notifyAll();
+            }
         }
     }
 
@@ -63,6 +72,18 @@ public abstract class Task implements Runnable {
         return this;
     }
 
+    /**
+     * Execute the method using a thread of the given pool.
+     *
+     * @param threadPool the thread pool
+     * @return this
+     */
+    public Task execute(ThreadPool threadPool) {
+        pool = threadPool;
+        threadPool.execute(this);
+        return this;
+    }
+
     /**
      * Calling this method will set the stop flag and wait until the thread is
      * stopped.
@@ -85,13 +106,24 @@ public abstract class Task implements Runnable {
      */
     public Exception getException() {
         stop = true;
-        if (thread == null) {
+        if (pool != null) {
+            synchronized (this) {
+                while (!finished) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // ignore
+                    }
+                }
+            }
+        } else if (thread == null) {
             throw new IllegalStateException("Thread not started");
-        }
-        try {
-            thread.join();
-        } catch (InterruptedException e) {
-            // ignore
+        } else {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                // ignore
+            }
         }
         if (ex != null) {
             return ex;
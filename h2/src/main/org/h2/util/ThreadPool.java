@@ -0,0 +1,95 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.util;
+
+import java.util.ArrayList;
+import org.h2.Driver;
+
+/**
+ * A pool of daemon threads that execute tasks. Threads are started when
+ * needed, up to the maximum number of threads, and are reused for later
+ * tasks. If all threads are busy, new tasks wait until a thread is free.
+ * Threads that are idle for some time stop.
+ */
+public class ThreadPool implements Runnable {
+
+    /**
+     * The number of milliseconds an idle thread waits for a new task before
+     * it stops.
+     */
+    private static final int KEEP_ALIVE = 5000;
+
+    private final String threadName;
+    private final int maxThreads;
+    private final ArrayList<Task> queue = New.arrayList();
+    private int threadCount;
+    private int idleCount;
+
+    /**
+     * Create a new thread pool.
+     *
+     * @param threadName the name of the threads
+     * @param maxThreads the maximum number of threads
+     */
+    public ThreadPool(String threadName, int maxThreads) {
+        this.threadName = threadName;
+        this.maxThreads = Math.max(1, maxThreads);
+    }
+
+    /**
+     * Add a task. It is executed as soon as a thread is free.
+     *
+     * @param task the task
+     */
+    synchronized void execute(Task task) {
+        queue.add(task);
+        if (idleCount > 0) {
+            notify();
+        } else if (threadCount < maxThreads) {
+            Thread thread = new Thread(this, threadName);
+            Driver.setThreadContextClassLoader(thread);
+            thread.setDaemon(true);
+            thread.start();
+            threadCount++;
+        }
+    }
+
+    public void run() {
+        boolean stopped = false;
+        try {
+            while (true) {
+                Task task;
+                synchronized (this) {
+                    if (queue.size() == 0) {
+                        idleCount++;
+                        try {
+                            wait(KEEP_ALIVE);
+                        } catch (InterruptedException e) {
+                            // ignore
+                        }
+                        idleCount--;
+                        if (queue.size() == 0) {
+                            // a new thread is started for the next task
+                            threadCount--;
+                            stopped = true;
+                            return;
+                        }
+                    }
+                    task = queue.remove(0);
+                }
+                task.run();
+            }
+        } finally {
+            if (!stopped) {
+                synchronized (this) {
+                    threadCount--;
+                }
+            }
+        }
+    }
+
+}
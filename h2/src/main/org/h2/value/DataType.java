@@ -978,6 +978,26 @@ public class DataType {
         return false;
     }
 
+    /**
+     * Check if the given value type is an integer type (TINYINT, SMALLINT,
+     * INT, or BIGINT), so that the values can be read as long values
+     * without loss of precision.
+     *
+     * @param type the value type
+     * @return true if the value type is an integer type
+     */
+    public static boolean isIntegerType(int type) {
+        switch (type) {
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+            return true;
+        default:
+            return false;
+        }
+    }
+
     /**
      * Check if the given value type supports the add operation.
      *
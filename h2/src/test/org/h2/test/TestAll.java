@@ -13,6 +13,8 @@ import org.h2.engine.Constants;
 import org.h2.store.fs.FilePathRec;
 import org.h2.store.fs.FileUtils;
 import org.h2.test.bench.TestPerformance;
+import org.h2.test.bitmap.TestBitmapIndex;
+import org.h2.test.bitmap.TestRoaringBitSet;
 import org.h2.test.db.TestAlter;
 import org.h2.test.db.TestAlterSchemaRename;
 import org.h2.test.db.TestAutoRecompile;
@@ -22,6 +24,7 @@ import org.h2.test.db.TestBigResult;
 import org.h2.test.db.TestCases;
 import org.h2.test.db.TestCheckpoint;
 import org.h2.test.db.TestCluster;
+import org.h2.test.db.TestColumnarTable;
 import org.h2.test.db.TestCompatibility;
 import org.h2.test.db.TestCsv;
 import org.h2.test.db.TestDateStorage;
@@ -63,6 +66,7 @@ import org.h2.test.db.TestTempTables;
 import org.h2.test.db.TestTransaction;
 import org.h2.test.db.TestTriggersConstraints;
 import org.h2.test.db.TestTwoPhaseCommit;
+import org.h2.test.db.TestVectorBatch;
 import org.h2.test.db.TestUpgrade;
 import org.h2.test.db.TestView;
 import org.h2.test.db.TestViewAlterTable;
@@ -554,12 +558,15 @@ kill -9 `jps -l | grep "org.h2.test." | cut -d " " -f 1`
         new TestAlterSchemaRename().runTest(this);
         new TestAutoRecompile().runTest(this);
         new TestBitField().runTest(this);
+        new TestBitmapIndex().runTest(this);
+        new TestRoaringBitSet().runTest(this);
         new TestBackup().runTest(this);
         new TestBigDb().runTest(this);
         new TestBigResult().runTest(this);
         new TestCases().runTest(this);
         new TestCheckpoint().runTest(this);
         new TestCluster().runTest(this);
+        new TestColumnarTable().runTest(this);
         new TestCompatibility().runTest(this);
         new TestCsv().runTest(this);
         new TestDateStorage().runTest(this);
@@ -600,6 +607,7 @@ kill -9 `jps -l | grep "org.h2.test." | cut -d " " -f 1`
         new TestTransaction().runTest(this);
         new TestTriggersConstraints().runTest(this);
         new TestTwoPhaseCommit().runTest(this);
+        new TestVectorBatch().runTest(this);
         new TestView().runTest(this);
         new TestViewAlterTable().runTest(this);
         new TestViewDropView().runTest(this);
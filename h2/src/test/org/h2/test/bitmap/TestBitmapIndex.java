@@ -0,0 +1,568 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.bitmap;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import org.h2.constant.ErrorCode;
+import org.h2.engine.Constants;
+import org.h2.store.FileStore;
+import org.h2.store.fs.FileUtils;
+import org.h2.test.TestBase;
+
+/**
+ * Tests the bitmap index.
+ */
+public class TestBitmapIndex extends TestBase {
+
+    private Connection conn;
+    private Statement stat;
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase.createCaller().init().test();
+    }
+
+    public void test() throws Exception {
+        deleteDb("bitmapIndex");
+        reconnect();
+        testCreate();
+        testQuery(false);
+        testQuery(true);
+        testMultiColumn();
+        testCombine();
+        testDecimal();
+        testRowKeyRange();
+        testCount();
+        testGroupBy();
+        testMultiVersion();
+        testReopen();
+        testPersistent();
+        testSize();
+        testFileVersion();
+        testRecover();
+        conn.close();
+        deleteDb("bitmapIndex");
+    }
+
+    private void reconnect() throws SQLException {
+        if (conn != null) {
+            conn.close();
+        }
+        conn = getConnection("bitmapIndex");
+        stat = conn.createStatement();
+    }
+
+    private void testCreate() throws SQLException {
+        stat.execute("create table test(id int primary key, status int)");
+        stat.execute("create bitmap index idx_status on test(status)");
+        ResultSet rs = stat.executeQuery("select sql from information_schema.indexes " +
+                "where index_name = 'IDX_STATUS'");
+        rs.next();
+        assertContains(rs.getString(1), "CREATE BITMAP INDEX");
+        try {
+            stat.execute("create unique bitmap index idx_status2 on test(status)");
+            fail();
+        } catch (SQLException e) {
+            assertKnownException(e);
+        }
+        stat.execute("drop table test");
+    }
+
+    private void testQuery(boolean memory) throws SQLException {
+        stat.execute("create " + (memory ? "memory" : "cached") +
+                " table test(id int primary key, status int, name varchar)");
+        stat.execute("create bitmap index idx_status on test(status)");
+        PreparedStatement prep = conn.prepareStatement("insert into test values(?, ?, ?)");
+        Random random = new Random(1);
+        int[] counts = new int[5];
+        for (int i = 0; i < 1000; i++) {
+            int status = random.nextInt(5);
+            counts[status]++;
+            prep.setInt(1, i);
+            prep.setInt(2, status);
+            prep.setString(3, "name" + i);
+            prep.execute();
+        }
+        ResultSet rs = stat.executeQuery("explain select * from test where status = 3");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_STATUS");
+        for (int i = 0; i < counts.length; i++) {
+            assertSingleValue(stat, "select count(*) from test where status = " + i, counts[i]);
+        }
+        assertSingleValue(stat, "select count(*) from test where status in(1, 2)", counts[1] + counts[2]);
+        assertSingleValue(stat, "select count(*) from test where status = 9", 0);
+
+        // rows are returned in row key order
+        rs = stat.executeQuery("select id from test where status = 4");
+        int last = -1;
+        while (rs.next()) {
+            assertSmaller(last, rs.getInt(1));
+            last = rs.getInt(1);
+        }
+
+        stat.execute("delete from test where status = 0");
+        assertSingleValue(stat, "select count(*) from test where status = 0", 0);
+        stat.execute("update test set status = 0 where status = 1");
+        assertSingleValue(stat, "select count(*) from test where status = 0", counts[1]);
+        assertSingleValue(stat, "select count(*) from test where status = 1", 0);
+        stat.execute("insert into test values(1000, null, 'null')");
+        assertSingleValue(stat, "select count(*) from test where status is null", 1);
+        stat.execute("truncate table test");
+        assertSingleValue(stat, "select count(*) from test where status = 2", 0);
+        stat.execute("drop table test");
+    }
+
+    private void testMultiColumn() throws SQLException {
+        stat.execute("create table test(id int primary key, a int, b varchar)");
+        stat.execute("create bitmap index idx_ab on test(a, b)");
+        stat.execute("insert into test select x, mod(x, 3), 'b' || mod(x, 2) from system_range(1, 60)");
+        assertSingleValue(stat, "select count(*) from test where a = 1 and b = 'b0'", 10);
+        ResultSet rs = stat.executeQuery("explain select * from test where a = 1 and b = 'b0'");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_AB");
+        // only one column: the bitmap index can not be used
+        rs = stat.executeQuery("explain select * from test where a = 1");
+        rs.next();
+        assertTrue(rs.getString(1).indexOf("IDX_AB") < 0);
+        assertSingleValue(stat, "select count(*) from test where a = 1", 20);
+        stat.execute("drop table test");
+    }
+
+    private void testCombine() throws SQLException {
+        stat.execute("create table test(id int primary key, a int, b varchar, c boolean)");
+        stat.execute("create table ref(id int primary key, a int, b varchar, c boolean)");
+        stat.execute("create bitmap index idx_a on test(a)");
+        stat.execute("create bitmap index idx_b on test(b)");
+        stat.execute("create bitmap index idx_c on test(c)");
+        stat.execute("insert into test select x, mod(x, 5), 'b' || mod(x, 7), " +
+                "casewhen(mod(x, 11) = 0, null, mod(x, 2) = 0) from system_range(1, 1000)");
+        stat.execute("update test set a = null where mod(id, 13) = 0");
+        stat.execute("insert into ref select * from test");
+        String[] conditions = {
+                "a = 1 and b = 'b2'",
+                "a = 1 or b = 'b2'",
+                "a in(1, 2) and not c",
+                "not (a = 1 or b = 'b3')",
+                "a <> 2 and b <> 'b1'",
+                "a is null or b = 'b0'",
+                "a is not null and c is null",
+                "(a = 1 and b = 'b2') or (a = 3 and c)",
+                "a = 1 and id < 100",
+                "a = 1 or id < 100",
+                "not (a = 1 and id < 100)",
+                "a = 1.0 or a = 2.5 or a = '3'",
+        };
+        for (String c : conditions) {
+            ResultSet rs = stat.executeQuery("select count(*), sum(id) from ref where " + c);
+            rs.next();
+            String expected = rs.getString(1) + " " + rs.getString(2);
+            rs = stat.executeQuery("select count(*), sum(id) from test where " + c);
+            rs.next();
+            assertEquals(c, expected, rs.getString(1) + " " + rs.getString(2));
+        }
+        ResultSet rs = stat.executeQuery("explain select * from test where a = 1 or b = 'b2'");
+        rs.next();
+        assertContains(rs.getString(1), "BITMAP(");
+        rs = stat.executeQuery("explain select * from test where a = 1 and not c");
+        rs.next();
+        assertContains(rs.getString(1), "BITMAP(");
+        // the OR can not be calculated using the bitmap indexes
+        rs = stat.executeQuery("explain select * from test where a = 1 or id < 100");
+        rs.next();
+        assertTrue(rs.getString(1).indexOf("BITMAP(") < 0);
+        stat.execute("delete from test where a = 1 or b = 'b2'");
+        stat.execute("delete from ref where a = 1 or b = 'b2'");
+        assertSingleValue(stat, "select count(*) from test where a = 3 or b = 'b3'",
+                getSingleValue("select count(*) from ref where a = 3 or b = 'b3'"));
+        stat.execute("drop table test");
+        stat.execute("drop table ref");
+    }
+
+    private void testDecimal() throws SQLException {
+        stat.execute("create table test(id int primary key, d decimal(10, 2), x double)");
+        stat.execute("create bitmap index idx_d on test(d)");
+        stat.execute("create bitmap index idx_x on test(x)");
+        stat.execute("insert into test values(1, 1, 0.0), (2, 2.5, -0.0), (3, 1.00, 1.0)");
+        assertSingleValue(stat, "select count(*) from test where d = 1", 2);
+        assertSingleValue(stat, "select count(*) from test where d = 2.5", 1);
+        assertSingleValue(stat, "select count(*) from test where d in(1.0, 2.50)", 3);
+        assertSingleValue(stat, "select count(*) from test where d <> 1", 1);
+        assertSingleValue(stat, "select count(*) from test where x = 0", 2);
+        assertSingleValue(stat, "select sum(id) from test where d = 2.50 or x = -0.0", 3);
+        ResultSet rs = stat.executeQuery("explain select * from test where d = 1");
+        rs.next();
+        assertTrue(rs.getString(1).indexOf("IDX_D") < 0);
+        stat.execute("drop table test");
+    }
+
+    private void testRowKeyRange() throws SQLException {
+        // the primary key is used as the row key
+        stat.execute("create table test(id bigint primary key, status int)");
+        stat.execute("create bitmap index idx_status on test(status)");
+        stat.execute("insert into test select x, mod(x, 3) from system_range(1, 30)");
+        stat.execute("insert into test values(-1, 1), (5000000000, 1), (" + Long.MAX_VALUE + ", 2)");
+        assertSingleValue(stat, "select count(*) from test where status = 1", 12);
+        assertSingleValue(stat, "select count(*) from test where status = 2", 11);
+        assertSingleValue(stat, "select sum(id) from test where status = 1 and id < 0", -1);
+        ResultSet rs = stat.executeQuery("explain select * from test where status = 1");
+        rs.next();
+        assertTrue(rs.getString(1).indexOf("IDX_STATUS") < 0);
+        if (!config.memory) {
+            reconnect();
+            // the index is loaded when the first row is added
+            stat.execute("insert into test values(-2, 2)");
+            assertSingleValue(stat, "select count(*) from test where status = 2", 12);
+            reconnect();
+            assertSingleValue(stat, "select count(*) from test where status = 1", 12);
+            assertSingleValue(stat, "select count(*) from test where status = 2", 12);
+        }
+        stat.execute("delete from test where id < 0 or id > 1000");
+        assertSingleValue(stat, "select count(*) from test where status = 1", 10);
+        assertSingleValue(stat, "select count(*) from test where status = 2", 10);
+        rs = stat.executeQuery("explain select * from test where status = 1");
+        rs.next();
+        assertTrue(rs.getString(1).indexOf("IDX_STATUS") >= 0);
+        if (!config.memory) {
+            reconnect();
+            assertSingleValue(stat, "select count(*) from test where status = 1", 10);
+            rs = stat.executeQuery("explain select * from test where status = 1");
+            rs.next();
+            assertTrue(rs.getString(1).indexOf("IDX_STATUS") >= 0);
+        }
+        stat.execute("drop table test");
+    }
+
+    private void testCount() throws SQLException {
+        stat.execute("create table test(id int primary key, a int, b varchar)");
+        stat.execute("create bitmap index idx_a on test(a)");
+        stat.execute("create bitmap index idx_b on test(b)");
+        stat.execute("insert into test select x, mod(x, 5), 'b' || mod(x, 7) from system_range(1, 700)");
+        stat.execute("update test set a = null where mod(id, 13) = 0");
+        String[] conditions = {
+                "a = 1", "a = 1 and b = 'b2'", "a = 1 or b = 'b2'",
+                "a in(1, 2) and b <> 'b3'", "a is null or b in('b0', 'b9')",
+                "a = 1 and id < 100", "not (a = 1)",
+        };
+        for (String c : conditions) {
+            ResultSet rs = stat.executeQuery("select count(*) from test where " + c);
+            rs.next();
+            int count = rs.getInt(1);
+            rs = stat.executeQuery("select count(id) from test where " + c);
+            rs.next();
+            assertEquals(c, rs.getInt(1), count);
+        }
+        ResultSet rs = stat.executeQuery("explain select count(*) from test where a = 1 and b = 'b2'");
+        rs.next();
+        assertContains(rs.getString(1), "/* bitmap count */");
+        // not all conditions can be calculated using the bitmap indexes
+        rs = stat.executeQuery("explain select count(*) from test where a = 1 and id < 100");
+        rs.next();
+        assertTrue(rs.getString(1).indexOf("/* bitmap count */") < 0);
+        rs = stat.executeQuery("explain select count(*), max(id) from test where a = 1 and b = 'b2'");
+        rs.next();
+        assertTrue(rs.getString(1).indexOf("/* bitmap count */") < 0);
+        PreparedStatement prep = conn.prepareStatement(
+                "select count(*) from test where a = ? and b = ?");
+        prep.setInt(1, 1);
+        prep.setString(2, "b2");
+        int expected = getSingleValue("select count(id) from test where a = 1 and b = 'b2'");
+        rs = prep.executeQuery();
+        rs.next();
+        assertEquals(expected, rs.getInt(1));
+        // the value can not be converted exactly: the rows are counted
+        prep.setBigDecimal(1, new BigDecimal("1.5"));
+        rs = prep.executeQuery();
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        stat.execute("drop table test");
+    }
+
+    private void testGroupBy() throws SQLException {
+        stat.execute("create table test(id int primary key, a int, b varchar, v int)");
+        stat.execute("create table ref(id int primary key, a int, b varchar, v int)");
+        stat.execute("create bitmap index idx_a on test(a)");
+        stat.execute("create bitmap index idx_b on test(b)");
+        stat.execute("insert into test select x, mod(x, 5), 'b' || mod(x, 7), x from system_range(1, 700)");
+        stat.execute("update test set a = null where mod(id, 13) = 0");
+        stat.execute("insert into ref select * from test");
+        String[] queries = {
+                "select a, count(*) from {0} group by a",
+                "select a x, count(*) c from {0} where b = 'b1' group by a",
+                "select a, count(*) from {0} where b in('b1', 'b2') and a <> 3 group by a",
+                "select a, count(*), sum(v), min(v), max(v) from {0} where b = 'b1' group by a",
+                "select a, count(*), sum(v) from {0} where b = 'b1' and v > 300 group by a",
+                "select a, sum(v) from {0} where b = 'b1' group by a having count(*) > 14",
+                "select a, count(*) from {0} group by a having count(*) > 130",
+                "select distinct count(*) from {0} where b = 'b1' group by a",
+        };
+        for (String q : queries) {
+            String expected = getResult(q.replace("{0}", "ref"));
+            assertEquals(q, expected, getResult(q.replace("{0}", "test")));
+        }
+        ResultSet rs = stat.executeQuery("explain select a, count(*) from test where b = 'b2' group by a");
+        rs.next();
+        assertContains(rs.getString(1), "/* group bitmap: PUBLIC.IDX_A count */");
+        rs = stat.executeQuery("explain select a, sum(v) from test where b = 'b2' group by a");
+        rs.next();
+        assertContains(rs.getString(1), "/* group bitmap: PUBLIC.IDX_A */");
+        // without condition, reading all rows is faster
+        rs = stat.executeQuery("explain select a, sum(v) from test group by a");
+        rs.next();
+        assertTrue(rs.getString(1).indexOf("/* group bitmap") < 0);
+        stat.execute("drop table test");
+        stat.execute("drop table ref");
+    }
+
+    private String getResult(String sql) throws SQLException {
+        ResultSet rs = stat.executeQuery(sql + " order by 1, 2");
+        StringBuilder buff = new StringBuilder();
+        int columnCount = rs.getMetaData().getColumnCount();
+        while (rs.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                buff.append(rs.getString(i + 1)).append(' ');
+            }
+            buff.append('\n');
+        }
+        return buff.toString();
+    }
+
+    private int getSingleValue(String sql) throws SQLException {
+        ResultSet rs = stat.executeQuery(sql);
+        rs.next();
+        return rs.getInt(1);
+    }
+
+    private void testMultiVersion() throws SQLException {
+        deleteDb("bitmapMvcc");
+        Connection c1 = getConnection("bitmapMvcc;MVCC=TRUE");
+        Connection c2 = getConnection("bitmapMvcc;MVCC=TRUE");
+        Statement s1 = c1.createStatement();
+        Statement s2 = c2.createStatement();
+        s1.execute("create table test(id int primary key, a int, b varchar)");
+        s1.execute("create bitmap index idx_a on test(a)");
+        s1.execute("create bitmap index idx_b on test(b)");
+        s1.execute("insert into test select x, mod(x, 5), 'b' || mod(x, 7) from system_range(1, 700)");
+        c2.setAutoCommit(false);
+        s2.execute("insert into test select x, 1, 'b2' from system_range(1001, 1100)");
+        s2.execute("delete from test where id = 16");
+        // the bit sets contain the uncommitted changes of other sessions,
+        // so they are not used to combine conditions, count, or group
+        String[] explain = {
+                "select * from test where a = 1 or b = 'b2'",
+                "select count(*) from test where a = 1 and b = 'b2'",
+                "select b, count(*) from test where a = 1 group by b" };
+        for (String q : explain) {
+            ResultSet rs = s1.executeQuery("explain " + q);
+            rs.next();
+            String plan = rs.getString(1);
+            assertTrue(plan, plan.indexOf("BITMAP(") < 0);
+            assertTrue(plan, plan.indexOf("bitmap") < 0);
+        }
+        assertSingleValue(s1, "select count(*) from test where a = 1", 140);
+        assertSingleValue(s1, "select count(*) from test where a = 1 and b = 'b2'", 20);
+        assertSingleValue(s1, "select count(*) from test where a = 1 or b = 'b2'", 220);
+        assertSingleValue(s2, "select count(*) from test where a = 1 and b = 'b2'", 119);
+        c2.commit();
+        assertSingleValue(s1, "select count(*) from test where a = 1 and b = 'b2'", 119);
+        c1.close();
+        c2.close();
+        deleteDb("bitmapMvcc");
+    }
+
+    private void testReopen() throws SQLException {
+        if (config.memory) {
+            return;
+        }
+        stat.execute("create table test(id int primary key, status varchar)");
+        stat.execute("insert into test select x, 'S' || mod(x, 4) from system_range(1, 400)");
+        stat.execute("create bitmap index idx_status on test(status)");
+        reconnect();
+        assertSingleValue(stat, "select count(*) from test where status = 'S1'", 100);
+        stat.execute("delete from test where id < 200");
+        reconnect();
+        assertSingleValue(stat, "select count(*) from test where status = 'S1'", 50);
+        stat.execute("drop table test");
+    }
+
+    private void testPersistent() throws SQLException {
+        if (config.memory) {
+            return;
+        }
+        // enough rows for a few chunks per key
+        stat.execute("create table test(id int primary key, status varchar)");
+        stat.execute("create bitmap index idx_status on test(status)");
+        stat.execute("insert into test select x, 'S' || mod(x, 3) from system_range(1, 30000)");
+        stat.execute("update test set status = 'X' where mod(id, 1000) = 0");
+        reconnect();
+        assertSingleValue(stat, "select count(*) from test where status = 'S1'", 9990);
+        assertSingleValue(stat, "select count(*) from test where status = 'X'", 30);
+        assertSingleValue(stat, "select count(*) from test where status <> 'X'", 29970);
+        conn.setAutoCommit(false);
+        stat.execute("delete from test where status = 'S2'");
+        assertSingleValue(stat, "select count(*) from test where status = 'S2'", 0);
+        conn.rollback();
+        conn.setAutoCommit(true);
+        assertSingleValue(stat, "select count(*) from test where status = 'S2'", 9990);
+        stat.execute("delete from test where status = 'X'");
+        stat.execute("insert into test values(40000, 'Y')");
+        reconnect();
+        assertSingleValue(stat, "select count(*) from test where status = 'X'", 0);
+        assertSingleValue(stat, "select count(*) from test where status = 'Y'", 1);
+        assertSingleValue(stat, "select id from test where status = 'Y'", 40000);
+        stat.execute("truncate table test");
+        stat.execute("insert into test values(1, 'S1')");
+        reconnect();
+        assertSingleValue(stat, "select count(*) from test where status = 'S1'", 1);
+        assertSingleValue(stat, "select count(*) from test", 1);
+        StringBuilder buff = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            buff.append('x');
+        }
+        try {
+            stat.execute("insert into test values(2, '" + buff + "')");
+            fail();
+        } catch (SQLException e) {
+            assertKnownException(e);
+        }
+        assertSingleValue(stat, "select count(*) from test where status = 'S1'", 1);
+        stat.execute("drop index idx_status");
+        stat.execute("drop table test");
+    }
+
+    private void testSize() throws SQLException {
+        if (config.memory) {
+            return;
+        }
+        // the chunks of a sparse key share pages with other chunks
+        stat.execute("create table test(id int primary key, k int)");
+        stat.execute("insert into test select x, mod(x * 7919, 1000) from system_range(1, 100000)");
+        int base = getPageCount();
+        stat.execute("create index idx_k on test(k)");
+        int btree = getPageCount() - base;
+        stat.execute("drop index idx_k");
+        stat.execute("create bitmap index idx_k on test(k)");
+        int bitmap = getPageCount() - base;
+        assertTrue("bitmap: " + bitmap + " b-tree: " + btree, bitmap < btree);
+        stat.execute("drop table test");
+        stat.execute("create table test(id int primary key, k int)");
+        stat.execute("create bitmap index idx_k on test(k)");
+        stat.execute("insert into test select x, mod(x * 7919, 1000) from system_range(1, 100000)");
+        bitmap = getPageCount() - base;
+        assertTrue("bitmap: " + bitmap + " b-tree: " + btree, bitmap < btree);
+        assertSingleValue(stat, "select count(*) from test where k = 10", 100);
+        stat.execute("drop table test");
+    }
+
+    private void testFileVersion() throws Exception {
+        if (config.memory) {
+            return;
+        }
+        deleteDb("bitmapVersion");
+        String fileName = getBaseDir() + "/bitmapVersion" + Constants.SUFFIX_PAGE_FILE;
+        Connection c = getConnection("bitmapVersion");
+        Statement s = c.createStatement();
+        s.execute("create table test(id int primary key, k int)");
+        s.execute("create index idx_id_k on test(id, k)");
+        c.close();
+        assertEquals(3, readFileVersion(fileName, false));
+        assertEquals(3, readFileVersion(fileName, true));
+        c = getConnection("bitmapVersion");
+        s = c.createStatement();
+        s.execute("create bitmap index idx_k on test(k)");
+        s.execute("insert into test values(1, 10)");
+        c.close();
+        // older versions can't read the bitmap index
+        assertEquals(4, readFileVersion(fileName, false));
+        assertEquals(4, readFileVersion(fileName, true));
+        c = getConnection("bitmapVersion");
+        assertSingleValue(c.createStatement(), "select count(*) from test where k = 10", 1);
+        c.close();
+        // a version that can't read the file refuses to open it
+        writeReadVersion(fileName, 5);
+        try {
+            getConnection("bitmapVersion");
+            fail();
+        } catch (SQLException e) {
+            assertEquals(ErrorCode.FILE_VERSION_ERROR_1, e.getErrorCode());
+        }
+        deleteDb("bitmapVersion");
+    }
+
+    private static int readFileVersion(String fileName, boolean read) throws IOException {
+        FileChannel f = FileUtils.open(fileName, "r");
+        try {
+            ByteBuffer buff = ByteBuffer.allocate(1);
+            f.position(FileStore.HEADER_LENGTH + (read ? 5 : 4));
+            f.read(buff);
+            return buff.get(0);
+        } finally {
+            f.close();
+        }
+    }
+
+    private static void writeReadVersion(String fileName, int version) throws IOException {
+        FileChannel f = FileUtils.open(fileName, "rw");
+        try {
+            ByteBuffer buff = ByteBuffer.wrap(new byte[] { (byte) version });
+            f.position(FileStore.HEADER_LENGTH + 5);
+            f.write(buff);
+        } finally {
+            f.close();
+        }
+    }
+
+    private int getPageCount() throws SQLException {
+        stat.execute("shutdown compact");
+        conn = null;
+        reconnect();
+        ResultSet rs = stat.executeQuery("select value from information_schema.settings " +
+                "where name = 'info.PAGE_COUNT'");
+        rs.next();
+        return rs.getInt(1);
+    }
+
+    private void testRecover() throws SQLException {
+        if (config.memory) {
+            return;
+        }
+        stat.execute("create table test(id int primary key, status int)");
+        stat.execute("create bitmap index idx_status on test(status)");
+        stat.execute("insert into test select x, mod(x, 5) from system_range(1, 10000)");
+        stat.execute("checkpoint");
+        stat.execute("delete from test where status = 1 and id < 5000");
+        stat.execute("insert into test select x, 7 from system_range(20000, 20100)");
+        conn.setAutoCommit(false);
+        stat.execute("delete from test where status = 2");
+        try {
+            stat.execute("shutdown immediately");
+        } catch (SQLException e) {
+            // ignore
+        }
+        conn = null;
+        reconnect();
+        assertSingleValue(stat, "select count(*) from test where status = 1", 1000);
+        assertSingleValue(stat, "select count(*) from test where status = 2", 2000);
+        assertSingleValue(stat, "select count(*) from test where status = 7", 101);
+        assertSingleValue(stat, "select count(*) from test where status in(1, 7)", 1101);
+        stat.execute("drop table test");
+    }
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.bitmap;
+
+import java.util.Random;
+
+import org.h2.bitmap.BitSet;
+import org.h2.bitmap.OpenBitSet;
+import org.h2.bitmap.RoaringBitSet;
+import org.h2.test.TestBase;
+
+/**
+ * Tests the compressed bit set. The results are compared with the results of
+ * the uncompressed bit set.
+ */
+public class TestRoaringBitSet extends TestBase {
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase.createCaller().init().test();
+    }
+
+    public void test() {
+        testSetClear();
+        testRanges();
+        testMemory();
+        Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            testOperations(random);
+        }
+    }
+
+    private void testSetClear() {
+        RoaringBitSet set = new RoaringBitSet();
+        OpenBitSet ref = new OpenBitSet();
+        assertTrue(set.isEmpty());
+        assertEquals(-1, set.nextSetBit(0));
+        // fill one chunk completely, so that the array, bitmap, and run
+        // containers are used
+        for (int i = 0; i < 70000; i++) {
+            set.set(i);
+            ref.set(i);
+        }
+        assertEquals(70000, set.cardinality());
+        assertEquals(70000, set.size());
+        assertEquals(70000, set.nextClearBit(0));
+        assertEquals(65536, set.nextSetBit(65536));
+        set.clear(100);
+        set.clear(100);
+        ref.clear(100);
+        assertFalse(set.get(100));
+        assertEquals(100, set.nextClearBit(0));
+        assertEquals(101, set.nextSetBit(100));
+        for (int i = 0; i < 70000; i += 3) {
+            set.clear(i);
+            ref.clear(i);
+        }
+        assertEquals(ref, set);
+        set.flip(5);
+        ref.flip(5);
+        assertEquals(ref, set);
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertEquals(0, set.cardinality());
+        set.set(Integer.MAX_VALUE);
+        assertTrue(set.get(Integer.MAX_VALUE));
+        assertEquals(Integer.MAX_VALUE, set.nextSetBit(0));
+        assertEquals(Integer.MAX_VALUE, set.size());
+    }
+
+    private void testRanges() {
+        RoaringBitSet set = new RoaringBitSet();
+        OpenBitSet ref = new OpenBitSet();
+        set.set(10, 200000);
+        ref.set(10, 200000);
+        assertEquals(ref, set);
+        set.clear(60000, 140000);
+        ref.clear(60000, 140000);
+        assertEquals(ref, set);
+        set.flip(0, 70000);
+        ref.flip(0, 70000);
+        assertEquals(ref, set);
+        assertEquals(0, set.nextSetBit(0));
+        assertEquals(60000, set.nextSetBit(10));
+    }
+
+    private void testMemory() {
+        RoaringBitSet sparse = new RoaringBitSet();
+        RoaringBitSet dense = new RoaringBitSet();
+        for (int i = 0; i < 10000000; i += 1000) {
+            sparse.set(i);
+        }
+        dense.set(0, 10000000);
+        // the uncompressed bit set would need 1.25 MB
+        assertSmaller(sparse.getMemory(), 100000);
+        assertSmaller(dense.getMemory(), 10000);
+        RoaringBitSet runs = new RoaringBitSet();
+        for (int i = 0; i < 1000000; i++) {
+            if (i % 1000 < 900) {
+                runs.set(i);
+            }
+        }
+        long before = runs.getMemory();
+        runs.runOptimize();
+        assertSmaller(runs.getMemory(), before / 10);
+        assertEquals(900000, runs.cardinality());
+    }
+
+    private void testOperations(Random random) {
+        int max = 1 << (10 + random.nextInt(10));
+        RoaringBitSet a = createRandom(random, max);
+        RoaringBitSet b = createRandom(random, max);
+        OpenBitSet ra = a.toOpenBitSet();
+        OpenBitSet rb = b.toOpenBitSet();
+        assertEquals(ra.cardinality(), a.cardinality());
+        assertEquals(ra, RoaringBitSet.valueOf(ra).toOpenBitSet());
+        assertEquals(a, RoaringBitSet.valueOf(ra));
+
+        // compressed with compressed, compressed with uncompressed, and
+        // uncompressed with compressed
+        int and = ra.andCardinality(rb);
+        assertEquals(and, a.andCardinality(b));
+        assertEquals(and, a.andCardinality(rb));
+        assertEquals(and, ra.andCardinality(b));
+        assertEquals(ra.orCardinality(rb), a.orCardinality(b));
+        assertEquals(ra.orCardinality(rb), ra.orCardinality(b));
+        assertEquals(ra.xorCardinality(rb), a.xorCardinality(b));
+        assertEquals(ra.andNotCardinality(rb), a.andNotCardinality(b));
+        assertEquals(ra.andNotCardinality(rb), ra.andNotCardinality(b));
+        assertEquals(ra.intersects(rb), a.intersects(b));
+        assertEquals(ra.intersects(rb), ra.intersects(b));
+
+        checkAnd(a, b, ra, rb);
+        checkAnd(a, rb, ra, rb);
+        checkOr(a, b, ra, rb);
+        checkOr(a, rb, ra, rb);
+        checkAndNot(a, b, ra, rb);
+        checkAndNot(a, rb, ra, rb);
+        checkXor(a, b, ra, rb);
+
+        OpenBitSet x = ra.clone();
+        x.and(b);
+        OpenBitSet y = ra.clone();
+        y.and(rb);
+        assertEquals(y, x);
+        x = ra.clone();
+        x.or(b);
+        y = ra.clone();
+        y.or(rb);
+        assertEquals(y, x);
+
+        // the operations must not modify the operand
+        assertEquals(rb, b.toOpenBitSet());
+        int last = -1;
+        for (int i = a.nextSetBit(0); i >= 0; i = a.nextSetBit(i + 1)) {
+            assertTrue(ra.get(i));
+            assertEquals(ra.nextSetBit(last + 1), i);
+            last = i;
+        }
+        assertEquals(-1, ra.nextSetBit(last + 1));
+    }
+
+    private void checkAnd(RoaringBitSet a, BitSet b, OpenBitSet ra, OpenBitSet rb) {
+        RoaringBitSet x = a.clone();
+        x.and(b);
+        OpenBitSet y = ra.clone();
+        y.and(rb);
+        assertEquals(y, x);
+    }
+
+    private void checkOr(RoaringBitSet a, BitSet b, OpenBitSet ra, OpenBitSet rb) {
+        RoaringBitSet x = a.clone();
+        x.or(b);
+        OpenBitSet y = ra.clone();
+        y.or(rb);
+        assertEquals(y, x);
+    }
+
+    private void checkAndNot(RoaringBitSet a, BitSet b, OpenBitSet ra, OpenBitSet rb) {
+        RoaringBitSet x = a.clone();
+        x.andNot(b);
+        OpenBitSet y = ra.clone();
+        y.andNot(rb);
+        assertEquals(y, x);
+    }
+
+    private void checkXor(RoaringBitSet a, BitSet b, OpenBitSet ra, OpenBitSet rb) {
+        RoaringBitSet x = a.clone();
+        x.xor(b);
+        OpenBitSet y = ra.clone();
+        y.xor(rb);
+        assertEquals(y, x);
+    }
+
+    private void assertEquals(OpenBitSet expected, RoaringBitSet actual) {
+        assertEquals(expected.cardinality(), actual.cardinality());
+        assertEquals(expected.cardinality(), expected.andCardinality(actual.toOpenBitSet()));
+    }
+
+    private void assertEquals(OpenBitSet expected, OpenBitSet actual) {
+        assertTrue(expected.equals(actual));
+    }
+
+    private void assertEquals(RoaringBitSet expected, RoaringBitSet actual) {
+        assertTrue(expected.equals(actual));
+        assertEquals(expected.hashCode(), actual.hashCode());
+    }
+
+    private static RoaringBitSet createRandom(Random random, int max) {
+        RoaringBitSet set = new RoaringBitSet();
+        switch (random.nextInt(4)) {
+        case 0:
+            // sparse
+            for (int i = random.nextInt(max / 8 + 1); i > 0; i--) {
+                set.set(random.nextInt(max));
+            }
+            break;
+        case 1:
+            // dense
+            for (int i = 0; i < max; i++) {
+                if (random.nextInt(4) > 0) {
+                    set.set(i);
+                }
+            }
+            break;
+        case 2:
+            // runs
+            for (int i = random.nextInt(20); i > 0; i--) {
+                int start = random.nextInt(max);
+                set.set(start, Math.min(max, start + random.nextInt(max / 4 + 1)));
+            }
+            break;
+        default:
+            // runs, some bits cleared
+            set.set(0, max);
+            for (int i = random.nextInt(max / 8 + 1); i > 0; i--) {
+                set.clear(random.nextInt(max));
+            }
+            set.runOptimize();
+        }
+        return set;
+    }
+
+}
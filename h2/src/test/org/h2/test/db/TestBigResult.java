@@ -15,6 +15,7 @@ import java.util.ArrayList;
 
 import org.h2.store.FileLister;
 import org.h2.test.TestBase;
+import org.h2.util.New;
 
 /**
  * Test for big result sets.
@@ -39,6 +40,8 @@ public class TestBigResult extends TestBase {
         testCloseConnectionDelete();
         testOrderGroup();
         testLimitBufferedResult();
+        testSortThreads();
+        testSpillGroups();
         deleteDb("bigResult");
     }
 
@@ -121,6 +124,76 @@ public class TestBigResult extends TestBase {
         conn.close();
     }
 
+    private void testSortThreads() throws SQLException {
+        deleteDb("bigResult");
+        int len = getSize(5000, 50000);
+        // LOB values are sorted by the calling thread
+        String[] queries = {
+                "SELECT ID, MOD(ID * 7, 1000) X FROM TEST ORDER BY X",
+                "SELECT ID, CAST(MOD(ID * 7, 1000) AS CLOB) X FROM TEST ORDER BY X" };
+        ArrayList<ArrayList<String>> expected = New.arrayList();
+        Connection conn = getConnection("bigResult;QUERY_THREADS=1");
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE TABLE TEST AS SELECT X ID FROM SYSTEM_RANGE(1, " + len + ")");
+        for (String sql : queries) {
+            ArrayList<String> list = New.arrayList();
+            ResultSet rs = stat.executeQuery(sql);
+            while (rs.next()) {
+                list.add(rs.getString(1));
+            }
+            expected.add(list);
+        }
+        conn.close();
+        conn = getConnection("bigResult;QUERY_THREADS=4");
+        stat = conn.createStatement();
+        stat.execute("SET MAX_MEMORY_ROWS " + (len / 30));
+        for (int j = 0; j < queries.length; j++) {
+            ResultSet rs = stat.executeQuery(queries[j]);
+            // rows with the same value are returned in the same order
+            for (int i = 0; i < len; i++) {
+                assertTrue(rs.next());
+                assertEquals(expected.get(j).get(i), rs.getString(1));
+            }
+            assertFalse(rs.next());
+        }
+        conn.close();
+    }
+
+    private void testSpillGroups() throws SQLException {
+        deleteDb("bigResult");
+        int len = getSize(5000, 50000);
+        String[] queries = {
+                "SELECT G, COUNT(*), COUNT(V), SUM(ID), MIN(V), MAX(V), AVG(ID), G + 1 " +
+                "FROM TEST GROUP BY G ORDER BY G",
+                "SELECT G, COUNT(DISTINCT V) FROM TEST GROUP BY G ORDER BY G" };
+        ArrayList<String> expected = New.arrayList();
+        Connection conn = getConnection("bigResult;QUERY_THREADS=1");
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE TABLE TEST AS SELECT X ID, MOD(X * 7, " + (len / 2) + ") G, " +
+                "CASEWHEN(MOD(X, 3) = 0, NULL, 'V' || MOD(X, 5)) V FROM SYSTEM_RANGE(1, " + len + ")");
+        for (String sql : queries) {
+            expected.add(getResult(stat, sql));
+        }
+        stat.execute("SET MAX_MEMORY_ROWS " + (len / 50));
+        for (int i = 0; i < queries.length; i++) {
+            assertEquals(expected.get(i), getResult(stat, queries[i]));
+        }
+        conn.close();
+    }
+
+    private static String getResult(Statement stat, String sql) throws SQLException {
+        ResultSet rs = stat.executeQuery(sql);
+        int columnCount = rs.getMetaData().getColumnCount();
+        StringBuilder buff = new StringBuilder();
+        while (rs.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                buff.append(rs.getString(i + 1)).append(' ');
+            }
+            buff.append('\n');
+        }
+        return buff.toString();
+    }
+
     private void testOrderGroup() throws SQLException {
         deleteDb("bigResult");
         Connection conn = getConnection("bigResult");
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import org.h2.columnar.ColumnSegment;
+import org.h2.columnar.ColumnarTableEngine;
+import org.h2.constant.ErrorCode;
+import org.h2.test.TestBase;
+import org.h2.value.CompareMode;
+import org.h2.value.Value;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+import org.h2.value.ValueString;
+
+/**
+ * Tests the columnar table engine. The results are compared with the results
+ * of a regular table that contains the same rows.
+ */
+public class TestColumnarTable extends TestBase {
+
+    private Connection conn;
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase.createCaller().init().test();
+    }
+
+    public void test() throws SQLException {
+        testSegments();
+        deleteDb("columnar");
+        conn = getConnection("columnar");
+        createData();
+        testConditions();
+        testModify();
+        testLock();
+        testPersistent();
+        conn.close();
+        deleteDb("columnar");
+    }
+
+    private void testSegments() {
+        CompareMode mode = CompareMode.getInstance(null, 0);
+        int count = 1000;
+        Value[] values = new Value[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = ValueInt.get(100 + i * 3);
+        }
+        assertSegment("DeltaSegment", Value.INT, values, mode);
+        for (int i = 0; i < count; i++) {
+            values[i] = ValueLong.get((i * 7919L) % 1000 - 10);
+        }
+        assertSegment("BitPackedSegment", Value.LONG, values, mode);
+        for (int i = 0; i < count; i++) {
+            values[i] = i % 10 == 0 ? ValueNull.INSTANCE : ValueString.get("v" + i % 5);
+        }
+        assertSegment("DictionarySegment", Value.STRING, values, mode);
+        for (int i = 0; i < count; i++) {
+            values[i] = ValueString.get("r" + i / 100);
+        }
+        assertSegment("RunLengthSegment", Value.STRING, values, mode);
+        for (int i = 0; i < count; i++) {
+            values[i] = ValueString.get("p" + i);
+        }
+        assertSegment("PlainSegment", Value.STRING, values, mode);
+        for (int i = 0; i < count; i++) {
+            values[i] = ValueNull.INSTANCE;
+        }
+        ColumnSegment s = assertSegment("DictionarySegment", Value.INT, values, mode);
+        assertTrue(s.getMin() == ValueNull.INSTANCE);
+        assertTrue(s.getMax() == ValueNull.INSTANCE);
+    }
+
+    private ColumnSegment assertSegment(String encoding, int type, Value[] values, CompareMode mode) {
+        ColumnSegment s = ColumnSegment.create(type, values, values.length, mode);
+        assertEquals(encoding, s.getClass().getSimpleName());
+        Value[] decoded = new Value[values.length];
+        s.decode(decoded);
+        Value min = null, max = null;
+        for (int i = 0; i < values.length; i++) {
+            assertTrue(values[i].equals(decoded[i]));
+            Value v = values[i];
+            if (min == null || v.compareTypeSave(min, mode) < 0) {
+                min = v;
+            }
+            if (max == null || v.compareTypeSave(max, mode) > 0) {
+                max = v;
+            }
+        }
+        assertTrue(min.equals(s.getMin()));
+        assertTrue(max.equals(s.getMax()));
+        return s;
+    }
+
+    private void createData() throws SQLException {
+        Statement stat = conn.createStatement();
+        String columns = "(id int, a int, b bigint, name varchar, x varchar)";
+        stat.execute("create memory table c" + columns +
+                " engine \"" + ColumnarTableEngine.class.getName() + "\" not persistent");
+        stat.execute("create table r" + columns);
+        PreparedStatement p1 = conn.prepareStatement("insert into c values(?, ?, ?, ?, ?)");
+        PreparedStatement p2 = conn.prepareStatement("insert into r values(?, ?, ?, ?, ?)");
+        Random random = new Random(1);
+        // more than two chunks
+        for (int i = 0; i < 10000; i++) {
+            Object[] row = {
+                    i,
+                    random.nextInt(10) == 0 ? null : random.nextInt(200) - 50,
+                    (long) i / 1000,
+                    "n" + random.nextInt(7),
+                    random.nextInt(3) == 0 ? null : "x" + random.nextInt() };
+            for (int j = 0; j < row.length; j++) {
+                p1.setObject(j + 1, row[j]);
+                p2.setObject(j + 1, row[j]);
+            }
+            p1.execute();
+            p2.execute();
+        }
+        assertResult("10000", stat, "select count(*) from c");
+    }
+
+    private void testConditions() throws SQLException {
+        String[] conditions = {
+                "1=1",
+                "id = 5000",
+                "id between 4090 and 4100",
+                "id > 9990",
+                "id < 3 or id > 9997",
+                "id in(1, 4096, 8191, 9999, 20000)",
+                "a = 10",
+                "a is null",
+                "a > 100 and id < 5000",
+                "a in(-50, 0, 149)",
+                "b = 3",
+                "b >= 8 and a < 0",
+                "name = 'n3'",
+                "name in('n1', 'n6') and b = 2",
+                "x is null and id < 100",
+                "x > 'x5'",
+                "name like 'n%' and a = 1"
+        };
+        Statement stat = conn.createStatement();
+        for (String c : conditions) {
+            assertEquals(c, query(stat, "select * from r where " + c + " order by id"),
+                    query(stat, "select * from c where " + c + " order by id"));
+            assertEquals(c, query(stat, "select count(*), sum(a), max(name) from r where " + c),
+                    query(stat, "select count(*), sum(a), max(name) from c where " + c));
+        }
+        assertEquals(query(stat, "select name, count(*), min(x) from r group by name order by name"),
+                query(stat, "select name, count(*), min(x) from c group by name order by name"));
+        assertEquals(query(stat, "select r.id from r, r r2 where r.id = r2.a order by r.id"),
+                query(stat, "select c.id from c, c c2 where c.id = c2.a order by c.id"));
+    }
+
+    private void testModify() throws SQLException {
+        Statement stat = conn.createStatement();
+        for (String t : new String[] { "r", "c" }) {
+            stat.execute("delete from " + t + " where a = 5 or id between 4000 and 4200");
+            stat.execute("update " + t + " set name = 'u', a = a + 1 where b = 7 and a < 0");
+            stat.execute("insert into " + t + " values(-1, 1, 1, 'i', null)");
+        }
+        assertEquals(query(stat, "select * from r order by id"),
+                query(stat, "select * from c order by id"));
+        assertEquals(query(stat, "select count(*) from r where id between 3990 and 4210"),
+                query(stat, "select count(*) from c where id between 3990 and 4210"));
+        conn.setAutoCommit(false);
+        stat.execute("delete from c where b = 1");
+        stat.execute("insert into c values(-2, 1, 1, 'i', null)");
+        conn.rollback();
+        conn.setAutoCommit(true);
+        assertEquals(query(stat, "select * from r order by id"),
+                query(stat, "select * from c order by id"));
+        stat.execute("truncate table c");
+        assertResult("0", stat, "select count(*) from c");
+        stat.execute("insert into c select * from r");
+        assertEquals(query(stat, "select * from r where name = 'u' order by id"),
+                query(stat, "select * from c where name = 'u' order by id"));
+        assertThrows(ErrorCode.FEATURE_NOT_SUPPORTED_1, stat).execute("create index idx_c on c(id)");
+    }
+
+    private void testLock() throws SQLException {
+        Connection conn2 = getConnection("columnar");
+        Statement stat2 = conn2.createStatement();
+        stat2.execute("set lock_timeout 50");
+        Statement stat = conn.createStatement();
+        conn.setAutoCommit(false);
+        stat.execute("delete from c where id = 1");
+        assertThrows(ErrorCode.LOCK_TIMEOUT_1, stat2).execute("select count(*) from c");
+        assertThrows(ErrorCode.LOCK_TIMEOUT_1, stat2).execute("insert into c values(-3, 1, 1, 'i', null)");
+        conn.rollback();
+        conn.setAutoCommit(true);
+        assertResult("1", stat2, "select count(*) from c where id = 1");
+        conn2.close();
+    }
+
+    private void testPersistent() throws SQLException {
+        if (config.memory) {
+            return;
+        }
+        Statement stat = conn.createStatement();
+        assertThrows(ErrorCode.FEATURE_NOT_SUPPORTED_1, stat).execute("create table p(id int) engine \"" +
+                ColumnarTableEngine.class.getName() + "\"");
+        stat.execute("create local temporary table t(id int) engine \"" +
+                ColumnarTableEngine.class.getName() + "\"");
+        stat.execute("insert into t values(1)");
+        assertResult("1", stat, "select count(*) from t");
+        stat.execute("drop table t");
+        // the data of a NOT PERSISTENT table is lost when closing
+        conn.close();
+        conn = getConnection("columnar");
+        stat = conn.createStatement();
+        assertResult("0", stat, "select count(*) from c");
+        stat.execute("insert into c values(1, 1, 1, 'i', null)");
+        assertResult("1", stat, "select count(*) from c");
+    }
+
+    private static String query(Statement stat, String sql) throws SQLException {
+        ResultSet rs = stat.executeQuery(sql);
+        StringBuilder buff = new StringBuilder();
+        int columnCount = rs.getMetaData().getColumnCount();
+        while (rs.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                buff.append(rs.getString(i + 1)).append(',');
+            }
+            buff.append('\n');
+        }
+        return buff.toString();
+    }
+
+}
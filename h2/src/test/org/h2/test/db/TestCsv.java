@@ -68,9 +68,73 @@ public class TestCsv extends TestBase {
         testAsTable();
         testRead();
         testPipe();
+        testThreads();
         deleteDb("csv");
     }
 
+    private void testThreads() throws Exception {
+        Random random = new Random(1);
+        String[] values = { "", "x", " y ", "\"q\"\"uoted\"", "\"multi\nline\"",
+                "\"a,b\"", "\"\r\n\"", "#x", "\"#\"", "\"\"" };
+        StringBuilder buff = new StringBuilder("ID,A,B\n");
+        // more than one block
+        for (int i = 0; i < 100000; i++) {
+            buff.append(i);
+            for (int j = 0; j < 2; j++) {
+                buff.append(',').append(values[random.nextInt(values.length)]);
+            }
+            buff.append(random.nextBoolean() ? "\n" : "\r\n");
+            if (random.nextInt(100) == 0) {
+                buff.append('\n');
+            }
+        }
+        String data = buff.toString();
+        for (char lineComment : new char[] { 0, '#' }) {
+            String expected = null;
+            for (int threads : new int[] { 1, 2, 5 }) {
+                Csv csv = new Csv();
+                csv.setLineCommentCharacter(lineComment);
+                csv.setThreads(threads);
+                ResultSet rs = csv.read(new StringReader(data), null);
+                StringBuilder result = new StringBuilder();
+                int count = 0;
+                while (rs.next()) {
+                    result.append(rs.getString(1)).append('|').append(rs.getString(2)).
+                            append('|').append(rs.getString(3)).append('\n');
+                    count++;
+                }
+                assertTrue(count > 90000);
+                if (expected == null) {
+                    expected = result.toString();
+                } else {
+                    assertEquals(expected, result.toString());
+                }
+            }
+        }
+
+        deleteDb("csv");
+        Connection conn = getConnection("csv");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int, name varchar) as " +
+                "select x, case when mod(x, 7) = 0 then null else 'n\"' || x end " +
+                "from system_range(1, 10000)");
+        String fileName1 = getBaseDir() + "/test1.csv";
+        String fileName2 = getBaseDir() + "/test2.csv";
+        stat.execute("call csvwrite('" + fileName1 + "', 'select * from test order by id')");
+        stat.execute("call csvwrite('" + fileName2 + "', 'select * from test order by id', 'threads=3')");
+        String s1 = IOUtils.readStringAndClose(IOUtils.getReader(FileUtils.newInputStream(fileName1)), -1);
+        String s2 = IOUtils.readStringAndClose(IOUtils.getReader(FileUtils.newInputStream(fileName2)), -1);
+        assertEquals(s1, s2);
+        assertResult("10000", stat, "select count(*) from csvread('" + fileName2 + "', null, 'threads=4')");
+        stat.execute("create table test2 as select * from csvread('" + fileName2 + "', null, 'threads=4')");
+        assertResult("0", stat, "select count(*) from test t, test2 c where c.id = t.id and " +
+                "(c.name <> t.name or c.name is null and t.name is not null)");
+        assertResult("10000", stat, "select count(*) from test t, test2 c where c.id = t.id");
+        FileUtils.delete(fileName1);
+        FileUtils.delete(fileName2);
+        conn.close();
+    }
+
     private void testWriteColumnHeader() throws Exception {
         Connection conn = getConnection("csv");
         Statement stat = conn.createStatement();
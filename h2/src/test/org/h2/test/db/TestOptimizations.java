@@ -53,6 +53,9 @@ public class TestOptimizations extends TestBase {
         testNestedInSelect();
         testInSelectJoin();
         testMinMaxNullOptimization();
+        testHashJoin();
+        testMergeJoin();
+        testOrderByLimit();
         if (config.networked) {
             return;
         }
@@ -384,6 +387,171 @@ public class TestOptimizations extends TestBase {
     }
 
 
+    private void testHashJoin() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        stat.execute("create table a(id int primary key, x int, name varchar, s varchar)");
+        stat.execute("create table b(id int primary key, x int, y bigint, name varchar, d decimal)");
+        stat.execute("insert into a select x, casewhen(mod(x, 10) = 0, null, mod(x, 50)), " +
+                "'n' || mod(x, 7), mod(x, 45) from system_range(1, 300)");
+        stat.execute("insert into b select x, casewhen(mod(x, 9) = 0, null, mod(x, 40)), mod(x, 3), " +
+                "'n' || mod(x, 5), mod(x, 4) from system_range(1, 500)");
+        String[] queries = {
+                "select a.id, b.id from a, b where a.x = b.x",
+                "select a.id, b.id from a, b where a.x = b.x and a.name = b.name",
+                "select a.id, b.id from a, b where a.x = b.y and b.name = 'n1'",
+                "select a.id, b.id from a, b where a.s = b.x",
+                "select a.id, b.id from a, b where a.x = b.d",
+                "select a.id, b.id from a left join b on a.x = b.x where a.id < 50",
+                "select a.id, b.id from a inner join b on a.id = b.x and a.x = b.y"
+        };
+        String[] expected = new String[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            expected[i] = getResult(stat, queries[i] + " order by 1, 2");
+        }
+        conn.close();
+        conn = getConnection("optimizations;HASH_JOIN=TRUE");
+        stat = conn.createStatement();
+        for (int i = 0; i < queries.length; i++) {
+            assertEquals(queries[i], expected[i], getResult(stat, queries[i] + " order by 1, 2"));
+        }
+        ResultSet rs = stat.executeQuery("explain " + queries[0]);
+        rs.next();
+        String plan = rs.getString(1);
+        assertTrue(plan, plan.indexOf(".hashJoin") >= 0);
+        rs = stat.executeQuery("explain select * from a where a.x = 1");
+        rs.next();
+        plan = rs.getString(1);
+        assertTrue(plan, plan.indexOf(".hashJoin") < 0);
+        // the rows are read again when the query is run again
+        PreparedStatement prep = conn.prepareStatement("select count(*) from a, b where a.x = b.x");
+        rs = prep.executeQuery();
+        rs.next();
+        int count = rs.getInt(1);
+        stat.execute("insert into a values(1000, 1, 'x', '1'), (1001, 1, 'y', '1')");
+        stat.execute("insert into b values(1000, 1, 1, 'x', 1)");
+        rs = prep.executeQuery();
+        rs.next();
+        assertTrue(rs.getInt(1) > count);
+        stat.execute("create index idx_b_x on b(x)");
+        rs = stat.executeQuery("explain " + queries[0]);
+        rs.next();
+        plan = rs.getString(1);
+        assertTrue(plan, plan.indexOf(".hashJoin") < 0);
+        conn.close();
+    }
+
+    private void testMergeJoin() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations;MERGE_JOIN=TRUE");
+        Statement stat = conn.createStatement();
+        stat.execute("create table a(id int primary key, x int)");
+        stat.execute("create table b(id int primary key, a_id int, y int)");
+        stat.execute("create index idx_b_a_id on b(a_id)");
+        stat.execute("insert into a select x, mod(x, 10) from system_range(1, 1000)");
+        stat.execute("insert into b select x, casewhen(mod(x, 7) = 0, null, mod(x * 37, 1200)), " +
+                "mod(x, 3) from system_range(1, 1500)");
+        stat.execute("create table a2 as select * from a");
+        stat.execute("create table b2 as select * from b");
+        String[] conditions = {
+                "b.a_id = a.id",
+                "b.a_id = a.id and b.y = 1",
+                "b.a_id = a.id and a.id between 100 and 200",
+                "b.a_id = a.id and a.id in(500, 20, 300)",
+                "b.a_id = a.id and a.x = 3"
+        };
+        for (String c : conditions) {
+            String sql = "select a.id, b.id from a, b where " + c + " order by 1, 2";
+            assertEquals(c, getResult(stat, sql.replaceAll("a\\.", "a2.").replaceAll("b\\.", "b2.").
+                    replaceAll("from a, b", "from a2, b2")), getResult(stat, sql));
+        }
+        ResultSet rs = stat.executeQuery("explain select * from a, b where b.a_id = a.id");
+        rs.next();
+        String plan = rs.getString(1);
+        assertTrue(plan, plan.indexOf("IDX_B_A_ID (merge join)") >= 0);
+        // the outer table is not ordered by the join column
+        rs = stat.executeQuery("explain select * from a, b where b.a_id = a.x");
+        rs.next();
+        plan = rs.getString(1);
+        assertTrue(plan, plan.indexOf("merge join") < 0);
+        // the position is reset when the query is run again
+        PreparedStatement prep = conn.prepareStatement("select count(*) from a, b where b.a_id = a.id");
+        rs = prep.executeQuery();
+        rs.next();
+        int count = rs.getInt(1);
+        stat.execute("insert into b values(2000, 1, 0)");
+        rs = prep.executeQuery();
+        rs.next();
+        assertEquals(count + 1, rs.getInt(1));
+        conn.close();
+    }
+
+    private void testOrderByLimit() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, x int, name varchar)");
+        stat.execute("insert into test select x, mod(x * 17, 101), 'n' || mod(x, 13) " +
+                "from system_range(1, 3000)");
+        String[] queries = {
+                "select * from test order by x",
+                "select * from test order by x desc, name",
+                "select name, count(*) from test group by name order by count(*), name",
+                "select * from test where id < 1000 union all select * from test where id > 2500 order by name"
+        };
+        int[][] limits = { { 0, 10 }, { 5, 100 }, { 2990, 20 }, { 0, 5000 }, { 0, 1 } };
+        for (String sql : queries) {
+            ArrayList<String> all = getRows(stat, sql);
+            for (int[] l : limits) {
+                int offset = l[0], limit = l[1];
+                ArrayList<String> expected = New.arrayList();
+                for (int i = offset; i < Math.min(offset + limit, all.size()); i++) {
+                    expected.add(all.get(i));
+                }
+                String q = sql + " limit " + limit + " offset " + offset;
+                assertEquals(q, expected.toString(), getRows(stat, q).toString());
+            }
+        }
+        PreparedStatement prep = conn.prepareStatement("select id from test order by x, id limit ? offset ?");
+        prep.setInt(1, 3);
+        prep.setInt(2, 1);
+        ResultSet rs = prep.executeQuery();
+        StringBuilder buff = new StringBuilder();
+        while (rs.next()) {
+            buff.append(rs.getInt(1)).append(' ');
+        }
+        assertEquals("202 303 404 ", buff.toString());
+        conn.close();
+    }
+
+    private static ArrayList<String> getRows(Statement stat, String sql) throws SQLException {
+        ResultSet rs = stat.executeQuery(sql);
+        ArrayList<String> list = New.arrayList();
+        int columnCount = rs.getMetaData().getColumnCount();
+        while (rs.next()) {
+            StringBuilder buff = new StringBuilder();
+            for (int i = 0; i < columnCount; i++) {
+                buff.append(rs.getString(i + 1)).append(',');
+            }
+            list.add(buff.toString());
+        }
+        return list;
+    }
+
+    private static String getResult(Statement stat, String sql) throws SQLException {
+        ResultSet rs = stat.executeQuery(sql);
+        StringBuilder buff = new StringBuilder();
+        int columnCount = rs.getMetaData().getColumnCount();
+        while (rs.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                buff.append(rs.getString(i + 1)).append(',');
+            }
+            buff.append('\n');
+        }
+        return buff.toString();
+    }
+
     private void testOptimizeInJoinSelect() throws SQLException {
         deleteDb("optimizations");
         Connection conn = getConnection("optimizations");
@@ -51,6 +51,7 @@ public class TestPowerOff extends TestBase {
         }
         url += ";FILE_LOCK=NO;TRACE_LEVEL_FILE=0";
         testLobCrash();
+        testBulkLoadCrash();
         testSummaryCrash();
         testCrash();
         testShutdown();
@@ -93,6 +94,53 @@ public class TestPowerOff extends TestBase {
         }
     }
 
+    private void testBulkLoadCrash() throws SQLException {
+        if (config.networked) {
+            return;
+        }
+        deleteDb(dir, dbName);
+        Connection conn = getConnection(url);
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, name varchar)");
+        stat.execute("set exclusive 1");
+        stat.execute("insert into test bulk select x, space(100) from system_range(1, 1000)");
+        stat.execute("shutdown immediately");
+        JdbcUtils.closeSilently(conn);
+        conn = getConnection(url);
+        stat = conn.createStatement();
+        assertResult("1000", stat, "select count(*) from test");
+        stat.execute("create table test2(id int primary key, name varchar)");
+        stat.execute("set exclusive 1");
+        assertThrows(ErrorCode.DUPLICATE_KEY_1, stat).
+                execute("insert into test2 bulk select mod(x, 500), null from system_range(1, 1000)");
+        assertResult("0", stat, "select count(*) from test2");
+        stat.execute("drop table test2");
+        conn.close();
+        for (int i = 0; i < 100; i += 5) {
+            conn = getConnection(url);
+            stat = conn.createStatement();
+            stat.execute("create table test2(id int primary key, name varchar)");
+            stat.execute("set exclusive 1");
+            stat.execute("set write_delay 0");
+            ((JdbcConnection) conn).setPowerOffCount(i);
+            try {
+                stat.execute("insert into test2 bulk select x, space(100) from system_range(1, 1000)");
+            } catch (SQLException e) {
+                // ignore
+            }
+            JdbcUtils.closeSilently(conn);
+            conn = getConnection(url);
+            stat = conn.createStatement();
+            ResultSet rs = stat.executeQuery("select count(*) from test2");
+            rs.next();
+            int count = rs.getInt(1);
+            assertTrue("count: " + count, count == 0 || count == 1000);
+            assertResult("1000", stat, "select count(*) from test");
+            stat.execute("drop table test2");
+            conn.close();
+        }
+    }
+
     private void testSummaryCrash() throws SQLException {
         if (config.networked) {
             return;
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2004-2011 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import org.h2.test.TestBase;
+
+/**
+ * Tests reading and filtering rows in batches, and aggregating rows using
+ * multiple threads. The results are compared with the results of a database
+ * where both are disabled.
+ */
+public class TestVectorBatch extends TestBase {
+
+    private Connection conn, ref;
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase.createCaller().init().test();
+    }
+
+    public void test() throws SQLException {
+        deleteDb("vectorBatch");
+        deleteDb("vectorBatchRef");
+        // a small batch size, so that there are many batches
+        conn = getConnection("vectorBatch;VECTOR_SIZE=7;QUERY_THREADS=4");
+        ref = getConnection("vectorBatchRef;VECTOR_SIZE=0;QUERY_THREADS=1");
+        createData();
+        testConditions();
+        testParameters();
+        testAggregates();
+        testGroupBy();
+        conn.close();
+        ref.close();
+        deleteDb("vectorBatch");
+        deleteDb("vectorBatchRef");
+    }
+
+    private void createData() throws SQLException {
+        String sql = "create table test(id int primary key, a int, b bigint, " +
+                "c double, d smallint, name varchar)";
+        conn.createStatement().execute(sql);
+        ref.createStatement().execute(sql);
+        PreparedStatement p1 = conn.prepareStatement("insert into test values(?, ?, ?, ?, ?, ?)");
+        PreparedStatement p2 = ref.prepareStatement("insert into test values(?, ?, ?, ?, ?, ?)");
+        Random random = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            Object[] row = {
+                    i,
+                    random.nextInt(10) == 0 ? null : random.nextInt(20) - 5,
+                    random.nextInt(10) == 0 ? null : (random.nextLong() >> random.nextInt(64)),
+                    random.nextInt(10) == 0 ? null : random.nextInt(100) / 4.0,
+                    random.nextInt(10) == 0 ? null : random.nextInt(50),
+                    "n" + random.nextInt(7) };
+            for (int j = 0; j < row.length; j++) {
+                p1.setObject(j + 1, row[j]);
+                p2.setObject(j + 1, row[j]);
+            }
+            p1.execute();
+            p2.execute();
+        }
+    }
+
+    private void testConditions() throws SQLException {
+        String[] conditions = {
+                "a = 3", "a <> 3", "a > 3", "a >= 3", "a < 3", "a <= 3",
+                "a is null", "a is not null", "a = null",
+                "b > 0", "b < -1000", "b = 0", "b > 1.5",
+                "c = 12.5", "c > 10", "c <= 3", "c > 10 and c < 20", "c is null",
+                "d < 10", "d >= 40",
+                "a > 3 and b > 0", "a = 1 or a = 2", "a = 1 or name = 'n3'",
+                "(a > 3 or c < 5) and d > 10", "not (a > 3)",
+                "a > 3 and name like 'n1%'", "name = 'n2'",
+                "a > 3 and id < 100", "a + 1 > 3", "a > d",
+                "a in(1, 2, 3) and b > 0", "3 < a", "a = '3'",
+        };
+        for (String c : conditions) {
+            check("select * from test where " + c + " order by id");
+            check("select id from test where " + c);
+            check("select count(*), sum(a), min(c), max(b) from test where " + c);
+            check("select * from test where " + c + " order by id limit 3");
+            check("select * from test where " + c + " order by id limit 20 offset 5");
+        }
+        check("select rownum(), id from test where a > 3 order by id");
+        check("select * from test where a > 3 and rand() < 2 order by id");
+    }
+
+    private void testParameters() throws SQLException {
+        PreparedStatement p1 = conn.prepareStatement("select count(*), sum(a) from test where a > ? and c < ?");
+        PreparedStatement p2 = ref.prepareStatement("select count(*), sum(a) from test where a > ? and c < ?");
+        Object[][] params = { { 3, 10.0 }, { -10, 100 }, { null, 5 }, { 5, null }, { 1.5, 20 } };
+        for (Object[] x : params) {
+            p1.setObject(1, x[0]);
+            p2.setObject(1, x[0]);
+            p1.setObject(2, x[1]);
+            p2.setObject(2, x[1]);
+            assertEquals(getResult(p2.executeQuery()), getResult(p1.executeQuery()));
+        }
+    }
+
+    private void testAggregates() throws SQLException {
+        String[] aggregates = {
+                "count(*)", "count(a)", "count(name)", "sum(a)", "sum(d)", "avg(a)", "avg(d)",
+                "min(a)", "max(a)", "min(b)", "max(b)", "min(c)", "max(c)",
+                "sum(b)", "sum(c)", "count(distinct a)", "max(name)",
+        };
+        for (String a : aggregates) {
+            check("select " + a + " from test");
+            check("select " + a + " from test where a > 3");
+            check("select " + a + " from test where id > 1000");
+            check("select " + a + ", count(*) from test where a > 3 or c > 20");
+        }
+        check("select count(*) from test where a > 3 having count(*) > 1");
+        check("select sum(a) s from test where a > 3 order by s");
+    }
+
+    private void testGroupBy() throws SQLException {
+        check("select name, count(*), sum(a), min(c) from test where a > 3 group by name order by name");
+        check("select a, count(*) from test where c > 10 group by a order by a");
+        check("select name, max(b) from test where b > 0 or a = 1 group by name having count(*) > 2 order by name");
+        check("select a, d, count(*), count(c), sum(d), min(c), max(c), avg(a) from test " +
+                "group by a, d order by a, d");
+        check("select d, count(*), sum(a) from test where a is null or c > 20 group by d order by d");
+        check("select name, count(*) from test where id > 1000 group by name");
+        check("select name, count(*) from test where a = 1 or name = 'n3' group by name order by name");
+        check("select count(*), min(a), max(c) from test where a > 3 and d < 20");
+        // grouped by one integer column
+        check("select a, count(*), count(name), sum(d), avg(d), min(c), max(c), min(b), max(d) from test " +
+                "group by a order by a");
+        check("select b, count(*), max(c) from test group by b order by b");
+        check("select id, count(*), sum(a), min(c) from test where c > 3 group by id order by id");
+        check("select d, count(*), sum(a) from test where name like 'n1%' or a > 10 group by d order by d");
+        check("select d x, min(a) from test where name < 'n3' group by d order by x");
+        check("select count(*), max(a) from test group by d order by 1, 2");
+        PreparedStatement p1 = conn.prepareStatement("select d, sum(a) from test where a > ? group by d order by d");
+        PreparedStatement p2 = ref.prepareStatement("select d, sum(a) from test where a > ? group by d order by d");
+        Object[] params = { 3, null, 1.5, "x" };
+        for (Object x : params) {
+            p1.setObject(1, x);
+            p2.setObject(1, x);
+            String expected;
+            try {
+                expected = getResult(p2.executeQuery());
+            } catch (SQLException e) {
+                assertThrows(e.getErrorCode(), p1).executeQuery();
+                continue;
+            }
+            assertEquals(expected, getResult(p1.executeQuery()));
+        }
+    }
+
+    private void check(String sql) throws SQLException {
+        String expected = getResult(ref.createStatement().executeQuery(sql));
+        String actual = getResult(conn.createStatement().executeQuery(sql));
+        if (!expected.equals(actual)) {
+            fail(sql + " expected: " + expected + " actual: " + actual);
+        }
+    }
+
+    private static String getResult(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        StringBuilder buff = new StringBuilder();
+        while (rs.next()) {
+            for (int i = 0; i < meta.getColumnCount(); i++) {
+                buff.append(rs.getString(i + 1)).append(' ');
+            }
+            buff.append('\n');
+        }
+        return buff.toString();
+    }
+
+}
@@ -13,6 +13,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Random;
 
 import org.h2.message.Trace;
@@ -22,6 +24,7 @@ import org.h2.util.CacheLRU;
 import org.h2.util.CacheObject;
 import org.h2.util.CacheWriter;
 import org.h2.util.StringUtils;
+import org.h2.util.Task;
 import org.h2.util.Utils;
 import org.h2.value.Value;
 
@@ -47,8 +50,10 @@ public class TestCache extends TestBase implements CacheWriter {
         testTQ();
         testMemoryUsage();
         testCache();
+        testClock();
         testCacheDb(false);
         testCacheDb(true);
+        testClockDb();
     }
 
     private void testTQ() throws Exception {
@@ -186,6 +191,81 @@ public class TestCache extends TestBase implements CacheWriter {
         assertEquals("flush 0 flush 1 flush 2 flush 3 ", out);
     }
 
+    private void testClock() {
+        out = "";
+        Cache c = CacheLRU.getCache(this, "CLOCK", 256);
+        for (int i = 0; i < 200; i++) {
+            c.put(new Obj(i));
+            assertTrue(c.getMemory() <= c.getMaxMemory());
+        }
+        HashSet<String> written = new HashSet<String>(Arrays.asList(out.split(" ")));
+        int count = 0;
+        for (int i = 0; i < 200; i++) {
+            // changed objects are written before they are removed
+            boolean cached = c.find(i) != null;
+            assertTrue(cached != written.contains("" + i));
+            if (cached) {
+                count++;
+                assertTrue(c.get(i) == c.find(i));
+            }
+        }
+        assertEquals(count, c.getAllChanged().size());
+        assertTrue(count > 16);
+        int pos = c.getAllChanged().get(0).getPos();
+        assertTrue(c.remove(pos));
+        assertFalse(c.remove(pos));
+        assertTrue(c.find(pos) == null);
+        c.clear();
+        assertEquals(0, c.getAllChanged().size());
+    }
+
+    private void testClockDb() throws Exception {
+        if (config.memory || config.networked) {
+            return;
+        }
+        deleteDb("cache");
+        String url = "cache;CACHE_TYPE=CLOCK;MULTI_THREADED=TRUE;CACHE_SIZE=512";
+        Connection conn = getConnection(url);
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, name varchar)");
+        stat.execute("insert into test select x, space(100) || x from system_range(1, 20000)");
+        Task[] tasks = new Task[4];
+        for (int t = 0; t < tasks.length; t++) {
+            final Connection c = getConnection(url);
+            final int seed = t;
+            tasks[t] = new Task() {
+                public void call() throws Exception {
+                    PreparedStatement prep = c.prepareStatement("select name from test where id = ?");
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 2000; i++) {
+                        int id = random.nextInt(20000) + 1;
+                        prep.setInt(1, id);
+                        ResultSet rs = prep.executeQuery();
+                        rs.next();
+                        if (!rs.getString(1).trim().equals("" + id)) {
+                            throw new AssertionError("id: " + id + " name: " + rs.getString(1));
+                        }
+                    }
+                    c.close();
+                }
+            };
+            tasks[t].execute();
+        }
+        // changes pages while the other threads read
+        stat.execute("create table test2(id int primary key, name varchar)");
+        for (int i = 0; i < 2000; i++) {
+            stat.execute("insert into test2 values(" + i + ", space(100))");
+        }
+        for (Task t : tasks) {
+            t.get();
+        }
+        ResultSet rs = stat.executeQuery("select count(*), sum(length(name)) from test");
+        rs.next();
+        assertEquals(20000, rs.getInt(1));
+        conn.close();
+        deleteDb("cache");
+    }
+
     /**
      * A simple cache object
      */
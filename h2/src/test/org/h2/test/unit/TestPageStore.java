@@ -26,6 +26,7 @@ import org.h2.store.fs.FileUtils;
 import org.h2.test.TestBase;
 import org.h2.util.IOUtils;
 import org.h2.util.New;
+import org.h2.util.Task;
 
 /**
  * Test the page store.
@@ -46,6 +47,13 @@ public class TestPageStore extends TestBase implements DatabaseEventListener {
     }
 
     public void test() throws Exception {
+        testReadAhead();
+        testZoneMaps();
+        testBulkIndex();
+        testMapped();
+        testBackgroundWrite();
+        testCommitSync(false);
+        testCommitSync(true);
         testLogLimitFalsePositive();
         testLogLimit();
         testRecoverLobInDatabase();
@@ -78,6 +86,306 @@ public class TestPageStore extends TestBase implements DatabaseEventListener {
         deleteDb("pageStore");
     }
 
+    private void testReadAhead() throws Exception {
+        if (config.memory) {
+            return;
+        }
+        deleteDb("pageStore");
+        Connection conn = getConnection("pageStore");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, name varchar)");
+        stat.execute("create index idx_name on test(name)");
+        stat.execute("insert into test select x, space(100) || x from system_range(1, 20000)");
+        conn.close();
+        // a small cache, so that the scans need to read the pages
+        conn = getConnection("pageStore;PAGE_STORE_READ_AHEAD=16;CACHE_SIZE=64");
+        stat = conn.createStatement();
+        ResultSet rs = stat.executeQuery("select count(*), sum(id) from test");
+        rs.next();
+        assertEquals(20000, rs.getInt(1));
+        assertEquals(20000L * 20001 / 2, rs.getLong(2));
+        rs = stat.executeQuery("select count(*), sum(id) from test where id > 5000");
+        rs.next();
+        assertEquals(15000, rs.getInt(1));
+        assertEquals(20000L * 20001 / 2 - 5000L * 5001 / 2, rs.getLong(2));
+        rs = stat.executeQuery("select name from test where name > space(100) order by name");
+        int count = 0;
+        String last = null;
+        while (rs.next()) {
+            String name = rs.getString(1);
+            assertTrue(last == null || last.compareTo(name) < 0);
+            last = name;
+            count++;
+        }
+        assertEquals(20000, count);
+        // change pages that were read ahead
+        stat.execute("delete from test where mod(id, 2) = 0");
+        rs = stat.executeQuery("select count(*), sum(id) from test");
+        rs.next();
+        assertEquals(10000, rs.getInt(1));
+        assertEquals(10000L * 10000, rs.getLong(2));
+        // pages that were read ahead are written while scanning
+        for (int i = 0; i < 5; i++) {
+            stat.execute("update test set name = name || 'x' where mod(id, 10) = " + (2 * i + 1));
+            rs = stat.executeQuery("select count(*) from test where name like '%x'");
+            rs.next();
+            assertEquals(2000 * (i + 1), rs.getInt(1));
+        }
+        conn.close();
+        conn = getConnection("pageStore;PAGE_STORE_READ_AHEAD=16;CACHE_SIZE=64");
+        stat = conn.createStatement();
+        rs = stat.executeQuery("select count(*), sum(id) from test where name like '%x'");
+        rs.next();
+        assertEquals(10000, rs.getInt(1));
+        assertEquals(10000L * 10000, rs.getLong(2));
+        conn.close();
+        deleteDb("pageStore");
+    }
+
+    private void testZoneMaps() throws Exception {
+        if (config.memory) {
+            return;
+        }
+        deleteDb("pageStore");
+        Connection conn = getConnection("pageStore;PAGE_STORE_ZONE_MAPS=TRUE");
+        Statement stat = conn.createStatement();
+        // an append-only table, ordered by time
+        stat.execute("create table test(ts bigint, v int)");
+        stat.execute("insert into test select x * 10, mod(x, 100) from system_range(1, 20000)");
+        String sql = "select count(*), sum(v) from test where ts between 50000 and 50990";
+        // the first query summarizes the pages
+        assertResult("100", stat, "select count(*) from test where ts between 50000 and 50990");
+        ResultSet rs = stat.executeQuery("explain analyze " + sql);
+        rs.next();
+        String plan = rs.getString(1);
+        int scanCount = Integer.parseInt(plan.substring(plan.indexOf("scanCount: ") + 11).split(" ")[0]);
+        assertTrue(plan, scanCount < 2000);
+        rs = stat.executeQuery(sql);
+        rs.next();
+        assertEquals(100, rs.getInt(1));
+        assertEquals(4950, rs.getInt(2));
+        stat.execute("insert into test values(50500, 1000)");
+        stat.execute("insert into test values(1, 0)");
+        stat.execute("insert into test values(null, 0)");
+        assertResult("101", stat, "select count(*) from test where ts between 50000 and 50990");
+        assertResult("1", stat, "select count(*) from test where ts < 10");
+        assertResult("1", stat, "select count(*) from test where ts is null");
+        stat.execute("update test set ts = 999999 where ts = 10");
+        assertResult("1", stat, "select count(*) from test where ts > 900000");
+        assertResult("0", stat, "select count(*) from test where ts = 10");
+        stat.execute("delete from test where ts between 50100 and 50200");
+        assertResult("90", stat, "select count(*) from test where ts between 50000 and 50990");
+        conn.setAutoCommit(false);
+        stat.execute("insert into test values(-5, 0)");
+        assertResult("1", stat, "select count(*) from test where ts < 0");
+        conn.rollback();
+        conn.setAutoCommit(true);
+        assertResult("0", stat, "select count(*) from test where ts < 0");
+        assertResult("19992", stat, "select count(*) from test where v >= 0");
+        conn.close();
+        conn = getConnection("pageStore;PAGE_STORE_ZONE_MAPS=TRUE");
+        stat = conn.createStatement();
+        assertResult("90", stat, "select count(*) from test where ts between 50000 and 50990");
+        assertResult("1", stat, "select count(*) from test where ts > 900000");
+        conn.close();
+        deleteDb("pageStore");
+    }
+
+    private void testBulkIndex() throws Exception {
+        if (config.memory) {
+            return;
+        }
+        deleteDb("pageStore");
+        String url = "pageStore;PAGE_STORE_INDEX_FILL_FACTOR=80;MAX_MEMORY_ROWS=1000";
+        Connection conn = getConnection(url);
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int, a int, b varchar)");
+        stat.execute("insert into test select x, case when mod(x, 10) = 0 then null " +
+                "else mod(x * 7919, 5000) end, 'b' || mod(x, 300) || space(mod(x, 50)) " +
+                "from system_range(1, 20000)");
+        stat.execute("create table ref as select * from test");
+        stat.execute("create index idx_a on test(a)");
+        stat.execute("create index idx_b_id on test(b desc, id)");
+        stat.execute("create unique index idx_id on test(id)");
+        assertThrows(ErrorCode.DUPLICATE_KEY_1, stat).
+                execute("create unique index idx_a_unique on test(a)");
+        stat.execute("create unique index idx_id_a on test(a, id)");
+        String[] conditions = { "a = 100", "a between 10 and 20", "a is null",
+                "b = 'b7'", "b > 'b98' and id < 5000", "id = 12345", "id > 19990" };
+        for (String c : conditions) {
+            assertEquals(c, queryAll(stat, "select * from ref where " + c + " order by id"),
+                    queryAll(stat, "select * from test where " + c + " order by id"));
+        }
+        assertResult("20000", stat, "select count(*) from test where id > 0");
+        assertThrows(ErrorCode.DUPLICATE_KEY_1, stat).execute("insert into test values(1, 1, 'x')");
+        for (String t : new String[] { "test", "ref" }) {
+            stat.execute("insert into " + t + " values(-1, 100, 'b7')");
+            stat.execute("delete from " + t + " where a between 10 and 20");
+            stat.execute("update " + t + " set b = 'x' where id < 100");
+        }
+        conn.close();
+        conn = getConnection(url);
+        stat = conn.createStatement();
+        for (String c : conditions) {
+            assertEquals(c, queryAll(stat, "select * from ref where " + c + " order by id"),
+                    queryAll(stat, "select * from test where " + c + " order by id"));
+        }
+        assertResult("0", stat, "select count(*) from test where a between 10 and 20");
+        assertEquals(queryAll(stat, "select * from ref where b = 'x' order by id"),
+                queryAll(stat, "select * from test where b = 'x' order by id"));
+        conn.close();
+    }
+
+    private static String queryAll(Statement stat, String sql) throws SQLException {
+        ResultSet rs = stat.executeQuery(sql);
+        StringBuilder buff = new StringBuilder();
+        int columnCount = rs.getMetaData().getColumnCount();
+        while (rs.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                buff.append(rs.getString(i + 1)).append(',');
+            }
+            buff.append('\n');
+        }
+        return buff.toString();
+    }
+
+    private void testMapped() throws Exception {
+        if (config.memory || config.cipher != null) {
+            return;
+        }
+        deleteDb("pageStore");
+        // a small cache, so that pages are read from the file
+        String url = "pageStore;PAGE_STORE_MAPPED=TRUE;CACHE_SIZE=64";
+        Connection conn = getConnection(url);
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, name varchar)");
+        PreparedStatement prep = conn.prepareStatement("insert into test values(?, space(200) || ?)");
+        for (int i = 0; i < 5; i++) {
+            // the file grows, so that the file is mapped again
+            for (int j = 0; j < 2000; j++) {
+                int id = i * 2000 + j;
+                prep.setInt(1, id);
+                prep.setInt(2, id);
+                prep.execute();
+            }
+            ResultSet rs = stat.executeQuery("select count(*), sum(cast(trim(name) as int)) from test");
+            rs.next();
+            int count = (i + 1) * 2000;
+            assertEquals(count, rs.getInt(1));
+            assertEquals((long) count * (count - 1) / 2, rs.getLong(2));
+        }
+        stat.execute("delete from test where id >= 1000");
+        // the file is truncated
+        stat.execute("shutdown compact");
+        conn.close();
+        conn = getConnection(url);
+        stat = conn.createStatement();
+        ResultSet rs = stat.executeQuery("select count(*), sum(cast(trim(name) as int)) from test");
+        rs.next();
+        assertEquals(1000, rs.getInt(1));
+        assertEquals(999 * 1000 / 2, rs.getInt(2));
+        rs = stat.executeQuery("select value from information_schema.settings where name = 'info.FILE_READ'");
+        rs.next();
+        assertTrue(rs.getInt(1) > 0);
+        conn.close();
+        deleteDb("pageStore");
+    }
+
+    private void testBackgroundWrite() throws Exception {
+        if (config.memory) {
+            return;
+        }
+        deleteDb("pageStore");
+        String url = "pageStore;WRITE_DELAY=10";
+        Connection conn = getConnection(url);
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, name varchar)");
+        stat.execute("create index idx_name on test(name)");
+        stat.execute("insert into test select x, space(100) || x from system_range(1, 5000)");
+        conn.setAutoCommit(false);
+        stat.execute("update test set name = 'x' || id where mod(id, 3) = 0");
+        long writeCount = getFileWriteCount(stat);
+        // the writer thread writes the changed pages
+        for (int i = 0; i < 100 && getFileWriteCount(stat) == writeCount; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(getFileWriteCount(stat) > writeCount);
+        // only the committed changes must be visible
+        stat.execute("insert into test values(0, 'committed')");
+        conn.commit();
+        stat.execute("delete from test where id > 2500");
+        stat.execute("shutdown immediately");
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            // ignore
+        }
+        conn = getConnection(url);
+        stat = conn.createStatement();
+        ResultSet rs = stat.executeQuery("select count(*), sum(length(name)) from test where name like 'x%'");
+        rs.next();
+        assertEquals(1666, rs.getInt(1));
+        rs = stat.executeQuery("select count(*) from test");
+        rs.next();
+        assertEquals(5001, rs.getInt(1));
+        conn.close();
+        deleteDb("pageStore");
+    }
+
+    private static long getFileWriteCount(Statement stat) throws SQLException {
+        ResultSet rs = stat.executeQuery("select value from information_schema.settings " +
+                "where name = 'info.FILE_WRITE'");
+        rs.next();
+        return rs.getLong(1);
+    }
+
+    private void testCommitSync(boolean multiThreaded) throws Exception {
+        if (config.memory) {
+            return;
+        }
+        deleteDb("pageStore");
+        String url = "pageStore;LOG=2;COMMIT_SYNC_DELAY=2000;COMMIT_SYNC_BATCH=4;WRITE_DELAY=100000";
+        if (multiThreaded) {
+            url += ";MULTI_THREADED=TRUE";
+        }
+        final String u = url;
+        Connection conn = getConnection(url);
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, name varchar)");
+        Task[] tasks = new Task[8];
+        for (int t = 0; t < tasks.length; t++) {
+            final int start = t * 100;
+            tasks[t] = new Task() {
+                public void call() throws Exception {
+                    Connection c = getConnection(u);
+                    PreparedStatement prep = c.prepareStatement("insert into test values(?, space(100))");
+                    for (int i = start; i < start + 100; i++) {
+                        prep.setInt(1, i);
+                        prep.execute();
+                    }
+                    c.close();
+                }
+            };
+            tasks[t].execute();
+        }
+        for (Task t : tasks) {
+            t.get();
+        }
+        // the commits must be in the transaction log
+        stat.execute("shutdown immediately");
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            // ignore
+        }
+        conn = getConnection(url);
+        ResultSet rs = conn.createStatement().executeQuery("select count(*) from test");
+        rs.next();
+        assertEquals(800, rs.getInt(1));
+        conn.close();
+        deleteDb("pageStore");
+    }
+
     private void testLogLimit() throws Exception {
         deleteDb("pageStore");
         Connection conn, conn2;